@@ -0,0 +1,80 @@
+package edu.hawaii.wattdepot;
+
+import java.util.concurrent.TimeUnit;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.wattdepot.util.tstamp.Tstamp;
+
+/**
+ * Measures how fast WattDepotCommand.getChartData walks the hours of a range and scales the data
+ * to chart units, for a day, a month and a year of hourly data. The WattDepot server is replaced by
+ * a stub, so only the work done by this web application is measured. With a warm cache every hour
+ * is found in the shared cache; with a cold cache the cache is cleared before each call, so every
+ * hour goes through the request coalescer to the stub.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ChartDataBenchmark {
+
+  /** Number of hourly data points on the chart. */
+  @Param({ "24", "720", "8760" })
+  private int points;
+  /** Whether the shared cache holds the data before each call. */
+  @Param({ "warm", "cold" })
+  private String cache;
+  /** Command under test. */
+  private WattDepotCommand command;
+  /** First day of the range. */
+  private XMLGregorianCalendar startDay;
+  /** Last day of the range. */
+  private XMLGregorianCalendar endDay;
+
+  /**
+   * Creates the command and the range, and empties the shared cache so that no data are left over
+   * from the previous iteration.
+   * 
+   * @throws Exception If the timestamps cannot be made.
+   */
+  @Setup(Level.Iteration)
+  public void setUp() throws Exception {
+    WattDepotCommand.setRangeFetchMode(false);
+    command = new WattDepotCommand(new StubClient());
+    startDay = Tstamp.makeTimestamp("2009-11-01T00:00:00.000-10:00");
+    endDay = Tstamp.incrementDays(startDay, points / 24 - 1);
+    TimeSeriesCache.getSharedCache().clear();
+  }
+
+  /**
+   * Empties the shared cache before each call if the cache is cold. This is done per call on
+   * purpose; even the smallest range takes long enough for the extra work of JMH not to matter.
+   */
+  @Setup(Level.Invocation)
+  public void clearCache() {
+    if ("cold".equals(cache)) {
+      TimeSeriesCache.getSharedCache().clear();
+    }
+  }
+
+  /**
+   * Gets the hourly energy of the range in chart units.
+   * 
+   * @return The data points.
+   */
+  @Benchmark
+  public TimeSeries chartData() {
+    return command.getChartData(startDay, endDay, "SIM_OAHU_GRID", "energy", "hour");
+  }
+
+}
@@ -0,0 +1,80 @@
+package edu.hawaii.wattdepot;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.wattdepot.client.WattDepotClient;
+
+/**
+ * Client that answers requests for energy and carbon right away, without a WattDepot server, so
+ * that benchmarks measure only the code of this web application. The answers depend only on the
+ * hour of the request.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class StubClient extends WattDepotClient {
+
+  /** Carbon intensity of the simulated grid, in lbs CO2 / MWh. */
+  private static final double CARBON_INTENSITY = 1800.0;
+  /** Number of milliseconds in one hour. */
+  private static final double HOUR = 60.0 * 60.0 * 1000.0;
+
+  /**
+   * Creates a client that never connects to its server.
+   */
+  public StubClient() {
+    super("http://localhost/wattdepot/");
+  }
+
+  /**
+   * Returns true because there is no server that can be down.
+   * 
+   * @return True.
+   */
+  @Override
+  public boolean isHealthy() {
+    return true;
+  }
+
+  /**
+   * Returns the energy generated between two times.
+   * 
+   * @param source Ignored.
+   * @param startTime Start of the period.
+   * @param endTime End of the period.
+   * @param interval Ignored.
+   * @return Energy in Wh.
+   */
+  @Override
+  public double getEnergyGenerated(String source, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime, int interval) {
+    double hours = (toMillis(endTime) - toMillis(startTime)) / HOUR;
+    return (800.0 + 200.0 * Math.sin(startTime.getHour() * Math.PI / 12.0)) * 1000000.0 * hours;
+  }
+
+  /**
+   * Returns the carbon emitted between two times.
+   * 
+   * @param source Ignored.
+   * @param startTime Start of the period.
+   * @param endTime End of the period.
+   * @param interval Ignored.
+   * @return Carbon in lbs CO2.
+   */
+  @Override
+  public double getCarbonEmitted(String source, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime, int interval) {
+    return getEnergyGenerated(source, startTime, endTime, interval) / 1000000.0
+        * CARBON_INTENSITY;
+  }
+
+  /**
+   * Converts a timestamp to milliseconds since the epoch.
+   * 
+   * @param tstamp A timestamp.
+   * @return Milliseconds since the epoch.
+   */
+  private static long toMillis(XMLGregorianCalendar tstamp) {
+    return tstamp.toGregorianCalendar().getTimeInMillis();
+  }
+
+}
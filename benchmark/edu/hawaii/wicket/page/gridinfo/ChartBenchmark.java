@@ -0,0 +1,94 @@
+package edu.hawaii.wicket.page.gridinfo;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.wattdepot.util.tstamp.Tstamp;
+import edu.hawaii.wattdepot.TimeSeries;
+
+/**
+ * Measures how fast the Grid Information page turns data into a chart: a day, a month and a year
+ * of hourly data points.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ChartBenchmark {
+
+  /** Number of hourly data points on the chart. */
+  @Param({ "24", "720", "8760" })
+  private int points;
+  /** Chart under test. */
+  private Chart chart;
+  /** Data points of the chart. */
+  private TimeSeries data;
+  /** First day on the chart. */
+  private XMLGregorianCalendar startDay;
+  /** Last day on the chart. */
+  private XMLGregorianCalendar endDay;
+  /** Labels of the x-axis. */
+  private String dayLabel;
+
+  /**
+   * Creates the data points and the days they cover.
+   * 
+   * @throws Exception If the timestamps cannot be made.
+   */
+  @Setup
+  public void setUp() throws Exception {
+    chart = new Chart();
+    Random random = new Random(42);
+    double[] values = new double[points];
+    for (int i = 0; i < points; i++) {
+      values[i] = random.nextDouble() * 999.0;
+    }
+    startDay = Tstamp.makeTimestamp("2009-11-01T00:00:00.000-10:00");
+    data = new TimeSeries(startDay.toGregorianCalendar().getTimeInMillis(), 60, values);
+    endDay = Tstamp.incrementDays(startDay, points / 24 - 1);
+    dayLabel = chart.getDayLabel(startDay, endDay, "day");
+  }
+
+  /**
+   * Encodes the data points.
+   * 
+   * @return The encoded data points.
+   */
+  @Benchmark
+  public String encodedDataList() {
+    return chart.getEncodedDataList(data);
+  }
+
+  /**
+   * Creates the labels of the x-axis, one for each day.
+   * 
+   * @return The labels.
+   */
+  @Benchmark
+  public String dayLabel() {
+    return chart.getDayLabel(startDay, endDay, "day");
+  }
+
+  /**
+   * Creates the URI of a chart with three series, which share one scale.
+   * 
+   * @return The URI of the chart.
+   */
+  @Benchmark
+  public String chartUri() {
+    return new ChartEncoder(3).addSeries("SIM_OAHU_GRID", "FF0000", data).addSeries(
+        "SIM_KAHE", "00FF00", data).addSeries("SIM_WAIAU", "0000FF", data).getChartUri(
+        "Energy+Chart", dayLabel);
+  }
+
+}
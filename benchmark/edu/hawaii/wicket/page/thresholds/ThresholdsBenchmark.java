@@ -0,0 +1,88 @@
+package edu.hawaii.wicket.page.thresholds;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.wattdepot.util.tstamp.Tstamp;
+import edu.hawaii.wattdepot.TimeSeries;
+
+/**
+ * Measures how fast the thresholds and the hourly timestamps of the Thresholds page are computed,
+ * for a day, a month and a year of hourly carbon intensities.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ThresholdsBenchmark {
+
+  /** Number of hourly carbon intensities. */
+  @Param({ "24", "720", "8760" })
+  private int points;
+  /** Thresholds under test. */
+  private Thresholds thresholds;
+  /** Carbon intensities in lbs CO2 / MWh. */
+  private TimeSeries results;
+  /** Start of the day whose timestamps are created. */
+  private XMLGregorianCalendar day;
+
+  /**
+   * Creates the carbon intensities.
+   * 
+   * @throws Exception If the timestamp cannot be made.
+   */
+  @Setup
+  public void setUp() throws Exception {
+    thresholds = new Thresholds();
+    Random random = new Random(42);
+    double[] values = new double[points];
+    for (int i = 0; i < points; i++) {
+      values[i] = 1500.0 + random.nextDouble() * 600.0;
+    }
+    results = new TimeSeries(0L, 60, values);
+    day = Tstamp.makeTimestamp("2009-11-01T00:00:00.000-10:00");
+  }
+
+  /**
+   * Computes the maximum threshold.
+   * 
+   * @return The maximum threshold.
+   */
+  @Benchmark
+  public Double maxThreshold() {
+    return thresholds.getMaxThreshold(results);
+  }
+
+  /**
+   * Computes the minimum threshold.
+   * 
+   * @return The minimum threshold.
+   */
+  @Benchmark
+  public Double minThreshold() {
+    return thresholds.getMinThreshold(results);
+  }
+
+  /**
+   * Creates the timestamps of the 24 hours of a day, which does not depend on the number of
+   * points.
+   * 
+   * @return The timestamps.
+   */
+  @Benchmark
+  public List<XMLGregorianCalendar> createTimestamps() {
+    return Timestamps.createTimestamps(day);
+  }
+
+}
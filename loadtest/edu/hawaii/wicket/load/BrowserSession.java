@@ -0,0 +1,397 @@
+package edu.hawaii.wicket.load;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Acts like one browser visiting the web application: it keeps its own session cookie, follows
+ * redirects, submits forms and sends Wicket AJAX requests. Each virtual user of the load harness
+ * has one browser session.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+class BrowserSession {
+
+  /** Largest number of redirects followed for one request. */
+  private static final int MAX_REDIRECTS = 5;
+  /** Finds the opening tag of a form. */
+  private static final Pattern FORM = Pattern.compile("<form[^>]*>", Pattern.CASE_INSENSITIVE);
+  /** Finds the input and select elements of a form. */
+  private static final Pattern FIELD =
+      Pattern.compile("<(input|select)[^>]*>", Pattern.CASE_INSENSITIVE);
+  /** Finds the URL that a Wicket AJAX button submits its form to. */
+  private static final Pattern AJAX_SUBMIT =
+      Pattern.compile("wicketSubmitFormById\\('[^']*', *'([^']*)'");
+  /** Finds the URL that a Wicket AJAX timer asks for next. */
+  private static final Pattern AJAX_TIMER =
+      Pattern.compile("setTimeout\\(\"[^\"]*?wicketAjaxGet\\('([^']*)'");
+  /** Finds an attribute of a tag. */
+  private static final Pattern ATTRIBUTE =
+      Pattern.compile("([a-zA-Z_:-]+)\\s*=\\s*(\"([^\"]*)\"|'([^']*)')");
+  /** Time that a request may take before it is abandoned, in milliseconds. */
+  private final int timeout;
+  /** Session cookie, or null before the server has set one. */
+  private String cookie;
+  /** URL of the last page that was loaded. */
+  private URL pageUrl;
+  /** Body of the last page that was loaded. */
+  private String page = "";
+
+  /**
+   * Thrown when the server answers with an error or with one of the Wicket error pages.
+   */
+  static class PageException extends IOException {
+    /** Used for serialization. */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates an exception.
+     * 
+     * @param message What went wrong.
+     */
+    PageException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * Creates a browser session without a session cookie.
+   * 
+   * @param timeout Time that a request may take before it is abandoned, in milliseconds.
+   */
+  BrowserSession(int timeout) {
+    this.timeout = timeout;
+  }
+
+  /**
+   * Loads a page and remembers it, following redirects.
+   * 
+   * @param url URL of the page.
+   * @return Body of the page.
+   * @throws IOException If the page cannot be loaded or is an error page.
+   */
+  String open(URL url) throws IOException {
+    page = send(url, null, false);
+    return page;
+  }
+
+  /**
+   * Sends a GET request without changing the remembered page, as a script on the page would.
+   * 
+   * @param url URL of the resource.
+   * @return Body of the response.
+   * @throws IOException If the resource cannot be loaded.
+   */
+  String fetch(URL url) throws IOException {
+    URL current = pageUrl;
+    try {
+      return send(url, null, false);
+    }
+    finally {
+      pageUrl = current;
+    }
+  }
+
+  /**
+   * Submits the first form of the remembered page with the values it already has, changed by the
+   * given values, and remembers the resulting page.
+   * 
+   * @param changes Values of fields to change, by name.
+   * @param button Name of the button that is pressed.
+   * @return Body of the resulting page.
+   * @throws IOException If the form cannot be submitted.
+   */
+  String submit(Map<String, String> changes, String button) throws IOException {
+    Matcher form = FORM.matcher(page);
+    if (!form.find()) {
+      throw new PageException("No form on " + pageUrl);
+    }
+    Map<String, String> fields = getFields(form.end());
+    fields.putAll(changes);
+    fields.put(button, "1");
+    String action = getAttribute(form.group(), "action");
+    page = send(new URL(pageUrl, action), encode(fields), false);
+    return page;
+  }
+
+  /**
+   * Submits the first form of the remembered page through the AJAX button with the given name, as
+   * the Wicket AJAX script would. The remembered page does not change.
+   * 
+   * @param changes Values of fields to change, by name.
+   * @param button Name of the AJAX button that is pressed.
+   * @return The AJAX response.
+   * @throws IOException If the form cannot be submitted.
+   */
+  String submitAjax(Map<String, String> changes, String button) throws IOException {
+    Matcher form = FORM.matcher(page);
+    if (!form.find()) {
+      throw new PageException("No form on " + pageUrl);
+    }
+    Matcher ajax = AJAX_SUBMIT.matcher(page);
+    if (!ajax.find()) {
+      throw new PageException("No AJAX button on " + pageUrl);
+    }
+    Map<String, String> fields = getFields(form.end());
+    fields.putAll(changes);
+    fields.put(button, "1");
+    URL current = pageUrl;
+    try {
+      String response = send(new URL(pageUrl, unescape(ajax.group(1))), encode(fields), true);
+      if (!response.contains("<ajax-response>") || response.contains("<redirect>")) {
+        throw new PageException("Bad AJAX response from " + current);
+      }
+      return response;
+    }
+    finally {
+      pageUrl = current;
+    }
+  }
+
+  /**
+   * Follows the AJAX timer set by an AJAX response, as the Wicket AJAX script would once the timer
+   * expires, without waiting for it. The remembered page does not change.
+   * 
+   * @param response An AJAX response.
+   * @return The AJAX response of the timer, or null if the response does not set a timer.
+   * @throws IOException If the timer cannot be followed.
+   */
+  String followAjaxTimer(String response) throws IOException {
+    Matcher timer = AJAX_TIMER.matcher(response);
+    if (!timer.find()) {
+      return null;
+    }
+    URL current = pageUrl;
+    try {
+      String next = send(new URL(pageUrl, unescape(timer.group(1))), null, true);
+      if (!next.contains("<ajax-response>") || next.contains("<redirect>")) {
+        throw new PageException("Bad AJAX response from " + current);
+      }
+      return next;
+    }
+    finally {
+      pageUrl = current;
+    }
+  }
+
+  /**
+   * Returns the visible text of the options of a drop-down list on the remembered page, by value.
+   * 
+   * @param name Name of the drop-down list.
+   * @return Text of each option, by value.
+   */
+  Map<String, String> getOptions(String name) {
+    Map<String, String> options = new LinkedHashMap<String, String>();
+    int start = page.indexOf("name=\"" + name + "\"");
+    if (start < 0) {
+      return options;
+    }
+    int end = page.indexOf("</select>", start);
+    Matcher option =
+        Pattern.compile("<option[^>]*value=\"([^\"]*)\"[^>]*>([^<]*)</option>").matcher(
+            page.substring(start, end < 0 ? page.length() : end));
+    while (option.find()) {
+      options.put(option.group(1), option.group(2).trim());
+    }
+    return options;
+  }
+
+  /**
+   * Returns the value of the option of a drop-down list with the given text.
+   * 
+   * @param name Name of the drop-down list.
+   * @param text Text of the option.
+   * @return Value of the option.
+   * @throws PageException If there is no such option.
+   */
+  String getOptionValue(String name, String text) throws PageException {
+    for (Map.Entry<String, String> option : getOptions(name).entrySet()) {
+      if (option.getValue().equalsIgnoreCase(text)) {
+        return option.getKey();
+      }
+    }
+    throw new PageException("No option " + text + " in " + name + " on " + pageUrl);
+  }
+
+  /**
+   * Returns the names and values of the fields of the form that starts at the given position.
+   * Check boxes are left out unless they are checked, and drop-down lists have the value of their
+   * selected option.
+   * 
+   * @param start Position of the end of the opening tag of the form.
+   * @return Values of the fields, by name.
+   */
+  private Map<String, String> getFields(int start) {
+    Map<String, String> fields = new LinkedHashMap<String, String>();
+    int end = page.toLowerCase().indexOf("</form>", start);
+    String body = page.substring(start, end < 0 ? page.length() : end);
+    Matcher field = FIELD.matcher(body);
+    while (field.find()) {
+      String tag = field.group();
+      String name = getAttribute(tag, "name");
+      String type = String.valueOf(getAttribute(tag, "type")).toLowerCase();
+      if (name == null || "submit".equals(type) || "button".equals(type)
+          || ("checkbox".equals(type) && !tag.contains("checked"))) {
+        continue;
+      }
+      if ("select".equalsIgnoreCase(field.group(1))) {
+        int close = body.toLowerCase().indexOf("</select>", field.end());
+        String options = body.substring(field.end(), close < 0 ? body.length() : close);
+        Matcher selected =
+            Pattern.compile("<option[^>]*selected[^>]*value=\"([^\"]*)\"|<option[^>]*value=\""
+                + "([^\"]*)\"[^>]*selected").matcher(options);
+        if (selected.find()) {
+          fields.put(name, selected.group(1) == null ? selected.group(2) : selected.group(1));
+        }
+        continue;
+      }
+      String value = getAttribute(tag, "value");
+      fields.put(name, value == null ? "" : unescape(value));
+    } // end while
+    return fields;
+  }
+
+  /**
+   * Returns the value of an attribute of a tag.
+   * 
+   * @param tag The tag.
+   * @param name Name of the attribute.
+   * @return Value of the attribute, or null if the tag does not have it.
+   */
+  private static String getAttribute(String tag, String name) {
+    Matcher attribute = ATTRIBUTE.matcher(tag);
+    while (attribute.find()) {
+      if (attribute.group(1).equalsIgnoreCase(name)) {
+        return attribute.group(3) == null ? attribute.group(4) : attribute.group(3);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Sends a request, following redirects, and returns the body of the response.
+   * 
+   * @param url URL of the request.
+   * @param form Form data to post, or null to send a GET request.
+   * @param ajax True to send the request as a Wicket AJAX request.
+   * @return Body of the response.
+   * @throws IOException If the request fails or the response is an error page.
+   */
+  private String send(URL url, String form, boolean ajax) throws IOException {
+    URL target = url;
+    String data = form;
+    for (int redirects = 0; redirects <= MAX_REDIRECTS; redirects++) {
+      HttpURLConnection connection = (HttpURLConnection) target.openConnection();
+      connection.setInstanceFollowRedirects(false);
+      connection.setConnectTimeout(timeout);
+      connection.setReadTimeout(timeout);
+      if (cookie != null) {
+        connection.setRequestProperty("Cookie", cookie);
+      }
+      if (ajax) {
+        connection.setRequestProperty("Wicket-Ajax", "true");
+      }
+      if (data != null) {
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+        OutputStream out = connection.getOutputStream();
+        try {
+          out.write(data.getBytes("UTF-8"));
+        }
+        finally {
+          out.close();
+        }
+      }
+
+      int status = connection.getResponseCode();
+      String setCookie = connection.getHeaderField("Set-Cookie");
+      if (setCookie != null) {
+        cookie = setCookie.split(";")[0];
+      }
+      if (status >= 300 && status < 400) {
+        target = new URL(target, connection.getHeaderField("Location"));
+        data = null;
+        read(connection.getInputStream());
+        continue;
+      }
+      if (status != HttpURLConnection.HTTP_OK) {
+        read(connection.getErrorStream());
+        throw new PageException("HTTP " + status + " from " + target);
+      }
+      String body = read(connection.getInputStream());
+      if (body.contains("Internal error") || body.contains("Page Expired")) {
+        throw new PageException("Wicket error page from " + target);
+      }
+      pageUrl = target;
+      return body;
+    } // end for
+    throw new PageException("Too many redirects from " + url);
+  }
+
+  /**
+   * Reads a stream to the end and closes it.
+   * 
+   * @param in The stream, or null.
+   * @return What was read.
+   * @throws IOException If the stream cannot be read.
+   */
+  private static String read(InputStream in) throws IOException {
+    if (in == null) {
+      return "";
+    }
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+    try {
+      byte[] bytes = new byte[8192];
+      for (int count = in.read(bytes); count >= 0; count = in.read(bytes)) {
+        buffer.write(bytes, 0, count);
+      }
+    }
+    finally {
+      in.close();
+    }
+    return buffer.toString("UTF-8");
+  }
+
+  /**
+   * Encodes form fields for a POST request.
+   * 
+   * @param fields Values of the fields, by name.
+   * @return The encoded fields.
+   * @throws UnsupportedEncodingException If UTF-8 is not supported.
+   */
+  private static String encode(Map<String, String> fields) throws UnsupportedEncodingException {
+    StringBuilder data = new StringBuilder(256);
+    for (Map.Entry<String, String> field : fields.entrySet()) {
+      if (data.length() > 0) {
+        data.append('&');
+      }
+      data.append(URLEncoder.encode(field.getKey(), "UTF-8")).append('=');
+      data.append(URLEncoder.encode(field.getValue(), "UTF-8"));
+    }
+    return data.toString();
+  }
+
+  /**
+   * Replaces the HTML entities that Wicket writes in attributes.
+   * 
+   * @param text Text of an attribute.
+   * @return The text without entities.
+   */
+  private static String unescape(String text) {
+    return text.replace("&amp;", "&").replace("&quot;", "\"").replace("&lt;", "<").replace(
+        "&gt;", ">");
+  }
+
+}
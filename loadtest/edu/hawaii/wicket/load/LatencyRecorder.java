@@ -0,0 +1,127 @@
+package edu.hawaii.wicket.load;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects the latency of every request of a scenario, grouped by step, such as loading a page or
+ * submitting its form, and the number of requests that failed.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+class LatencyRecorder {
+
+  /** Latencies and errors of each step, by name. */
+  private final Map<String, Step> steps = new TreeMap<String, Step>();
+
+  /**
+   * Latencies and errors of one step.
+   */
+  private static final class Step {
+    /** Latencies in microseconds; only the first count are used. */
+    private long[] latencies = new long[1024];
+    /** Number of latencies recorded. */
+    private int count;
+    /** Number of requests that failed. */
+    private int errors;
+
+    /**
+     * Records the latency of one request.
+     * 
+     * @param micros Latency in microseconds.
+     */
+    private void add(long micros) {
+      if (count == latencies.length) {
+        latencies = Arrays.copyOf(latencies, count * 2);
+      }
+      latencies[count++] = micros;
+    }
+  }
+
+  /**
+   * Records the latency of a request that succeeded.
+   * 
+   * @param step Name of the step.
+   * @param startNanos Value of System.nanoTime() when the request was sent.
+   */
+  synchronized void record(String step, long startNanos) {
+    getStep(step).add((System.nanoTime() - startNanos) / 1000L);
+  }
+
+  /**
+   * Records a request that failed.
+   * 
+   * @param step Name of the step.
+   */
+  synchronized void recordError(String step) {
+    getStep(step).errors++;
+  }
+
+  /**
+   * Returns the total number of requests that failed.
+   * 
+   * @return Number of errors.
+   */
+  synchronized int getErrorCount() {
+    int errors = 0;
+    for (Step step : steps.values()) {
+      errors += step.errors;
+    }
+    return errors;
+  }
+
+  /**
+   * Returns a step, creating it if needed.
+   * 
+   * @param name Name of the step.
+   * @return The step.
+   */
+  private Step getStep(String name) {
+    Step step = steps.get(name);
+    if (step == null) {
+      step = new Step();
+      steps.put(name, step);
+    }
+    return step;
+  }
+
+  /**
+   * Returns one line per step with the number of requests, the requests per second, the p50, p99
+   * and p999 latencies, the largest latency, and the number of errors.
+   * 
+   * @param seconds Length of the scenario in seconds.
+   * @return A table of the steps.
+   */
+  synchronized String getReport(double seconds) {
+    StringBuilder report = new StringBuilder(512);
+    report.append(String.format("  %-24s %8s %8s %9s %9s %9s %9s %7s%n", "step", "requests",
+        "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors"));
+    for (Map.Entry<String, Step> entry : steps.entrySet()) {
+      Step step = entry.getValue();
+      long[] sorted = Arrays.copyOf(step.latencies, step.count);
+      Arrays.sort(sorted);
+      report.append(String.format("  %-24s %8d %8.1f %9.1f %9.1f %9.1f %9.1f %7d%n", entry
+          .getKey(), step.count, step.count / seconds, percentile(sorted, 0.50), percentile(
+          sorted, 0.99), percentile(sorted, 0.999), percentile(sorted, 1.0), step.errors));
+    }
+    return report.toString();
+  }
+
+  /**
+   * Returns a percentile of sorted latencies, using the nearest rank.
+   * 
+   * @param sorted Latencies in microseconds, in ascending order.
+   * @param fraction Percentile from 0 to 1.
+   * @return The latency in milliseconds, or 0 if there are no latencies.
+   */
+  static double percentile(long[] sorted, double fraction) {
+    if (sorted.length == 0) {
+      return 0.0;
+    }
+    int rank = (int) Math.ceil(fraction * sorted.length);
+    return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)] / 1000.0;
+  }
+
+}
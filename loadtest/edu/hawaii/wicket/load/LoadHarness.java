@@ -0,0 +1,243 @@
+package edu.hawaii.wicket.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import org.mortbay.jetty.Server;
+import edu.hawaii.wattdepot.server.StandInServer;
+import edu.hawaii.wicket.Jetty;
+
+/**
+ * Finds out how many users one Jetty instance can serve. The web application is started in this
+ * process through {@link Jetty#start(int)}, with the stand-in WattDepot server as its backend.
+ * Each scenario is then run in turn by many virtual users, each with its own Wicket session, who
+ * load a page, submit its form or send its AJAX and polling requests, wait for a moment, and start
+ * again. For each scenario the harness prints the p50, p99 and p999 latency and the errors of each
+ * step, the heap use and garbage collection, and the number of requests sent to the backend.
+ * <p>
+ * The run is configured with system properties: <code>load.users</code> (50),
+ * <code>load.duration</code> and <code>load.warmup</code> in seconds (30 and 5),
+ * <code>load.thinkTime</code> in milliseconds (500), <code>load.scenarios</code> (all of
+ * stoplight, thresholds, gridinfo and srcsummary), <code>load.port</code> (7071),
+ * <code>load.timeout</code> in milliseconds (60000) and <code>load.date</code>, the day asked for
+ * in MM/dd/yyyy format (yesterday). The <code>standin.*</code> properties set the latency and
+ * error rate of the backend. The hours archived during the run are kept in a temporary
+ * directory, which is removed at the end, unless <code>carbonometer.dataDir</code> is set.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public final class LoadHarness {
+
+  /** Number of milliseconds between samples of the heap. */
+  private static final long HEAP_SAMPLE_INTERVAL = 250L;
+  /** Number of bytes in one megabyte. */
+  private static final double MEGABYTE = 1024.0 * 1024.0;
+
+  /** Number of virtual users. */
+  private final int users;
+  /** Length of each measured run in milliseconds. */
+  private final long duration;
+  /** Length of the warm-up before each measured run in milliseconds. */
+  private final long warmup;
+  /** Average time a user waits between visits in milliseconds. */
+  private final long thinkTime;
+  /** Time that a request may take before it is abandoned, in milliseconds. */
+  private final int timeout;
+  /** URL of the web application, ending with a slash. */
+  private URL base;
+
+  /**
+   * Creates a harness with the settings given in the system properties.
+   */
+  private LoadHarness() {
+    users = Integer.getInteger("load.users", 50);
+    duration = Long.getLong("load.duration", 30L) * 1000L;
+    warmup = Long.getLong("load.warmup", 5L) * 1000L;
+    thinkTime = Long.getLong("load.thinkTime", 500L);
+    timeout = Integer.getInteger("load.timeout", 60000);
+  }
+
+  /**
+   * Starts the stand-in WattDepot server and the web application, runs each scenario, and prints
+   * the results.
+   * 
+   * @param args Ignored.
+   * @throws Exception If a server cannot be started or stopped.
+   */
+  public static void main(String[] args) throws Exception {
+    StandInServer standIn = new StandInServer(0);
+    standIn.start();
+    // The properties are read when the classes of the web application are loaded.
+    System.setProperty("wattdepot.uri", standIn.getUri());
+    if (System.getProperty("carbonometer.feedTimeout") == null) {
+      System.setProperty("carbonometer.feedTimeout", "2000");
+    }
+    File dataDir = null;
+    if (System.getProperty("carbonometer.dataDir") == null) {
+      dataDir = File.createTempFile("carbonometer", "");
+      if (!dataDir.delete() || !dataDir.mkdir()) {
+        throw new IOException("Cannot create directory " + dataDir);
+      }
+      System.setProperty("carbonometer.dataDir", dataDir.getPath());
+    }
+
+    int port = Integer.getInteger("load.port", 7071);
+    Server server = Jetty.start(port);
+    LoadHarness harness = new LoadHarness();
+    harness.base = new URL("http://localhost:" + port + "/" + Jetty.getContextPath() + "/");
+
+    SimpleDateFormat format = new SimpleDateFormat("MM/dd/yyyy", Locale.US);
+    format.setTimeZone(TimeZone.getTimeZone("GMT-10:00"));
+    String date =
+        System.getProperty("load.date", format.format(new Date(System.currentTimeMillis()
+            - 24L * 60L * 60L * 1000L)));
+    String names = System.getProperty("load.scenarios");
+    try {
+      for (String name : names == null ? Scenario.NAMES : names.split(",")) {
+        harness.run(Scenario.forName(name.trim(), date), standIn);
+      }
+    }
+    finally {
+      server.stop();
+      server.join();
+      standIn.stop();
+      if (dataDir != null) {
+        delete(dataDir);
+      }
+    }
+  }
+
+  /**
+   * Deletes a file, or a directory and everything in it.
+   * 
+   * @param file The file or directory.
+   */
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    if (!file.delete()) {
+      System.err.println("Cannot delete " + file);
+    }
+  }
+
+  /**
+   * Warms up and then measures one scenario, and prints the results.
+   * 
+   * @param scenario The scenario.
+   * @param standIn Backend of the web application.
+   * @throws InterruptedException If the harness is interrupted.
+   */
+  private void run(Scenario scenario, StandInServer standIn) throws InterruptedException {
+    System.out.printf("%n%s: %d users, %d s warm-up, %d s run, %d ms think time%n", scenario
+        .getName(), users, warmup / 1000, duration / 1000, thinkTime);
+    runUsers(scenario, new LatencyRecorder(), warmup, null);
+
+    standIn.resetCounts();
+    System.gc();
+    Runtime runtime = Runtime.getRuntime();
+    long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+    long[] gcBefore = getGarbageCollection();
+    LatencyRecorder recorder = new LatencyRecorder();
+    long[] peakHeap = new long[1];
+    long start = System.nanoTime();
+    runUsers(scenario, recorder, duration, peakHeap);
+    double seconds = (System.nanoTime() - start) / 1000000000.0;
+    long[] gcAfter = getGarbageCollection();
+    long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+    System.out.print(recorder.getReport(seconds));
+    System.out.printf("  errors: %d%n", recorder.getErrorCount());
+    System.out.printf("  heap: %.1f MB before, %.1f MB peak, %.1f MB after, %.1f MB max; "
+        + "%d collections taking %d ms%n", heapBefore / MEGABYTE, peakHeap[0] / MEGABYTE,
+        heapAfter / MEGABYTE, runtime.maxMemory() / MEGABYTE, gcAfter[0] - gcBefore[0],
+        gcAfter[1] - gcBefore[1]);
+    System.out.printf("  upstream: %d requests (%.1f per second)%n", standIn.getRequestCount(),
+        standIn.getRequestCount() / seconds);
+    for (String line : standIn.getReport().split("\n")) {
+      System.out.println("    " + line);
+    }
+  }
+
+  /**
+   * Runs a scenario with all virtual users for a while.
+   * 
+   * @param scenario The scenario.
+   * @param recorder Receives the latency of each request.
+   * @param millis How long to run, in milliseconds.
+   * @param peakHeap Receives the largest heap use in bytes, or null if the heap is not watched.
+   * @throws InterruptedException If the harness is interrupted.
+   */
+  private void runUsers(final Scenario scenario, final LatencyRecorder recorder, long millis,
+      long[] peakHeap) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + millis;
+    List<Thread> threads = new ArrayList<Thread>(users);
+    for (int i = 0; i < users; i++) {
+      final Random random = new Random(i);
+      Thread thread = new Thread(new Runnable() {
+        public void run() {
+          BrowserSession browser = new BrowserSession(timeout);
+          try {
+            // Spread the first visits so that the users do not arrive all at once.
+            Thread.sleep((long) (random.nextDouble() * thinkTime));
+            while (System.currentTimeMillis() < deadline) {
+              try {
+                scenario.visit(browser, base, recorder, random);
+              }
+              catch (IOException e) {
+                // Already recorded; start again with a new session as a person would.
+                browser = new BrowserSession(timeout);
+              }
+              Thread.sleep((long) (thinkTime * (0.5 + random.nextDouble())));
+            }
+          }
+          catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }, "load-" + scenario.getName() + "-" + i);
+      thread.setDaemon(true);
+      threads.add(thread);
+      thread.start();
+    } // end for
+
+    Runtime runtime = Runtime.getRuntime();
+    while (System.currentTimeMillis() < deadline) {
+      if (peakHeap != null) {
+        peakHeap[0] = Math.max(peakHeap[0], runtime.totalMemory() - runtime.freeMemory());
+      }
+      Thread.sleep(HEAP_SAMPLE_INTERVAL);
+    }
+    for (Thread thread : threads) {
+      thread.join(timeout);
+    }
+  }
+
+  /**
+   * Returns the number of garbage collections so far and the time they took.
+   * 
+   * @return The number of collections and the time in milliseconds.
+   */
+  private static long[] getGarbageCollection() {
+    long[] totals = new long[2];
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      totals[0] += Math.max(0, collector.getCollectionCount());
+      totals[1] += Math.max(0, collector.getCollectionTime());
+    }
+    return totals;
+  }
+
+}
@@ -0,0 +1,296 @@
+package edu.hawaii.wicket.load;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One way of using a page of the web application, repeated by each virtual user of the load
+ * harness. A visit loads the page in the user's own session and then does what a person or the
+ * scripts on the page would do next, such as submitting the form or polling for changes.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+abstract class Scenario {
+
+  /** Names of all scenarios, in the order they are run by default. */
+  static final String[] NAMES = { "stoplight", "thresholds", "gridinfo", "srcsummary" };
+  /** Finds the version of the stoplight shown on the Stoplight page. */
+  private static final Pattern VERSION = Pattern.compile(",version:(\\d+)");
+  /** Number of milliseconds between polls for a chart, as on the Grid Information page. */
+  private static final long POLL_INTERVAL = 500L;
+  /** Largest number of polls for one chart before the visit gives up waiting. */
+  private static final int MAX_POLLS = 240;
+  /** Name of the scenario. */
+  private final String name;
+
+  /**
+   * Creates a scenario.
+   * 
+   * @param name Name of the scenario.
+   */
+  Scenario(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Returns the name of the scenario.
+   * 
+   * @return Name of the scenario.
+   */
+  String getName() {
+    return name;
+  }
+
+  /**
+   * Visits the page once.
+   * 
+   * @param browser Browser session of the virtual user.
+   * @param base URL of the web application, ending with a slash.
+   * @param recorder Receives the latency of each request.
+   * @param random Used to vary what the user does.
+   * @throws IOException If a request fails; the failure has already been recorded.
+   */
+  abstract void visit(BrowserSession browser, URL base, LatencyRecorder recorder, Random random)
+      throws IOException;
+
+  /**
+   * Returns the scenario with the given name.
+   * 
+   * @param name Name of the scenario.
+   * @param date Day whose data are asked for, in the format of the date fields.
+   * @return The scenario.
+   * @throws IllegalArgumentException If there is no such scenario.
+   */
+  static Scenario forName(String name, String date) {
+    if ("stoplight".equals(name)) {
+      return new Stoplight();
+    }
+    if ("thresholds".equals(name)) {
+      return new Thresholds(date);
+    }
+    if ("gridinfo".equals(name)) {
+      return new GridInfo(date);
+    }
+    if ("srcsummary".equals(name)) {
+      return new SourceSummary();
+    }
+    throw new IllegalArgumentException("Unknown scenario: " + name);
+  }
+
+  /**
+   * Loads a page and records how long it took.
+   * 
+   * @param step Name of the step.
+   * @param browser Browser session of the virtual user.
+   * @param url URL of the page.
+   * @param recorder Receives the latency.
+   * @return Body of the page.
+   * @throws IOException If the page cannot be loaded.
+   */
+  static String open(String step, BrowserSession browser, URL url, LatencyRecorder recorder)
+      throws IOException {
+    long start = System.nanoTime();
+    try {
+      String page = browser.open(url);
+      recorder.record(step, start);
+      return page;
+    }
+    catch (IOException e) {
+      recorder.recordError(step);
+      throw e;
+    }
+  }
+
+  /**
+   * Sends a request from a script on the page and records how long it took.
+   * 
+   * @param step Name of the step.
+   * @param browser Browser session of the virtual user.
+   * @param url URL of the resource.
+   * @param recorder Receives the latency.
+   * @return Body of the response.
+   * @throws IOException If the request fails.
+   */
+  static String fetch(String step, BrowserSession browser, URL url, LatencyRecorder recorder)
+      throws IOException {
+    long start = System.nanoTime();
+    try {
+      String body = browser.fetch(url);
+      recorder.record(step, start);
+      return body;
+    }
+    catch (IOException e) {
+      recorder.recordError(step);
+      throw e;
+    }
+  }
+
+  /**
+   * Submits the form of the page and records how long it took.
+   * 
+   * @param step Name of the step.
+   * @param browser Browser session of the virtual user.
+   * @param fields Values of fields to change, by name.
+   * @param button Name of the button that is pressed.
+   * @param ajax True if the button is an AJAX button.
+   * @param recorder Receives the latency.
+   * @return Body of the resulting page or AJAX response.
+   * @throws IOException If the form cannot be submitted.
+   */
+  static String submit(String step, BrowserSession browser, Map<String, String> fields,
+      String button, boolean ajax, LatencyRecorder recorder) throws IOException {
+    long start = System.nanoTime();
+    try {
+      String body = ajax ? browser.submitAjax(fields, button) : browser.submit(fields, button);
+      recorder.record(step, start);
+      return body;
+    }
+    catch (IOException e) {
+      recorder.recordError(step);
+      throw e;
+    }
+  }
+
+  /**
+   * Loads the Stoplight page and then waits once for the stoplight to change, as the script on
+   * the page does.
+   */
+  private static final class Stoplight extends Scenario {
+
+    /**
+     * Creates the scenario.
+     */
+    Stoplight() {
+      super("stoplight");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void visit(BrowserSession browser, URL base, LatencyRecorder recorder, Random random)
+        throws IOException {
+      String page = open("Stoplight page", browser, new URL(base, "Stoplight"), recorder);
+      Matcher version = VERSION.matcher(page);
+      String known = version.find() ? version.group(1) : "0";
+      fetch("Stoplight feed", browser, new URL(base, "StoplightFeed?version=" + known), recorder);
+    }
+  }
+
+  /**
+   * Loads the Thresholds page and submits its form for one day.
+   */
+  private static final class Thresholds extends Scenario {
+
+    /** Day whose data are asked for. */
+    private final String date;
+
+    /**
+     * Creates the scenario.
+     * 
+     * @param date Day whose data are asked for.
+     */
+    Thresholds(String date) {
+      super("thresholds");
+      this.date = date;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void visit(BrowserSession browser, URL base, LatencyRecorder recorder, Random random)
+        throws IOException {
+      open("Thresholds page", browser, new URL(base, "Thresholds"), recorder);
+      Map<String, String> fields = new HashMap<String, String>();
+      fields.put("date", date);
+      submit("Thresholds submit", browser, fields, "button", false, recorder);
+    }
+  }
+
+  /**
+   * Loads the Grid Information page and asks for an hourly chart of energy or carbon for the Oahu
+   * grid through its AJAX button, then polls for the chart as the page does until it is shown.
+   */
+  private static final class GridInfo extends Scenario {
+
+    /** Day whose data are asked for. */
+    private final String date;
+
+    /**
+     * Creates the scenario.
+     * 
+     * @param date Day whose data are asked for.
+     */
+    GridInfo(String date) {
+      super("gridinfo");
+      this.date = date;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void visit(BrowserSession browser, URL base, LatencyRecorder recorder, Random random)
+        throws IOException {
+      open("GridInfo page", browser, new URL(base, "GridInfo"), recorder);
+      Map<String, String> fields = new HashMap<String, String>();
+      fields.put("start_day", date);
+      fields.put("end_day", date);
+      fields.put("source", browser.getOptionValue("source", "SIM_OAHU_GRID"));
+      fields.put("powerType", browser.getOptionValue("powerType", random.nextBoolean() ? "Energy"
+          : "Carbon"));
+      fields.put("granularity", browser.getOptionValue("granularity", "Hour"));
+      long start = System.nanoTime();
+      String response = submit("GridInfo AJAX submit", browser, fields, "generate", true, recorder);
+      try {
+        for (int polls = 0; response != null && polls < MAX_POLLS; polls++) {
+          try {
+            Thread.sleep(POLL_INTERVAL);
+          }
+          catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while polling for the chart.");
+          }
+          response = browser.followAjaxTimer(response);
+        } // end for
+        recorder.record("GridInfo chart", start);
+      }
+      catch (IOException e) {
+        recorder.recordError("GridInfo chart");
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Loads the Source Summary page and asks for the summary of a power source chosen at random.
+   */
+  private static final class SourceSummary extends Scenario {
+
+    /**
+     * Creates the scenario.
+     */
+    SourceSummary() {
+      super("srcsummary");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void visit(BrowserSession browser, URL base, LatencyRecorder recorder, Random random)
+        throws IOException {
+      open("SourceSummary page", browser, new URL(base, "SourceSummary"), recorder);
+      List<String> values = new ArrayList<String>(browser.getOptions("source").keySet());
+      if (values.isEmpty()) {
+        recorder.recordError("SourceSummary submit");
+        throw new BrowserSession.PageException("No power sources on the Source Summary page");
+      }
+      Map<String, String> fields = new HashMap<String, String>();
+      fields.put("source", values.get(random.nextInt(values.size())));
+      submit("SourceSummary submit", browser, fields, "generate", false, recorder);
+    }
+  }
+
+}
@@ -0,0 +1,82 @@
+package edu.hawaii.wattdepot;
+
+/**
+ * Describes one batch of queries that was sent to the WattDepot server through a query pool.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class BatchStatistics {
+
+  /** Number of queries in the batch. */
+  private final int queries;
+  /** Largest number of queries from the batch that were in flight at the same time. */
+  private final int peakInFlight;
+  /** Number of threads in the pool that ran the batch. */
+  private final int poolSize;
+  /** Time it took to run the whole batch, in milliseconds. */
+  private final long elapsedMillis;
+
+  /**
+   * Creates a description of a batch of queries.
+   * 
+   * @param queries Number of queries in the batch.
+   * @param peakInFlight Largest number of queries that were in flight at the same time.
+   * @param poolSize Number of threads in the pool that ran the batch.
+   * @param elapsedMillis Time it took to run the whole batch, in milliseconds.
+   */
+  public BatchStatistics(int queries, int peakInFlight, int poolSize, long elapsedMillis) {
+    this.queries = queries;
+    this.peakInFlight = peakInFlight;
+    this.poolSize = poolSize;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  /**
+   * Returns the number of queries in the batch.
+   * 
+   * @return Number of queries in the batch.
+   */
+  public int getQueries() {
+    return queries;
+  }
+
+  /**
+   * Returns the largest number of queries from the batch that were in flight at the same time.
+   * 
+   * @return Largest number of queries that were in flight at the same time.
+   */
+  public int getPeakInFlight() {
+    return peakInFlight;
+  }
+
+  /**
+   * Returns the number of threads in the pool that ran the batch.
+   * 
+   * @return Number of threads in the pool.
+   */
+  public int getPoolSize() {
+    return poolSize;
+  }
+
+  /**
+   * Returns the time it took to run the whole batch.
+   * 
+   * @return Time it took to run the whole batch, in milliseconds.
+   */
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  /**
+   * Returns a one-line description of the batch.
+   * 
+   * @return A one-line description of the batch.
+   */
+  @Override
+  public String toString() {
+    return String.format("%d queries, %d in flight (pool of %d), %d ms", queries, peakInFlight,
+        poolSize, elapsedMillis);
+  }
+
+}
@@ -0,0 +1,226 @@
+package edu.hawaii.wattdepot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.wattdepot.client.WattDepotClientException;
+
+/**
+ * Loads the data that the pages of this web application ask for by default into the shared cache
+ * and rollup store before any user asks for them. These are the hourly energy generated and carbon
+ * emitted by the Oahu power grid and its subsources from the start of the day a week ago to now,
+ * which cover the Thresholds page for yesterday and today and the default ranges of the
+ * Visualization and Grid Info pages. Warming runs once when the warmer starts and again shortly
+ * after each midnight in Hawaii-Aleutian Standard Time, in a background thread of the lowest
+ * priority. If warming fails or throws, it is retried after ten minutes. The number of days can
+ * be changed with the <code>carbonometer.warmDays</code> system property.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class CacheWarmer {
+
+  /** Number of days before today to warm if the system property is not set. */
+  public static final int DEFAULT_DAYS = 7;
+  /** Power source at the top of the graph whose data, and whose subsources' data, are warmed. */
+  public static final String ROOT = "SIM_OAHU_GRID";
+  /** Number of milliseconds after midnight to wait, so that the last hour of the day is over. */
+  public static final long ROLLOVER_DELAY = 5L * TimeGrid.MINUTE;
+  /** Number of milliseconds to wait before warming again after a failure. */
+  public static final long RETRY_DELAY = 10L * TimeGrid.MINUTE;
+  /** Warmer shared by all users of this web application. */
+  private static final CacheWarmer SHARED =
+      new CacheWarmer(Integer.getInteger("carbonometer.warmDays", DEFAULT_DAYS));
+  /** Number of days before today to warm. */
+  private final int days;
+  /** Number of milliseconds to wait before warming again after a failure. */
+  private final long retryDelay;
+  /** Runs the warming in the background. */
+  private ScheduledExecutorService scheduler;
+  /** Number of milliseconds the last warming took, or -1 if it has not run yet. */
+  private volatile long lastDuration = -1;
+  /** Number of hourly values available after the last warming. */
+  private volatile int lastBucketCount;
+  /** True if the last warming got every value it asked for, false otherwise. */
+  private volatile boolean lastSucceeded;
+
+  /**
+   * Creates a warmer.
+   * 
+   * @param days Number of days before today to warm.
+   */
+  public CacheWarmer(int days) {
+    this(days, RETRY_DELAY);
+  }
+
+  /**
+   * Creates a warmer that waits a given time before warming again after a failure.
+   * 
+   * @param days Number of days before today to warm.
+   * @param retryDelay Number of milliseconds to wait before warming again after a failure.
+   */
+  CacheWarmer(int days, long retryDelay) {
+    this.days = days;
+    this.retryDelay = retryDelay;
+  }
+
+  /**
+   * Returns the warmer shared by all users of this web application.
+   * 
+   * @return The shared warmer.
+   */
+  public static CacheWarmer getShared() {
+    return SHARED;
+  }
+
+  /**
+   * Warms the cache right away and then again after each midnight.
+   */
+  public synchronized void start() {
+    if (scheduler != null) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "cache-warmer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+      }
+    });
+    schedule(0L);
+  }
+
+  /**
+   * Stops warming the cache.
+   */
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  /**
+   * Schedules the next warming, which schedules the one after it when it is done, even if it
+   * failed with an unexpected exception.
+   * 
+   * @param delay Number of milliseconds to wait.
+   */
+  private synchronized void schedule(long delay) {
+    if (scheduler == null) {
+      return;
+    }
+    scheduler.schedule(new Runnable() {
+      public void run() {
+        boolean succeeded = false;
+        try {
+          succeeded = warm();
+          System.out.println(getReport());
+        }
+        finally {
+          long now = System.currentTimeMillis();
+          schedule(succeeded ? getNextRun(now) - now : retryDelay);
+        }
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns the time of the warming after the given time: a few minutes after the next midnight.
+   * 
+   * @param now A time, in milliseconds since the epoch.
+   * @return Time of the next warming, in milliseconds since the epoch.
+   */
+  public static long getNextRun(long now) {
+    long next = TimeGrid.startOfDay(now) + ROLLOVER_DELAY;
+    return (next > now) ? next : next + TimeGrid.DAY;
+  }
+
+  /**
+   * Loads the hourly energy and carbon data of the Oahu power grid and its subsources, from the
+   * start of the day a given number of days ago to the start of the current hour, into the shared
+   * cache and rollup store. A power source whose data cannot be retrieved, or whose data fail in
+   * any other way, is skipped.
+   * 
+   * @return True if every value was retrieved, false if the WattDepot server could not be
+   * contacted or a query failed.
+   */
+  public boolean warm() {
+    long started = System.currentTimeMillis();
+    long end = started - started % TimeGrid.HOUR;
+    long start = TimeGrid.startOfDay(started) - days * TimeGrid.DAY;
+    List<String> sources =
+        new ArrayList<String>(WattDepotCommand.getSourceGraph().getSubsources(ROOT));
+    sources.add(ROOT);
+
+    WattDepotCommand command = new WattDepotCommand();
+    boolean healthy = HealthMonitor.getShared().isHealthy();
+    boolean succeeded = healthy;
+    int buckets = 0;
+    for (int i = 0; healthy && i < sources.size(); i++) {
+      if (Thread.currentThread().isInterrupted()) {
+        return false;
+      }
+      try {
+        buckets += command.loadHours(sources.get(i), start, end);
+      }
+      catch (WattDepotClientException e) {
+        succeeded = false;
+      }
+      catch (RuntimeException e) {
+        succeeded = false;
+      }
+    } // end for
+
+    lastDuration = System.currentTimeMillis() - started;
+    lastBucketCount = buckets;
+    lastSucceeded = succeeded;
+    return succeeded;
+  }
+
+  /**
+   * Returns the number of milliseconds the last warming took.
+   * 
+   * @return Duration of the last warming, or -1 if it has not run yet.
+   */
+  public long getLastDuration() {
+    return lastDuration;
+  }
+
+  /**
+   * Returns the number of hourly values of all power sources and types of data that were in the
+   * cache after the last warming.
+   * 
+   * @return Number of values loaded by the last warming.
+   */
+  public int getLastBucketCount() {
+    return lastBucketCount;
+  }
+
+  /**
+   * Returns true if the last warming got every value it asked for.
+   * 
+   * @return True if the last warming succeeded, false otherwise.
+   */
+  public boolean isLastSucceeded() {
+    return lastSucceeded;
+  }
+
+  /**
+   * Returns a one-line report of the last warming.
+   * 
+   * @return How long the last warming took and how many values it loaded.
+   */
+  public String getReport() {
+    if (lastDuration < 0) {
+      return "Cache not warmed yet.";
+    }
+    return String.format("Cache warmed in %.1f s: %d hourly values%s.", lastDuration / 1000.0,
+        lastBucketCount, lastSucceeded ? "" : " (some queries failed)");
+  }
+
+}
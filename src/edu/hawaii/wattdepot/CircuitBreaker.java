@@ -0,0 +1,478 @@
+package edu.hawaii.wattdepot;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.wattdepot.client.WattDepotClientException;
+
+/**
+ * Guards the calls to the WattDepot server so that a slow or unreachable server does not hold up
+ * the threads that serve pages. Each call runs in a thread of this breaker and the caller waits
+ * for it only until the call timeout; at most a fixed number of calls are outstanding at a time,
+ * and a call beyond that waits briefly for one of them to end and then fails. After a number of
+ * calls in a row have timed out or failed because of the server or the connection to it, the
+ * circuit opens and calls fail right away, without reaching the server, until the open interval
+ * has passed. Then one trial call is let
+ * through: if it succeeds the circuit closes, and if it fails the circuit stays open for another
+ * interval. Calls that the server answered with an error about the request, such as an unknown
+ * power source or missing data, count as successes. Calls that failed in this application, calls
+ * that were not started because too many were outstanding, and calls whose caller was interrupted
+ * say nothing about the server and are not counted at all. While the circuit is open, callers are
+ * expected to serve the last good data they have and to refresh it with
+ * {@link #refreshInBackground}. If virtual threads are enabled, each call runs on a virtual thread
+ * of its own. The limits can be changed with the <code>carbonometer.callTimeout</code>,
+ * <code>carbonometer.breakerFailures</code>, <code>carbonometer.breakerOpenSeconds</code>,
+ * <code>carbonometer.maxUpstreamCalls</code>, and <code>carbonometer.breakerQueueMillis</code>
+ * system properties.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class CircuitBreaker {
+
+  /** Number of milliseconds to wait for a call if the system property is not set. */
+  public static final long DEFAULT_TIMEOUT = 10000L;
+  /** Number of failures in a row that open the circuit if the system property is not set. */
+  public static final int DEFAULT_FAILURES = 5;
+  /** Number of seconds the circuit stays open if the system property is not set. */
+  public static final int DEFAULT_OPEN_SECONDS = 30;
+  /**
+   * Number of threads other than those of the query pools that call the WattDepot server: the
+   * stoplight poller, the cache warmer, the refresher of this breaker, and the threads that serve
+   * pages.
+   */
+  static final int OTHER_CALLERS = 8;
+  /**
+   * Number of calls that may be outstanding at a time if the system property is not set: enough
+   * for the shared query pool and the pool of asynchronous queries to be full at once, and for the
+   * other callers on top of them.
+   */
+  public static final int DEFAULT_MAX_CALLS = 2 * QueryPool.DEFAULT_POOL_SIZE + OTHER_CALLERS;
+  /** Number of milliseconds to wait for an outstanding call to end if the property is not set. */
+  public static final long DEFAULT_QUEUE_MILLIS = 2000L;
+  /**
+   * Names of the exceptions of the WattDepot client that report an error in the request rather
+   * than in the server. They are matched by name, so that this class does not depend on the
+   * version of the client that defines them.
+   */
+  private static final Set<String> CLIENT_ERRORS =
+      new HashSet<String>(Arrays.asList("org.wattdepot.client.BadXmlException",
+          "org.wattdepot.client.NotAuthorizedException",
+          "org.wattdepot.client.ResourceNotFoundException",
+          "org.wattdepot.client.NoMeasurementException"));
+  /** Breaker shared by all users of this web application. */
+  private static final CircuitBreaker SHARED =
+      new CircuitBreaker(Long.getLong("carbonometer.callTimeout", DEFAULT_TIMEOUT), Integer
+          .getInteger("carbonometer.breakerFailures", DEFAULT_FAILURES), Integer.getInteger(
+          "carbonometer.breakerOpenSeconds", DEFAULT_OPEN_SECONDS) * 1000L, VirtualThreads
+          .getLimit("carbonometer.maxUpstreamCalls", DEFAULT_MAX_CALLS), Long.getLong(
+          "carbonometer.breakerQueueMillis", DEFAULT_QUEUE_MILLIS), VirtualThreads.isEnabled());
+
+  /** States of the circuit. */
+  public enum State {
+    /** Calls go through. */
+    CLOSED,
+    /** Calls fail right away. */
+    OPEN,
+    /** One trial call is outstanding; other calls fail right away. */
+    HALF_OPEN
+  }
+
+  /** Number of milliseconds to wait for a call. */
+  private final long timeout;
+  /** Number of failures in a row that open the circuit. */
+  private final int failureThreshold;
+  /** Number of milliseconds the circuit stays open before a trial call is let through. */
+  private final long openMillis;
+  /** Number of milliseconds a call waits for an outstanding call to end before it fails. */
+  private final long queueMillis;
+  /** Runs the calls. */
+  private final ExecutorService callers;
+  /** Limits the number of outstanding calls. */
+  private final Semaphore permits;
+  /** Runs the background refreshes, one at a time. */
+  private final ExecutorService refresher;
+  /** Keys of the background refreshes that are queued or running. */
+  private final Set<String> refreshing =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  /** State of the circuit. */
+  private State state = State.CLOSED;
+  /** Number of calls in a row that have failed. */
+  private int failures;
+  /** Time at which the circuit last opened, in milliseconds since the epoch. */
+  private long openedAt;
+  /** Number of calls that timed out. */
+  private final AtomicLong timeouts = new AtomicLong();
+  /** Number of calls that failed right away because the circuit was open or too many were out. */
+  private final AtomicLong rejected = new AtomicLong();
+
+  /**
+   * Thrown when a call fails right away because the circuit is open or too many calls are
+   * outstanding.
+   */
+  public static class OpenException extends WattDepotClientException {
+
+    /** Support serialization. */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates an exception.
+     * 
+     * @param message Why the call was not made.
+     */
+    public OpenException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * Creates a breaker whose calls fail right away when too many are outstanding.
+   * 
+   * @param timeout Number of milliseconds to wait for a call.
+   * @param failureThreshold Number of failures in a row that open the circuit.
+   * @param openMillis Number of milliseconds the circuit stays open.
+   * @param maxCalls Number of calls that may be outstanding at a time.
+   */
+  public CircuitBreaker(long timeout, int failureThreshold, long openMillis, int maxCalls) {
+    this(timeout, failureThreshold, openMillis, maxCalls, 0L, false);
+  }
+
+  /**
+   * Creates a breaker that runs its calls on virtual threads if they are asked for and available.
+   * 
+   * @param timeout Number of milliseconds to wait for a call.
+   * @param failureThreshold Number of failures in a row that open the circuit.
+   * @param openMillis Number of milliseconds the circuit stays open.
+   * @param maxCalls Number of calls that may be outstanding at a time.
+   * @param queueMillis Number of milliseconds a call waits for an outstanding call to end when
+   * too many are outstanding, or 0 to fail right away.
+   * @param virtualThreads True to run each call on a virtual thread of its own.
+   */
+  public CircuitBreaker(long timeout, int failureThreshold, long openMillis, int maxCalls,
+      long queueMillis, boolean virtualThreads) {
+    this.timeout = timeout;
+    this.failureThreshold = failureThreshold;
+    this.openMillis = openMillis;
+    this.queueMillis = queueMillis;
+    this.permits = new Semaphore(maxCalls);
+    ExecutorService virtual = virtualThreads ? VirtualThreads.newExecutor() : null;
+    if (virtual != null) {
+      this.callers = virtual;
+    }
+    else {
+      // The permits limit the calls, so the pool never runs more than maxCalls of them; it only
+      // has to keep a thread for a call whose permit was given back just before it ended.
+      this.callers =
+          new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+              new SynchronousQueue<Runnable>(), new DaemonThreadFactory("wattdepot-call-"));
+    }
+    this.refresher =
+        Executors.newSingleThreadExecutor(new DaemonThreadFactory("wattdepot-refresh-"));
+  }
+
+  /**
+   * Returns the breaker shared by all users of this web application.
+   * 
+   * @return The shared breaker.
+   */
+  public static CircuitBreaker getShared() {
+    return SHARED;
+  }
+
+  /**
+   * Makes a call to the WattDepot server and waits for it until the timeout.
+   * 
+   * @param <T> Type of the result of the call.
+   * @param call Makes the call.
+   * @return Result of the call.
+   * @throws OpenException If the circuit is open or too many calls are still outstanding after
+   * the queue wait.
+   * @throws WattDepotClientException If the call failed or timed out.
+   */
+  public <T> T call(Callable<T> call) throws WattDepotClientException {
+    if (!allowCall()) {
+      rejected.incrementAndGet();
+      throw new OpenException("The WattDepot server is not responding.");
+    }
+    Future<T> future;
+    try {
+      if (permits.tryAcquire(queueMillis, TimeUnit.MILLISECONDS)) {
+        future = submitWithPermit(call);
+      }
+      else {
+        throw new RejectedExecutionException();
+      }
+    }
+    catch (RejectedExecutionException e) {
+      rejected.incrementAndGet();
+      onAbandoned();
+      throw new OpenException("Too many calls to the WattDepot server are outstanding.");
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      onAbandoned();
+      throw new WattDepotClientException("Interrupted while waiting for the WattDepot server.");
+    }
+
+    try {
+      T result = future.get(timeout, TimeUnit.MILLISECONDS);
+      onSuccess();
+      return result;
+    }
+    catch (TimeoutException e) {
+      future.cancel(true);
+      timeouts.incrementAndGet();
+      onFailure();
+      throw new WattDepotClientException("No answer from the WattDepot server in " + timeout
+          + " ms.");
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException || e.getCause() instanceof Error) {
+        onAbandoned();
+      }
+      else if (isClientError(e.getCause())) {
+        onSuccess();
+      }
+      else {
+        onFailure();
+      }
+      if (e.getCause() instanceof WattDepotClientException) {
+        throw (WattDepotClientException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new WattDepotClientException(e.getCause().toString());
+    }
+    catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      onAbandoned();
+      throw new WattDepotClientException("Interrupted while waiting for the WattDepot server.");
+    }
+  }
+
+  /**
+   * Returns true if a call failed because the server found an error in the request, which shows
+   * that the server is answering.
+   * 
+   * @param cause Why the call failed.
+   * @return True for an error in the request, false otherwise.
+   */
+  static boolean isClientError(Throwable cause) {
+    for (Class<?> type = cause.getClass(); type != null; type = type.getSuperclass()) {
+      if (CLIENT_ERRORS.contains(type.getName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Starts a call that holds a permit, which is given back when the call ends.
+   * 
+   * @param <T> Type of the result of the call.
+   * @param call Makes the call.
+   * @return Future of the call.
+   */
+  private <T> Future<T> submitWithPermit(final Callable<T> call) {
+    try {
+      return callers.submit(new Callable<T>() {
+        public T call() throws Exception {
+          try {
+            return call.call();
+          }
+          finally {
+            permits.release();
+          }
+        }
+      });
+    }
+    catch (RejectedExecutionException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns true if a call may be made now, and lets one trial call through once the circuit has
+   * been open for the open interval.
+   * 
+   * @return True if a call may be made, false otherwise.
+   */
+  private synchronized boolean allowCall() {
+    if (state == State.CLOSED) {
+      return true;
+    }
+    if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+      state = State.HALF_OPEN;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Closes the circuit after a call succeeded.
+   */
+  private synchronized void onSuccess() {
+    failures = 0;
+    state = State.CLOSED;
+  }
+
+  /**
+   * Lets the next call through as the trial call if the trial call was not made or its result says
+   * nothing about the server. The circuit is not closed, and the failures are not counted.
+   */
+  private synchronized void onAbandoned() {
+    if (state == State.HALF_OPEN) {
+      state = State.OPEN;
+    }
+  }
+
+  /**
+   * Counts a failed call, and opens the circuit if the trial call failed or too many calls in a row
+   * have failed.
+   */
+  private synchronized void onFailure() {
+    failures++;
+    if (state == State.HALF_OPEN || failures >= failureThreshold) {
+      state = State.OPEN;
+      openedAt = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Runs a refresh in the background unless a refresh with the same key is already queued or
+   * running. Refreshes run one at a time, so they do not add to the load on a server that is
+   * having trouble.
+   * 
+   * @param key Identifies the data being refreshed.
+   * @param refresh Gets the data again and stores them.
+   */
+  public void refreshInBackground(final String key, final Runnable refresh) {
+    if (!refreshing.add(key)) {
+      return;
+    }
+    try {
+      refresher.execute(new Runnable() {
+        public void run() {
+          try {
+            refresh.run();
+          }
+          finally {
+            refreshing.remove(key);
+          }
+        }
+      });
+    }
+    catch (RejectedExecutionException e) {
+      refreshing.remove(key);
+    }
+  }
+
+  /**
+   * Returns the state of the circuit.
+   * 
+   * @return The state of the circuit.
+   */
+  public synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * Returns true if calls are failing right away because the circuit is open.
+   * 
+   * @return True if the circuit is open or a trial call is outstanding, false otherwise.
+   */
+  public synchronized boolean isOpen() {
+    return state != State.CLOSED;
+  }
+
+  /**
+   * Returns the number of calls that timed out.
+   * 
+   * @return Number of timeouts.
+   */
+  public long getTimeouts() {
+    return timeouts.get();
+  }
+
+  /**
+   * Returns the number of calls that failed right away.
+   * 
+   * @return Number of rejected calls.
+   */
+  public long getRejected() {
+    return rejected.get();
+  }
+
+  /**
+   * Returns the number of background refreshes that are queued or running.
+   * 
+   * @return Number of background refreshes.
+   */
+  public int getRefreshCount() {
+    return refreshing.size();
+  }
+
+  /**
+   * Returns a one-line description of the breaker.
+   * 
+   * @return A one-line description of the breaker.
+   */
+  @Override
+  public String toString() {
+    return String.format("%s, %d timeouts, %d rejected, %d refreshing", getState(), getTimeouts(),
+        getRejected(), getRefreshCount());
+  }
+
+  /**
+   * Creates numbered daemon threads, so that calls left waiting on a dead server do not keep the
+   * application from shutting down.
+   */
+  private static final class DaemonThreadFactory implements ThreadFactory {
+
+    /** Prefix of the thread names. */
+    private final String prefix;
+    /** Number of the next thread. */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Creates a factory.
+     * 
+     * @param prefix Prefix of the thread names.
+     */
+    DaemonThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    /**
+     * Creates a daemon thread.
+     * 
+     * @param runnable What the thread runs.
+     * @return The thread.
+     */
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+}
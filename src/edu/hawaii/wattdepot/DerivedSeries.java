@@ -0,0 +1,176 @@
+package edu.hawaii.wattdepot;
+
+/**
+ * Holds energy and carbon data for consecutive, equally long periods of time that were computed
+ * locally from the raw sensor data of a power source. A period that the sensor data do not cover
+ * from start to end is marked as incomplete, because its data are too low.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class DerivedSeries {
+
+  /** Start of the first period, in milliseconds since the epoch. */
+  private final long startMillis;
+  /** Length of each period in minutes. */
+  private final int intervalMinutes;
+  /** Energy generated in each period, in Wh. */
+  private final double[] energy;
+  /** Carbon emitted in each period, in lbs CO2. */
+  private final double[] carbon;
+  /** Indicates whether each period is not fully covered by sensor data. */
+  private final boolean[] incomplete;
+
+  /**
+   * Creates a series with no energy and no carbon in any period.
+   * 
+   * @param startMillis Start of the first period, in milliseconds since the epoch.
+   * @param intervalMinutes Length of each period in minutes.
+   * @param size Number of periods.
+   */
+  public DerivedSeries(long startMillis, int intervalMinutes, int size) {
+    this.startMillis = startMillis;
+    this.intervalMinutes = intervalMinutes;
+    this.energy = new double[size];
+    this.carbon = new double[size];
+    this.incomplete = new boolean[size];
+  }
+
+  /**
+   * Returns the number of periods in this series.
+   * 
+   * @return Number of periods.
+   */
+  public int size() {
+    return energy.length;
+  }
+
+  /**
+   * Returns the start of the first period.
+   * 
+   * @return Start of the first period, in milliseconds since the epoch.
+   */
+  public long getStartMillis() {
+    return startMillis;
+  }
+
+  /**
+   * Returns the length of each period.
+   * 
+   * @return Length of each period in minutes.
+   */
+  public int getIntervalMinutes() {
+    return intervalMinutes;
+  }
+
+  /**
+   * Returns the energy generated in a period.
+   * 
+   * @param index Index of the period.
+   * @return Energy generated in the period, in Wh.
+   */
+  public double getEnergy(int index) {
+    return energy[index];
+  }
+
+  /**
+   * Returns the carbon emitted in a period.
+   * 
+   * @param index Index of the period.
+   * @return Carbon emitted in the period, in lbs CO2.
+   */
+  public double getCarbon(int index) {
+    return carbon[index];
+  }
+
+  /**
+   * Returns the carbon intensity of a period.
+   * 
+   * @param index Index of the period.
+   * @return Carbon intensity of the period, in lbs CO2 / MWh.
+   */
+  public double getIntensity(int index) {
+    return carbon[index] / energy[index] * 1000000.0;
+  }
+
+  /**
+   * Adds energy and carbon to a period.
+   * 
+   * @param index Index of the period.
+   * @param energyGenerated Energy to add, in Wh.
+   * @param carbonEmitted Carbon to add, in lbs CO2.
+   */
+  void add(int index, double energyGenerated, double carbonEmitted) {
+    energy[index] += energyGenerated;
+    carbon[index] += carbonEmitted;
+  }
+
+  /**
+   * Replaces the energy and carbon of a period with data retrieved some other way, which makes the
+   * period complete.
+   * 
+   * @param index Index of the period.
+   * @param energyGenerated Energy generated in the period, in Wh.
+   * @param carbonEmitted Carbon emitted in the period, in lbs CO2.
+   */
+  void set(int index, double energyGenerated, double carbonEmitted) {
+    energy[index] = energyGenerated;
+    carbon[index] = carbonEmitted;
+    incomplete[index] = false;
+  }
+
+  /**
+   * Marks a period as not fully covered by sensor data.
+   * 
+   * @param index Index of the period.
+   */
+  void setIncomplete(int index) {
+    incomplete[index] = true;
+  }
+
+  /**
+   * Returns true if a period is fully covered by sensor data, so that its data can be kept.
+   * 
+   * @param index Index of the period.
+   * @return True if the period is complete, false otherwise.
+   */
+  public boolean isComplete(int index) {
+    return !incomplete[index];
+  }
+
+  /**
+   * Combines consecutive periods of this series into longer periods, for example hours into days
+   * or weeks. The last period is kept even if this series ends before it is complete. A new period
+   * is incomplete if any of the periods combined into it is.
+   * 
+   * @param newIntervalMinutes Length of each new period in minutes. Must be a multiple of the
+   * length of the periods in this series.
+   * @return A new series with longer periods.
+   */
+  public DerivedSeries aggregate(int newIntervalMinutes) {
+    if (newIntervalMinutes % intervalMinutes != 0) {
+      throw new IllegalArgumentException("Cannot combine " + intervalMinutes
+          + "-minute periods into " + newIntervalMinutes + "-minute periods.");
+    }
+    int factor = newIntervalMinutes / intervalMinutes;
+    DerivedSeries result =
+        new DerivedSeries(startMillis, newIntervalMinutes, (size() + factor - 1) / factor);
+    for (int i = 0; i < size(); i++) {
+      result.add(i / factor, energy[i], carbon[i]);
+      if (incomplete[i]) {
+        result.setIncomplete(i / factor);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the end of the last period.
+   * 
+   * @return End of the last period, in milliseconds since the epoch.
+   */
+  public long getEndMillis() {
+    return startMillis + size() * intervalMinutes * TimeGrid.MINUTE;
+  }
+
+}
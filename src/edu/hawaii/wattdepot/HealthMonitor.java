@@ -0,0 +1,213 @@
+package edu.hawaii.wattdepot;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.wattdepot.client.WattDepotClient;
+
+/**
+ * Checks in the background whether the WattDepot server is healthy, so that commands and pages
+ * read a flag instead of making a round trip to the server each time. The server is probed right
+ * away when the monitor starts and then at a fixed interval; the result and the latency of the
+ * last few probes are kept. Until the first probe is done, the server is assumed to be healthy, so
+ * that pages are not turned away while the application starts, but the application is not ready.
+ * If no probe has finished for three intervals, for example because one is hanging, the server is
+ * taken to be down. The interval can be changed with the <code>carbonometer.healthSeconds</code>
+ * system property.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class HealthMonitor {
+
+  /** Number of seconds between probes if the system property is not set. */
+  public static final int DEFAULT_INTERVAL_SECONDS = 15;
+  /** Number of probes whose latency is kept. */
+  public static final int HISTORY_SIZE = 20;
+  /** Monitor of the server used by all users of this web application. */
+  private static final HealthMonitor SHARED =
+      new HealthMonitor(WattDepotCommand.CLIENT, Integer.getInteger("carbonometer.healthSeconds",
+          DEFAULT_INTERVAL_SECONDS) * 1000L);
+  /** Client used to probe the server. */
+  private final WattDepotClient client;
+  /** Number of milliseconds between probes. */
+  private final long interval;
+  /** Latency of the last probes, in milliseconds, oldest first once the ring has wrapped. */
+  private final long[] latencies = new long[HISTORY_SIZE];
+  /** Result of the last probes, in the same slots as their latency. */
+  private final boolean[] results = new boolean[HISTORY_SIZE];
+  /** Number of probes made so far. */
+  private long probeCount;
+  /** True if the last probe found the server healthy, false otherwise. */
+  private volatile boolean healthy = true;
+  /** Time the last probe finished, in milliseconds since the epoch, or 0 if none has. */
+  private volatile long lastProbeAt;
+  /** Runs the probes in the background. */
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Creates a monitor.
+   * 
+   * @param client Client used to probe the server.
+   * @param interval Number of milliseconds between probes.
+   */
+  public HealthMonitor(WattDepotClient client, long interval) {
+    this.client = client;
+    this.interval = interval;
+  }
+
+  /**
+   * Returns the monitor of the server used by all users of this web application.
+   * 
+   * @return The shared monitor.
+   */
+  public static HealthMonitor getShared() {
+    return SHARED;
+  }
+
+  /**
+   * Probes the server right away and then after every interval.
+   */
+  public synchronized void start() {
+    if (scheduler != null) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "health-monitor");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+      public void run() {
+        probe();
+      }
+    }, 0, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops probing the server.
+   */
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  /**
+   * Asks the server whether it is healthy and publishes the result.
+   * 
+   * @return True if the server is healthy, false otherwise.
+   */
+  public boolean probe() {
+    long started = System.nanoTime();
+    boolean result;
+    try {
+      result = client.isHealthy();
+    }
+    catch (RuntimeException e) {
+      result = false;
+    }
+    long latency = (System.nanoTime() - started) / 1000000L;
+    synchronized (this) {
+      int slot = (int) (probeCount % HISTORY_SIZE);
+      latencies[slot] = latency;
+      results[slot] = result;
+      probeCount++;
+    }
+    healthy = result;
+    lastProbeAt = System.currentTimeMillis();
+    return result;
+  }
+
+  /**
+   * Returns true if the server was healthy at the last probe, or if no probe has been made yet.
+   * 
+   * @return True if the server is taken to be healthy, false otherwise.
+   */
+  public boolean isHealthy() {
+    long probedAt = lastProbeAt;
+    if (probedAt == 0) {
+      return true;
+    }
+    return healthy && System.currentTimeMillis() - probedAt <= 3 * interval;
+  }
+
+  /**
+   * Returns true if a probe has been made and the server is taken to be healthy.
+   * 
+   * @return True if pages can be served with data from the server, false otherwise.
+   */
+  public boolean isReady() {
+    return lastProbeAt != 0 && isHealthy();
+  }
+
+  /**
+   * Returns the time the last probe finished.
+   * 
+   * @return Time of the last probe, in milliseconds since the epoch, or 0 if none has finished.
+   */
+  public long getLastProbeAt() {
+    return lastProbeAt;
+  }
+
+  /**
+   * Returns the number of probes made so far.
+   * 
+   * @return Number of probes.
+   */
+  public synchronized long getProbeCount() {
+    return probeCount;
+  }
+
+  /**
+   * Returns the latency of the last probes, oldest first.
+   * 
+   * @return Latency of each of the last probes, in milliseconds.
+   */
+  public synchronized long[] getLatencies() {
+    int count = (int) Math.min(probeCount, HISTORY_SIZE);
+    long[] history = new long[count];
+    for (int i = 0; i < count; i++) {
+      history[i] = latencies[(int) ((probeCount - count + i) % HISTORY_SIZE)];
+    }
+    return history;
+  }
+
+  /**
+   * Returns the number of the last probes that found the server unhealthy.
+   * 
+   * @return Number of failed probes among the ones whose latency is kept.
+   */
+  public synchronized int getRecentFailures() {
+    int count = (int) Math.min(probeCount, HISTORY_SIZE);
+    int failures = 0;
+    for (int i = 0; i < count; i++) {
+      if (!results[i]) {
+        failures++;
+      }
+    } // end for
+    return failures;
+  }
+
+  /**
+   * Returns the average latency of the last probes.
+   * 
+   * @return Average latency in milliseconds, or 0 if no probe has been made.
+   */
+  public long getAverageLatency() {
+    long[] history = getLatencies();
+    if (history.length == 0) {
+      return 0;
+    }
+    long total = 0;
+    for (long latency : history) {
+      total += latency;
+    }
+    return total / history.length;
+  }
+
+}
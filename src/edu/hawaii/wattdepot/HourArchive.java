@@ -0,0 +1,514 @@
+package edu.hawaii.wattdepot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the energy generated and carbon emitted by each power source in each hour on disk, so that
+ * the data survive a restart of this web application. Each power source has its own file, which
+ * starts with a header and is followed by one fixed-width record per hour, so the record of an
+ * hour is found by its offset from the first hour of the file without reading anything else. The
+ * files are memory-mapped and grow as later hours are added.
+ * <p>
+ * The header records the URI of the WattDepot server the data came from, and a file that came from
+ * another server is refused rather than read or overwritten, so pointing this web application at
+ * another server never mixes its data with the data of the first one. The header has a checksum
+ * that is checked when the file is opened; a file whose header is not valid is renamed with a
+ * <code>.corrupt</code> suffix and a new file is started. Each record has
+ * a checksum of its own that is written after its data, so a record that was only partly written
+ * when the process stopped is treated as missing and is fetched again from the WattDepot server.
+ * The directory of the shared archive can be changed with the <code>carbonometer.dataDir</code>
+ * system property; setting it to an empty string turns the archive off.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class HourArchive {
+
+  /** Type of data stored in the first value of each record. */
+  public static final String ENERGY = "energy";
+  /** Type of data stored in the second value of each record. */
+  public static final String CARBON = "carbon";
+  /** First day of new files if the system property is not set. */
+  public static final String DEFAULT_FIRST_DAY = "2009-01-01";
+  /** Identifies the files of this archive: "WDH1" in ASCII. */
+  private static final int MAGIC = 0x57444831;
+  /** Version of the file format. */
+  private static final int VERSION = 2;
+  /** Number of bytes in the header, including the padding after its checksum. */
+  static final int HEADER_SIZE = 256;
+  /** Number of bytes in the header that are covered by its checksum. */
+  private static final int HEADER_CHECKED = 248;
+  /** Offset in the header of the URI of the WattDepot server, after its length. */
+  private static final int UPSTREAM_OFFSET = 24;
+  /** Number of bytes of the URI of the WattDepot server that the header holds. */
+  private static final int MAX_UPSTREAM = HEADER_CHECKED - UPSTREAM_OFFSET;
+  /** Encoding of the URI of the WattDepot server in the header. */
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  /** Number of bytes in a record: its index, two values and a checksum. */
+  private static final int RECORD_SIZE = 24;
+  /** Number of bytes in a record that are covered by its checksum. */
+  private static final int RECORD_CHECKED = 20;
+  /** Number of records a file grows by at a time: about a month of hours. */
+  private static final int GROWTH = 31 * 24;
+  /** Suffix of the file names. */
+  private static final String SUFFIX = ".hours";
+  /** Archive shared by all users of this web application, or null if it is turned off. */
+  private static final HourArchive SHARED = createSharedArchive();
+  /** Directory that holds the files. */
+  private final File directory;
+  /** URI of the WattDepot server the data come from, encoded in UTF-8. */
+  private final byte[] upstream;
+  /** Start of the first hour of new files, in milliseconds since the epoch. */
+  private final long firstHour;
+  /** Open files, by power source. */
+  private final ConcurrentMap<String, HourFile> files = new ConcurrentHashMap<String, HourFile>();
+  /** Why the files of power sources that came from another server were refused, by source. */
+  private final ConcurrentMap<String, String> refused = new ConcurrentHashMap<String, String>();
+
+  /**
+   * Creates an archive. Files are opened when they are first used.
+   * 
+   * @param directory Directory that holds the files; it is created if it does not exist.
+   * @param upstream URI of the WattDepot server the data come from.
+   * @param firstHour Start of the first hour of new files, in milliseconds since the epoch.
+   * @throws IllegalArgumentException If the URI is too long to be recorded in the header.
+   */
+  public HourArchive(File directory, String upstream, long firstHour) {
+    this.directory = directory;
+    this.upstream = upstream.getBytes(UTF8);
+    if (this.upstream.length > MAX_UPSTREAM) {
+      throw new IllegalArgumentException("URI of WattDepot server too long: " + upstream);
+    }
+    this.firstHour = firstHour - firstHour % TimeGrid.HOUR;
+  }
+
+  /**
+   * Creates the shared archive in the directory given by the system property, or in the
+   * <code>.carbonometer</code> directory in the home directory of the user. The URI of the
+   * WattDepot server is read from the same property as the command class does, without loading
+   * that class, whose shared stores use this archive.
+   * 
+   * @return The shared archive, or null if it is turned off.
+   */
+  private static HourArchive createSharedArchive() {
+    String path =
+        System.getProperty("carbonometer.dataDir", new File(System.getProperty("user.home"),
+            ".carbonometer").getPath());
+    if (path.length() == 0) {
+      return null;
+    }
+    String upstream =
+        System.getProperty(WattDepotCommand.HOST_URI_PROPERTY, WattDepotCommand.DEFAULT_HOST_URI);
+    return new HourArchive(new File(path), upstream, TimeGrid.parseDay(System.getProperty(
+        "carbonometer.archiveFirstDay", DEFAULT_FIRST_DAY)));
+  }
+
+  /**
+   * Returns the archive shared by all users of this web application.
+   * 
+   * @return The shared archive, or null if it is turned off.
+   */
+  public static HourArchive getSharedArchive() {
+    return SHARED;
+  }
+
+  /**
+   * Returns the file of a power source, opening or creating it if it is not open yet.
+   * 
+   * @param source Name of a power source.
+   * @return The file.
+   * @throws IOException If the file cannot be opened or created, or came from another server.
+   */
+  private HourFile getFile(String source) throws IOException {
+    HourFile file = files.get(source);
+    if (file == null) {
+      synchronized (files) {
+        file = files.get(source);
+        if (file == null) {
+          String reason = refused.get(source);
+          if (reason != null) {
+            throw new IOException(reason);
+          }
+          try {
+            file = new HourFile(getPath(source), upstream, firstHour);
+          }
+          catch (UpstreamMismatchException e) {
+            refused.put(source, e.getMessage());
+            throw e;
+          }
+          files.put(source, file);
+        }
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Returns the path of the file of a power source.
+   * 
+   * @param source Name of a power source.
+   * @return The path of its file.
+   */
+  private File getPath(String source) {
+    return new File(directory, source.replaceAll("[^A-Za-z0-9_-]", "_") + SUFFIX);
+  }
+
+  /**
+   * Returns the position of a type of data in a record.
+   * 
+   * @param metric Type of data, energy or carbon.
+   * @return 0 for energy, 1 for carbon, or -1 for any other type of data.
+   */
+  private static int getSlot(String metric) {
+    if (ENERGY.equals(metric)) {
+      return 0;
+    }
+    return CARBON.equals(metric) ? 1 : -1;
+  }
+
+  /**
+   * Stores the data of an hour. Data for hours before the first hour of the file, data that do
+   * not start on the hour, types of data other than energy and carbon, and missing data are
+   * ignored.
+   * 
+   * @param source Name of a power source.
+   * @param metric Type of data, energy or carbon.
+   * @param hourStart Start of the hour, in milliseconds since the epoch.
+   * @param value Energy generated or carbon emitted during the hour.
+   * @throws IOException If the file cannot be opened or grown, or came from another server.
+   */
+  public void put(String source, String metric, long hourStart, double value) throws IOException {
+    int slot = getSlot(metric);
+    if (slot >= 0 && !Double.isNaN(value) && hourStart % TimeGrid.HOUR == 0) {
+      getFile(source).put(hourStart, slot, value);
+    }
+  }
+
+  /**
+   * Returns the data of an hour.
+   * 
+   * @param source Name of a power source.
+   * @param metric Type of data, energy or carbon.
+   * @param hourStart Start of the hour, in milliseconds since the epoch.
+   * @return Energy generated or carbon emitted during the hour, or NaN if it is not stored.
+   * @throws IOException If the file cannot be opened or came from another server.
+   */
+  public double get(String source, String metric, long hourStart) throws IOException {
+    int slot = getSlot(metric);
+    if (slot < 0 || hourStart % TimeGrid.HOUR != 0) {
+      return Double.NaN;
+    }
+    return getFile(source).get(hourStart, slot);
+  }
+
+  /**
+   * Returns the number of hours of a power source that have valid records.
+   * 
+   * @param source Name of a power source.
+   * @return Number of valid records in its file.
+   * @throws IOException If the file cannot be opened or came from another server.
+   */
+  public int getRecordCount(String source) throws IOException {
+    return getFile(source).getRecordCount();
+  }
+
+  /**
+   * Writes all changes to disk and closes the files. Files are opened again when they are next
+   * used, and files that came from another server are checked again.
+   */
+  public void close() {
+    synchronized (files) {
+      for (HourFile file : files.values()) {
+        file.close();
+      }
+      files.clear();
+      refused.clear();
+    }
+  }
+
+  /**
+   * Thrown when a file holds data from another WattDepot server than the one of the archive.
+   */
+  private static final class UpstreamMismatchException extends IOException {
+
+    /** Support serialization. */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates the exception.
+     * 
+     * @param message Names the file and the server its data came from.
+     */
+    UpstreamMismatchException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * The memory-mapped file of one power source.
+   */
+  private static final class HourFile {
+
+    /** The file on disk. */
+    private final RandomAccessFile file;
+    /** Channel through which the file is mapped. */
+    private final FileChannel channel;
+    /** Start of the hour of the first record, in milliseconds since the epoch. */
+    private final long firstHour;
+    /** URI of the WattDepot server the data come from, encoded in UTF-8. */
+    private final byte[] upstream;
+    /** Computes the checksums of records. */
+    private final CRC32 crc = new CRC32();
+    /** The mapped header and records. */
+    private MappedByteBuffer buffer;
+    /** Number of records the mapped region holds. */
+    private int capacity;
+    /** Number of valid records. */
+    private int recordCount;
+
+    /**
+     * Opens a file, or creates it if it does not exist or its header is not valid.
+     * 
+     * @param path Path of the file.
+     * @param upstream URI of the WattDepot server the data come from, encoded in UTF-8.
+     * @param newFirstHour Start of the first hour if a new file is created.
+     * @throws IOException If the file cannot be opened or created.
+     * @throws UpstreamMismatchException If the file holds data from another server.
+     */
+    HourFile(File path, byte[] upstream, long newFirstHour) throws IOException {
+      File parent = path.getParentFile();
+      if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+        throw new IOException("Cannot create directory " + parent);
+      }
+      this.upstream = upstream;
+      long header = readHeader(path, upstream);
+      if (header == Long.MIN_VALUE && path.exists()) {
+        File corrupt = new File(path.getPath() + ".corrupt");
+        if (corrupt.exists() && !corrupt.delete()) {
+          throw new IOException("Cannot delete " + corrupt);
+        }
+        if (!path.renameTo(corrupt)) {
+          throw new IOException("Cannot move aside invalid file " + path);
+        }
+      }
+      this.file = new RandomAccessFile(path, "rw");
+      this.channel = file.getChannel();
+      if (header == Long.MIN_VALUE) {
+        this.firstHour = newFirstHour;
+        map(GROWTH);
+        writeHeader();
+      }
+      else {
+        this.firstHour = header;
+        map((int) ((file.length() - HEADER_SIZE) / RECORD_SIZE));
+        for (int i = 0; i < capacity; i++) {
+          if (isValid(i)) {
+            recordCount++;
+          }
+        } // end for
+      }
+    }
+
+    /**
+     * Reads the header of a file and checks its checksum and the server its data came from.
+     * 
+     * @param path Path of the file.
+     * @param upstream URI of the WattDepot server the data must come from, encoded in UTF-8.
+     * @return Start of the hour of the first record, or Long.MIN_VALUE if the file does not exist
+     * or its header is not valid.
+     * @throws IOException If the file cannot be read.
+     * @throws UpstreamMismatchException If the file holds data from another server.
+     */
+    private static long readHeader(File path, byte[] upstream) throws IOException {
+      if (!path.isFile() || path.length() < HEADER_SIZE) {
+        return Long.MIN_VALUE;
+      }
+      byte[] bytes = new byte[HEADER_SIZE];
+      RandomAccessFile in = new RandomAccessFile(path, "r");
+      try {
+        in.readFully(bytes);
+      }
+      finally {
+        in.close();
+      }
+      ByteBuffer header = ByteBuffer.wrap(bytes);
+      CRC32 checksum = new CRC32();
+      checksum.update(bytes, 0, HEADER_CHECKED);
+      if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+          || header.getInt(8) != RECORD_SIZE
+          || header.getInt(HEADER_CHECKED) != (int) checksum.getValue()) {
+        return Long.MIN_VALUE;
+      }
+      int length = header.getInt(20);
+      if (length < 0 || length > MAX_UPSTREAM) {
+        return Long.MIN_VALUE;
+      }
+      byte[] recorded = Arrays.copyOfRange(bytes, UPSTREAM_OFFSET, UPSTREAM_OFFSET + length);
+      if (!Arrays.equals(recorded, upstream)) {
+        throw new UpstreamMismatchException(path + " holds data from " + new String(recorded, UTF8)
+            + ", not from " + new String(upstream, UTF8));
+      }
+      return header.getLong(12);
+    }
+
+    /**
+     * Writes the header of a new file, with its checksum last.
+     */
+    private void writeHeader() {
+      buffer.putInt(0, MAGIC);
+      buffer.putInt(4, VERSION);
+      buffer.putInt(8, RECORD_SIZE);
+      buffer.putLong(12, firstHour);
+      buffer.putInt(20, upstream.length);
+      for (int i = 0; i < upstream.length; i++) {
+        buffer.put(UPSTREAM_OFFSET + i, upstream[i]);
+      }
+      byte[] bytes = new byte[HEADER_CHECKED];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = buffer.get(i);
+      }
+      CRC32 checksum = new CRC32();
+      checksum.update(bytes);
+      buffer.putInt(HEADER_CHECKED, (int) checksum.getValue());
+      buffer.force();
+    }
+
+    /**
+     * Maps the header and a number of records, growing the file if it is shorter.
+     * 
+     * @param records Number of records to map.
+     * @throws IOException If the file cannot be grown or mapped.
+     */
+    private void map(int records) throws IOException {
+      long size = HEADER_SIZE + (long) records * RECORD_SIZE;
+      if (file.length() < size) {
+        file.setLength(size);
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      capacity = records;
+    }
+
+    /**
+     * Returns the index of the record of an hour.
+     * 
+     * @param hourStart Start of the hour, in milliseconds since the epoch.
+     * @return Index of its record, or -1 if the hour is before the first hour of this file.
+     */
+    private int getIndex(long hourStart) {
+      long index = (hourStart - firstHour) / TimeGrid.HOUR;
+      return (hourStart < firstHour || index > Integer.MAX_VALUE) ? -1 : (int) index;
+    }
+
+    /**
+     * Computes the checksum of a record from its index and values.
+     * 
+     * @param position Offset of the record in the file.
+     * @return The checksum.
+     */
+    private int checksum(int position) {
+      crc.reset();
+      for (int i = 0; i < RECORD_CHECKED; i++) {
+        crc.update(buffer.get(position + i));
+      }
+      return (int) crc.getValue();
+    }
+
+    /**
+     * Returns true if a record was written completely, false if it is empty or was only partly
+     * written.
+     * 
+     * @param index Index of the record.
+     * @return True if the record is valid, false otherwise.
+     */
+    private boolean isValid(int index) {
+      int position = HEADER_SIZE + index * RECORD_SIZE;
+      return buffer.getInt(position) == index
+          && buffer.getInt(position + RECORD_CHECKED) == checksum(position);
+    }
+
+    /**
+     * Stores one value of the record of an hour, keeping the other value if the record is valid.
+     * 
+     * @param hourStart Start of the hour, in milliseconds since the epoch.
+     * @param slot 0 for energy, 1 for carbon.
+     * @param value The value.
+     * @throws IOException If the file cannot be grown.
+     */
+    synchronized void put(long hourStart, int slot, double value) throws IOException {
+      int index = getIndex(hourStart);
+      if (index < 0) {
+        return;
+      }
+      if (index >= capacity) {
+        map((index / GROWTH + 1) * GROWTH);
+      }
+      int position = HEADER_SIZE + index * RECORD_SIZE;
+      boolean valid = isValid(index);
+      double energy = valid ? buffer.getDouble(position + 4) : Double.NaN;
+      double carbon = valid ? buffer.getDouble(position + 12) : Double.NaN;
+      if (slot == 0) {
+        energy = value;
+      }
+      else {
+        carbon = value;
+      }
+      buffer.putInt(position, index);
+      buffer.putDouble(position + 4, energy);
+      buffer.putDouble(position + 12, carbon);
+      buffer.putInt(position + RECORD_CHECKED, checksum(position));
+      if (!valid) {
+        recordCount++;
+      }
+    }
+
+    /**
+     * Returns one value of the record of an hour.
+     * 
+     * @param hourStart Start of the hour, in milliseconds since the epoch.
+     * @param slot 0 for energy, 1 for carbon.
+     * @return The value, or NaN if the record is missing or not valid.
+     */
+    synchronized double get(long hourStart, int slot) {
+      int index = getIndex(hourStart);
+      if (index < 0 || index >= capacity || !isValid(index)) {
+        return Double.NaN;
+      }
+      return buffer.getDouble(HEADER_SIZE + index * RECORD_SIZE + 4 + slot * 8);
+    }
+
+    /**
+     * Returns the number of valid records.
+     * 
+     * @return Number of valid records.
+     */
+    synchronized int getRecordCount() {
+      return recordCount;
+    }
+
+    /**
+     * Writes all changes to disk and closes the file.
+     */
+    synchronized void close() {
+      try {
+        buffer.force();
+        channel.close();
+        file.close();
+      }
+      catch (IOException e) {
+        // The records that were written are in the file already, and are checked when it is
+        // opened again.
+      }
+    }
+  }
+
+}
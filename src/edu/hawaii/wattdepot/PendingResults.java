@@ -0,0 +1,121 @@
+package edu.hawaii.wattdepot;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+
+/**
+ * Holds the futures of work started by one request until a later request collects their results.
+ * Futures cannot be kept in pages, which are serialized, so a page keeps the ticket of its future
+ * instead. A future that has not been collected within the time to live, for example because the
+ * user left the page, is cancelled and removed.
+ * 
+ * @param <T> Type of the results.
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class PendingResults<T> {
+
+  /** Futures by ticket. */
+  private final ConcurrentMap<String, Entry<T>> entries = new ConcurrentHashMap<String, Entry<T>>();
+  /** Number of milliseconds a future is kept if its result is not collected. */
+  private final long timeToLive;
+
+  /**
+   * A future and the time it was added.
+   * 
+   * @param <T> Type of the result.
+   */
+  private static final class Entry<T> {
+
+    /** Future through which the result is collected. */
+    private final Future<T> future;
+    /** Time the future was added, in milliseconds since the epoch. */
+    private final long addedAt;
+
+    /**
+     * Creates an entry.
+     * 
+     * @param future Future through which the result is collected.
+     * @param addedAt Time the future was added, in milliseconds since the epoch.
+     */
+    Entry(Future<T> future, long addedAt) {
+      this.future = future;
+      this.addedAt = addedAt;
+    }
+  }
+
+  /**
+   * Creates an empty registry.
+   * 
+   * @param timeToLive Number of milliseconds a future is kept if its result is not collected.
+   */
+  public PendingResults(long timeToLive) {
+    this.timeToLive = timeToLive;
+  }
+
+  /**
+   * Adds a future and returns the ticket with which its result is collected. Futures that have
+   * been kept longer than the time to live are cancelled and removed first.
+   * 
+   * @param future Future through which the result is collected.
+   * @return Ticket of the future.
+   */
+  public String add(Future<T> future) {
+    long now = System.currentTimeMillis();
+    for (Iterator<Map.Entry<String, Entry<T>>> i = entries.entrySet().iterator(); i.hasNext();) {
+      Entry<T> entry = i.next().getValue();
+      if (now - entry.addedAt > timeToLive) {
+        entry.future.cancel(true);
+        i.remove();
+      }
+    } // end for
+    String ticket = UUID.randomUUID().toString();
+    entries.put(ticket, new Entry<T>(future, now));
+    return ticket;
+  }
+
+  /**
+   * Returns the future with the given ticket, if it is done, and removes it.
+   * 
+   * @param ticket Ticket of the future.
+   * @return The future, or null if it is not done yet.
+   * @throws IllegalArgumentException If there is no future with the given ticket.
+   */
+  public Future<T> collect(String ticket) {
+    Entry<T> entry = (ticket == null) ? null : entries.get(ticket);
+    if (entry == null) {
+      throw new IllegalArgumentException("No pending result: " + ticket);
+    }
+    if (!entry.future.isDone()) {
+      return null;
+    }
+    entries.remove(ticket);
+    return entry.future;
+  }
+
+  /**
+   * Cancels the future with the given ticket and removes it, if there is one.
+   * 
+   * @param ticket Ticket of the future, or null.
+   */
+  public void cancel(String ticket) {
+    Entry<T> entry = (ticket == null) ? null : entries.remove(ticket);
+    if (entry != null) {
+      entry.future.cancel(true);
+    }
+  }
+
+  /**
+   * Returns the number of futures whose results have not been collected.
+   * 
+   * @return Number of pending futures.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+}
@@ -0,0 +1,177 @@
+package edu.hawaii.wattdepot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.source.jaxb.Source;
+import org.wattdepot.resource.source.summary.jaxb.SourceSummary;
+
+/**
+ * Holds information about a power source and the sensor data stored for it on the WattDepot
+ * server. A summary never changes once it is created, so it can be shared by all users.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public final class PowerSourceSummary {
+
+  /** Name of the power source. */
+  private final String name;
+  /** Names of the power sources one level below this one. */
+  private final List<String> subsources;
+  /** Description of the power source. */
+  private final String description;
+  /** Owner of the power source. */
+  private final String owner;
+  /** Location of the power source. */
+  private final String location;
+  /** Coordinates of the power source. */
+  private final String coordinates;
+  /** Properties of the power source, in the order the server lists them. */
+  private final Map<String, String> properties;
+  /** Timestamp of the earliest sensor data. */
+  private final XMLGregorianCalendar earliestData;
+  /** Timestamp of the latest sensor data. */
+  private final XMLGregorianCalendar latestData;
+  /** Number of sensor data stored for the power source. */
+  private final long totalDataPoints;
+  /** Time at which the summary was retrieved, in milliseconds since the epoch. */
+  private final long retrievedAt;
+
+  /**
+   * Creates a summary from the information returned by the WattDepot server.
+   * 
+   * @param source The power source.
+   * @param sourceSummary Summary of the sensor data stored for the power source.
+   */
+  public PowerSourceSummary(Source source, SourceSummary sourceSummary) {
+    List<String> children = new ArrayList<String>();
+    if (source.isSetSubSources()) {
+      for (String href : source.getSubSources().getHref()) {
+        children.add(SourceGraph.getSourceName(href));
+      }
+    }
+    Map<String, String> map = new LinkedHashMap<String, String>();
+    if (source.isSetProperties()) {
+      for (Property property : source.getProperties().getProperty()) {
+        map.put(property.getKey(), property.getValue());
+      }
+    }
+
+    this.name = source.getName();
+    this.subsources = Collections.unmodifiableList(children);
+    this.description = source.getDescription();
+    this.owner = source.getOwner();
+    this.location = source.getLocation();
+    this.coordinates = source.getCoordinates();
+    this.properties = Collections.unmodifiableMap(map);
+    this.earliestData = (XMLGregorianCalendar) sourceSummary.getFirstSensorData().clone();
+    this.latestData = (XMLGregorianCalendar) sourceSummary.getLastSensorData().clone();
+    this.totalDataPoints = sourceSummary.getTotalSensorDatas();
+    this.retrievedAt = System.currentTimeMillis();
+  }
+
+  /**
+   * Returns the name of the power source.
+   * 
+   * @return Name of the power source.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the power sources one level below this one.
+   * 
+   * @return An unmodifiable list of names, which is empty if there are none.
+   */
+  public List<String> getSubsources() {
+    return subsources;
+  }
+
+  /**
+   * Returns the description of the power source.
+   * 
+   * @return Description of the power source.
+   */
+  public String getDescription() {
+    return description;
+  }
+
+  /**
+   * Returns the owner of the power source.
+   * 
+   * @return Owner of the power source.
+   */
+  public String getOwner() {
+    return owner;
+  }
+
+  /**
+   * Returns the location of the power source.
+   * 
+   * @return Location of the power source.
+   */
+  public String getLocation() {
+    return location;
+  }
+
+  /**
+   * Returns the coordinates of the power source.
+   * 
+   * @return Coordinates of the power source.
+   */
+  public String getCoordinates() {
+    return coordinates;
+  }
+
+  /**
+   * Returns the properties of the power source.
+   * 
+   * @return An unmodifiable map of property names to values, in the order the server lists them.
+   */
+  public Map<String, String> getProperties() {
+    return properties;
+  }
+
+  /**
+   * Returns the timestamp of the earliest sensor data.
+   * 
+   * @return A copy of the timestamp of the earliest sensor data.
+   */
+  public XMLGregorianCalendar getEarliestData() {
+    return (XMLGregorianCalendar) earliestData.clone();
+  }
+
+  /**
+   * Returns the timestamp of the latest sensor data.
+   * 
+   * @return A copy of the timestamp of the latest sensor data.
+   */
+  public XMLGregorianCalendar getLatestData() {
+    return (XMLGregorianCalendar) latestData.clone();
+  }
+
+  /**
+   * Returns the number of sensor data stored for the power source.
+   * 
+   * @return Number of sensor data.
+   */
+  public long getTotalDataPoints() {
+    return totalDataPoints;
+  }
+
+  /**
+   * Returns the time at which the summary was retrieved.
+   * 
+   * @return Time in milliseconds since the epoch.
+   */
+  public long getRetrievedAt() {
+    return retrievedAt;
+  }
+
+}
@@ -0,0 +1,88 @@
+package edu.hawaii.wattdepot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Holds a batch of queries that are run together by a query pool, and the results of those
+ * queries in the same order as the queries were added.
+ * 
+ * @param <T> Type of the result of each query.
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class QueryBatch<T> {
+
+  /** Queries to run. */
+  private final List<Callable<T>> queries = new ArrayList<Callable<T>>();
+  /** Results of the queries, in the same order as the queries. */
+  private final List<T> results = new ArrayList<T>();
+  /** Describes how the batch ran; null until the batch has been run. */
+  private BatchStatistics statistics;
+
+  /**
+   * Adds a query to this batch.
+   * 
+   * @param query Query to add.
+   */
+  public void add(Callable<T> query) {
+    queries.add(query);
+  }
+
+  /**
+   * Returns the number of queries in this batch.
+   * 
+   * @return Number of queries in this batch.
+   */
+  public int size() {
+    return queries.size();
+  }
+
+  /**
+   * Returns the queries in this batch.
+   * 
+   * @return Queries in this batch.
+   */
+  List<Callable<T>> getQueries() {
+    return Collections.unmodifiableList(queries);
+  }
+
+  /**
+   * Stores the result of the next query.
+   * 
+   * @param result Result of the next query.
+   */
+  void addResult(T result) {
+    results.add(result);
+  }
+
+  /**
+   * Returns the results of the queries, in the same order as the queries.
+   * 
+   * @return Results of the queries.
+   */
+  public List<T> getResults() {
+    return Collections.unmodifiableList(results);
+  }
+
+  /**
+   * Stores a description of how the batch ran.
+   * 
+   * @param statistics Description of how the batch ran.
+   */
+  void setStatistics(BatchStatistics statistics) {
+    this.statistics = statistics;
+  }
+
+  /**
+   * Returns a description of how the batch ran, or null if the batch has not been run.
+   * 
+   * @return Description of how the batch ran.
+   */
+  public BatchStatistics getStatistics() {
+    return statistics;
+  }
+
+}
@@ -0,0 +1,237 @@
+package edu.hawaii.wattdepot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs queries to the WattDepot server on a bounded pool of threads. The size of the shared pool
+ * can be changed with the <code>carbonometer.poolSize</code> system property. If virtual threads
+ * are enabled, each query runs on a virtual thread of its own instead, and the size of the pool is
+ * the number of queries that may run at the same time, enforced by a semaphore.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class QueryPool {
+
+  /** Number of threads in the shared pool if the system property is not set. */
+  public static final int DEFAULT_POOL_SIZE = 8;
+  /** Name of the system property used to change the size of the shared pool. */
+  public static final String POOL_SIZE_PROPERTY = "carbonometer.poolSize";
+  /** Number of queries that can wait for a thread before the caller runs them itself. */
+  private static final int QUEUE_CAPACITY = 1024;
+  /** Pool shared by all WattDepot commands. */
+  private static final QueryPool SHARED =
+      new QueryPool(VirtualThreads.getLimit(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE),
+          VirtualThreads.isEnabled());
+  /** Runs the queries. */
+  private final ExecutorService executor;
+  /** Number of threads in this pool, or of queries that may run at the same time. */
+  private final int poolSize;
+  /** Limits the number of queries that run at the same time, or null if the pool does. */
+  private final Semaphore permits;
+  /** Describes the last batch that this pool ran, or null if it has not run one. */
+  private volatile BatchStatistics lastStatistics;
+
+  /**
+   * Creates a pool that runs at most the given number of queries at the same time.
+   * 
+   * @param poolSize Number of threads in the pool.
+   */
+  public QueryPool(int poolSize) {
+    this(poolSize, false);
+  }
+
+  /**
+   * Creates a pool that runs at most the given number of queries at the same time, on virtual
+   * threads if they are asked for and available.
+   * 
+   * @param poolSize Number of queries that may run at the same time.
+   * @param virtualThreads True to run each query on a virtual thread of its own.
+   */
+  public QueryPool(int poolSize, boolean virtualThreads) {
+    this(poolSize, virtualThreads ? VirtualThreads.newExecutor() : null);
+  }
+
+  /**
+   * Creates a pool that runs at most the given number of queries at the same time, each on a
+   * thread of its own started by the given executor, or on a pool of platform threads.
+   * 
+   * @param poolSize Number of queries that may run at the same time.
+   * @param perTaskExecutor Starts a thread for each query, or null to use a pool of threads.
+   */
+  QueryPool(int poolSize, ExecutorService perTaskExecutor) {
+    if (poolSize < 1) {
+      throw new IllegalArgumentException("Pool size must be at least 1: " + poolSize);
+    }
+    this.poolSize = poolSize;
+    if (perTaskExecutor != null) {
+      this.executor = perTaskExecutor;
+      this.permits = new Semaphore(poolSize);
+    }
+    else {
+      ThreadPoolExecutor pool =
+          new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY), new DaemonThreadFactory(),
+              new ThreadPoolExecutor.CallerRunsPolicy());
+      pool.allowCoreThreadTimeOut(true);
+      this.executor = pool;
+      this.permits = null;
+    }
+  }
+
+  /**
+   * Returns the pool shared by all WattDepot commands.
+   * 
+   * @return The shared pool.
+   */
+  public static QueryPool getSharedPool() {
+    return SHARED;
+  }
+
+  /**
+   * Returns the number of threads in this pool, or of queries that may run at the same time.
+   * 
+   * @return Number of threads in this pool.
+   */
+  public int getPoolSize() {
+    return poolSize;
+  }
+
+  /**
+   * Returns true if each query runs on a thread of its own, limited by a semaphore.
+   * 
+   * @return True if the queries run on virtual threads, false if on a pool of threads.
+   */
+  public boolean isPerTask() {
+    return permits != null;
+  }
+
+  /**
+   * Wraps a query so that it waits for a permit before it runs, if this pool is limited by a
+   * semaphore. The query waits on its own thread, so the caller is never held up.
+   * 
+   * @param <T> Type of the result of the query.
+   * @param query Query to run.
+   * @return The query, or a query that waits for a permit and then runs it.
+   */
+  private <T> Callable<T> limit(final Callable<T> query) {
+    if (permits == null) {
+      return query;
+    }
+    return new Callable<T>() {
+      public T call() throws Exception {
+        permits.acquire();
+        try {
+          return query.call();
+        }
+        finally {
+          permits.release();
+        }
+      }
+    };
+  }
+
+  /**
+   * Runs all of the queries in the given batch and waits for them to finish. The results are stored
+   * in the batch in the same order as the queries, along with a description of how the batch ran.
+   * 
+   * @param <T> Type of the result of each query.
+   * @param batch Batch of queries to run.
+   * @throws ExecutionException If any of the queries failed.
+   * @throws InterruptedException If the calling thread was interrupted while waiting.
+   */
+  public <T> void run(QueryBatch<T> batch) throws ExecutionException, InterruptedException {
+    long start = System.currentTimeMillis();
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger peakInFlight = new AtomicInteger();
+
+    List<Future<T>> futures = new ArrayList<Future<T>>(batch.size());
+    try {
+      for (final Callable<T> query : batch.getQueries()) {
+        futures.add(executor.submit(limit(new Callable<T>() {
+          public T call() throws Exception {
+            int current = inFlight.incrementAndGet();
+            int peak = peakInFlight.get();
+            while (current > peak && !peakInFlight.compareAndSet(peak, current)) {
+              peak = peakInFlight.get();
+            }
+            try {
+              return query.call();
+            }
+            finally {
+              inFlight.decrementAndGet();
+            }
+          }
+        })));
+      } // end for
+
+      for (Future<T> future : futures) {
+        batch.addResult(future.get());
+      }
+    } // end try
+    finally {
+      // Stop the rest of the batch if one of the queries failed.
+      for (Future<T> future : futures) {
+        future.cancel(true);
+      }
+      lastStatistics =
+          new BatchStatistics(batch.size(), peakInFlight.get(), poolSize,
+              System.currentTimeMillis() - start);
+      batch.setStatistics(lastStatistics);
+    }
+  }
+
+  /**
+   * Returns a description of the last batch that this pool ran, by any caller.
+   * 
+   * @return Description of the last batch, or null if this pool has not run one.
+   */
+  public BatchStatistics getLastStatistics() {
+    return lastStatistics;
+  }
+
+  /**
+   * Starts a single query and returns at once. If too many queries are waiting for a thread of
+   * the pool, the caller runs the query itself before this method returns.
+   * 
+   * @param <T> Type of the result of the query.
+   * @param query Query to run.
+   * @return Future through which the result of the query is collected.
+   */
+  public <T> Future<T> submit(Callable<T> query) {
+    return executor.submit(limit(query));
+  }
+
+  /**
+   * Creates daemon threads so that the pool never keeps the web application from shutting down.
+   */
+  private static class DaemonThreadFactory implements ThreadFactory {
+
+    /** Used to give each thread a unique name. */
+    private final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * Creates a new daemon thread.
+     * 
+     * @param runnable Task that the thread will run.
+     * @return A new daemon thread.
+     */
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "wattdepot-query-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+}
@@ -0,0 +1,286 @@
+package edu.hawaii.wattdepot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.client.WattDepotClientException;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * Downloads the raw sensor data of a power source once for a whole range of time and computes the
+ * energy generated and carbon emitted in each hour of the range locally. A virtual power source is
+ * computed from the sensor data of each of its non-virtual subsources, which are looked up in the
+ * graph of power sources.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class RangeFetcher {
+
+  /** Sensor data property that holds the power generated, in W. */
+  private static final String POWER_GENERATED = "powerGenerated";
+  /** Source property that holds the carbon intensity, in lbs CO2 / MWh. */
+  private static final String CARBON_INTENSITY = "carbonIntensity";
+  /** Client used to download sensor data. */
+  private final WattDepotClient client;
+  /** Guards the downloads, or null if they are made directly. */
+  private final CircuitBreaker breaker;
+
+  /**
+   * Creates a fetcher that downloads sensor data with the given client.
+   * 
+   * @param client Client used to download sensor data.
+   */
+  public RangeFetcher(WattDepotClient client) {
+    this(client, null);
+  }
+
+  /**
+   * Creates a fetcher that downloads sensor data with the given client through a circuit breaker.
+   * 
+   * @param client Client used to download sensor data.
+   * @param breaker Guards the downloads, or null to make them directly.
+   */
+  public RangeFetcher(WattDepotClient client, CircuitBreaker breaker) {
+    this.client = client;
+    this.breaker = breaker;
+  }
+
+  /**
+   * Makes a call to the WattDepot server, through the circuit breaker if there is one.
+   * 
+   * @param <T> Type of the result of the call.
+   * @param call Makes the call.
+   * @return Result of the call.
+   * @throws WattDepotClientException If the call failed or timed out.
+   */
+  private <T> T call(Callable<T> call) throws WattDepotClientException {
+    if (breaker != null) {
+      return breaker.call(call);
+    }
+    try {
+      return call.call();
+    }
+    catch (WattDepotClientException e) {
+      throw e;
+    }
+    catch (RuntimeException e) {
+      throw e;
+    }
+    catch (Exception e) {
+      throw new WattDepotClientException(e.toString());
+    }
+  }
+
+  /**
+   * Returns the energy generated and carbon emitted by a power source in each hour from startTime
+   * to endTime.
+   * 
+   * @param sources Graph of power sources.
+   * @param sourceName Name of a power source.
+   * @param startTime Start of the first hour.
+   * @param endTime End of the last hour.
+   * @return Energy and carbon for each hour.
+   * @throws WattDepotClientException If the sensor data cannot be downloaded.
+   */
+  public DerivedSeries fetchHourly(SourceGraph sources, String sourceName,
+      XMLGregorianCalendar startTime, XMLGregorianCalendar endTime)
+      throws WattDepotClientException {
+    return fetch(sources, sourceName, toMillis(startTime), toMillis(endTime), 60, 0L);
+  }
+
+  /**
+   * Returns the energy generated and carbon emitted by a power source in each period of a given
+   * length from start to end. The sensor data are downloaded from a margin before the start to a
+   * margin after the end, so that the periods at the edges are interpolated between readings
+   * instead of being left incomplete when no reading falls inside the range.
+   * 
+   * @param sources Graph of power sources.
+   * @param sourceName Name of a power source.
+   * @param start Start of the first period, in milliseconds since the epoch.
+   * @param end End of the last period, in milliseconds since the epoch.
+   * @param intervalMinutes Length of each period in minutes.
+   * @param margin Number of milliseconds of sensor data to download before and after the range.
+   * @return Energy and carbon for each period.
+   * @throws WattDepotClientException If the sensor data cannot be downloaded.
+   */
+  public DerivedSeries fetch(SourceGraph sources, String sourceName, long start, long end,
+      int intervalMinutes, long margin) throws WattDepotClientException {
+    long step = intervalMinutes * TimeGrid.MINUTE;
+    int periods = (int) Math.max(0, (end - start + step - 1) / step);
+    DerivedSeries series = new DerivedSeries(start, intervalMinutes, periods);
+    final XMLGregorianCalendar startTime = TimeGrid.toTimestamp(start - margin);
+    final XMLGregorianCalendar endTime = TimeGrid.toTimestamp(end + margin);
+
+    for (final String leaf : sources.getNonVirtualSources(sourceName)) {
+      Source source = sources.getSource(leaf);
+      if (source == null) {
+        source = call(new Callable<Source>() {
+          public Source call() throws WattDepotClientException {
+            return client.getSource(leaf);
+          }
+        });
+      }
+      double carbonIntensity = getCarbonIntensity(source);
+      List<SensorData> sensorDatas = call(new Callable<List<SensorData>>() {
+        public List<SensorData> call() throws WattDepotClientException {
+          return client.getSensorDatas(leaf, startTime, endTime);
+        }
+      });
+
+      List<Long> times = new ArrayList<Long>(sensorDatas.size());
+      List<Double> powers = new ArrayList<Double>(sensorDatas.size());
+      for (SensorData sensorData : sensorDatas) {
+        String power = getProperty(sensorData, POWER_GENERATED);
+        if (power != null) {
+          times.add(toMillis(sensorData.getTimestamp()));
+          powers.add(Double.valueOf(power));
+        }
+      } // end for
+      integrate(times, powers, carbonIntensity, series);
+    } // end for
+    return series;
+  }
+
+  /**
+   * Adds the energy and carbon of a series of power readings to each period of a series. The power
+   * is assumed to change linearly between readings, and to stay the same between the start or end
+   * of the series and the first or last reading when they are closer than two readings are.
+   * Readings outside the series only shape the periods at its edges. A period that the readings do
+   * not reach at both of its edges is marked as incomplete.
+   * 
+   * @param times Times of the readings in milliseconds since the epoch, in ascending order.
+   * @param powers Power generated at each reading, in W.
+   * @param carbonIntensity Carbon intensity of the power source, in lbs CO2 / MWh.
+   * @param series Series that receives the energy and carbon.
+   */
+  static void integrate(List<Long> times, List<Double> powers, double carbonIntensity,
+      DerivedSeries series) {
+    long seriesStart = series.getStartMillis();
+    long seriesEnd = series.getEndMillis();
+    long step = series.getIntervalMinutes() * TimeGrid.MINUTE;
+    if (times.isEmpty()) {
+      markIncomplete(seriesStart, seriesEnd, series, step);
+      return;
+    }
+
+    // Stretch the first and last readings to the edges of the series if they are close enough.
+    int last = times.size() - 1;
+    long spacing = last > 0 ? times.get(1) - times.get(0) : step;
+    if (times.get(0) > seriesStart && times.get(0) - seriesStart <= spacing) {
+      addSegment(seriesStart, times.get(0), powers.get(0), powers.get(0), carbonIntensity, series,
+          step);
+    }
+    else {
+      markIncomplete(seriesStart, times.get(0), series, step);
+    }
+    for (int i = 0; i < last; i++) {
+      addSegment(times.get(i), times.get(i + 1), powers.get(i), powers.get(i + 1),
+          carbonIntensity, series, step);
+    }
+    if (times.get(last) < seriesEnd && seriesEnd - times.get(last) <= spacing) {
+      addSegment(times.get(last), seriesEnd, powers.get(last), powers.get(last), carbonIntensity,
+          series, step);
+    }
+    else {
+      markIncomplete(times.get(last), seriesEnd, series, step);
+    }
+  }
+
+  /**
+   * Marks each period of a series that overlaps a span of time without readings as incomplete.
+   * 
+   * @param from Start of the span, in milliseconds since the epoch.
+   * @param to End of the span, in milliseconds since the epoch.
+   * @param series Series whose periods are marked.
+   * @param step Length of each period of the series in milliseconds.
+   */
+  private static void markIncomplete(long from, long to, DerivedSeries series, long step) {
+    long start = series.getStartMillis();
+    long a = Math.max(from, start);
+    long end = Math.min(to, series.getEndMillis());
+    if (a >= end) {
+      return;
+    }
+    int last = (int) ((end - start - 1) / step);
+    for (int i = (int) ((a - start) / step); i <= last; i++) {
+      series.setIncomplete(i);
+    }
+  }
+
+  /**
+   * Adds the energy and carbon of one segment between two readings to each period it overlaps.
+   * 
+   * @param from Time of the first reading.
+   * @param to Time of the second reading.
+   * @param fromPower Power at the first reading, in W.
+   * @param toPower Power at the second reading, in W.
+   * @param carbonIntensity Carbon intensity of the power source, in lbs CO2 / MWh.
+   * @param series Series that receives the energy and carbon.
+   * @param step Length of each period of the series in milliseconds.
+   */
+  private static void addSegment(long from, long to, double fromPower, double toPower,
+      double carbonIntensity, DerivedSeries series, long step) {
+    long a = Math.max(from, series.getStartMillis());
+    long end = Math.min(to, series.getEndMillis());
+    while (a < end) {
+      int index = (int) ((a - series.getStartMillis()) / step);
+      long b = Math.min(end, series.getStartMillis() + (index + 1) * step);
+      double powerA = fromPower + (toPower - fromPower) * (a - from) / (to - from);
+      double powerB = fromPower + (toPower - fromPower) * (b - from) / (to - from);
+      double energy = (powerA + powerB) / 2.0 * (b - a) / TimeGrid.HOUR;
+      series.add(index, energy, energy / 1000000.0 * carbonIntensity);
+      a = b;
+    }
+  }
+
+  /**
+   * Returns the carbon intensity of a power source, or 0 if it does not emit carbon.
+   * 
+   * @param source A power source.
+   * @return Carbon intensity in lbs CO2 / MWh.
+   */
+  private static double getCarbonIntensity(Source source) {
+    if (source.isSetProperties()) {
+      for (Property property : source.getProperties().getProperty()) {
+        if (CARBON_INTENSITY.equals(property.getKey())) {
+          return Double.parseDouble(property.getValue());
+        }
+      }
+    }
+    return 0.0;
+  }
+
+  /**
+   * Returns the value of a property of a sensor data, or null if it does not have that property.
+   * 
+   * @param sensorData Sensor data.
+   * @param key Name of the property.
+   * @return Value of the property.
+   */
+  private static String getProperty(SensorData sensorData, String key) {
+    if (sensorData.isSetProperties()) {
+      for (Property property : sensorData.getProperties().getProperty()) {
+        if (key.equals(property.getKey())) {
+          return property.getValue();
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Converts a timestamp to milliseconds since the epoch.
+   * 
+   * @param tstamp A timestamp.
+   * @return Milliseconds since the epoch.
+   */
+  private static long toMillis(XMLGregorianCalendar tstamp) {
+    return tstamp.toGregorianCalendar().getTimeInMillis();
+  }
+
+}
@@ -0,0 +1,85 @@
+package edu.hawaii.wattdepot;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes sure that only one of many identical requests to the WattDepot server is outstanding at a
+ * time. The first caller sends the request, and callers that ask for the same data while it is
+ * outstanding wait for it and share its result.
+ * 
+ * @param <V> Type of the result of each request.
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class RequestCoalescer<V> {
+
+  /** Requests that are outstanding, by key. */
+  private final ConcurrentMap<String, FutureTask<V>> outstanding =
+      new ConcurrentHashMap<String, FutureTask<V>>();
+  /** Number of requests that were sent. */
+  private final AtomicLong sent = new AtomicLong();
+  /** Number of requests that waited for an identical outstanding request instead of being sent. */
+  private final AtomicLong coalesced = new AtomicLong();
+
+  /**
+   * Sends a request unless an identical request is already outstanding, in which case waits for
+   * that request and returns its result.
+   * 
+   * @param key Identifies the request; identical requests must have equal keys.
+   * @param request Sends the request.
+   * @return Result of the request.
+   * @throws ExecutionException If the request failed.
+   * @throws InterruptedException If the calling thread was interrupted while waiting.
+   */
+  public V execute(String key, Callable<V> request) throws ExecutionException,
+      InterruptedException {
+    FutureTask<V> task = new FutureTask<V>(request);
+    FutureTask<V> existing = outstanding.putIfAbsent(key, task);
+    if (existing != null) {
+      coalesced.incrementAndGet();
+      return existing.get();
+    }
+
+    sent.incrementAndGet();
+    try {
+      task.run();
+    }
+    finally {
+      outstanding.remove(key, task);
+    }
+    return task.get();
+  }
+
+  /**
+   * Returns the number of requests that were sent.
+   * 
+   * @return Number of requests that were sent.
+   */
+  public long getSent() {
+    return sent.get();
+  }
+
+  /**
+   * Returns the number of requests that waited for an identical outstanding request.
+   * 
+   * @return Number of requests that were coalesced.
+   */
+  public long getCoalesced() {
+    return coalesced.get();
+  }
+
+  /**
+   * Returns the number of requests that are outstanding right now.
+   * 
+   * @return Number of outstanding requests.
+   */
+  public int getOutstanding() {
+    return outstanding.size();
+  }
+
+}
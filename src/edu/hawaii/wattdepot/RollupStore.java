@@ -0,0 +1,502 @@
+package edu.hawaii.wattdepot;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the energy generated and carbon emitted by each power source in each hour, for all users
+ * of this web application, and adds each hour to the total of its day as it arrives. The total of
+ * any longer range, such as a day or a week of a chart, is then the sum of a few day totals and at
+ * most a day's worth of hours at either end, and needs no query to the WattDepot server once every
+ * hour in it is known. Days are those of Hawaii-Aleutian Standard Time; weeks on the charts start
+ * on whatever day the user chooses, so they are summed from day totals instead of being stored.
+ * Only hours that are over are kept, since their data never change. When a power source has more
+ * days than the store holds, the least recently used day is removed. If the store has an
+ * archive, every hour added is also written to it, and hours that are missing from the store are
+ * looked for in the archive before the WattDepot server is asked for them, so that the history
+ * survives a restart of this web application.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class RollupStore {
+
+  /** Number of days kept for each power source and type of data if the property is not set. */
+  public static final int DEFAULT_MAX_DAYS = 800;
+  /** Number of hours in a day. */
+  private static final int HOURS_PER_DAY = 24;
+  /** Store shared by all users of this web application. */
+  private static final RollupStore SHARED =
+      new RollupStore(Integer.getInteger("carbonometer.rollupDays", DEFAULT_MAX_DAYS), HourArchive
+          .getSharedArchive());
+  /** Number of days kept for each power source and type of data. */
+  private final int maxDays;
+  /** Archive on disk that holds every hour added, or null if there is none. */
+  private final HourArchive archive;
+  /** Hours and day totals of each power source and type of data. */
+  private final ConcurrentMap<String, Track> tracks = new ConcurrentHashMap<String, Track>();
+  /** Number of hours added to this store. */
+  private final AtomicLong hoursAdded = new AtomicLong();
+  /** Number of ranges whose total was found in this store. */
+  private final AtomicLong hits = new AtomicLong();
+  /** Number of ranges whose total was not found in this store because hours were missing. */
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Creates a store.
+   * 
+   * @param maxDays Number of days to keep for each power source and type of data.
+   */
+  public RollupStore(int maxDays) {
+    this(maxDays, null);
+  }
+
+  /**
+   * Creates a store that writes every hour added to an archive and reads missing hours from it.
+   * 
+   * @param maxDays Number of days to keep for each power source and type of data.
+   * @param archive Archive on disk, or null if there is none.
+   */
+  public RollupStore(int maxDays, HourArchive archive) {
+    this.maxDays = maxDays;
+    this.archive = archive;
+  }
+
+  /**
+   * Returns the store shared by all users of this web application.
+   * 
+   * @return The shared store.
+   */
+  public static RollupStore getSharedStore() {
+    return SHARED;
+  }
+
+  /**
+   * Returns the track of a power source and type of data, creating it if there is none.
+   * 
+   * @param source Name of a power source.
+   * @param metric Type of data, such as energy or carbon.
+   * @return The track.
+   */
+  private Track getTrack(String source, String metric) {
+    String key = source + '|' + metric;
+    Track track = tracks.get(key);
+    if (track == null) {
+      Track created = new Track(maxDays);
+      track = tracks.putIfAbsent(key, created);
+      if (track == null) {
+        track = created;
+      }
+    }
+    return track;
+  }
+
+  /**
+   * Adds the data of an hour that is over. Hours that are not over yet, hours that do not start on
+   * the hour, and missing data are ignored.
+   * 
+   * @param source Name of a power source.
+   * @param metric Type of data, such as energy or carbon.
+   * @param hourStart Start of the hour, in milliseconds since the epoch.
+   * @param value Energy generated or carbon emitted during the hour.
+   * @return True if the hour was added, false if it was ignored.
+   */
+  public boolean putHour(String source, String metric, long hourStart, double value) {
+    if (Double.isNaN(value) || hourStart % TimeGrid.HOUR != 0
+        || hourStart + TimeGrid.HOUR > System.currentTimeMillis()) {
+      return false;
+    }
+    getTrack(source, metric).put(hourStart, value);
+    hoursAdded.incrementAndGet();
+    if (archive != null) {
+      try {
+        archive.put(source, metric, hourStart, value);
+      }
+      catch (IOException e) {
+        // The hour is still in this store; it is fetched again after a restart.
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads the hours of a range that are in the archive into this store.
+   * 
+   * @param source Name of a power source.
+   * @param metric Type of data, such as energy or carbon.
+   * @param start Start of the range, in milliseconds since the epoch.
+   * @param end End of the range, in milliseconds since the epoch.
+   * @return The track of the power source and type of data, or null if there is no archive or
+   * nothing was read from it.
+   */
+  private Track loadFromArchive(String source, String metric, long start, long end) {
+    if (archive == null) {
+      return null;
+    }
+    Track track = null;
+    try {
+      for (long hour = start; hour < end; hour += TimeGrid.HOUR) {
+        double value = archive.get(source, metric, hour);
+        if (!Double.isNaN(value)) {
+          if (track == null) {
+            track = getTrack(source, metric);
+          }
+          track.putIfAbsent(hour, value);
+        }
+      } // end for
+    }
+    catch (IOException e) {
+      // Hours that could not be read are fetched from the WattDepot server.
+    }
+    return track;
+  }
+
+  /**
+   * Adds the energy and carbon data of each hour of a series computed from sensor data. Hours that
+   * the sensor data do not fully cover are left out, so that a partial total is never kept.
+   * 
+   * @param source Name of a power source.
+   * @param energyMetric Type of data under which energy is stored.
+   * @param carbonMetric Type of data under which carbon is stored.
+   * @param series Hourly energy and carbon data.
+   */
+  public void putHours(String source, String energyMetric, String carbonMetric,
+      DerivedSeries series) {
+    if (series.getIntervalMinutes() != 60) {
+      return;
+    }
+    long hour = series.getStartMillis();
+    for (int i = 0; i < series.size(); i++) {
+      if (series.isComplete(i)) {
+        putHour(source, energyMetric, hour, series.getEnergy(i));
+        putHour(source, carbonMetric, hour, series.getCarbon(i));
+      }
+      hour += TimeGrid.HOUR;
+    } // end for
+  }
+
+  /**
+   * Returns the data of an hour.
+   * 
+   * @param source Name of a power source.
+   * @param metric Type of data, such as energy or carbon.
+   * @param hourStart Start of the hour, in milliseconds since the epoch.
+   * @return Energy generated or carbon emitted during the hour, or NaN if it is not in this store.
+   */
+  public double getHour(String source, String metric, long hourStart) {
+    if (hourStart % TimeGrid.HOUR != 0) {
+      return Double.NaN;
+    }
+    Track track = tracks.get(source + '|' + metric);
+    long hourEnd = hourStart + TimeGrid.HOUR;
+    double value = (track == null) ? Double.NaN : track.getRange(hourStart, hourEnd);
+    if (Double.isNaN(value)) {
+      track = loadFromArchive(source, metric, hourStart, hourEnd);
+      if (track != null) {
+        value = track.getRange(hourStart, hourEnd);
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Returns the total of a range of whole hours, such as a day or a week, if every hour in it is
+   * in this store.
+   * 
+   * @param source Name of a power source.
+   * @param metric Type of data, such as energy or carbon.
+   * @param start Start of the range, in milliseconds since the epoch.
+   * @param end End of the range, in milliseconds since the epoch.
+   * @return Energy generated or carbon emitted during the range, or NaN if an hour is missing.
+   */
+  public double getRange(String source, String metric, long start, long end) {
+    Track track = tracks.get(source + '|' + metric);
+    double total = Double.NaN;
+    if (start % TimeGrid.HOUR == 0 && end % TimeGrid.HOUR == 0 && start < end) {
+      if (track != null) {
+        total = track.getRange(start, end);
+      }
+      if (Double.isNaN(total)) {
+        track = loadFromArchive(source, metric, start, end);
+        if (track != null) {
+          total = track.getRange(start, end);
+        }
+      }
+    }
+    if (Double.isNaN(total)) {
+      misses.incrementAndGet();
+    }
+    else {
+      hits.incrementAndGet();
+    }
+    return total;
+  }
+
+  /**
+   * Returns the number of hours in a range that are not in this store.
+   * 
+   * @param source Name of a power source.
+   * @param metric Type of data, such as energy or carbon.
+   * @param start Start of the range, in milliseconds since the epoch.
+   * @param end End of the range, in milliseconds since the epoch.
+   * @return Number of missing hours.
+   */
+  public int getMissingHours(String source, String metric, long start, long end) {
+    Track track = tracks.get(source + '|' + metric);
+    int hours = (int) ((end - start + TimeGrid.HOUR - 1) / TimeGrid.HOUR);
+    return (track == null) ? Math.max(0, hours) : track.getMissingHours(start, end);
+  }
+
+  /**
+   * Returns the number of hours added to this store.
+   * 
+   * @return Number of hours added.
+   */
+  public long getHoursAdded() {
+    return hoursAdded.get();
+  }
+
+  /**
+   * Returns the number of ranges whose total was found in this store.
+   * 
+   * @return Number of hits.
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of ranges whose total was not found in this store.
+   * 
+   * @return Number of misses.
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the number of complete days, whose total is known, in this store.
+   * 
+   * @return Number of complete days of all power sources and types of data.
+   */
+  public int getCompleteDays() {
+    int complete = 0;
+    for (Track track : tracks.values()) {
+      complete += track.getCompleteDays();
+    }
+    return complete;
+  }
+
+  /**
+   * Removes every hour from this store.
+   */
+  public void clear() {
+    tracks.clear();
+  }
+
+  /**
+   * The hours and day totals of one power source and type of data.
+   */
+  private static final class Track {
+
+    /** Days of this track, from least to most recently used, by their start. */
+    private final Map<Long, Day> days;
+
+    /**
+     * Creates an empty track.
+     * 
+     * @param maxDays Number of days to keep.
+     */
+    Track(final int maxDays) {
+      this.days = new LinkedHashMap<Long, Day>(64, 0.75f, true) {
+        /** Support serialization. */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Removes the least recently used day when the track is full.
+         * 
+         * @param eldest Least recently used day.
+         * @return True if the track is full, false otherwise.
+         */
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Day> eldest) {
+          return size() > maxDays;
+        }
+      };
+    }
+
+    /**
+     * Adds or replaces the data of an hour and updates the total of its day.
+     * 
+     * @param hourStart Start of the hour, in milliseconds since the epoch.
+     * @param value Data of the hour.
+     */
+    synchronized void put(long hourStart, double value) {
+      long dayStart = TimeGrid.startOfDay(hourStart);
+      Day day = days.get(dayStart);
+      if (day == null) {
+        day = new Day();
+        days.put(dayStart, day);
+      }
+      day.put((int) ((hourStart - dayStart) / TimeGrid.HOUR), value);
+    }
+
+    /**
+     * Adds the data of an hour and updates the total of its day, unless the hour is known already.
+     * 
+     * @param hourStart Start of the hour, in milliseconds since the epoch.
+     * @param value Data of the hour.
+     */
+    synchronized void putIfAbsent(long hourStart, double value) {
+      long dayStart = TimeGrid.startOfDay(hourStart);
+      Day day = days.get(dayStart);
+      if (day == null || !day.has((int) ((hourStart - dayStart) / TimeGrid.HOUR))) {
+        put(hourStart, value);
+      }
+    }
+
+    /**
+     * Returns the total of a range of whole hours, using the total of each day that the range
+     * covers completely.
+     * 
+     * @param start Start of the range, in milliseconds since the epoch.
+     * @param end End of the range, in milliseconds since the epoch.
+     * @return Total of the range, or NaN if an hour is missing.
+     */
+    synchronized double getRange(long start, long end) {
+      double total = 0.0;
+      long time = start;
+      while (time < end) {
+        long dayStart = TimeGrid.startOfDay(time);
+        long dayEnd = dayStart + TimeGrid.DAY;
+        Day day = days.get(dayStart);
+        if (day == null) {
+          return Double.NaN;
+        }
+        int first = (int) ((time - dayStart) / TimeGrid.HOUR);
+        int last = (int) ((Math.min(end, dayEnd) - dayStart) / TimeGrid.HOUR);
+        double part = day.getTotal(first, last);
+        if (Double.isNaN(part)) {
+          return Double.NaN;
+        }
+        total += part;
+        time = dayEnd;
+      } // end while
+      return total;
+    }
+
+    /**
+     * Returns the number of hours in a range that are missing.
+     * 
+     * @param start Start of the range, in milliseconds since the epoch.
+     * @param end End of the range, in milliseconds since the epoch.
+     * @return Number of missing hours.
+     */
+    synchronized int getMissingHours(long start, long end) {
+      int missing = 0;
+      for (long time = start; time < end; time += TimeGrid.HOUR) {
+        long dayStart = TimeGrid.startOfDay(time);
+        Day day = days.get(dayStart);
+        if (day == null || !day.has((int) ((time - dayStart) / TimeGrid.HOUR))) {
+          missing++;
+        }
+      } // end for
+      return missing;
+    }
+
+    /**
+     * Returns the number of days of this track whose every hour is known.
+     * 
+     * @return Number of complete days.
+     */
+    synchronized int getCompleteDays() {
+      int complete = 0;
+      for (Day day : days.values()) {
+        if (day.isComplete()) {
+          complete++;
+        }
+      }
+      return complete;
+    }
+  }
+
+  /**
+   * The hours of one day and their total, which is kept up to date as hours arrive.
+   */
+  private static final class Day {
+
+    /** Data of each hour, or NaN if the hour is missing. */
+    private final double[] hours = new double[HOURS_PER_DAY];
+    /** Number of hours that are not missing. */
+    private int count;
+    /** Total of the hours that are not missing. */
+    private double total;
+
+    /**
+     * Creates a day without any hours.
+     */
+    Day() {
+      Arrays.fill(hours, Double.NaN);
+    }
+
+    /**
+     * Adds or replaces the data of an hour and updates the total.
+     * 
+     * @param hour Hour of the day, from 0 to 23.
+     * @param value Data of the hour.
+     */
+    void put(int hour, double value) {
+      if (Double.isNaN(hours[hour])) {
+        count++;
+        total += value;
+      }
+      else {
+        total += value - hours[hour];
+      }
+      hours[hour] = value;
+    }
+
+    /**
+     * Returns true if the data of an hour are known, false otherwise.
+     * 
+     * @param hour Hour of the day, from 0 to 23.
+     * @return True if the hour is known, false otherwise.
+     */
+    boolean has(int hour) {
+      return !Double.isNaN(hours[hour]);
+    }
+
+    /**
+     * Returns true if every hour of this day is known, false otherwise.
+     * 
+     * @return True if every hour is known, false otherwise.
+     */
+    boolean isComplete() {
+      return count == HOURS_PER_DAY;
+    }
+
+    /**
+     * Returns the total of some hours of this day.
+     * 
+     * @param first First hour, from 0 to 23.
+     * @param last Hour after the last one, from 1 to 24.
+     * @return Total of the hours, or NaN if one of them is missing.
+     */
+    double getTotal(int first, int last) {
+      if (first == 0 && last == HOURS_PER_DAY) {
+        return isComplete() ? total : Double.NaN;
+      }
+      double sum = 0.0;
+      for (int i = first; i < last; i++) {
+        sum += hours[i];
+      }
+      return sum;
+    }
+  }
+
+}
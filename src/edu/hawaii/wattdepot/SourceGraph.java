@@ -0,0 +1,281 @@
+package edu.hawaii.wattdepot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.client.WattDepotClientException;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * Holds the power sources on the WattDepot server and which of them are subsources of others. A
+ * graph never changes once it is discovered, so it can be shared by all users and read without
+ * asking the server again.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public final class SourceGraph {
+
+  /** Power sources listed when the graph cannot be discovered. */
+  private static final List<String> FALLBACK_SOURCES =
+      Arrays.asList("SIM_AES", "SIM_HONOLULU", "SIM_HONOLULU_8", "SIM_HONOLULU_9", "SIM_HPOWER",
+          "SIM_IPP", "SIM_KAHE", "SIM_KAHE_1", "SIM_KAHE_2", "SIM_KAHE_3", "SIM_KAHE_4",
+          "SIM_KAHE_5", "SIM_KAHE_6", "SIM_KAHE_7", "SIM_KALAELOA", "SIM_OAHU_GRID", "SIM_WAIAU",
+          "SIM_WAIAU_10", "SIM_WAIAU_5", "SIM_WAIAU_6", "SIM_WAIAU_7", "SIM_WAIAU_8",
+          "SIM_WAIAU_9");
+  /** Subsources of the virtual power sources listed when the graph cannot be discovered. */
+  private static final Map<String, List<String>> FALLBACK_SUBSOURCES =
+      new HashMap<String, List<String>>();
+  static {
+    FALLBACK_SUBSOURCES.put("SIM_OAHU_GRID", Arrays.asList("SIM_HONOLULU", "SIM_IPP", "SIM_KAHE",
+        "SIM_WAIAU"));
+    FALLBACK_SUBSOURCES.put("SIM_HONOLULU", Arrays.asList("SIM_HONOLULU_8", "SIM_HONOLULU_9"));
+    FALLBACK_SUBSOURCES.put("SIM_IPP", Arrays.asList("SIM_AES", "SIM_HPOWER", "SIM_KALAELOA"));
+    FALLBACK_SUBSOURCES.put("SIM_KAHE", Arrays.asList("SIM_KAHE_1", "SIM_KAHE_2", "SIM_KAHE_3",
+        "SIM_KAHE_4", "SIM_KAHE_5", "SIM_KAHE_6", "SIM_KAHE_7"));
+    FALLBACK_SUBSOURCES.put("SIM_WAIAU", Arrays.asList("SIM_WAIAU_5", "SIM_WAIAU_6",
+        "SIM_WAIAU_7", "SIM_WAIAU_8", "SIM_WAIAU_9", "SIM_WAIAU_10"));
+  }
+
+  /** Power sources by name. */
+  private final Map<String, Source> sources;
+  /** Names of the power sources one level below each power source. */
+  private final Map<String, List<String>> subsources;
+  /** Names of all power sources in alphabetical order. */
+  private final List<String> sourceNames;
+  /** Time at which the graph was discovered, in milliseconds since the epoch. */
+  private final long discoveredAt;
+
+  /**
+   * Creates a graph of the given power sources.
+   * 
+   * @param sources Power sources by name; empty if they could not be retrieved.
+   * @param names Names of all power sources.
+   * @param knownSubsources Subsources of power sources that could not be retrieved, by name.
+   * @param discoveredAt Time at which the graph was discovered, or 0 if it was not.
+   */
+  private SourceGraph(Map<String, Source> sources, List<String> names,
+      Map<String, List<String>> knownSubsources, long discoveredAt) {
+    Map<String, List<String>> children = new HashMap<String, List<String>>();
+    for (String name : names) {
+      List<String> list = new ArrayList<String>();
+      Source source = sources.get(name);
+      if (source != null && source.isSetSubSources()) {
+        for (String href : source.getSubSources().getHref()) {
+          list.add(getSourceName(href));
+        }
+      }
+      else if (source == null && knownSubsources.containsKey(name)) {
+        list.addAll(knownSubsources.get(name));
+      }
+      children.put(name, Collections.unmodifiableList(list));
+    } // end for
+    List<String> sorted = new ArrayList<String>(names);
+    Collections.sort(sorted);
+
+    this.sources = Collections.unmodifiableMap(new HashMap<String, Source>(sources));
+    this.subsources = Collections.unmodifiableMap(children);
+    this.sourceNames = Collections.unmodifiableList(sorted);
+    this.discoveredAt = discoveredAt;
+  }
+
+  /**
+   * Returns a graph of the power sources known to be on the server and their well-known subsources,
+   * without their other details. Used until the graph can be discovered.
+   * 
+   * @return A graph of the well-known power sources.
+   */
+  public static SourceGraph fallback() {
+    return new SourceGraph(new HashMap<String, Source>(), FALLBACK_SOURCES, FALLBACK_SUBSOURCES,
+        0);
+  }
+
+  /**
+   * Discovers the power sources below the given ones, one level at a time. The power sources on
+   * each level are retrieved in parallel.
+   * 
+   * @param client Client used to retrieve power sources.
+   * @param roots Names of the power sources at the top of the graph.
+   * @param pool Pool that retrieves the power sources on each level in parallel.
+   * @return The discovered graph.
+   * @throws WattDepotClientException If a power source cannot be retrieved.
+   * @throws InterruptedException If the calling thread was interrupted while waiting.
+   */
+  public static SourceGraph discover(WattDepotClient client, List<String> roots, QueryPool pool)
+      throws WattDepotClientException, InterruptedException {
+    return discover(client, roots, pool, null);
+  }
+
+  /**
+   * Discovers the power sources below the given ones, one level at a time, with each request for
+   * a power source made through a circuit breaker. The power sources on each level are retrieved
+   * in parallel.
+   * 
+   * @param client Client used to retrieve power sources.
+   * @param roots Names of the power sources at the top of the graph.
+   * @param pool Pool that retrieves the power sources on each level in parallel.
+   * @param breaker Guards the requests, or null to make them directly.
+   * @return The discovered graph.
+   * @throws WattDepotClientException If a power source cannot be retrieved.
+   * @throws InterruptedException If the calling thread was interrupted while waiting.
+   */
+  public static SourceGraph discover(final WattDepotClient client, List<String> roots,
+      QueryPool pool, final CircuitBreaker breaker) throws WattDepotClientException,
+      InterruptedException {
+    Map<String, Source> sources = new HashMap<String, Source>();
+    Set<String> level = new LinkedHashSet<String>(roots);
+    while (!level.isEmpty()) {
+      QueryBatch<Source> batch = new QueryBatch<Source>();
+      for (final String name : level) {
+        batch.add(new Callable<Source>() {
+          public Source call() throws WattDepotClientException {
+            if (breaker == null) {
+              return client.getSource(name);
+            }
+            return breaker.call(new Callable<Source>() {
+              public Source call() throws WattDepotClientException {
+                return client.getSource(name);
+              }
+            });
+          }
+        });
+      } // end for
+      try {
+        pool.run(batch);
+      }
+      catch (ExecutionException e) {
+        if (e.getCause() instanceof WattDepotClientException) {
+          throw (WattDepotClientException) e.getCause();
+        }
+        throw new WattDepotClientException("Cannot discover power sources: " + e.getCause());
+      }
+
+      Set<String> nextLevel = new LinkedHashSet<String>();
+      for (Source source : batch.getResults()) {
+        sources.put(source.getName(), source);
+        if (source.isSetSubSources()) {
+          for (String href : source.getSubSources().getHref()) {
+            String name = getSourceName(href);
+            if (!sources.containsKey(name)) {
+              nextLevel.add(name);
+            }
+          }
+        }
+      } // end for
+      level = nextLevel;
+    } // end while
+    return new SourceGraph(sources, new ArrayList<String>(sources.keySet()),
+        new HashMap<String, List<String>>(), System.currentTimeMillis());
+  }
+
+  /**
+   * Returns the name of a power source given its URI.
+   * 
+   * @param href URI of a power source.
+   * @return Name of the power source.
+   */
+  static String getSourceName(String href) {
+    return href.substring(href.indexOf("SIM"));
+  }
+
+  /**
+   * Returns true if the graph was discovered from the server, false if it is the fallback graph.
+   * 
+   * @return True if the graph was discovered, false otherwise.
+   */
+  public boolean isDiscovered() {
+    return discoveredAt != 0;
+  }
+
+  /**
+   * Returns the time at which the graph was discovered.
+   * 
+   * @return Time in milliseconds since the epoch, or 0 if the graph was not discovered.
+   */
+  public long getDiscoveredAt() {
+    return discoveredAt;
+  }
+
+  /**
+   * Returns the names of all power sources in alphabetical order.
+   * 
+   * @return An unmodifiable list of names.
+   */
+  public List<String> getSourceNames() {
+    return sourceNames;
+  }
+
+  /**
+   * Returns true if the graph holds the given power source.
+   * 
+   * @param name Name of a power source.
+   * @return True if the graph holds the power source, false otherwise.
+   */
+  public boolean contains(String name) {
+    return sources.containsKey(name);
+  }
+
+  /**
+   * Returns a power source. The returned object must not be changed.
+   * 
+   * @param name Name of a power source.
+   * @return The power source, or null if the graph does not hold it.
+   */
+  public Source getSource(String name) {
+    return sources.get(name);
+  }
+
+  /**
+   * Returns the power sources that are one level below a given power source.
+   * 
+   * @param name Name of a power source.
+   * @return An unmodifiable list of names, which is empty if there are none.
+   */
+  public List<String> getSubsources(String name) {
+    List<String> children = subsources.get(name);
+    if (children == null) {
+      return Collections.emptyList();
+    }
+    return children;
+  }
+
+  /**
+   * Returns all non-virtual power sources below a given power source, or the power source itself if
+   * it is not virtual.
+   * 
+   * @param name Name of a power source.
+   * @return A list of names of non-virtual power sources.
+   */
+  public List<String> getNonVirtualSources(String name) {
+    List<String> leaves = new ArrayList<String>();
+    addNonVirtualSources(name, leaves);
+    return leaves;
+  }
+
+  /**
+   * Adds a power source to the list if it is not virtual, or else all of its non-virtual
+   * subsources. A power source whose details are not known is virtual if it has subsources.
+   * 
+   * @param name Name of a power source.
+   * @param leaves List that receives the names of non-virtual power sources.
+   */
+  private void addNonVirtualSources(String name, List<String> leaves) {
+    Source source = sources.get(name);
+    if ((source != null && !source.isVirtual()) || getSubsources(name).isEmpty()) {
+      leaves.add(name);
+      return;
+    }
+    for (String child : getSubsources(name)) {
+      addNonVirtualSources(child, leaves);
+    }
+  }
+
+}
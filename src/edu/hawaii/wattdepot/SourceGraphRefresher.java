@@ -0,0 +1,153 @@
+package edu.hawaii.wattdepot;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.client.WattDepotClientException;
+
+/**
+ * Keeps the graph of power sources up to date for all users of this web application. The graph is
+ * discovered once when the refresher starts and again in the background every hour. Until the
+ * first discovery succeeds, the fallback graph is used and discovery is retried every minute.
+ * Discovery only runs in the background, so users never wait for it. The power sources at the top
+ * of the graph and the refresh interval can be changed with the
+ * <code>carbonometer.rootSources</code> and <code>carbonometer.sourceRefreshMinutes</code> system
+ * properties.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class SourceGraphRefresher {
+
+  /** Power sources at the top of the graph if the system property is not set. */
+  public static final String DEFAULT_ROOTS = "SIM_OAHU_GRID";
+  /** Number of minutes between refreshes if the system property is not set. */
+  public static final int DEFAULT_REFRESH_MINUTES = 60;
+  /** Refresher shared by all users of this web application. */
+  private static final SourceGraphRefresher SHARED =
+      new SourceGraphRefresher(WattDepotCommand.CLIENT, Arrays.asList(System.getProperty(
+          "carbonometer.rootSources", DEFAULT_ROOTS).split(",")), Integer.getInteger(
+          "carbonometer.sourceRefreshMinutes", DEFAULT_REFRESH_MINUTES), CircuitBreaker
+          .getShared());
+  /** Client used to discover the graph. */
+  private final WattDepotClient client;
+  /** Guards the requests made to discover the graph, or null if they are made directly. */
+  private final CircuitBreaker breaker;
+  /** Names of the power sources at the top of the graph. */
+  private final List<String> roots;
+  /** Number of minutes between refreshes. */
+  private final int refreshMinutes;
+  /** Latest graph, or the fallback graph until the graph has been discovered. */
+  private volatile SourceGraph graph = SourceGraph.fallback();
+  /** Runs the refreshes in the background. */
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Creates a refresher.
+   * 
+   * @param client Client used to discover the graph.
+   * @param roots Names of the power sources at the top of the graph.
+   * @param refreshMinutes Number of minutes between refreshes.
+   */
+  public SourceGraphRefresher(WattDepotClient client, List<String> roots, int refreshMinutes) {
+    this(client, roots, refreshMinutes, null);
+  }
+
+  /**
+   * Creates a refresher that discovers the graph through a circuit breaker.
+   * 
+   * @param client Client used to discover the graph.
+   * @param roots Names of the power sources at the top of the graph.
+   * @param refreshMinutes Number of minutes between refreshes.
+   * @param breaker Guards the requests made to discover the graph, or null to make them directly.
+   */
+  public SourceGraphRefresher(WattDepotClient client, List<String> roots, int refreshMinutes,
+      CircuitBreaker breaker) {
+    this.client = client;
+    this.roots = roots;
+    this.refreshMinutes = refreshMinutes;
+    this.breaker = breaker;
+  }
+
+  /**
+   * Returns the refresher shared by all users of this web application.
+   * 
+   * @return The shared refresher.
+   */
+  public static SourceGraphRefresher getShared() {
+    return SHARED;
+  }
+
+  /**
+   * Discovers the graph right away and then again after every refresh interval, or every minute
+   * until it has been discovered.
+   */
+  public synchronized void start() {
+    if (scheduler != null) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "source-graph-refresher");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+      public void run() {
+        SourceGraph current = graph;
+        long age = System.currentTimeMillis() - current.getDiscoveredAt();
+        if (!current.isDiscovered() || age >= refreshMinutes * TimeGrid.MINUTE) {
+          refresh();
+        }
+      }
+    }, 0, 1, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Stops refreshing the graph.
+   */
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  /**
+   * Returns the latest graph without waiting for it to be discovered.
+   * 
+   * @return The latest graph, or the fallback graph if it has never been discovered.
+   */
+  public SourceGraph getGraph() {
+    return graph;
+  }
+
+  /**
+   * Discovers the graph and publishes it. If the graph cannot be discovered, the previous graph is
+   * kept.
+   * 
+   * @return True if the graph was discovered, false otherwise.
+   */
+  public boolean refresh() {
+    try {
+      graph = SourceGraph.discover(client, roots, QueryPool.getSharedPool(), breaker);
+      return true;
+    }
+    catch (WattDepotClientException e) {
+      // Keep the previous graph.
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    catch (RuntimeException e) {
+      // Keep the previous graph.
+    }
+    return false;
+  }
+
+}
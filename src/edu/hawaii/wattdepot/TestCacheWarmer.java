@@ -0,0 +1,69 @@
+package edu.hawaii.wattdepot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * Tests the methods in the CacheWarmer class.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestCacheWarmer {
+
+  /**
+   * Tests that warming is scheduled a few minutes after the next midnight in Hawaii.
+   */
+  @Test
+  public void testGetNextRun() {
+    long day = TimeGrid.parseDay("2009-12-31");
+    long next = day + TimeGrid.DAY + CacheWarmer.ROLLOVER_DELAY;
+    assertEquals("Checking noon", next, CacheWarmer.getNextRun(day + 12 * TimeGrid.HOUR));
+    assertEquals("Checking end of day", next, CacheWarmer.getNextRun(day + TimeGrid.DAY - 1));
+    assertEquals("Checking midnight", next, CacheWarmer.getNextRun(day + TimeGrid.DAY));
+    assertEquals("Checking time of warming", next + TimeGrid.DAY, CacheWarmer.getNextRun(next));
+  }
+
+  /**
+   * Tests the report of a warmer that has not run yet.
+   */
+  @Test
+  public void testReportBeforeWarming() {
+    CacheWarmer warmer = new CacheWarmer(CacheWarmer.DEFAULT_DAYS);
+    assertEquals("Checking duration", -1, warmer.getLastDuration());
+    assertEquals("Checking report", "Cache not warmed yet.", warmer.getReport());
+  }
+
+  /**
+   * Tests that warming is scheduled again after it failed with an unexpected exception.
+   * 
+   * @throws InterruptedException If the test is interrupted.
+   */
+  @Test
+  public void testRescheduledAfterException() throws InterruptedException {
+    final CountDownLatch runs = new CountDownLatch(2);
+    CacheWarmer warmer = new CacheWarmer(CacheWarmer.DEFAULT_DAYS, 10L) {
+      /**
+       * Fails as a bug in the warming would.
+       * 
+       * @return Never returns.
+       */
+      @Override
+      public boolean warm() {
+        runs.countDown();
+        throw new IllegalStateException("Warming failed");
+      }
+    };
+    warmer.start();
+    try {
+      assertTrue("Checking retry", runs.await(5, TimeUnit.SECONDS));
+    }
+    finally {
+      warmer.stop();
+    }
+  }
+
+}
@@ -0,0 +1,300 @@
+package edu.hawaii.wattdepot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.wattdepot.client.WattDepotClientException;
+
+/**
+ * Tests the methods in the CircuitBreaker class.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestCircuitBreaker {
+
+  /** Call that always fails. */
+  private static final Callable<String> FAILING = new Callable<String>() {
+    public String call() throws WattDepotClientException {
+      throw new WattDepotClientException("Failing");
+    }
+  };
+
+  /** Call that always succeeds. */
+  private static final Callable<String> SUCCEEDING = new Callable<String>() {
+    public String call() {
+      return "OK";
+    }
+  };
+
+  /**
+   * Makes a call that is expected to fail and returns the exception it threw.
+   * 
+   * @param breaker Breaker that makes the call.
+   * @param call The call.
+   * @return Exception thrown by the call.
+   */
+  private static WattDepotClientException callAndFail(CircuitBreaker breaker,
+      Callable<String> call) {
+    try {
+      breaker.call(call);
+      fail("Expected the call to fail");
+    }
+    catch (WattDepotClientException e) {
+      return e;
+    }
+    return null;
+  }
+
+  /**
+   * Tests that the circuit opens after a number of failures in a row, and that calls then fail
+   * right away without being made.
+   * 
+   * @throws WattDepotClientException If a call that should succeed fails.
+   */
+  @Test
+  public void testOpen() throws WattDepotClientException {
+    CircuitBreaker breaker = new CircuitBreaker(1000L, 3, 60000L, 4);
+    callAndFail(breaker, FAILING);
+    callAndFail(breaker, FAILING);
+    assertEquals("Checking success", "OK", breaker.call(SUCCEEDING));
+    for (int i = 0; i < 3; i++) {
+      assertTrue("Checking failure " + i,
+          !(callAndFail(breaker, FAILING) instanceof CircuitBreaker.OpenException));
+    }
+    assertEquals("Checking state", CircuitBreaker.State.OPEN, breaker.getState());
+
+    final AtomicInteger made = new AtomicInteger();
+    WattDepotClientException e = callAndFail(breaker, new Callable<String>() {
+      public String call() {
+        made.incrementAndGet();
+        return "OK";
+      }
+    });
+    assertTrue("Checking open exception", e instanceof CircuitBreaker.OpenException);
+    assertEquals("Checking call not made", 0, made.get());
+    assertEquals("Checking rejected", 1, breaker.getRejected());
+  }
+
+  /**
+   * Tests that a call to a server that does not answer gives up after the timeout.
+   */
+  @Test
+  public void testTimeout() {
+    CircuitBreaker breaker = new CircuitBreaker(50L, 5, 60000L, 4);
+    final CountDownLatch release = new CountDownLatch(1);
+    long started = System.currentTimeMillis();
+    callAndFail(breaker, new Callable<String>() {
+      public String call() throws InterruptedException {
+        release.await(10, TimeUnit.SECONDS);
+        return "Late";
+      }
+    });
+    release.countDown();
+    assertTrue("Checking caller not held", System.currentTimeMillis() - started < 5000L);
+    assertEquals("Checking timeouts", 1, breaker.getTimeouts());
+    assertEquals("Checking state", CircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  /**
+   * Tests that a trial call is let through after the open interval, and that it closes the
+   * circuit if it succeeds and opens it again if it fails.
+   * 
+   * @throws Exception If a call that should succeed fails or the test is interrupted.
+   */
+  @Test
+  public void testHalfOpen() throws Exception {
+    CircuitBreaker breaker = new CircuitBreaker(1000L, 1, 20L, 4);
+    callAndFail(breaker, FAILING);
+    assertTrue("Checking open", breaker.isOpen());
+    Thread.sleep(40L);
+    callAndFail(breaker, FAILING);
+    assertEquals("Checking reopened", CircuitBreaker.State.OPEN, breaker.getState());
+    assertTrue("Checking still open",
+        callAndFail(breaker, SUCCEEDING) instanceof CircuitBreaker.OpenException);
+    Thread.sleep(40L);
+    assertEquals("Checking trial call", "OK", breaker.call(SUCCEEDING));
+    assertEquals("Checking closed", CircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  /**
+   * Tests that calls that fail in this application, calls that are not started because too many
+   * are outstanding, and calls whose caller is interrupted do not open the circuit.
+   * 
+   * @throws InterruptedException If the test is interrupted.
+   */
+  @Test
+  public void testNotCounted() throws InterruptedException {
+    final CircuitBreaker breaker = new CircuitBreaker(5000L, 1, 60000L, 1);
+    try {
+      breaker.call(new Callable<String>() {
+        public String call() {
+          throw new IllegalStateException("Bug");
+        }
+      });
+      fail("Expected the call to fail");
+    }
+    catch (IllegalStateException e) {
+      assertEquals("Checking bug not counted", CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+    catch (WattDepotClientException e) {
+      fail("Expected the exception of the call");
+    }
+
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Thread holder = new Thread(new Runnable() {
+      public void run() {
+        try {
+          breaker.call(new Callable<String>() {
+            public String call() throws InterruptedException {
+              started.countDown();
+              release.await(10, TimeUnit.SECONDS);
+              return "Late";
+            }
+          });
+        }
+        catch (WattDepotClientException e) {
+          // The test checks the state of the breaker instead.
+        }
+      }
+    });
+    holder.start();
+    assertTrue("Checking call started", started.await(5, TimeUnit.SECONDS));
+    assertTrue("Checking rejected", callAndFail(breaker, SUCCEEDING)
+        instanceof CircuitBreaker.OpenException);
+    assertEquals("Checking rejection not counted", CircuitBreaker.State.CLOSED, breaker
+        .getState());
+    release.countDown();
+    holder.join();
+
+    Thread.currentThread().interrupt();
+    callAndFail(breaker, SUCCEEDING);
+    assertTrue("Checking interrupt kept", Thread.interrupted());
+    assertEquals("Checking interrupt not counted", CircuitBreaker.State.CLOSED, breaker
+        .getState());
+    assertFalse("Checking client failure", CircuitBreaker.isClientError(
+        new WattDepotClientException("Failing")));
+  }
+
+  /**
+   * Tests that a background refresh is not queued again while one with the same key is queued or
+   * running.
+   * 
+   * @throws InterruptedException If the test is interrupted.
+   */
+  @Test
+  public void testRefreshInBackground() throws InterruptedException {
+    CircuitBreaker breaker = new CircuitBreaker(1000L, 5, 60000L, 4);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(2);
+    final AtomicInteger runs = new AtomicInteger();
+    Runnable refresh = new Runnable() {
+      public void run() {
+        runs.incrementAndGet();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        done.countDown();
+      }
+    };
+    breaker.refreshInBackground("a", refresh);
+    breaker.refreshInBackground("a", refresh);
+    breaker.refreshInBackground("b", refresh);
+    assertEquals("Checking refresh count", 2, breaker.getRefreshCount());
+    release.countDown();
+    assertTrue("Checking refreshes done", done.await(10, TimeUnit.SECONDS));
+    assertEquals("Checking runs", 2, runs.get());
+  }
+
+  /**
+   * Tests that with the default limit the shared query pool, the pool of asynchronous queries, and
+   * the other callers can all have a call outstanding at once without any being rejected.
+   * 
+   * @throws Exception If a call fails.
+   */
+  @Test
+  public void testSharedPoolsConcurrently() throws Exception {
+    final CircuitBreaker breaker =
+        new CircuitBreaker(10000L, 5, 60000L, CircuitBreaker.DEFAULT_MAX_CALLS);
+    QueryPool shared = new QueryPool(QueryPool.DEFAULT_POOL_SIZE);
+    QueryPool async = new QueryPool(QueryPool.DEFAULT_POOL_SIZE);
+    ExecutorService others = Executors.newFixedThreadPool(CircuitBreaker.OTHER_CALLERS);
+    final CountDownLatch inFlight = new CountDownLatch(CircuitBreaker.DEFAULT_MAX_CALLS);
+    Callable<String> call = new Callable<String>() {
+      public String call() throws WattDepotClientException {
+        return breaker.call(new Callable<String>() {
+          public String call() throws InterruptedException {
+            inFlight.countDown();
+            return inFlight.await(5, TimeUnit.SECONDS) ? "OK" : "Alone";
+          }
+        });
+      }
+    };
+    List<Future<String>> futures = new ArrayList<Future<String>>();
+    try {
+      for (int i = 0; i < QueryPool.DEFAULT_POOL_SIZE; i++) {
+        futures.add(shared.submit(call));
+        futures.add(async.submit(call));
+      }
+      for (int i = 0; i < CircuitBreaker.OTHER_CALLERS; i++) {
+        futures.add(others.submit(call));
+      }
+      for (Future<String> future : futures) {
+        assertEquals("Checking call", "OK", future.get(10, TimeUnit.SECONDS));
+      }
+      assertEquals("Checking rejected", 0, breaker.getRejected());
+    }
+    finally {
+      others.shutdownNow();
+    }
+  }
+
+  /**
+   * Tests that a call made while too many are outstanding waits for one of them to end instead of
+   * failing right away.
+   * 
+   * @throws Exception If a call fails.
+   */
+  @Test
+  public void testQueueWait() throws Exception {
+    final CircuitBreaker breaker = new CircuitBreaker(5000L, 5, 60000L, 1, 5000L, false);
+    final CountDownLatch started = new CountDownLatch(1);
+    ExecutorService holder = Executors.newSingleThreadExecutor();
+    try {
+      Future<String> held = holder.submit(new Callable<String>() {
+        public String call() throws WattDepotClientException {
+          return breaker.call(new Callable<String>() {
+            public String call() throws InterruptedException {
+              started.countDown();
+              Thread.sleep(200L);
+              return "Held";
+            }
+          });
+        }
+      });
+      assertTrue("Checking call started", started.await(5, TimeUnit.SECONDS));
+      assertEquals("Checking waiting call", "OK", breaker.call(SUCCEEDING));
+      assertEquals("Checking held call", "Held", held.get(5, TimeUnit.SECONDS));
+      assertEquals("Checking rejected", 0, breaker.getRejected());
+    }
+    finally {
+      holder.shutdownNow();
+    }
+  }
+
+}
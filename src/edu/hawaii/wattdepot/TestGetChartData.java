@@ -4,11 +4,13 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import java.util.Arrays;
 import java.util.List;
-import java.util.ArrayList;
 import javax.xml.datatype.XMLGregorianCalendar;
 import org.junit.Before;
 import org.junit.Test;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.client.WattDepotClientException;
 import org.wattdepot.util.tstamp.Tstamp;
 
 /**
@@ -19,8 +21,8 @@ import org.wattdepot.util.tstamp.Tstamp;
  */
 public class TestGetChartData {
 
-  /** Holds a list of power data. */
-  private List<Double> result = new ArrayList<Double>();
+  /** Holds the power data. */
+  private TimeSeries result;
   /** Command used to get data from the WattDepot server. */
   private WattDepotCommand command;
   /** Power source assertion message. */
@@ -36,7 +38,6 @@ public class TestGetChartData {
   @Before
   @Test
   public void testInvalidPeriod() {
-    result.clear();
     command = new WattDepotCommand();
     XMLGregorianCalendar fromDay = null;
     XMLGregorianCalendar toDay = null;
@@ -56,7 +57,6 @@ public class TestGetChartData {
    */
   @Test
   public void testInvalidSource() {
-    result.clear();
     command = new WattDepotCommand();
     XMLGregorianCalendar fromDay = null;
     XMLGregorianCalendar toDay = null;
@@ -76,7 +76,6 @@ public class TestGetChartData {
    */
   @Test
   public void testValidSourceCarbon() {
-    result.clear();
     command = new WattDepotCommand();
     XMLGregorianCalendar fromDay = null;
     XMLGregorianCalendar toDay = null;
@@ -96,7 +95,6 @@ public class TestGetChartData {
    */
   @Test
   public void testValidSourceEnergy() {
-    result.clear();
     command = new WattDepotCommand();
     XMLGregorianCalendar fromDay = null;
     XMLGregorianCalendar toDay = null;
@@ -116,7 +114,6 @@ public class TestGetChartData {
    */
   @Test
   public void testInvalidPowerType() {
-    result.clear();
     command = new WattDepotCommand();
     XMLGregorianCalendar fromDay = null;
     XMLGregorianCalendar toDay = null;
@@ -131,4 +128,53 @@ public class TestGetChartData {
     assertTrue(CHECK_SOURCE, command.isWattDepotExceptionThrown());
   }
 
-}
\ No newline at end of file
+  /**
+   * Tests that the data of several power sources fetched in one batch are in the order of the power
+   * sources and the same as the data of each power source fetched on its own.
+   */
+  @Test
+  public void testSourceMatrix() {
+    command = new WattDepotCommand();
+    long fromDay = TimeGrid.parseDay("2009-12-01");
+    long toDay = TimeGrid.parseDay("2009-12-02");
+    List<String> sources = Arrays.asList("SIM_KAHE_1", "SIM_OAHU_GRID");
+    List<TimeSeries> matrix = command.getChartData(fromDay, toDay, sources, "Energy", HOUR);
+    assertEquals("Checking number of series", sources.size(), matrix.size());
+    for (int s = 0; s < sources.size(); s++) {
+      TimeSeries single =
+          new WattDepotCommand().getChartData(fromDay, toDay, sources.get(s), "Energy", HOUR);
+      assertEquals("Checking size of " + sources.get(s), single.size(), matrix.get(s).size());
+      for (int i = 0; i < single.size(); i++) {
+        assertEquals("Checking value of " + sources.get(s), single.get(i), matrix.get(s).get(i),
+            0.0);
+      } // end for
+    } // end for
+  }
+
+  /**
+   * Tests that a value of several power sources that cannot be retrieved is left missing in its
+   * series instead of cutting the series short, and that the error is recorded.
+   */
+  @Test
+  public void testSourceMatrixGap() {
+    WattDepotClient client = new WattDepotClient("http://localhost/wattdepot/") {
+      @Override
+      public double getEnergyGenerated(String source, XMLGregorianCalendar startTime,
+          XMLGregorianCalendar endTime, int interval) throws WattDepotClientException {
+        if ("SIM_MATRIX_MISSING".equals(source)) {
+          throw new WattDepotClientException("No data for " + source);
+        }
+        return 1000.0;
+      }
+    };
+    command = new WattDepotCommand(client);
+    long day = TimeGrid.parseDay("2009-12-01");
+    List<String> sources = Arrays.asList("SIM_MATRIX_PRESENT", "SIM_MATRIX_MISSING");
+    List<TimeSeries> matrix = command.getChartData(day, day, sources, "Energy", "Day");
+    assertTrue("Checking error", command.isWattDepotExceptionThrown());
+    assertEquals("Checking number of series", sources.size(), matrix.size());
+    assertEquals("Checking size of missing series", 1, matrix.get(1).size());
+    assertTrue("Checking gap", Double.isNaN(matrix.get(1).get(0)));
+  }
+
+}
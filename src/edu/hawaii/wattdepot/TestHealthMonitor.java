@@ -0,0 +1,96 @@
+package edu.hawaii.wattdepot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.wattdepot.client.WattDepotClient;
+
+/**
+ * Tests the methods in the HealthMonitor class.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestHealthMonitor {
+
+  /**
+   * Client whose health can be switched on and off, and which counts the probes.
+   */
+  private static class FakeClient extends WattDepotClient {
+
+    /** True if the server is healthy, false otherwise. */
+    private volatile boolean healthy = true;
+    /** Number of times the health of the server was asked for. */
+    private volatile int probes;
+
+    /**
+     * Creates a client of a made-up server.
+     */
+    FakeClient() {
+      super("http://localhost/wattdepot/");
+    }
+
+    /**
+     * Returns whether the server is healthy.
+     * 
+     * @return True if the server is healthy, false otherwise.
+     */
+    @Override
+    public boolean isHealthy() {
+      probes++;
+      return healthy;
+    }
+  }
+
+  /**
+   * Tests that the server is taken to be healthy but the application not ready before the first
+   * probe, and that the flag follows the probes.
+   */
+  @Test
+  public void testProbe() {
+    FakeClient client = new FakeClient();
+    HealthMonitor monitor = new HealthMonitor(client, 60000L);
+    assertTrue("Checking healthy before probe", monitor.isHealthy());
+    assertFalse("Checking not ready before probe", monitor.isReady());
+
+    assertTrue("Checking healthy probe", monitor.probe());
+    assertTrue("Checking ready", monitor.isReady());
+    client.healthy = false;
+    assertFalse("Checking unhealthy probe", monitor.probe());
+    assertFalse("Checking unhealthy", monitor.isHealthy());
+    assertFalse("Checking not ready", monitor.isReady());
+    assertEquals("Checking recent failures", 1, monitor.getRecentFailures());
+  }
+
+  /**
+   * Tests that only the latency of the last probes is kept.
+   */
+  @Test
+  public void testHistory() {
+    HealthMonitor monitor = new HealthMonitor(new FakeClient(), 60000L);
+    assertEquals("Checking empty history", 0, monitor.getLatencies().length);
+    assertEquals("Checking average of nothing", 0, monitor.getAverageLatency());
+    for (int i = 0; i < HealthMonitor.HISTORY_SIZE + 5; i++) {
+      monitor.probe();
+    }
+    assertEquals("Checking probe count", HealthMonitor.HISTORY_SIZE + 5, monitor.getProbeCount());
+    assertEquals("Checking history", HealthMonitor.HISTORY_SIZE, monitor.getLatencies().length);
+  }
+
+  /**
+   * Tests that a command does not ask the server for its health, and that it does not report an
+   * error when created while the server is down, so that it can serve the last good data.
+   */
+  @Test
+  public void testCommandReadsFlag() {
+    FakeClient client = new FakeClient();
+    HealthMonitor monitor = new HealthMonitor(client, 60000L);
+    client.healthy = false;
+    monitor.probe();
+    WattDepotCommand command = new WattDepotCommand(client, monitor);
+    assertEquals("Checking no extra probe", 1, client.probes);
+    assertFalse("Checking no error yet", command.isWattDepotExceptionThrown());
+  }
+
+}
@@ -0,0 +1,184 @@
+package edu.hawaii.wattdepot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the methods in the HourArchive class.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestHourArchive {
+
+  /** Allowed difference between expected and actual values. */
+  private static final double DELTA = 0.000001;
+  /** Name of the power source used in the tests. */
+  private static final String SOURCE = "SIM_KAHE";
+  /** URI of the WattDepot server the data of the tests come from. */
+  private static final String UPSTREAM = "http://localhost:8182/wattdepot/";
+  /** Start of the first hour of the files in the tests. */
+  private static final long FIRST_HOUR = TimeGrid.parseDay("2009-11-01");
+  /** Directory that holds the files of the tests. */
+  private File directory;
+
+  /**
+   * Creates an empty directory for the files of a test.
+   * 
+   * @throws IOException If the directory cannot be created.
+   */
+  @Before
+  public void setUp() throws IOException {
+    directory = File.createTempFile("archive", "");
+    assertTrue("Checking temporary file", directory.delete());
+    assertTrue("Checking temporary directory", directory.mkdir());
+  }
+
+  /**
+   * Removes the files of a test.
+   */
+  @After
+  public void tearDown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  /**
+   * Tests that hours are kept after the archive is closed and opened again, including hours that
+   * made the file grow.
+   * 
+   * @throws IOException If the archive cannot be read or written.
+   */
+  @Test
+  public void testReopen() throws IOException {
+    HourArchive archive = new HourArchive(directory, UPSTREAM, FIRST_HOUR);
+    long late = FIRST_HOUR + 400 * TimeGrid.DAY;
+    archive.put(SOURCE, HourArchive.ENERGY, FIRST_HOUR, 1.5);
+    archive.put(SOURCE, HourArchive.CARBON, FIRST_HOUR, 2.5);
+    archive.put(SOURCE, HourArchive.ENERGY, late, 3.5);
+    archive.put(SOURCE, HourArchive.ENERGY, FIRST_HOUR - TimeGrid.HOUR, 4.5);
+    archive.close();
+
+    archive = new HourArchive(directory, UPSTREAM, FIRST_HOUR + TimeGrid.DAY);
+    assertEquals("Checking record count", 2, archive.getRecordCount(SOURCE));
+    assertEquals("Checking energy", 1.5, archive.get(SOURCE, HourArchive.ENERGY, FIRST_HOUR),
+        DELTA);
+    assertEquals("Checking carbon", 2.5, archive.get(SOURCE, HourArchive.CARBON, FIRST_HOUR),
+        DELTA);
+    assertEquals("Checking late hour", 3.5, archive.get(SOURCE, HourArchive.ENERGY, late), DELTA);
+    assertTrue("Checking missing carbon", Double.isNaN(archive.get(SOURCE, HourArchive.CARBON,
+        late)));
+    assertTrue("Checking hour before file", Double.isNaN(archive.get(SOURCE, HourArchive.ENERGY,
+        FIRST_HOUR - TimeGrid.HOUR)));
+    archive.close();
+  }
+
+  /**
+   * Tests that a record that was only partly written is treated as missing, and that a file with
+   * a damaged header is moved aside.
+   * 
+   * @throws IOException If the archive cannot be read or written.
+   */
+  @Test
+  public void testDamagedFile() throws IOException {
+    HourArchive archive = new HourArchive(directory, UPSTREAM, FIRST_HOUR);
+    archive.put(SOURCE, HourArchive.ENERGY, FIRST_HOUR, 1.5);
+    archive.put(SOURCE, HourArchive.ENERGY, FIRST_HOUR + TimeGrid.HOUR, 2.5);
+    archive.close();
+
+    File path = new File(directory, SOURCE + ".hours");
+    RandomAccessFile file = new RandomAccessFile(path, "rw");
+    // Change a byte of the energy of the second record, as if its write had been cut short.
+    file.seek(HourArchive.HEADER_SIZE + 24 + 5);
+    file.write(0x7F);
+    file.close();
+    archive = new HourArchive(directory, UPSTREAM, FIRST_HOUR);
+    assertEquals("Checking record count", 1, archive.getRecordCount(SOURCE));
+    assertEquals("Checking first hour", 1.5, archive.get(SOURCE, HourArchive.ENERGY, FIRST_HOUR),
+        DELTA);
+    assertTrue("Checking damaged hour", Double.isNaN(archive.get(SOURCE, HourArchive.ENERGY,
+        FIRST_HOUR + TimeGrid.HOUR)));
+    archive.close();
+
+    file = new RandomAccessFile(path, "rw");
+    file.seek(13);
+    file.write(0x7F);
+    file.close();
+    archive = new HourArchive(directory, UPSTREAM, FIRST_HOUR);
+    assertEquals("Checking new file", 0, archive.getRecordCount(SOURCE));
+    assertTrue("Checking moved file", new File(directory, SOURCE + ".hours.corrupt").isFile());
+    archive.close();
+  }
+
+  /**
+   * Tests that a file with data from another WattDepot server is refused and left as it is.
+   * 
+   * @throws IOException If the archive cannot be read or written.
+   */
+  @Test
+  public void testOtherUpstream() throws IOException {
+    HourArchive archive = new HourArchive(directory, UPSTREAM, FIRST_HOUR);
+    archive.put(SOURCE, HourArchive.ENERGY, FIRST_HOUR, 1.5);
+    archive.close();
+
+    archive = new HourArchive(directory, "http://localhost:9999/wattdepot/", FIRST_HOUR);
+    try {
+      archive.get(SOURCE, HourArchive.ENERGY, FIRST_HOUR);
+      fail("File from another server was read");
+    }
+    catch (IOException e) {
+      assertTrue("Checking message", e.getMessage().contains(UPSTREAM));
+    }
+    try {
+      archive.put(SOURCE, HourArchive.ENERGY, FIRST_HOUR, 2.5);
+      fail("File from another server was written");
+    }
+    catch (IOException e) {
+      assertTrue("Checking message", e.getMessage().contains(UPSTREAM));
+    }
+    archive.close();
+    assertFalse("Checking file not moved", new File(directory, SOURCE + ".hours.corrupt")
+        .exists());
+
+    archive = new HourArchive(directory, UPSTREAM, FIRST_HOUR);
+    assertEquals("Checking energy", 1.5, archive.get(SOURCE, HourArchive.ENERGY, FIRST_HOUR),
+        DELTA);
+    archive.close();
+  }
+
+  /**
+   * Tests that a new rollup store finds the day totals of hours that another store wrote to the
+   * same archive, as after a restart.
+   * 
+   * @throws IOException If the archive cannot be read or written.
+   */
+  @Test
+  public void testRollupStoreRestart() throws IOException {
+    HourArchive archive = new HourArchive(directory, UPSTREAM, FIRST_HOUR);
+    RollupStore store = new RollupStore(100, archive);
+    for (int i = 0; i < 24; i++) {
+      store.putHour(SOURCE, HourArchive.ENERGY, FIRST_HOUR + i * TimeGrid.HOUR, 2.0);
+    }
+    archive.close();
+
+    archive = new HourArchive(directory, UPSTREAM, FIRST_HOUR);
+    store = new RollupStore(100, archive);
+    assertEquals("Checking day", 48.0, store.getRange(SOURCE, HourArchive.ENERGY, FIRST_HOUR,
+        FIRST_HOUR + TimeGrid.DAY), DELTA);
+    assertEquals("Checking hour", 2.0, store.getHour(SOURCE, HourArchive.ENERGY, FIRST_HOUR),
+        DELTA);
+    assertEquals("Checking complete days", 1, store.getCompleteDays());
+    archive.close();
+  }
+
+}
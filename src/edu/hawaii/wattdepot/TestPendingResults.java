@@ -0,0 +1,72 @@
+package edu.hawaii.wattdepot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import org.junit.Test;
+
+/**
+ * Tests the methods in the PendingResults class.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestPendingResults {
+
+  /**
+   * Returns a future that is not started.
+   * 
+   * @param value Result of the future once it is run.
+   * @return The future.
+   */
+  private static FutureTask<String> newFuture(final String value) {
+    return new FutureTask<String>(new Callable<String>() {
+      public String call() {
+        return value;
+      }
+    });
+  }
+
+  /**
+   * Tests that a result is collected only once it is done, and only once.
+   * 
+   * @throws Exception If the result cannot be collected.
+   */
+  @Test
+  public void testCollect() throws Exception {
+    PendingResults<String> pending = new PendingResults<String>(60000L);
+    FutureTask<String> future = newFuture("chart");
+    String ticket = pending.add(future);
+    assertNull("Checking not done", pending.collect(ticket));
+    future.run();
+    assertEquals("Checking result", "chart", pending.collect(ticket).get());
+    assertEquals("Checking removed", 0, pending.size());
+    try {
+      pending.collect(ticket);
+      fail("Expected the ticket to be unknown");
+    }
+    catch (IllegalArgumentException e) {
+      assertTrue("Checking message", e.getMessage().contains(ticket));
+    }
+  }
+
+  /**
+   * Tests that futures that are not collected in time are cancelled when another one is added.
+   * 
+   * @throws InterruptedException If the test is interrupted.
+   */
+  @Test
+  public void testExpiry() throws InterruptedException {
+    PendingResults<String> pending = new PendingResults<String>(10L);
+    FutureTask<String> abandoned = newFuture("old");
+    pending.add(abandoned);
+    Thread.sleep(30L);
+    pending.add(newFuture("new"));
+    assertTrue("Checking cancelled", abandoned.isCancelled());
+    assertEquals("Checking size", 1, pending.size());
+  }
+
+}
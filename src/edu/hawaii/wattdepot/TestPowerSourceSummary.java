@@ -0,0 +1,82 @@
+package edu.hawaii.wattdepot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.junit.Test;
+import org.wattdepot.resource.property.jaxb.Properties;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.source.jaxb.Source;
+import org.wattdepot.resource.source.jaxb.SubSources;
+import org.wattdepot.resource.source.summary.jaxb.SourceSummary;
+import org.wattdepot.util.tstamp.Tstamp;
+
+/**
+ * Tests the PowerSourceSummary class that holds information about a power source.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestPowerSourceSummary {
+
+  /**
+   * Tests that the information about a power source is kept as typed values.
+   * 
+   * @throws Exception If problems occur.
+   */
+  @Test
+  public void testSummary() throws Exception {
+    Source source = new Source();
+    source.setName("SIM_KAHE");
+    source.setDescription("Kahe power plant");
+    SubSources subSources = new SubSources();
+    subSources.getHref().add("http://localhost/wattdepot/sources/SIM_KAHE_1");
+    subSources.getHref().add("http://localhost/wattdepot/sources/SIM_KAHE_2");
+    source.setSubSources(subSources);
+    Properties properties = new Properties();
+    properties.getProperty().add(new Property("carbonIntensity", "2240"));
+    properties.getProperty().add(new Property("fuelType", "LSFO"));
+    source.setProperties(properties);
+
+    SourceSummary sourceSummary = new SourceSummary();
+    sourceSummary.setFirstSensorData(Tstamp.makeTimestamp("2009-10-29T00:00:00.000-10:00"));
+    sourceSummary.setLastSensorData(Tstamp.makeTimestamp("2009-12-31T23:45:00.000-10:00"));
+    sourceSummary.setTotalSensorDatas(9504L);
+
+    PowerSourceSummary summary = new PowerSourceSummary(source, sourceSummary);
+    assertEquals("Name", "SIM_KAHE", summary.getName());
+    assertEquals("Subsources", Arrays.asList("SIM_KAHE_1", "SIM_KAHE_2"), summary.getSubsources());
+    assertEquals("Properties in order", Arrays.asList("carbonIntensity", "fuelType"),
+        Arrays.asList(summary.getProperties().keySet().toArray()));
+    assertEquals("Fuel type", "LSFO", summary.getProperties().get("fuelType"));
+    assertEquals("Earliest data", 29, summary.getEarliestData().getDay());
+    assertEquals("Latest data", 23, summary.getLatestData().getHour());
+    assertEquals("Total data points", 9504L, summary.getTotalDataPoints());
+
+    XMLGregorianCalendar copy = summary.getLatestData();
+    assertNotSame("Copy", copy, summary.getLatestData());
+    copy.setDay(1);
+    assertEquals("Unchanged", 31, summary.getLatestData().getDay());
+  }
+
+  /**
+   * Tests a power source without subsources or properties.
+   * 
+   * @throws Exception If problems occur.
+   */
+  @Test
+  public void testEmptySummary() throws Exception {
+    Source source = new Source();
+    source.setName("SIM_WAIAU_5");
+    SourceSummary sourceSummary = new SourceSummary();
+    sourceSummary.setFirstSensorData(Tstamp.makeTimestamp("2009-10-29T00:00:00.000-10:00"));
+    sourceSummary.setLastSensorData(Tstamp.makeTimestamp("2009-10-29T00:00:00.000-10:00"));
+
+    PowerSourceSummary summary = new PowerSourceSummary(source, sourceSummary);
+    assertTrue("No subsources", summary.getSubsources().isEmpty());
+    assertTrue("No properties", summary.getProperties().isEmpty());
+  }
+
+}
@@ -0,0 +1,131 @@
+package edu.hawaii.wattdepot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+/**
+ * Tests the QueryPool class that is used to send queries to the WattDepot server in parallel.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestQueryPool {
+
+  /**
+   * Tests that results are returned in the same order as the queries and that the batch is
+   * described correctly.
+   * 
+   * @throws Exception If problems occur.
+   */
+  @Test
+  public void testResultsInOrder() throws Exception {
+    QueryPool pool = new QueryPool(4);
+    QueryBatch<Integer> batch = new QueryBatch<Integer>();
+    for (int i = 0; i < 48; i++) {
+      final int hour = i;
+      batch.add(new Callable<Integer>() {
+        public Integer call() throws InterruptedException {
+          // Later queries finish first.
+          Thread.sleep(48 - hour);
+          return hour;
+        }
+      });
+    }
+    pool.run(batch);
+
+    List<Integer> results = batch.getResults();
+    assertEquals("Checking number of results", 48, results.size());
+    for (int i = 0; i < 48; i++) {
+      assertEquals("Checking order of results", Integer.valueOf(i), results.get(i));
+    }
+    assertEquals("Checking number of queries", 48, batch.getStatistics().getQueries());
+    assertTrue("Checking queries in flight", batch.getStatistics().getPeakInFlight() <= 4);
+    assertSame("Checking last batch", batch.getStatistics(), pool.getLastStatistics());
+  }
+
+  /**
+   * Tests that a failed query is reported to the caller.
+   * 
+   * @throws Exception If problems occur.
+   */
+  @Test
+  public void testFailedQuery() throws Exception {
+    QueryPool pool = new QueryPool(2);
+    QueryBatch<Integer> batch = new QueryBatch<Integer>();
+    batch.add(new Callable<Integer>() {
+      public Integer call() {
+        throw new IllegalStateException("No data");
+      }
+    });
+    try {
+      pool.run(batch);
+      fail("Checking if failed query is reported");
+    }
+    catch (ExecutionException e) {
+      assertTrue("Checking cause", e.getCause() instanceof IllegalStateException);
+    }
+    assertEquals("Checking number of queries", 1, batch.getStatistics().getQueries());
+  }
+
+  /**
+   * Tests that a submitted query runs on a thread of the pool and that its result is collected
+   * through the future.
+   * 
+   * @throws Exception If problems occur.
+   */
+  @Test
+  public void testSubmit() throws Exception {
+    QueryPool pool = new QueryPool(1);
+    final Thread caller = Thread.currentThread();
+    Future<Boolean> future = pool.submit(new Callable<Boolean>() {
+      public Boolean call() {
+        return Thread.currentThread() != caller;
+      }
+    });
+    assertTrue("Checking query ran on the pool", future.get());
+  }
+
+  /**
+   * Tests that a pool that starts a thread for each query still runs no more queries at the same
+   * time than its size. A cached pool of threads stands in for virtual threads.
+   * 
+   * @throws Exception If problems occur.
+   */
+  @Test
+  public void testPerTaskLimit() throws Exception {
+    QueryPool pool = new QueryPool(3, Executors.newCachedThreadPool());
+    assertTrue("Checking thread per query", pool.isPerTask());
+    QueryBatch<Integer> batch = new QueryBatch<Integer>();
+    for (int i = 0; i < 30; i++) {
+      final int hour = i;
+      batch.add(new Callable<Integer>() {
+        public Integer call() throws InterruptedException {
+          Thread.sleep(5);
+          return hour;
+        }
+      });
+    }
+    pool.run(batch);
+    assertEquals("Checking number of results", 30, batch.getResults().size());
+    assertTrue("Checking queries in flight", batch.getStatistics().getPeakInFlight() <= 3);
+  }
+
+  /**
+   * Tests that asking for virtual threads on a runtime without them gives a pool of threads.
+   */
+  @Test
+  public void testVirtualThreadsFallback() {
+    QueryPool pool = new QueryPool(2, true);
+    assertEquals("Checking mode", VirtualThreads.isAvailable(), pool.isPerTask());
+    assertEquals("Checking size", 2, pool.getPoolSize());
+  }
+
+}
@@ -0,0 +1,128 @@
+package edu.hawaii.wattdepot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests the methods in the RangeFetcher class that compute hourly data from sensor data.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestRangeFetcher {
+
+  /** Number of milliseconds in fifteen minutes. */
+  private static final long FIFTEEN_MINUTES = 15L * 60L * 1000L;
+  /** Allowed difference between expected and actual values. */
+  private static final double DELTA = 0.000001;
+
+  /**
+   * Tests that a constant power reading is turned into the right amount of energy and carbon for
+   * each hour.
+   */
+  @Test
+  public void testIntegrateConstantPower() {
+    List<Long> times = new ArrayList<Long>();
+    List<Double> powers = new ArrayList<Double>();
+    for (int i = 0; i <= 8; i++) {
+      times.add(i * FIFTEEN_MINUTES);
+      powers.add(1000000.0);
+    }
+    DerivedSeries series = new DerivedSeries(0, 60, 2);
+    RangeFetcher.integrate(times, powers, 2000.0, series);
+
+    for (int i = 0; i < 2; i++) {
+      assertEquals("Checking energy", 1000000.0, series.getEnergy(i), DELTA);
+      assertEquals("Checking carbon", 2000.0, series.getCarbon(i), DELTA);
+      assertEquals("Checking carbon intensity", 2000.0, series.getIntensity(i), DELTA);
+    }
+  }
+
+  /**
+   * Tests that power that changes between readings is split correctly between two hours.
+   */
+  @Test
+  public void testIntegrateAcrossHours() {
+    List<Long> times = new ArrayList<Long>();
+    List<Double> powers = new ArrayList<Double>();
+    times.add(0L);
+    powers.add(0.0);
+    times.add(8 * FIFTEEN_MINUTES);
+    powers.add(4000.0);
+    DerivedSeries series = new DerivedSeries(0, 60, 2);
+    RangeFetcher.integrate(times, powers, 0.0, series);
+
+    // Power rises from 0 W to 2000 W in the first hour and from 2000 W to 4000 W in the next.
+    assertEquals("Checking energy in first hour", 1000.0, series.getEnergy(0), DELTA);
+    assertEquals("Checking energy in second hour", 3000.0, series.getEnergy(1), DELTA);
+  }
+
+  /**
+   * Tests that hours the readings do not reach are marked as incomplete and are not kept in the
+   * rollup store.
+   */
+  @Test
+  public void testIncompleteHours() {
+    List<Long> times = new ArrayList<Long>();
+    List<Double> powers = new ArrayList<Double>();
+    for (int i = 0; i <= 6; i++) {
+      times.add(i * FIFTEEN_MINUTES);
+      powers.add(1000.0);
+    }
+    DerivedSeries series = new DerivedSeries(0, 60, 3);
+    RangeFetcher.integrate(times, powers, 0.0, series);
+    assertTrue("Checking first hour", series.isComplete(0));
+    assertFalse("Checking second hour", series.isComplete(1));
+    assertFalse("Checking third hour", series.isComplete(2));
+    assertFalse("Checking day", series.aggregate(60 * 24).isComplete(0));
+
+    RollupStore store = new RollupStore(1);
+    store.putHours("source", "energy", "carbon", series);
+    assertEquals("Checking complete hour", 1000.0, store.getHour("source", "energy", 0), DELTA);
+    assertTrue("Checking incomplete hour",
+        Double.isNaN(store.getHour("source", "energy", 60L * 60L * 1000L)));
+
+    RangeFetcher.integrate(new ArrayList<Long>(), new ArrayList<Double>(), 0.0, series);
+    assertFalse("Checking no readings", series.isComplete(0));
+  }
+
+  /**
+   * Tests that readings before and after a series, as downloaded with a margin, are interpolated
+   * into the period between them.
+   */
+  @Test
+  public void testReadingsAroundMinute() {
+    List<Long> times = new ArrayList<Long>();
+    List<Double> powers = new ArrayList<Double>();
+    times.add(0L);
+    powers.add(0.0);
+    times.add(2 * FIFTEEN_MINUTES);
+    powers.add(1800000.0);
+    DerivedSeries series = new DerivedSeries(FIFTEEN_MINUTES, 1, 1);
+    RangeFetcher.integrate(times, powers, 0.0, series);
+
+    // Power rises by 1000 W each second, so it goes from 900 kW to 960 kW in the minute.
+    assertTrue("Checking minute", series.isComplete(0));
+    assertEquals("Checking energy in minute", 15500.0, series.getEnergy(0), DELTA);
+  }
+
+  /**
+   * Tests that hours are combined into days.
+   */
+  @Test
+  public void testAggregate() {
+    DerivedSeries hourly = new DerivedSeries(0, 60, 30);
+    for (int i = 0; i < 30; i++) {
+      hourly.add(i, 1.0, 2.0);
+    }
+    DerivedSeries daily = hourly.aggregate(60 * 24);
+    assertEquals("Checking number of days", 2, daily.size());
+    assertEquals("Checking energy in first day", 24.0, daily.getEnergy(0), DELTA);
+    assertEquals("Checking carbon in second day", 12.0, daily.getCarbon(1), DELTA);
+  }
+
+}
@@ -0,0 +1,64 @@
+package edu.hawaii.wattdepot;
+
+import static org.junit.Assert.assertEquals;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Tests the RequestCoalescer class that shares the result of identical requests.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestRequestCoalescer {
+
+  /**
+   * Tests that identical requests made at the same time are sent only once.
+   * 
+   * @throws Exception If problems occur.
+   */
+  @Test
+  public void testIdenticalRequestsSentOnce() throws Exception {
+    final RequestCoalescer<Double> coalescer = new RequestCoalescer<Double>();
+    final AtomicInteger requestsSent = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch(1);
+    final Callable<Double> request = new Callable<Double>() {
+      public Double call() throws InterruptedException {
+        requestsSent.incrementAndGet();
+        release.await();
+        return 1985.49;
+      }
+    };
+
+    ExecutorService users = Executors.newFixedThreadPool(10);
+    List<Future<Double>> results = new ArrayList<Future<Double>>();
+    for (int i = 0; i < 10; i++) {
+      results.add(users.submit(new Callable<Double>() {
+        public Double call() throws Exception {
+          return coalescer.execute("SIM_OAHU_GRID|carbon", request);
+        }
+      }));
+    }
+    // Wait until every user is waiting for the outstanding request.
+    while (coalescer.getSent() + coalescer.getCoalesced() < 10) {
+      Thread.sleep(10);
+    }
+    release.countDown();
+
+    for (Future<Double> result : results) {
+      assertEquals("Checking shared result", 1985.49, result.get(), 0.0);
+    }
+    users.shutdown();
+    assertEquals("Checking requests sent", 1, requestsSent.get());
+    assertEquals("Checking coalesced requests", 9, coalescer.getCoalesced());
+    assertEquals("Checking outstanding requests", 0, coalescer.getOutstanding());
+  }
+
+}
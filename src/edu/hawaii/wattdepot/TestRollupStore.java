@@ -0,0 +1,108 @@
+package edu.hawaii.wattdepot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests the methods in the RollupStore class.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestRollupStore {
+
+  /** Allowed difference between expected and actual values. */
+  private static final double DELTA = 0.000001;
+  /** Name of the power source used in the tests. */
+  private static final String SOURCE = "SIM_KAHE";
+  /** Type of data used in the tests. */
+  private static final String METRIC = "energy";
+
+  /**
+   * Adds an hour for every hour of some days, with the hour of the day as its value.
+   * 
+   * @param store The store.
+   * @param start Start of the first day, in milliseconds since the epoch.
+   * @param days Number of days.
+   */
+  private static void fill(RollupStore store, long start, int days) {
+    for (int i = 0; i < days * 24; i++) {
+      store.putHour(SOURCE, METRIC, start + i * TimeGrid.HOUR, i % 24);
+    }
+  }
+
+  /**
+   * Tests that the totals of days and weeks follow from the hours as they arrive, and that
+   * replacing an hour updates the total of its day.
+   */
+  @Test
+  public void testDayAndWeekTotals() {
+    RollupStore store = new RollupStore(100);
+    long start = TimeGrid.parseDay("2009-12-01");
+    fill(store, start, 7);
+    // 0 + 1 + ... + 23 = 276.
+    assertEquals("Checking day", 276.0, store.getRange(SOURCE, METRIC, start, start
+        + TimeGrid.DAY), DELTA);
+    assertEquals("Checking week", 7 * 276.0, store.getRange(SOURCE, METRIC, start, start
+        + TimeGrid.WEEK), DELTA);
+    assertEquals("Checking hours across midnight", 23.0 + 0.0 + 1.0, store.getRange(SOURCE,
+        METRIC, start + 23 * TimeGrid.HOUR, start + 26 * TimeGrid.HOUR), DELTA);
+
+    store.putHour(SOURCE, METRIC, start + 5 * TimeGrid.HOUR, 105.0);
+    assertEquals("Checking replaced hour", 376.0, store.getRange(SOURCE, METRIC, start, start
+        + TimeGrid.DAY), DELTA);
+    assertEquals("Checking complete days", 7, store.getCompleteDays());
+  }
+
+  /**
+   * Tests that a range with a missing hour has no total.
+   */
+  @Test
+  public void testMissingHour() {
+    RollupStore store = new RollupStore(100);
+    long start = TimeGrid.parseDay("2009-12-01");
+    for (int i = 0; i < 24; i++) {
+      if (i != 12) {
+        store.putHour(SOURCE, METRIC, start + i * TimeGrid.HOUR, 1.0);
+      }
+    }
+    assertTrue("Checking day", Double.isNaN(store.getRange(SOURCE, METRIC, start, start
+        + TimeGrid.DAY)));
+    assertEquals("Checking missing hours", 1, store.getMissingHours(SOURCE, METRIC, start, start
+        + TimeGrid.DAY));
+    assertEquals("Checking morning", 12.0, store.getRange(SOURCE, METRIC, start, start + 12
+        * TimeGrid.HOUR), DELTA);
+    assertTrue("Checking other type of data", Double.isNaN(store.getHour(SOURCE, "carbon",
+        start)));
+  }
+
+  /**
+   * Tests that hours that are not over yet or do not start on the hour are not kept.
+   */
+  @Test
+  public void testHoursNotKept() {
+    RollupStore store = new RollupStore(100);
+    long now = System.currentTimeMillis();
+    long thisHour = now - now % TimeGrid.HOUR;
+    assertFalse("Checking current hour", store.putHour(SOURCE, METRIC, thisHour, 1.0));
+    assertFalse("Checking unaligned hour", store.putHour(SOURCE, METRIC, thisHour
+        - TimeGrid.DAY + TimeGrid.MINUTE, 1.0));
+    assertTrue("Checking last hour", store.putHour(SOURCE, METRIC, thisHour - TimeGrid.HOUR, 1.0));
+  }
+
+  /**
+   * Tests that the least recently used day is removed when a power source has too many days.
+   */
+  @Test
+  public void testLeastRecentlyUsedDayRemoved() {
+    RollupStore store = new RollupStore(2);
+    long start = TimeGrid.parseDay("2009-12-01");
+    fill(store, start, 3);
+    assertTrue("Checking first day", Double.isNaN(store.getHour(SOURCE, METRIC, start)));
+    assertEquals("Checking last day", 276.0, store.getRange(SOURCE, METRIC, start + 2
+        * TimeGrid.DAY, start + 3 * TimeGrid.DAY), DELTA);
+  }
+
+}
@@ -0,0 +1,177 @@
+package edu.hawaii.wattdepot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.client.WattDepotClientException;
+import org.wattdepot.resource.source.jaxb.Source;
+import org.wattdepot.resource.source.jaxb.SubSources;
+
+/**
+ * Tests the SourceGraph class that holds the power sources and their subsources.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestSourceGraph {
+
+  /** Prefix of the URI of each power source. */
+  private static final String SOURCES_URI = "http://localhost/wattdepot/sources/";
+
+  /**
+   * Client that serves a small, made-up hierarchy of power sources and counts the requests.
+   */
+  private static class FakeClient extends WattDepotClient {
+
+    /** Power sources by name. */
+    private final Map<String, Source> sources = new HashMap<String, Source>();
+    /** Number of power sources requested. */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * Creates a client that serves SIM_GRID, which is made of SIM_PLANT and SIM_WIND, where
+     * SIM_PLANT is made of SIM_PLANT_1 and SIM_PLANT_2.
+     */
+    FakeClient() {
+      super(SOURCES_URI);
+      add("SIM_GRID", "SIM_PLANT", "SIM_WIND");
+      add("SIM_PLANT", "SIM_PLANT_1", "SIM_PLANT_2");
+      add("SIM_WIND");
+      add("SIM_PLANT_1");
+      add("SIM_PLANT_2");
+    }
+
+    /**
+     * Adds a power source, which is virtual if it has subsources.
+     * 
+     * @param name Name of the power source.
+     * @param children Names of its subsources.
+     */
+    private void add(String name, String... children) {
+      Source source = new Source();
+      source.setName(name);
+      if (children.length > 0) {
+        source.setVirtual(true);
+        SubSources subSources = new SubSources();
+        for (String child : children) {
+          subSources.getHref().add(SOURCES_URI + child);
+        }
+        source.setSubSources(subSources);
+      }
+      sources.put(name, source);
+    }
+
+    /**
+     * Returns a power source.
+     * 
+     * @param name Name of the power source.
+     * @return The power source.
+     * @throws WattDepotClientException If there is no such power source.
+     */
+    @Override
+    public Source getSource(String name) throws WattDepotClientException {
+      requests.incrementAndGet();
+      Source source = sources.get(name);
+      if (source == null) {
+        throw new WattDepotClientException("No such source: " + name);
+      }
+      return source;
+    }
+  }
+
+  /**
+   * Tests that the whole hierarchy is discovered with one request per power source.
+   * 
+   * @throws Exception If problems occur.
+   */
+  @Test
+  public void testDiscover() throws Exception {
+    FakeClient client = new FakeClient();
+    SourceGraph graph = SourceGraph.discover(client, Arrays.asList("SIM_GRID"), new QueryPool(4));
+
+    assertTrue("Discovered", graph.isDiscovered());
+    assertEquals("One request per source", 5, client.requests.get());
+    assertEquals("Sorted names", Arrays.asList("SIM_GRID", "SIM_PLANT", "SIM_PLANT_1",
+        "SIM_PLANT_2", "SIM_WIND"), graph.getSourceNames());
+    assertEquals("One level", Arrays.asList("SIM_PLANT", "SIM_WIND"), graph
+        .getSubsources("SIM_GRID"));
+    assertEquals("All levels", Arrays.asList("SIM_PLANT_1", "SIM_PLANT_2", "SIM_WIND"), graph
+        .getNonVirtualSources("SIM_GRID"));
+    assertEquals("Not virtual", Arrays.asList("SIM_WIND"), graph.getNonVirtualSources("SIM_WIND"));
+    assertTrue("No subsources", graph.getSubsources("SIM_WIND").isEmpty());
+    assertEquals("No more requests", 5, client.requests.get());
+  }
+
+  /**
+   * Tests that a refresher keeps the fallback graph, with the well-known subsources, until the
+   * graph can be discovered.
+   */
+  @Test
+  public void testFallback() {
+    SourceGraphRefresher refresher =
+        new SourceGraphRefresher(new FakeClient(), Arrays.asList("SIM_MISSING"), 60);
+    SourceGraph graph = refresher.getGraph();
+    assertFalse("Not discovered", graph.isDiscovered());
+    assertTrue("Well-known sources", graph.getSourceNames().contains("SIM_OAHU_GRID"));
+    assertEquals("Well-known subsources", Arrays.asList("SIM_HONOLULU", "SIM_IPP", "SIM_KAHE",
+        "SIM_WAIAU"), graph.getSubsources("SIM_OAHU_GRID"));
+    assertEquals("Non-virtual sources", Arrays.asList("SIM_AES", "SIM_HPOWER", "SIM_KALAELOA"),
+        graph.getNonVirtualSources("SIM_IPP"));
+    assertTrue("Plant", graph.getSubsources("SIM_KAHE_1").isEmpty());
+  }
+
+  /**
+   * Tests that asking a refresher for its graph never discovers it, and that a refresh publishes
+   * the discovered graph.
+   */
+  @Test
+  public void testGetGraphDoesNotDiscover() {
+    FakeClient client = new FakeClient();
+    SourceGraphRefresher refresher =
+        new SourceGraphRefresher(client, Arrays.asList("SIM_GRID"), 60);
+    assertFalse("Fallback at first", refresher.getGraph().isDiscovered());
+    assertEquals("No requests", 0, client.requests.get());
+    assertTrue("Refreshed", refresher.refresh());
+    assertTrue("Discovered", refresher.getGraph().isDiscovered());
+    assertTrue("Discovered source", refresher.getGraph().contains("SIM_WIND"));
+  }
+
+  /**
+   * Tests that the requests made to discover the graph go through the circuit breaker, which
+   * times out a slow server and counts the failure.
+   * 
+   * @throws InterruptedException If the test is interrupted.
+   */
+  @Test
+  public void testDiscoverThroughBreaker() throws InterruptedException {
+    WattDepotClient slow = new WattDepotClient(SOURCES_URI) {
+      @Override
+      public Source getSource(String name) throws WattDepotClientException {
+        try {
+          Thread.sleep(5000L);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        throw new WattDepotClientException("Too late: " + name);
+      }
+    };
+    CircuitBreaker breaker = new CircuitBreaker(50L, 1, 60000L, 4);
+    try {
+      SourceGraph.discover(slow, Arrays.asList("SIM_GRID"), new QueryPool(2), breaker);
+      fail("Discovered from a server that does not answer");
+    }
+    catch (WattDepotClientException e) {
+      assertEquals("Timed out", 1, breaker.getTimeouts());
+      assertTrue("Circuit open", breaker.isOpen());
+    }
+  }
+
+}
@@ -0,0 +1,74 @@
+package edu.hawaii.wattdepot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.junit.Test;
+import org.wattdepot.util.tstamp.Tstamp;
+
+/**
+ * Tests the methods in the TimeGrid class.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestTimeGrid {
+
+  /**
+   * Tests that a day parsed by the grid is the same time as the timestamp the WattDepot client
+   * creates for it, and that converting it back gives an equal timestamp.
+   */
+  @Test
+  public void testParseDay() {
+    XMLGregorianCalendar expected = null;
+    try {
+      expected = Tstamp.makeTimestamp("2009-12-05");
+    }
+    catch (Exception e) {
+      fail("Timestamp cannot be created.");
+    }
+    long day = TimeGrid.parseDay("2009-12-05");
+    assertEquals("Checking milliseconds", TimeGrid.toMillis(expected), day);
+    assertEquals("Checking timestamp", expected, TimeGrid.toTimestamp(day));
+    assertEquals("Checking start of day", day, TimeGrid.startOfDay(day + 23 * TimeGrid.HOUR));
+  }
+
+  /**
+   * Tests that an invalid day is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseInvalidDay() {
+    TimeGrid.parseDay("2009-13-05");
+  }
+
+  /**
+   * Tests the dates of periods across the end of a month, a leap day and the end of a year.
+   */
+  @Test
+  public void testDates() {
+    TimeGrid days = new TimeGrid(TimeGrid.parseDay("2012-02-28"), TimeGrid.DAY, 3);
+    assertEquals("Checking leap day", "2-29", days.getDayLabel(1));
+    assertEquals("Checking first of March", "3-1", days.getDayLabel(2));
+
+    TimeGrid hours = new TimeGrid(TimeGrid.parseDay("2009-12-31"), TimeGrid.HOUR, 25);
+    assertEquals("Checking last hour of the year", 23, hours.getHourOfDay(23));
+    assertEquals("Checking year", 2010, hours.getYear(24));
+    assertEquals("Checking month", 1, hours.getMonth(24));
+    assertEquals("Checking day of month", 1, hours.getDayOfMonth(24));
+  }
+
+  /**
+   * Tests that a grid covering a range keeps the last, partial period.
+   */
+  @Test
+  public void testCovering() {
+    long start = TimeGrid.parseDay("2009-12-01");
+    assertEquals("Checking whole weeks", 2,
+        TimeGrid.covering(start, start + 14 * TimeGrid.DAY, TimeGrid.WEEK).size());
+    assertEquals("Checking partial week", 3,
+        TimeGrid.covering(start, start + 15 * TimeGrid.DAY, TimeGrid.WEEK).size());
+    assertEquals("Checking empty range", 0,
+        TimeGrid.covering(start, start, TimeGrid.WEEK).size());
+  }
+
+}
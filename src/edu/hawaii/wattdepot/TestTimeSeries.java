@@ -0,0 +1,78 @@
+package edu.hawaii.wattdepot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests the methods in the TimeSeries class.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestTimeSeries {
+
+  /** Allowed difference between expected and actual values. */
+  private static final double DELTA = 0.000001;
+
+  /**
+   * Tests that the summary leaves out missing values.
+   */
+  @Test
+  public void testStatistics() {
+    TimeSeries series =
+        new TimeSeries(0L, 60, new double[] { 3.0, Double.NaN, -1.0, 4.0, Double.NaN });
+    TimeSeries.Statistics statistics = series.getStatistics();
+    assertEquals("Checking minimum", -1.0, statistics.getMin(), DELTA);
+    assertEquals("Checking maximum", 4.0, statistics.getMax(), DELTA);
+    assertEquals("Checking mean", 2.0, statistics.getMean(), DELTA);
+    assertEquals("Checking number of values", 3, statistics.getCount());
+    assertEquals("Checking number of missing values", 2, statistics.getNanCount());
+  }
+
+  /**
+   * Tests the summary of a series without any values.
+   */
+  @Test
+  public void testEmptyStatistics() {
+    TimeSeries.Statistics statistics = TimeSeries.EMPTY.getStatistics();
+    assertTrue("Checking minimum", Double.isNaN(statistics.getMin()));
+    assertTrue("Checking maximum", Double.isNaN(statistics.getMax()));
+    assertEquals("Checking number of values", 0, statistics.getCount());
+  }
+
+  /**
+   * Tests that a builder grows past the expected size and that the times of the periods follow
+   * from the start and the step.
+   */
+  @Test
+  public void testBuilder() {
+    TimeSeries.Builder builder = new TimeSeries.Builder(1000L, 15, 2);
+    for (int i = 0; i < 5; i++) {
+      builder.add(i);
+    }
+    TimeSeries series = builder.build();
+    assertEquals("Checking size", 5, series.size());
+    assertEquals("Checking last value", 4.0, series.get(4), DELTA);
+    assertEquals("Checking start of a period", 1000L + 2 * 15 * 60 * 1000L,
+        series.getTimeMillis(2));
+    assertEquals("Checking end of the series", 1000L + 5 * 15 * 60 * 1000L, series.getEndMillis());
+  }
+
+  /**
+   * Tests that a series does not change when the array or builder it came from does.
+   */
+  @Test
+  public void testImmutable() {
+    double[] values = { 1.0, 2.0 };
+    TimeSeries series = new TimeSeries(0L, 60, values);
+    values[0] = 10.0;
+    series.toArray()[1] = 20.0;
+    List<Double> list = series.asList();
+    assertEquals("Checking size of list", 2, list.size());
+    assertEquals("Checking first value", 1.0, list.get(0), DELTA);
+    assertEquals("Checking second value", 2.0, list.get(1), DELTA);
+  }
+
+}
@@ -0,0 +1,74 @@
+package edu.hawaii.wattdepot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ * Tests the TimeSeriesCache class that caches data from the WattDepot server.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestTimeSeriesCache {
+
+  /** Power source used in the tests. */
+  private static final String SOURCE = "SIM_OAHU_GRID";
+  /** Type of data used in the tests. */
+  private static final String ENERGY = "energy";
+
+  /**
+   * Tests that values for periods that are over are found in the cache and counted as hits.
+   */
+  @Test
+  public void testHitsAndMisses() {
+    TimeSeriesCache cache = new TimeSeriesCache(10, 60000);
+    assertNull("Checking empty cache", cache.get(SOURCE, ENERGY, 0, 60));
+    cache.put(SOURCE, ENERGY, 0, 60, TimeGrid.HOUR, 42.0);
+    assertEquals("Checking cached value", 42.0, cache.get(SOURCE, ENERGY, 0, 60), 0.0);
+    assertNull("Checking other sampling interval", cache.get(SOURCE, ENERGY, 0, 1440));
+    assertEquals("Checking hits", 1, cache.getHits());
+    assertEquals("Checking misses", 2, cache.getMisses());
+  }
+
+  /**
+   * Tests that a value for a period that is not over yet expires.
+   */
+  @Test
+  public void testCurrentPeriodExpires() {
+    TimeSeriesCache cache = new TimeSeriesCache(10, 0);
+    long now = System.currentTimeMillis();
+    cache.put(SOURCE, ENERGY, now, 60, now + TimeGrid.HOUR, 42.0);
+    assertNull("Checking expired value", cache.get(SOURCE, ENERGY, now, 60));
+  }
+
+  /**
+   * Tests that an expired value is still served as the last good value when asked for.
+   */
+  @Test
+  public void testStaleValue() {
+    TimeSeriesCache cache = new TimeSeriesCache(10, 0);
+    long now = System.currentTimeMillis();
+    assertNull("Checking missing value", cache.getStale(SOURCE, ENERGY, now, 60));
+    cache.put(SOURCE, ENERGY, now, 60, now + TimeGrid.HOUR, 42.0);
+    assertNull("Checking expired value", cache.get(SOURCE, ENERGY, now, 60));
+    assertEquals("Checking stale value", 42.0, cache.getStale(SOURCE, ENERGY, now, 60), 0.0);
+    assertEquals("Checking stale hits", 1, cache.getStaleHits());
+  }
+
+  /**
+   * Tests that the least recently used value is removed when the cache is full.
+   */
+  @Test
+  public void testLeastRecentlyUsedRemoved() {
+    TimeSeriesCache cache = new TimeSeriesCache(2, 60000);
+    cache.put(SOURCE, ENERGY, 0, 60, TimeGrid.HOUR, 1.0);
+    cache.put(SOURCE, ENERGY, TimeGrid.HOUR, 60, 2 * TimeGrid.HOUR, 2.0);
+    cache.get(SOURCE, ENERGY, 0, 60);
+    cache.put(SOURCE, ENERGY, 2 * TimeGrid.HOUR, 60, 3 * TimeGrid.HOUR, 3.0);
+    assertEquals("Checking size", 2, cache.size());
+    assertNull("Checking removed value", cache.get(SOURCE, ENERGY, TimeGrid.HOUR, 60));
+    assertEquals("Checking kept value", 1.0, cache.get(SOURCE, ENERGY, 0, 60), 0.0);
+  }
+
+}
@@ -0,0 +1,187 @@
+package edu.hawaii.wattdepot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.wattdepot.client.WattDepotClientException;
+
+/**
+ * Tests the methods in the TrailingHourIntensity class.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestTrailingHourIntensity {
+
+  /** Allowed difference between expected and actual values. */
+  private static final double DELTA = 0.000001;
+  /** Start of the day used in the tests. */
+  private static final long DAY = TimeGrid.parseDay("2009-12-01");
+
+  /**
+   * Gives each minute 1000 Wh of energy and as many lbs CO2 of carbon as its number since the
+   * epoch modulo 100, and can be made to fail.
+   */
+  private static final class FakeSource implements TrailingHourIntensity.MinuteSource {
+
+    /** True to fail the next fetch. */
+    private boolean failing;
+    /** Start of the first minute whose data are not complete yet. */
+    private long incompleteFrom = Long.MAX_VALUE;
+    /** Start of a single minute whose data are not complete yet. */
+    private long incompleteMinute = Long.MIN_VALUE;
+
+    /**
+     * Returns the data of a number of minutes.
+     * 
+     * @param start Start of the first minute, in milliseconds since the epoch.
+     * @param minutes Number of minutes.
+     * @return Energy and carbon data for each minute.
+     * @throws WattDepotClientException If the source is failing.
+     */
+    public DerivedSeries fetch(long start, int minutes) throws WattDepotClientException {
+      if (failing) {
+        throw new WattDepotClientException("Failing");
+      }
+      DerivedSeries series = new DerivedSeries(start, 1, minutes);
+      for (int i = 0; i < minutes; i++) {
+        long minute = start + i * TimeGrid.MINUTE;
+        series.add(i, 1000.0, getCarbon(minute));
+        if (minute >= incompleteFrom || minute == incompleteMinute) {
+          series.setIncomplete(i);
+        }
+      }
+      return series;
+    }
+  }
+
+  /**
+   * Returns the carbon the fake source gives a minute.
+   * 
+   * @param minute Start of the minute, in milliseconds since the epoch.
+   * @return Carbon emitted in the minute, in lbs CO2.
+   */
+  private static double getCarbon(long minute) {
+    return (minute / TimeGrid.MINUTE) % 100;
+  }
+
+  /**
+   * Returns the carbon intensity over the hour before a minute, computed from scratch.
+   * 
+   * @param end End of the hour, in milliseconds since the epoch.
+   * @return Carbon intensity in lbs CO2 / MWh.
+   */
+  private static double getExpected(long end) {
+    double carbon = 0.0;
+    for (long minute = end - TimeGrid.HOUR; minute < end; minute += TimeGrid.MINUTE) {
+      carbon += getCarbon(minute);
+    }
+    return carbon / (60 * 1000.0) * 1000000.0;
+  }
+
+  /**
+   * Tests that moving the window by a few minutes fetches only those minutes and gives the same
+   * intensity as adding up the whole hour.
+   * 
+   * @throws WattDepotClientException If the data cannot be retrieved.
+   */
+  @Test
+  public void testIncrementalUpdate() throws WattDepotClientException {
+    TrailingHourIntensity intensity = new TrailingHourIntensity(new FakeSource());
+    long end = DAY + 10 * TimeGrid.HOUR;
+    assertEquals("Checking first hour", getExpected(end), intensity.update(end), DELTA);
+    assertEquals("Checking minutes fetched", 60, intensity.getMinutesFetched());
+
+    for (int i = 1; i <= 130; i++) {
+      long next = end + i * TimeGrid.MINUTE;
+      assertEquals("Checking minute " + i, getExpected(next), intensity.update(next + 5000), DELTA);
+    }
+    assertEquals("Checking minutes fetched", 60 + 130, intensity.getMinutesFetched());
+
+    long later = end + 130 * TimeGrid.MINUTE;
+    assertEquals("Checking same minute", getExpected(later), intensity.update(later), DELTA);
+    assertEquals("Checking nothing fetched", 190, intensity.getMinutesFetched());
+  }
+
+  /**
+   * Tests that the whole hour is fetched again when the window jumps ahead by more than an hour or
+   * moves back.
+   * 
+   * @throws WattDepotClientException If the data cannot be retrieved.
+   */
+  @Test
+  public void testJumps() throws WattDepotClientException {
+    TrailingHourIntensity intensity = new TrailingHourIntensity(new FakeSource());
+    long end = DAY + 10 * TimeGrid.HOUR;
+    intensity.update(end);
+    long jump = end + 3 * TimeGrid.HOUR + 7 * TimeGrid.MINUTE;
+    assertEquals("Checking jump ahead", getExpected(jump), intensity.update(jump), DELTA);
+    assertEquals("Checking back", getExpected(end), intensity.update(end), DELTA);
+    assertEquals("Checking minutes fetched", 180, intensity.getMinutesFetched());
+  }
+
+  /**
+   * Tests that minutes at the end of the window whose data are incomplete are not used and are
+   * fetched again at the next update.
+   * 
+   * @throws WattDepotClientException If the data cannot be retrieved.
+   */
+  @Test
+  public void testIncompleteMinutes() throws WattDepotClientException {
+    FakeSource source = new FakeSource();
+    TrailingHourIntensity intensity = new TrailingHourIntensity(source);
+    long end = DAY + 10 * TimeGrid.HOUR;
+    source.incompleteFrom = end - 2 * TimeGrid.MINUTE;
+    assertTrue("Checking unknown minutes", Double.isNaN(intensity.update(end)));
+    assertEquals("Checking window end", end - 2 * TimeGrid.MINUTE, intensity.getWindowEnd());
+
+    source.incompleteFrom = Long.MAX_VALUE;
+    long next = end + TimeGrid.MINUTE;
+    assertEquals("Checking filled minutes", getExpected(next), intensity.update(next), DELTA);
+    assertEquals("Checking minutes fetched", 63, intensity.getMinutesFetched());
+  }
+
+  /**
+   * Tests that a minute in the middle of the window whose data are incomplete is fetched again,
+   * along with the minutes after it, and is used once it is complete.
+   * 
+   * @throws WattDepotClientException If the data cannot be retrieved.
+   */
+  @Test
+  public void testIncompleteMiddleMinute() throws WattDepotClientException {
+    FakeSource source = new FakeSource();
+    TrailingHourIntensity intensity = new TrailingHourIntensity(source);
+    long end = DAY + 10 * TimeGrid.HOUR;
+    source.incompleteMinute = end - 30 * TimeGrid.MINUTE;
+    assertTrue("Checking unknown minute", Double.isNaN(intensity.update(end)));
+    assertEquals("Checking window end", end - 30 * TimeGrid.MINUTE, intensity.getWindowEnd());
+
+    source.incompleteMinute = Long.MIN_VALUE;
+    long next = end + TimeGrid.MINUTE;
+    assertEquals("Checking filled minute", getExpected(next), intensity.update(next), DELTA);
+    assertEquals("Checking minutes fetched", 60 + 31, intensity.getMinutesFetched());
+  }
+
+  /**
+   * Tests that the window stays where it was when the data cannot be retrieved.
+   */
+  @Test
+  public void testFailure() {
+    FakeSource source = new FakeSource();
+    TrailingHourIntensity intensity = new TrailingHourIntensity(source);
+    assertTrue("Checking empty window", Double.isNaN(intensity.getIntensity()));
+    long end = DAY + 10 * TimeGrid.HOUR;
+    try {
+      intensity.update(end);
+      source.failing = true;
+      intensity.update(end + TimeGrid.MINUTE);
+      fail("Expected the update to fail");
+    }
+    catch (WattDepotClientException e) {
+      assertEquals("Checking window end", end, intensity.getWindowEnd());
+      assertEquals("Checking intensity", getExpected(end), intensity.getIntensity(), DELTA);
+    }
+  }
+
+}
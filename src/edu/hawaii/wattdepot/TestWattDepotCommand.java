@@ -8,6 +8,9 @@ import java.util.List;
 import javax.xml.datatype.XMLGregorianCalendar;
 import org.junit.Test;
 import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.client.WattDepotClientException;
+import org.wattdepot.resource.source.jaxb.Source;
+import org.wattdepot.resource.source.summary.jaxb.SourceSummary;
 import org.wattdepot.util.tstamp.Tstamp;
 
 /**
@@ -21,8 +24,6 @@ public class TestWattDepotCommand {
   /** Holds a list of timestamps. */
   private static final List<XMLGregorianCalendar> timestamps =
       new ArrayList<XMLGregorianCalendar>();
-  /** Holds a list of data. */
-  private static final List<Double> results = new ArrayList<Double>();
 
   /**
    * Tests the getCarbonContentData method to see if length of list of timestamps is correct.
@@ -34,32 +35,37 @@ public class TestWattDepotCommand {
     WattDepotCommand command = new WattDepotCommand();
     String tstamp = "2009-11-01";
     timestamps.add(Tstamp.makeTimestamp(tstamp));
-    command.getCarbonContentData(timestamps, results);
+    TimeSeries results = command.getCarbonContentData(timestamps);
     assertTrue("Checking if length of list is not correct", command.isTimestampsListNotFilled());
+    assertTrue("Checking if no data is returned", results.isEmpty());
 
     for (int i = 0; i < 23; i++) {
       timestamps.add(Tstamp.makeTimestamp(tstamp));
     }
-    command.getCarbonContentData(timestamps, results);
+    command.getCarbonContentData(timestamps);
     assertFalse("Checking if length of list is correct", command.isTimestampsListNotFilled());
   }
 
   /**
-   * Tests the getCarbonContentData method to see if list to hold data is empty.
+   * Tests the getCarbonContentData method to see if it returns one value for each hour of the day,
+   * starting at the first timestamp.
    * 
    * @throws Exception If problems occur.
    */
   @Test
-  public void testCarbonContentDataResultsList() throws Exception {
+  public void testCarbonContentDataResults() throws Exception {
     WattDepotCommand command = new WattDepotCommand();
-    results.clear();
-    command.getCarbonContentData(timestamps, results);
-    assertFalse("Checking if list of results is empty", command.isResultsListNotEmpty());
-
-    results.clear();
-    results.add(new Double(0.0));
-    command.getCarbonContentData(timestamps, results);
-    assertTrue("Checking if list of results is not empty", command.isResultsListNotEmpty());
+    List<XMLGregorianCalendar> day = new ArrayList<XMLGregorianCalendar>();
+    XMLGregorianCalendar tstamp = Tstamp.makeTimestamp("2009-11-01");
+    for (int i = 0; i < 24; i++) {
+      day.add(Tstamp.incrementHours(tstamp, i));
+    }
+    TimeSeries results = command.getCarbonContentData(day);
+    assertFalse("Checking if an error was encountered", command.isWattDepotExceptionThrown());
+    assertEquals("Checking number of hours", 24, results.size());
+    assertEquals("Checking length of each period", 60, results.getStepMinutes());
+    assertEquals("Checking start of the day", tstamp.toGregorianCalendar().getTimeInMillis(),
+        results.getStartMillis());
   }
 
   /**
@@ -89,4 +95,74 @@ public class TestWattDepotCommand {
     assertEquals("Checking number of power sources", subsources.size(), 4);
   }
 
-}
\ No newline at end of file
+  /**
+   * Tests that the summary of a power source is retrieved through the client the command was
+   * created with, not the shared one.
+   */
+  @Test
+  public void testSummaryUsesClient() {
+    WattDepotClient client = new WattDepotClient("http://localhost/wattdepot/") {
+      @Override
+      public Source getSource(String name) {
+        Source source = new Source();
+        source.setName(name);
+        return source;
+      }
+
+      @Override
+      public SourceSummary getSourceSummary(String name) {
+        SourceSummary summary = new SourceSummary();
+        summary.setFirstSensorData(TimeGrid.toTimestamp(0L));
+        summary.setLastSensorData(TimeGrid.toTimestamp(0L));
+        summary.setTotalSensorDatas(42L);
+        return summary;
+      }
+    };
+    PowerSourceSummary summary =
+        new WattDepotCommand(client).getPowerSourceSummary("SIM_SUMMARY_CLIENT");
+    assertEquals("Checking name", "SIM_SUMMARY_CLIENT", summary.getName());
+    assertEquals("Checking total data points", 42L, summary.getTotalDataPoints());
+  }
+
+  /**
+   * Tests that the hours of a day sent in parallel that were retrieved before an hour that failed
+   * are kept, as they are when the hours are sent one after another.
+   */
+  @Test
+  public void testParallelKeepsHoursBeforeError() {
+    final long day = TimeGrid.parseDay("1999-06-01");
+    WattDepotClient client = new WattDepotClient("http://localhost/wattdepot/") {
+      @Override
+      public double getEnergyGenerated(String source, XMLGregorianCalendar startTime,
+          XMLGregorianCalendar endTime, int interval) {
+        return 1000000.0;
+      }
+
+      @Override
+      public double getCarbonEmitted(String source, XMLGregorianCalendar startTime,
+          XMLGregorianCalendar endTime, int interval) throws WattDepotClientException {
+        if (TimeGrid.toMillis(startTime) == day + 5 * TimeGrid.HOUR) {
+          throw new WattDepotClientException("No data for hour 5");
+        }
+        return 1500.0;
+      }
+    };
+    List<XMLGregorianCalendar> hours = new ArrayList<XMLGregorianCalendar>();
+    for (int i = 0; i < 24; i++) {
+      hours.add(TimeGrid.toTimestamp(day + i * TimeGrid.HOUR));
+    }
+    boolean parallel = WattDepotCommand.isParallelMode();
+    WattDepotCommand.setParallelMode(true);
+    try {
+      WattDepotCommand command = new WattDepotCommand(client);
+      TimeSeries results = command.getCarbonContentData(hours);
+      assertTrue("Checking error", command.isWattDepotExceptionThrown());
+      assertEquals("Checking hours before error", 5, results.size());
+      assertEquals("Checking first hour", 1500.0, results.get(0), 0.000001);
+    }
+    finally {
+      WattDepotCommand.setParallelMode(parallel);
+    }
+  }
+
+}
@@ -0,0 +1,327 @@
+package edu.hawaii.wattdepot;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+/**
+ * Divides a range of time into consecutive, equally long periods, such as the hours of a day or
+ * the weeks of a chart. Times are kept as milliseconds since the epoch, and dates are computed
+ * with a fixed offset from UTC, which is Hawaii-Aleutian Standard Time unless another offset is
+ * given; Hawaii does not observe daylight saving time. Stepping through a grid is simple
+ * arithmetic, so timestamps for the WattDepot client are created only when a query is sent.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public final class TimeGrid {
+
+  /** Number of milliseconds in one minute. */
+  public static final long MINUTE = 60L * 1000L;
+  /** Number of milliseconds in one hour. */
+  public static final long HOUR = 60L * MINUTE;
+  /** Number of milliseconds in one day. */
+  public static final long DAY = 24L * HOUR;
+  /** Number of milliseconds in one week. */
+  public static final long WEEK = 7L * DAY;
+  /** Offset of Hawaii-Aleutian Standard Time from UTC, in minutes. */
+  public static final int HST_OFFSET_MINUTES = -10 * 60;
+  /** Creates timestamps; factories are not guaranteed to be safe to share between threads. */
+  private static final ThreadLocal<DatatypeFactory> FACTORY = new ThreadLocal<DatatypeFactory>() {
+    /**
+     * Creates a factory for the current thread.
+     * 
+     * @return A new factory.
+     */
+    @Override
+    protected DatatypeFactory initialValue() {
+      try {
+        return DatatypeFactory.newInstance();
+      }
+      catch (DatatypeConfigurationException e) {
+        throw new IllegalStateException("Cannot create timestamps: " + e.getMessage());
+      }
+    }
+  };
+  /** Start of the first period, in milliseconds since the epoch. */
+  private final long startMillis;
+  /** Length of each period in milliseconds. */
+  private final long stepMillis;
+  /** Number of periods. */
+  private final int size;
+  /** Offset from UTC used to compute dates, in minutes. */
+  private final int offsetMinutes;
+
+  /**
+   * Creates a grid whose dates are in Hawaii-Aleutian Standard Time.
+   * 
+   * @param startMillis Start of the first period, in milliseconds since the epoch.
+   * @param stepMillis Length of each period in milliseconds.
+   * @param size Number of periods.
+   */
+  public TimeGrid(long startMillis, long stepMillis, int size) {
+    this(startMillis, stepMillis, size, HST_OFFSET_MINUTES);
+  }
+
+  /**
+   * Creates a grid.
+   * 
+   * @param startMillis Start of the first period, in milliseconds since the epoch.
+   * @param stepMillis Length of each period in milliseconds.
+   * @param size Number of periods.
+   * @param offsetMinutes Offset from UTC used to compute dates, in minutes.
+   */
+  public TimeGrid(long startMillis, long stepMillis, int size, int offsetMinutes) {
+    if (stepMillis <= 0) {
+      throw new IllegalArgumentException("Length of each period must be positive: " + stepMillis);
+    }
+    this.startMillis = startMillis;
+    this.stepMillis = stepMillis;
+    this.size = Math.max(0, size);
+    this.offsetMinutes = offsetMinutes;
+  }
+
+  /**
+   * Returns a grid whose periods start at startMillis and cover the range up to endMillis. The
+   * last period is kept even if the range ends before it is over; the grid is empty if endMillis
+   * is not after startMillis.
+   * 
+   * @param startMillis Start of the range, in milliseconds since the epoch.
+   * @param endMillis End of the range, in milliseconds since the epoch.
+   * @param stepMillis Length of each period in milliseconds.
+   * @return A grid in Hawaii-Aleutian Standard Time.
+   */
+  public static TimeGrid covering(long startMillis, long endMillis, long stepMillis) {
+    long periods = endMillis > startMillis ? (endMillis - startMillis + stepMillis - 1) / stepMillis
+        : 0;
+    return new TimeGrid(startMillis, stepMillis, (int) periods);
+  }
+
+  /**
+   * Returns the number of periods.
+   * 
+   * @return Number of periods.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the start of the first period.
+   * 
+   * @return Start of the first period, in milliseconds since the epoch.
+   */
+  public long getStartMillis() {
+    return startMillis;
+  }
+
+  /**
+   * Returns the length of each period.
+   * 
+   * @return Length of each period in milliseconds.
+   */
+  public long getStepMillis() {
+    return stepMillis;
+  }
+
+  /**
+   * Returns the end of the last period.
+   * 
+   * @return End of the last period, in milliseconds since the epoch.
+   */
+  public long getEndMillis() {
+    return get(size);
+  }
+
+  /**
+   * Returns the start of a period, which is also the end of the period before it.
+   * 
+   * @param index Index of the period, from 0 to the number of periods.
+   * @return Start of the period, in milliseconds since the epoch.
+   */
+  public long get(int index) {
+    return startMillis + index * stepMillis;
+  }
+
+  /**
+   * Returns the year in which a period starts.
+   * 
+   * @param index Index of the period.
+   * @return The year.
+   */
+  public int getYear(int index) {
+    return toDate(getLocalDay(get(index), offsetMinutes))[0];
+  }
+
+  /**
+   * Returns the month in which a period starts.
+   * 
+   * @param index Index of the period.
+   * @return The month, from 1 to 12.
+   */
+  public int getMonth(int index) {
+    return toDate(getLocalDay(get(index), offsetMinutes))[1];
+  }
+
+  /**
+   * Returns the day of the month on which a period starts.
+   * 
+   * @param index Index of the period.
+   * @return The day of the month, from 1 to 31.
+   */
+  public int getDayOfMonth(int index) {
+    return toDate(getLocalDay(get(index), offsetMinutes))[2];
+  }
+
+  /**
+   * Returns the hour of the day at which a period starts.
+   * 
+   * @param index Index of the period.
+   * @return The hour, from 0 to 23.
+   */
+  public int getHourOfDay(int index) {
+    long local = get(index) + offsetMinutes * MINUTE;
+    return (int) ((local - getLocalDay(get(index), offsetMinutes) * DAY) / HOUR);
+  }
+
+  /**
+   * Returns the month and day on which a period starts, such as 12-5 for December 5th, as shown
+   * under the charts.
+   * 
+   * @param index Index of the period.
+   * @return The month and day.
+   */
+  public String getDayLabel(int index) {
+    int[] date = toDate(getLocalDay(get(index), offsetMinutes));
+    return date[1] + "-" + date[2];
+  }
+
+  /**
+   * Returns the start of a period as a timestamp for the WattDepot client.
+   * 
+   * @param index Index of the period, from 0 to the number of periods.
+   * @return The timestamp.
+   */
+  public XMLGregorianCalendar toTimestamp(int index) {
+    return toTimestamp(get(index), offsetMinutes);
+  }
+
+  /**
+   * Converts milliseconds since the epoch to a timestamp in Hawaii-Aleutian Standard Time.
+   * 
+   * @param millis Milliseconds since the epoch.
+   * @return The timestamp.
+   */
+  public static XMLGregorianCalendar toTimestamp(long millis) {
+    return toTimestamp(millis, HST_OFFSET_MINUTES);
+  }
+
+  /**
+   * Converts milliseconds since the epoch to a timestamp with the given offset from UTC.
+   * 
+   * @param millis Milliseconds since the epoch.
+   * @param offsetMinutes Offset from UTC, in minutes.
+   * @return The timestamp.
+   */
+  public static XMLGregorianCalendar toTimestamp(long millis, int offsetMinutes) {
+    long day = getLocalDay(millis, offsetMinutes);
+    int[] date = toDate(day);
+    int time = (int) (millis + offsetMinutes * MINUTE - day * DAY);
+    return FACTORY.get().newXMLGregorianCalendar(date[0], date[1], date[2], time / (int) HOUR,
+        time / (int) MINUTE % 60, time / 1000 % 60, time % 1000, offsetMinutes);
+  }
+
+  /**
+   * Converts a timestamp to milliseconds since the epoch.
+   * 
+   * @param tstamp A timestamp.
+   * @return Milliseconds since the epoch.
+   */
+  public static long toMillis(XMLGregorianCalendar tstamp) {
+    return tstamp.toGregorianCalendar().getTimeInMillis();
+  }
+
+  /**
+   * Returns the start of the day in Hawaii-Aleutian Standard Time that contains the given time.
+   * 
+   * @param millis Milliseconds since the epoch.
+   * @return Midnight at the start of the day, in milliseconds since the epoch.
+   */
+  public static long startOfDay(long millis) {
+    return getLocalDay(millis, HST_OFFSET_MINUTES) * DAY - HST_OFFSET_MINUTES * MINUTE;
+  }
+
+  /**
+   * Returns the start of a day in Hawaii-Aleutian Standard Time.
+   * 
+   * @param day The day, in yyyy-MM-dd format.
+   * @return Midnight at the start of the day, in milliseconds since the epoch.
+   * @throws IllegalArgumentException If the day is not in yyyy-MM-dd format.
+   */
+  public static long parseDay(String day) {
+    String[] parts = day.trim().split("-");
+    if (parts.length != 3) {
+      throw new IllegalArgumentException("Day is not in yyyy-MM-dd format: " + day);
+    }
+    int year = Integer.parseInt(parts[0]);
+    int month = Integer.parseInt(parts[1]);
+    int dayOfMonth = Integer.parseInt(parts[2]);
+    if (month < 1 || month > 12 || dayOfMonth < 1 || dayOfMonth > 31) {
+      throw new IllegalArgumentException("Day is not in yyyy-MM-dd format: " + day);
+    }
+    return toDay(year, month, dayOfMonth) * DAY - HST_OFFSET_MINUTES * MINUTE;
+  }
+
+  /**
+   * Returns the number of days between the epoch and the day that contains the given time, at
+   * the given offset from UTC.
+   * 
+   * @param millis Milliseconds since the epoch.
+   * @param offsetMinutes Offset from UTC, in minutes.
+   * @return Number of days since the epoch, rounded down.
+   */
+  private static long getLocalDay(long millis, int offsetMinutes) {
+    long local = millis + offsetMinutes * MINUTE;
+    long day = local / DAY;
+    return (local % DAY < 0) ? day - 1 : day;
+  }
+
+  /**
+   * Returns the year, month and day of a number of days since the epoch, in the proleptic
+   * Gregorian calendar.
+   * 
+   * @param day Number of days since the epoch.
+   * @return The year, the month from 1 to 12, and the day from 1 to 31.
+   */
+  private static int[] toDate(long day) {
+    long shifted = day + 719468L;
+    long era = (shifted >= 0 ? shifted : shifted - 146096L) / 146097L;
+    long dayOfEra = shifted - era * 146097L;
+    long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    // Months are counted from March so that the leap day is at the end of the year.
+    long monthFromMarch = (5 * dayOfYear + 2) / 153;
+    int dayOfMonth = (int) (dayOfYear - (153 * monthFromMarch + 2) / 5 + 1);
+    int month = (int) (monthFromMarch < 10 ? monthFromMarch + 3 : monthFromMarch - 9);
+    int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+    return new int[] { year, month, dayOfMonth };
+  }
+
+  /**
+   * Returns the number of days since the epoch of a date in the proleptic Gregorian calendar.
+   * 
+   * @param year The year.
+   * @param month The month, from 1 to 12.
+   * @param dayOfMonth The day of the month, from 1 to 31.
+   * @return Number of days since the epoch.
+   */
+  private static long toDay(int year, int month, int dayOfMonth) {
+    long y = month <= 2 ? year - 1 : year;
+    long era = (y >= 0 ? y : y - 399) / 400;
+    long yearOfEra = y - era * 400;
+    long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + dayOfMonth - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097L + dayOfEra - 719468L;
+  }
+
+}
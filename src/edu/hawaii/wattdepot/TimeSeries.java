@@ -0,0 +1,373 @@
+package edu.hawaii.wattdepot;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Holds one value for each of consecutive, equally long periods of time, such as the hourly carbon
+ * intensity of a day or the daily energy of a month. The values are kept in an array of primitive
+ * doubles, and a missing value is stored as NaN. A series cannot be changed once it is built.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public final class TimeSeries implements Serializable {
+
+  /** Support serialization. */
+  private static final long serialVersionUID = 1L;
+  /** A series without any values. */
+  public static final TimeSeries EMPTY = new TimeSeries(0L, 60, new double[0]);
+  /** Start of the first period, in milliseconds since the epoch. */
+  private final long startMillis;
+  /** Length of each period in minutes. */
+  private final int stepMinutes;
+  /** Value of each period. */
+  private final double[] values;
+  /** Summary of the values, computed the first time it is needed. */
+  private transient Statistics statistics;
+
+  /**
+   * Creates a series with a copy of the given values.
+   * 
+   * @param startMillis Start of the first period, in milliseconds since the epoch.
+   * @param stepMinutes Length of each period in minutes.
+   * @param values Value of each period.
+   */
+  public TimeSeries(long startMillis, int stepMinutes, double[] values) {
+    this(startMillis, stepMinutes, values, values.length);
+  }
+
+  /**
+   * Creates a series with a copy of the first values of an array.
+   * 
+   * @param startMillis Start of the first period, in milliseconds since the epoch.
+   * @param stepMinutes Length of each period in minutes.
+   * @param values Value of each period.
+   * @param size Number of values to copy.
+   */
+  private TimeSeries(long startMillis, int stepMinutes, double[] values, int size) {
+    this.startMillis = startMillis;
+    this.stepMinutes = stepMinutes;
+    this.values = Arrays.copyOf(values, size);
+  }
+
+  /**
+   * Returns the number of periods in this series.
+   * 
+   * @return Number of periods.
+   */
+  public int size() {
+    return values.length;
+  }
+
+  /**
+   * Returns true if this series has no periods, false otherwise.
+   * 
+   * @return True if this series has no periods, false otherwise.
+   */
+  public boolean isEmpty() {
+    return values.length == 0;
+  }
+
+  /**
+   * Returns the value of a period.
+   * 
+   * @param index Index of the period.
+   * @return Value of the period, or NaN if it is missing.
+   */
+  public double get(int index) {
+    return values[index];
+  }
+
+  /**
+   * Returns the start of the first period.
+   * 
+   * @return Start of the first period, in milliseconds since the epoch.
+   */
+  public long getStartMillis() {
+    return startMillis;
+  }
+
+  /**
+   * Returns the length of each period.
+   * 
+   * @return Length of each period in minutes.
+   */
+  public int getStepMinutes() {
+    return stepMinutes;
+  }
+
+  /**
+   * Returns the start of a period.
+   * 
+   * @param index Index of the period.
+   * @return Start of the period, in milliseconds since the epoch.
+   */
+  public long getTimeMillis(int index) {
+    return startMillis + (long) index * stepMinutes * TimeGrid.MINUTE;
+  }
+
+  /**
+   * Returns the end of the last period.
+   * 
+   * @return End of the last period, in milliseconds since the epoch.
+   */
+  public long getEndMillis() {
+    return getTimeMillis(values.length);
+  }
+
+  /**
+   * Returns a copy of the values of this series.
+   * 
+   * @return Value of each period.
+   */
+  public double[] toArray() {
+    return values.clone();
+  }
+
+  /**
+   * Returns the smallest and largest values of this series, their mean, and the number of missing
+   * values, which are all found in one pass over the series.
+   * 
+   * @return Summary of the values.
+   */
+  public Statistics getStatistics() {
+    Statistics result = statistics;
+    if (result == null) {
+      result = new Statistics(values);
+      statistics = result;
+    }
+    return result;
+  }
+
+  /**
+   * Returns a read-only list view of this series, for components that show one row per period.
+   * Each value is boxed only when it is read.
+   * 
+   * @return The values of this series as a list.
+   */
+  public List<Double> asList() {
+    return new ValueList(values);
+  }
+
+  /**
+   * Returns a one-line description of this series.
+   * 
+   * @return A one-line description of this series.
+   */
+  @Override
+  public String toString() {
+    return String.format("%d x %d min from %d: %s", values.length, stepMinutes, startMillis,
+        getStatistics());
+  }
+
+  /**
+   * Summary of the values of a series. Missing values are left out of the minimum, maximum and
+   * mean, which are NaN if every value is missing.
+   */
+  public static final class Statistics {
+
+    /** Smallest value. */
+    private final double min;
+    /** Largest value. */
+    private final double max;
+    /** Mean of the values. */
+    private final double mean;
+    /** Number of values that are not missing. */
+    private final int count;
+    /** Number of missing values. */
+    private final int nanCount;
+
+    /**
+     * Computes the summary of the given values in one pass.
+     * 
+     * @param values Values of a series.
+     */
+    Statistics(double[] values) {
+      double smallest = Double.POSITIVE_INFINITY;
+      double largest = Double.NEGATIVE_INFINITY;
+      double sum = 0.0;
+      int missing = 0;
+      for (double value : values) {
+        if (Double.isNaN(value)) {
+          missing++;
+          continue;
+        }
+        if (value < smallest) {
+          smallest = value;
+        }
+        if (value > largest) {
+          largest = value;
+        }
+        sum += value;
+      } // end for
+      this.nanCount = missing;
+      this.count = values.length - missing;
+      this.min = count == 0 ? Double.NaN : smallest;
+      this.max = count == 0 ? Double.NaN : largest;
+      this.mean = count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * Returns the smallest value.
+     * 
+     * @return Smallest value, or NaN if there are no values.
+     */
+    public double getMin() {
+      return min;
+    }
+
+    /**
+     * Returns the largest value.
+     * 
+     * @return Largest value, or NaN if there are no values.
+     */
+    public double getMax() {
+      return max;
+    }
+
+    /**
+     * Returns the mean of the values.
+     * 
+     * @return Mean of the values, or NaN if there are no values.
+     */
+    public double getMean() {
+      return mean;
+    }
+
+    /**
+     * Returns the number of values that are not missing.
+     * 
+     * @return Number of values that are not missing.
+     */
+    public int getCount() {
+      return count;
+    }
+
+    /**
+     * Returns the number of missing values.
+     * 
+     * @return Number of missing values.
+     */
+    public int getNanCount() {
+      return nanCount;
+    }
+
+    /**
+     * Returns a one-line description of the summary.
+     * 
+     * @return A one-line description of the summary.
+     */
+    @Override
+    public String toString() {
+      return String.format("min %.2f, max %.2f, mean %.2f, %d missing", min, max, mean, nanCount);
+    }
+  }
+
+  /**
+   * Collects the values of a series one period at a time, for code that does not know in advance
+   * how many periods there will be, such as a loop that stops at the first error.
+   */
+  public static final class Builder {
+
+    /** Start of the first period, in milliseconds since the epoch. */
+    private final long startMillis;
+    /** Length of each period in minutes. */
+    private final int stepMinutes;
+    /** Values collected so far; only the first size are used. */
+    private double[] values;
+    /** Number of values collected so far. */
+    private int size;
+
+    /**
+     * Creates a builder for a series.
+     * 
+     * @param startMillis Start of the first period, in milliseconds since the epoch.
+     * @param stepMinutes Length of each period in minutes.
+     * @param expectedSize Number of periods the series will most likely have.
+     */
+    public Builder(long startMillis, int stepMinutes, int expectedSize) {
+      this.startMillis = startMillis;
+      this.stepMinutes = stepMinutes;
+      this.values = new double[Math.max(1, expectedSize)];
+    }
+
+    /**
+     * Adds the value of the next period.
+     * 
+     * @param value Value of the period, or NaN if it is missing.
+     * @return This builder.
+     */
+    public Builder add(double value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+      return this;
+    }
+
+    /**
+     * Returns the number of values added so far.
+     * 
+     * @return Number of values added so far.
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Creates a series with the values added so far.
+     * 
+     * @return The series.
+     */
+    public TimeSeries build() {
+      return new TimeSeries(startMillis, stepMinutes, values, size);
+    }
+  }
+
+  /**
+   * Read-only list view of the values of a series.
+   */
+  private static final class ValueList extends AbstractList<Double> implements RandomAccess,
+      Serializable {
+
+    /** Support serialization. */
+    private static final long serialVersionUID = 1L;
+    /** Values of the series, which are never changed. */
+    private final double[] values;
+
+    /**
+     * Creates a view of the given values.
+     * 
+     * @param values Values of a series.
+     */
+    ValueList(double[] values) {
+      this.values = values;
+    }
+
+    /**
+     * Returns the value of a period.
+     * 
+     * @param index Index of the period.
+     * @return Value of the period.
+     */
+    @Override
+    public Double get(int index) {
+      return values[index];
+    }
+
+    /**
+     * Returns the number of periods.
+     * 
+     * @return Number of periods.
+     */
+    @Override
+    public int size() {
+      return values.length;
+    }
+  }
+
+}
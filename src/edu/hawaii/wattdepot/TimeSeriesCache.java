@@ -0,0 +1,285 @@
+package edu.hawaii.wattdepot;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches data from the WattDepot server for all users of this web application. Each value is
+ * stored under the power source, the type of data, the start of the period, and the sampling
+ * interval. Data for periods that are over never change, so they are kept until the cache is full,
+ * at which point the least recently used data are removed. Data for a period that is not over yet
+ * are served only for a short time; after that they are kept as the last good data, which can
+ * still be served, marked as stale, while the WattDepot server is not responding.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TimeSeriesCache {
+
+  /** Number of values the shared cache holds if the system property is not set. */
+  public static final int DEFAULT_MAX_SIZE = 100000;
+  /** Number of milliseconds to keep data for a period that is not over yet. */
+  public static final long DEFAULT_TIME_TO_LIVE = 60L * 1000L;
+  /** Cache shared by all users of this web application. */
+  private static final TimeSeriesCache SHARED =
+      new TimeSeriesCache(Integer.getInteger("carbonometer.cacheSize", DEFAULT_MAX_SIZE),
+          DEFAULT_TIME_TO_LIVE);
+  /** Number of values this cache holds before the least recently used ones are removed. */
+  private final int maxSize;
+  /** Number of milliseconds to keep data for a period that is not over yet. */
+  private final long timeToLive;
+  /** Holds the cached values, from least to most recently used. */
+  private final Map<BucketKey, CachedValue> entries;
+  /** Number of values that were found in this cache. */
+  private final AtomicLong hits = new AtomicLong();
+  /** Number of values that were not found in this cache. */
+  private final AtomicLong misses = new AtomicLong();
+  /** Number of expired values that were served because they could not be retrieved again. */
+  private final AtomicLong staleHits = new AtomicLong();
+
+  /**
+   * Creates a cache.
+   * 
+   * @param maxSize Number of values to hold before the least recently used ones are removed.
+   * @param timeToLive Number of milliseconds to keep data for a period that is not over yet.
+   */
+  public TimeSeriesCache(final int maxSize, long timeToLive) {
+    this.maxSize = maxSize;
+    this.timeToLive = timeToLive;
+    this.entries = new LinkedHashMap<BucketKey, CachedValue>(1024, 0.75f, true) {
+      /** Support serialization. */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Removes the least recently used value when the cache is full.
+       * 
+       * @param eldest Least recently used value.
+       * @return True if the cache is full, false otherwise.
+       */
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<BucketKey, CachedValue> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Returns the cache shared by all users of this web application.
+   * 
+   * @return The shared cache.
+   */
+  public static TimeSeriesCache getSharedCache() {
+    return SHARED;
+  }
+
+  /**
+   * Returns a cached value, or null if the value is not in the cache or has expired. An expired
+   * value is kept, so that {@link #getStale} can still return it.
+   * 
+   * @param source Name of a power source.
+   * @param metric Type of data, such as energy or carbon.
+   * @param bucketStart Start of the period, in milliseconds since the epoch.
+   * @param samplingInterval Sampling interval in minutes.
+   * @return The cached value, or null.
+   */
+  public Double get(String source, String metric, long bucketStart, int samplingInterval) {
+    BucketKey key = new BucketKey(source, metric, bucketStart, samplingInterval);
+    CachedValue entry;
+    synchronized (entries) {
+      entry = entries.get(key);
+      if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+        entry = null;
+      }
+    }
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return entry.value;
+  }
+
+  /**
+   * Returns the last value stored in the cache, even if it has expired. Used when the value cannot
+   * be retrieved from the WattDepot server.
+   * 
+   * @param source Name of a power source.
+   * @param metric Type of data, such as energy or carbon.
+   * @param bucketStart Start of the period, in milliseconds since the epoch.
+   * @param samplingInterval Sampling interval in minutes.
+   * @return The last value stored, or null if there is none.
+   */
+  public Double getStale(String source, String metric, long bucketStart, int samplingInterval) {
+    CachedValue entry;
+    synchronized (entries) {
+      entry = entries.get(new BucketKey(source, metric, bucketStart, samplingInterval));
+    }
+    if (entry == null) {
+      return null;
+    }
+    staleHits.incrementAndGet();
+    return entry.value;
+  }
+
+  /**
+   * Stores a value in the cache.
+   * 
+   * @param source Name of a power source.
+   * @param metric Type of data, such as energy or carbon.
+   * @param bucketStart Start of the period, in milliseconds since the epoch.
+   * @param samplingInterval Sampling interval in minutes.
+   * @param bucketEnd End of the period, in milliseconds since the epoch.
+   * @param value Value to store.
+   */
+  public void put(String source, String metric, long bucketStart, int samplingInterval,
+      long bucketEnd, double value) {
+    long now = System.currentTimeMillis();
+    long expiresAt = (bucketEnd <= now) ? Long.MAX_VALUE : now + timeToLive;
+    synchronized (entries) {
+      entries.put(new BucketKey(source, metric, bucketStart, samplingInterval),
+          new CachedValue(value, expiresAt));
+    }
+  }
+
+  /**
+   * Removes all values from the cache.
+   */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  /**
+   * Returns the number of values in the cache.
+   * 
+   * @return Number of values in the cache.
+   */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * Returns the number of values that were found in the cache.
+   * 
+   * @return Number of hits.
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of values that were not found in the cache.
+   * 
+   * @return Number of misses.
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the number of expired values that were served because they could not be retrieved
+   * again.
+   * 
+   * @return Number of stale hits.
+   */
+  public long getStaleHits() {
+    return staleHits.get();
+  }
+
+  /**
+   * Returns a one-line description of the cache.
+   * 
+   * @return A one-line description of the cache.
+   */
+  @Override
+  public String toString() {
+    return String.format("%d of %d values, %d hits, %d misses, %d stale hits", size(), maxSize,
+        getHits(), getMisses(), getStaleHits());
+  }
+
+  /**
+   * Identifies one value in the cache.
+   */
+  private static final class BucketKey {
+
+    /** Name of a power source. */
+    private final String source;
+    /** Type of data. */
+    private final String metric;
+    /** Start of the period, in milliseconds since the epoch. */
+    private final long bucketStart;
+    /** Sampling interval in minutes. */
+    private final int samplingInterval;
+
+    /**
+     * Creates a key.
+     * 
+     * @param source Name of a power source.
+     * @param metric Type of data.
+     * @param bucketStart Start of the period, in milliseconds since the epoch.
+     * @param samplingInterval Sampling interval in minutes.
+     */
+    BucketKey(String source, String metric, long bucketStart, int samplingInterval) {
+      this.source = source;
+      this.metric = metric;
+      this.bucketStart = bucketStart;
+      this.samplingInterval = samplingInterval;
+    }
+
+    /**
+     * Returns true if the given object identifies the same value, false otherwise.
+     * 
+     * @param object Object to compare with.
+     * @return True if the given object identifies the same value, false otherwise.
+     */
+    @Override
+    public boolean equals(Object object) {
+      if (!(object instanceof BucketKey)) {
+        return false;
+      }
+      BucketKey other = (BucketKey) object;
+      return bucketStart == other.bucketStart && samplingInterval == other.samplingInterval
+          && source.equals(other.source) && metric.equals(other.metric);
+    }
+
+    /**
+     * Returns a hash code for this key.
+     * 
+     * @return Hash code for this key.
+     */
+    @Override
+    public int hashCode() {
+      int result = source.hashCode();
+      result = 31 * result + metric.hashCode();
+      result = 31 * result + (int) (bucketStart ^ (bucketStart >>> 32));
+      return 31 * result + samplingInterval;
+    }
+  }
+
+  /**
+   * Holds one cached value and the time at which it expires.
+   */
+  private static final class CachedValue {
+
+    /** Cached value. */
+    private final double value;
+    /** Time at which the value expires, in milliseconds since the epoch. */
+    private final long expiresAt;
+
+    /**
+     * Creates an entry.
+     * 
+     * @param value Cached value.
+     * @param expiresAt Time at which the value expires, in milliseconds since the epoch.
+     */
+    CachedValue(double value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+}
@@ -0,0 +1,194 @@
+package edu.hawaii.wattdepot;
+
+import java.util.Arrays;
+import org.wattdepot.client.WattDepotClientException;
+
+/**
+ * Keeps the carbon intensity of the Oahu power grid over the hour before a given minute, the way
+ * the stoplight shows it, without asking the WattDepot server for the whole hour each minute. The
+ * energy and carbon of each minute of the hour are kept in a ring of sixty slots, along with
+ * their running sums. When the window moves forward, only the minutes that entered it are
+ * fetched; each one takes the slot of the minute that left the window, whose data are subtracted
+ * from the sums. If the window moves back or jumps forward by an hour or more, the whole hour is
+ * fetched again. If the data of a minute are incomplete, the window ends before it, so that minute
+ * and the ones after it are fetched again at the next update. The sums are added up again from the
+ * slots each time the ring wraps around, so rounding errors do not build up.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TrailingHourIntensity {
+
+  /** Number of minutes in the window. */
+  public static final int MINUTES = 60;
+  /** Gets the energy and carbon data of minutes. */
+  private final MinuteSource source;
+  /** Energy generated in each minute of the window, in Wh, by slot; NaN if not known. */
+  private final double[] energy = new double[MINUTES];
+  /** Carbon emitted in each minute of the window, in lbs CO2, by slot; NaN if not known. */
+  private final double[] carbon = new double[MINUTES];
+  /** Energy generated in the minutes of the window that are known, in Wh. */
+  private double energySum;
+  /** Carbon emitted in the minutes of the window that are known, in lbs CO2. */
+  private double carbonSum;
+  /** Number of minutes of the window that are not known. */
+  private int missing = MINUTES;
+  /** End of the window, in milliseconds since the epoch, or Long.MIN_VALUE if it is empty. */
+  private long windowEnd = Long.MIN_VALUE;
+  /** Number of minutes fetched so far. */
+  private long minutesFetched;
+
+  /**
+   * Gets the energy and carbon data of a number of minutes.
+   */
+  public interface MinuteSource {
+
+    /**
+     * Returns the energy generated and carbon emitted in each of a number of minutes. Minutes that
+     * are not complete are treated as not known.
+     * 
+     * @param start Start of the first minute, in milliseconds since the epoch.
+     * @param minutes Number of minutes.
+     * @return Energy and carbon data for each minute.
+     * @throws WattDepotClientException If the data cannot be retrieved.
+     */
+    DerivedSeries fetch(long start, int minutes) throws WattDepotClientException;
+  }
+
+  /**
+   * Creates an empty window.
+   * 
+   * @param source Gets the energy and carbon data of minutes.
+   */
+  public TrailingHourIntensity(MinuteSource source) {
+    this.source = source;
+    Arrays.fill(energy, Double.NaN);
+    Arrays.fill(carbon, Double.NaN);
+  }
+
+  /**
+   * Moves the window so that it ends at the given minute, fetching the minutes that entered it,
+   * and returns the carbon intensity over the window. If the data cannot be retrieved, the window
+   * stays where it was.
+   * 
+   * @param end End of the window, in milliseconds since the epoch; the seconds are ignored.
+   * @return Carbon intensity in lbs CO2 / MWh, or NaN if a minute of the window is not known.
+   * @throws WattDepotClientException If the data cannot be retrieved.
+   */
+  public synchronized double update(long end) throws WattDepotClientException {
+    long newEnd = end - end % TimeGrid.MINUTE;
+    long start = newEnd - MINUTES * TimeGrid.MINUTE;
+    long from = windowEnd;
+    if (windowEnd == Long.MIN_VALUE || windowEnd <= start || newEnd < windowEnd) {
+      from = start;
+    }
+    if (from < newEnd) {
+      int minutes = (int) ((newEnd - from) / TimeGrid.MINUTE);
+      DerivedSeries data = source.fetch(from, minutes);
+      minutesFetched += minutes;
+      if (from == start) {
+        clear();
+      }
+      int known = 0;
+      while (known < minutes && data.isComplete(known)) {
+        known++;
+      }
+      for (int i = 0; i < minutes; i++) {
+        if (data.isComplete(i)) {
+          put(from + i * TimeGrid.MINUTE, data.getEnergy(i), data.getCarbon(i));
+        }
+        else {
+          put(from + i * TimeGrid.MINUTE, Double.NaN, Double.NaN);
+        }
+      } // end for
+      windowEnd = from + known * TimeGrid.MINUTE;
+    }
+    return getIntensity();
+  }
+
+  /**
+   * Removes every minute from the window.
+   */
+  private void clear() {
+    Arrays.fill(energy, Double.NaN);
+    Arrays.fill(carbon, Double.NaN);
+    energySum = 0.0;
+    carbonSum = 0.0;
+    missing = MINUTES;
+  }
+
+  /**
+   * Puts the data of a minute that entered the window in place of the minute an hour before it.
+   * 
+   * @param minute Start of the minute, in milliseconds since the epoch.
+   * @param newEnergy Energy generated in the minute, in Wh.
+   * @param newCarbon Carbon emitted in the minute, in lbs CO2.
+   */
+  private void put(long minute, double newEnergy, double newCarbon) {
+    int slot = (int) ((minute / TimeGrid.MINUTE) % MINUTES);
+    if (Double.isNaN(energy[slot]) || Double.isNaN(carbon[slot])) {
+      missing--;
+    }
+    else {
+      energySum -= energy[slot];
+      carbonSum -= carbon[slot];
+    }
+    energy[slot] = newEnergy;
+    carbon[slot] = newCarbon;
+    if (Double.isNaN(newEnergy) || Double.isNaN(newCarbon)) {
+      missing++;
+    }
+    else {
+      energySum += newEnergy;
+      carbonSum += newCarbon;
+    }
+    if (slot == MINUTES - 1) {
+      resum();
+    }
+  }
+
+  /**
+   * Adds up the sums again from the slots.
+   */
+  private void resum() {
+    energySum = 0.0;
+    carbonSum = 0.0;
+    for (int i = 0; i < MINUTES; i++) {
+      if (!Double.isNaN(energy[i]) && !Double.isNaN(carbon[i])) {
+        energySum += energy[i];
+        carbonSum += carbon[i];
+      }
+    } // end for
+  }
+
+  /**
+   * Returns the carbon intensity over the window.
+   * 
+   * @return Carbon intensity in lbs CO2 / MWh, or NaN if a minute of the window is not known.
+   */
+  public synchronized double getIntensity() {
+    if (missing > 0) {
+      return Double.NaN;
+    }
+    return carbonSum / energySum * 1000000.0;
+  }
+
+  /**
+   * Returns the end of the window.
+   * 
+   * @return End of the window, in milliseconds since the epoch, or Long.MIN_VALUE if it is empty.
+   */
+  public synchronized long getWindowEnd() {
+    return windowEnd;
+  }
+
+  /**
+   * Returns the number of minutes fetched so far.
+   * 
+   * @return Number of minutes fetched.
+   */
+  public synchronized long getMinutesFetched() {
+    return minutesFetched;
+  }
+
+}
@@ -0,0 +1,105 @@
+package edu.hawaii.wattdepot;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decides whether the blocking calls to the WattDepot server run on virtual threads, which the
+ * Java runtime parks cheaply while they wait for the network. In that mode each query gets a
+ * thread of its own and the number of queries in flight is limited by a semaphore rather than by
+ * the size of a pool, so thousands of calls can be outstanding without tuning pools of platform
+ * threads. The mode is turned on with the <code>carbonometer.virtualThreads</code> system
+ * property. Virtual threads are looked up when the application starts, so it still runs on
+ * runtimes without them, with pools of platform threads.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public final class VirtualThreads {
+
+  /** Name of the system property that turns on virtual threads. */
+  public static final String PROPERTY = "carbonometer.virtualThreads";
+  /** Number of queries in flight at a time on virtual threads if no limit is set. */
+  public static final int DEFAULT_LIMIT = 256;
+  /** Creates an executor that starts a virtual thread for each task, or null if there is none. */
+  private static final Method FACTORY = findFactory();
+  /** True if virtual threads were asked for and are available, false otherwise. */
+  private static final boolean ENABLED = Boolean.getBoolean(PROPERTY) && FACTORY != null;
+
+  static {
+    if (Boolean.getBoolean(PROPERTY) && FACTORY == null) {
+      System.out.println("Virtual threads are not available; using pools of platform threads.");
+    }
+  }
+
+  /**
+   * Holds only static methods.
+   */
+  private VirtualThreads() {
+    // Do nothing.
+  }
+
+  /**
+   * Returns the method that creates an executor with a virtual thread per task.
+   * 
+   * @return The method, or null if this runtime has no virtual threads.
+   */
+  private static Method findFactory() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    }
+    catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns true if the calls to the WattDepot server run on virtual threads.
+   * 
+   * @return True if virtual threads were asked for and are available, false otherwise.
+   */
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /**
+   * Returns true if this runtime has virtual threads.
+   * 
+   * @return True if virtual threads are available, false otherwise.
+   */
+  public static boolean isAvailable() {
+    return FACTORY != null;
+  }
+
+  /**
+   * Creates an executor that starts a new virtual thread for each task.
+   * 
+   * @return The executor, or null if this runtime has no virtual threads.
+   */
+  public static ExecutorService newExecutor() {
+    if (FACTORY == null) {
+      return null;
+    }
+    try {
+      return (ExecutorService) FACTORY.invoke(null);
+    }
+    catch (Exception e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the limit to use for a number of calls in flight: the value of the given system
+   * property if it is set, or else the default for virtual threads if they are enabled, or else
+   * the default for platform threads.
+   * 
+   * @param property Name of the system property that sets the limit.
+   * @param platformDefault Limit if the property is not set and virtual threads are not enabled.
+   * @return The limit.
+   */
+  public static int getLimit(String property, int platformDefault) {
+    return Integer.getInteger(property, ENABLED ? DEFAULT_LIMIT : platformDefault);
+  }
+
+}
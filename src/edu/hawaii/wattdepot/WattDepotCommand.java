@@ -2,13 +2,16 @@ package edu.hawaii.wattdepot;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import javax.xml.datatype.XMLGregorianCalendar;
 import org.wattdepot.client.WattDepotClient;
 import org.wattdepot.client.WattDepotClientException;
-import org.wattdepot.resource.property.jaxb.Property;
 import org.wattdepot.resource.source.jaxb.Source;
-import org.wattdepot.resource.source.summary.jaxb.SourceSummary;
-import org.wattdepot.util.tstamp.Tstamp;
 
 /**
  * Establishes connection to the WattDepot server and provides methods used to get data from it.
@@ -18,67 +21,215 @@ import org.wattdepot.util.tstamp.Tstamp;
  */
 public class WattDepotCommand {
 
-  /** URL of the WattDepot server. */
-  private static final String HOST_URI = "http://server.wattdepot.org:8182/wattdepot/";
+  /** Tells the user that some of the data shown were served stale; see isStaleDataServed. */
+  public static final String STALE_DATA_MESSAGE =
+      "The WattDepot server is not responding; some of the data shown may be out of date.";
+  /** System property that holds the URL of the WattDepot server. */
+  public static final String HOST_URI_PROPERTY = "wattdepot.uri";
+  /** URL of the WattDepot server if the system property is not set. */
+  public static final String DEFAULT_HOST_URI = "http://server.wattdepot.org:8182/wattdepot/";
+  /** URL of the WattDepot server, which can be changed with the wattdepot.uri system property. */
+  private static final String HOST_URI = System.getProperty(HOST_URI_PROPERTY, DEFAULT_HOST_URI);
   /** Holds an instance of the WattDepot client. */
   protected static final WattDepotClient CLIENT = new WattDepotClient(HOST_URI);
+  /** Client used by this command, which is the shared client unless another one was given. */
+  private final WattDepotClient client;
   /** Indicates whether an error is encountered when processing a command. */
   protected boolean wattDepotExceptionThrown = false;
   /** Oahu power grid. */
   private static final String SIM_OAHU_GRID = "SIM_OAHU_GRID";
   /** Indicates whether the list of timestamps does not contain twenty-four timestamps. */
   private boolean isTimestampsListNotFilled = false;
-  /** Indicates whether the list to store results is not empty. */
-  private boolean isResultsListNotEmpty = false;
   /** Indicates whether no data was available. */
   private boolean noDataAvailable = false;
   /** Holds the sampling interval in minutes. */
   private int samplingInterval = 60;
+  /** Indicates whether hourly queries are sent to the WattDepot server in parallel. */
+  private static volatile boolean parallelMode =
+      !"false".equalsIgnoreCase(System.getProperty("carbonometer.parallel"));
+  /** Describes the last batch of queries that was sent in parallel by this command. */
+  private BatchStatistics lastBatchStatistics;
+  /** Indicates whether data are computed locally from sensor data downloaded once per range. */
+  private static volatile boolean rangeFetchMode = Boolean.getBoolean("carbonometer.rangeFetch");
+  /** Downloads sensor data for a whole range of time and computes hourly data from it. */
+  private final RangeFetcher rangeFetcher;
+  /** Caches data from the WattDepot server for all users. */
+  private static final TimeSeriesCache CACHE = TimeSeriesCache.getSharedCache();
+  /** Hourly data and day totals for all users, from which longer periods are computed. */
+  private static final RollupStore ROLLUPS = RollupStore.getSharedStore();
+  /** Guards the calls to the WattDepot server with timeouts and stops them while it is down. */
+  private static final CircuitBreaker BREAKER = CircuitBreaker.getShared();
+  /** Indicates whether expired data were served because the WattDepot server did not respond. */
+  private volatile boolean staleDataServed = false;
+  /** Indicates whether the server was down when this command was created, so only stale data. */
+  private final boolean upstreamDown;
+  /** Runs the work of the future-returning methods, apart from the pool of hourly queries. */
+  private static final QueryPool ASYNC_POOL =
+      new QueryPool(VirtualThreads.getLimit("carbonometer.asyncThreads",
+          QueryPool.DEFAULT_POOL_SIZE), VirtualThreads.isEnabled());
+  /** Makes sure that identical requests to the WattDepot server are sent only once at a time. */
+  private static final RequestCoalescer<Double> COALESCER = new RequestCoalescer<Double>();
+  /** Makes sure that only one request for the summary of each power source is sent at a time. */
+  private static final RequestCoalescer<PowerSourceSummary> SUMMARY_COALESCER =
+      new RequestCoalescer<PowerSourceSummary>();
+  /** Summaries of power sources shared by all users, by name. */
+  private static final ConcurrentMap<String, PowerSourceSummary> SUMMARIES =
+      new ConcurrentHashMap<String, PowerSourceSummary>();
+  /** Number of milliseconds before a summary is retrieved from the server again. */
+  private static final long SUMMARY_REFRESH_INTERVAL =
+      Long.getLong("carbonometer.summaryRefreshMinutes", 5L) * 60L * 1000L;
+  /** Number of milliseconds of sensor data downloaded before and after a range of minutes. */
+  private static final long MINUTE_DATA_MARGIN = 30L * TimeGrid.MINUTE;
+  /** Type of data for energy generated. */
+  private static final String ENERGY = "energy";
+  /** Type of data for carbon emitted. */
+  private static final String CARBON = "carbon";
 
   /**
    * Establishes connection to the WattDepot server.
    */
   public WattDepotCommand() {
-    // Stop right away if server cannot be contacted.
-    if (!CLIENT.isHealthy()) {
-      wattDepotExceptionThrown = true;
-    }
+    this(CLIENT, HealthMonitor.getShared());
+  }
+
+  /**
+   * Establishes connection to the WattDepot server through the given client. Used by tests and
+   * benchmarks to replace the server, which is taken to be healthy. Data are still kept in the
+   * shared cache, so a command with a different client should not be used in the same application
+   * as the web pages.
+   * 
+   * @param client Client used to get data from the WattDepot server.
+   */
+  WattDepotCommand(WattDepotClient client) {
+    this(client, null);
   }
 
   /**
-   * Gets a list of data regarding carbon emission for one 24-hour period.
+   * Establishes connection to the WattDepot server through the given client. The health of the
+   * server is read from the flag of the monitor rather than asked for. If the server is down, the
+   * command only serves the last good data in the shared cache and does not contact the server.
+   * 
+   * @param client Client used to get data from the WattDepot server.
+   * @param health Monitor of the server, or null to take the server to be healthy.
+   */
+  WattDepotCommand(WattDepotClient client, HealthMonitor health) {
+    this.client = client;
+    this.rangeFetcher = new RangeFetcher(client, BREAKER);
+    this.upstreamDown = health != null && !health.isHealthy();
+  }
+
+  /**
+   * Gets the carbon intensity of the Oahu power grid for each hour of one 24-hour period. If an
+   * error is encountered, the series holds the hours that were retrieved before the error.
    * 
    * @param timestamps List of timestamps for one 24-hour period.
-   * @param results List of data for one 24-hour period.
+   * @return Carbon intensity for each hour, in lbs CO2 / MWh, or an empty series if the list of
+   * timestamps does not contain twenty-four timestamps.
    */
-  public void getCarbonContentData(List<XMLGregorianCalendar> timestamps, List<Double> results) {
+  public TimeSeries getCarbonContentData(List<XMLGregorianCalendar> timestamps) {
 
     if (timestamps.size() != 24) {
       isTimestampsListNotFilled = true;
-      return;
+      return TimeSeries.EMPTY;
     }
     isTimestampsListNotFilled = false;
 
-    if (!results.isEmpty()) {
-      isResultsListNotEmpty = true;
-      return;
+    TimeSeries.Builder results =
+        new TimeSeries.Builder(TimeGrid.toMillis(timestamps.get(0)), 60, 24);
+    if (rangeFetchMode) {
+      getCarbonContentDataFromSensorData(timestamps, results);
+      return results.build();
+    }
+    if (parallelMode) {
+      getCarbonContentDataInParallel(timestamps, results);
+      return results.build();
     }
-    isResultsListNotEmpty = false;
 
     double carbonGenerated, energyGenerated;
 
     try {
       for (XMLGregorianCalendar tstamp : timestamps) {
-        carbonGenerated =
-            CLIENT.getCarbonEmitted(SIM_OAHU_GRID, tstamp, Tstamp.incrementHours(tstamp, 1), 60);
-        energyGenerated =
-            CLIENT.getEnergyGenerated(SIM_OAHU_GRID, tstamp, Tstamp.incrementHours(tstamp, 1), 60);
+        long start = TimeGrid.toMillis(tstamp);
+        carbonGenerated = getCarbonEmitted(SIM_OAHU_GRID, start, start + TimeGrid.HOUR, 60);
+        energyGenerated = getEnergyGenerated(SIM_OAHU_GRID, start, start + TimeGrid.HOUR, 60);
         results.add(carbonGenerated / energyGenerated * 1000000.0);
       } // end for
     } // end try
     catch (WattDepotClientException e) {
       wattDepotExceptionThrown = true;
     }
+    return results.build();
+  }
+
+  /**
+   * Gets a list of data regarding carbon emission for one 24-hour period by sending the queries
+   * for all of the hours to the WattDepot server at the same time. The data are added to the list
+   * of results in the same order as the timestamps. If a query fails, the list holds the hours
+   * before the first hour that could not be retrieved.
+   * 
+   * @param timestamps List of timestamps for one 24-hour period.
+   * @param results Receives the data for one 24-hour period.
+   */
+  private void getCarbonContentDataInParallel(List<XMLGregorianCalendar> timestamps,
+      TimeSeries.Builder results) {
+    QueryBatch<Double> batch = new QueryBatch<Double>();
+    for (XMLGregorianCalendar tstamp : timestamps) {
+      final long start = TimeGrid.toMillis(tstamp);
+      batch.add(new Callable<Double>() {
+        public Double call() throws WattDepotClientException {
+          return getCarbonEmitted(SIM_OAHU_GRID, start, start + TimeGrid.HOUR, 60);
+        }
+      });
+      batch.add(new Callable<Double>() {
+        public Double call() throws WattDepotClientException {
+          return getEnergyGenerated(SIM_OAHU_GRID, start, start + TimeGrid.HOUR, 60);
+        }
+      });
+    } // end for
+
+    try {
+      QueryPool.getSharedPool().run(batch);
+    }
+    catch (ExecutionException e) {
+      wattDepotExceptionThrown = true;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      wattDepotExceptionThrown = true;
+    }
+    finally {
+      lastBatchStatistics = batch.getStatistics();
+    }
+    // The results hold the hours before the first query that failed, in order.
+    List<Double> data = batch.getResults();
+    for (int i = 0; i + 1 < data.size(); i += 2) {
+      results.add(data.get(i) / data.get(i + 1) * 1000000.0);
+    }
+  }
+
+  /**
+   * Gets a list of data regarding carbon emission for one 24-hour period by downloading the sensor
+   * data for the whole period once and computing the data for each hour locally.
+   * 
+   * @param timestamps List of timestamps for one 24-hour period.
+   * @param results Receives the data for one 24-hour period.
+   */
+  private void getCarbonContentDataFromSensorData(List<XMLGregorianCalendar> timestamps,
+      TimeSeries.Builder results) {
+    XMLGregorianCalendar startTime = timestamps.get(0);
+    XMLGregorianCalendar endTime =
+        TimeGrid.toTimestamp(TimeGrid.toMillis(timestamps.get(timestamps.size() - 1))
+            + TimeGrid.HOUR);
+    try {
+      DerivedSeries series =
+          fetchHourly(SIM_OAHU_GRID, TimeGrid.toMillis(startTime), TimeGrid.toMillis(endTime));
+      for (int i = 0; i < series.size(); i++) {
+        results.add(series.getIntensity(i));
+      }
+    }
+    catch (WattDepotClientException e) {
+      wattDepotExceptionThrown = true;
+    }
   }
 
   /**
@@ -89,13 +240,13 @@ public class WattDepotCommand {
    */
   public double getCarbonContentData(XMLGregorianCalendar timestamp) {
 
-    XMLGregorianCalendar nextTimestamp = Tstamp.incrementHours(timestamp, 1);
+    long start = TimeGrid.toMillis(timestamp);
 
     double carbonGenerated, energyGenerated;
 
     try {
-      carbonGenerated = CLIENT.getCarbonEmitted(SIM_OAHU_GRID, timestamp, nextTimestamp, 60);
-      energyGenerated = CLIENT.getEnergyGenerated(SIM_OAHU_GRID, timestamp, nextTimestamp, 60);
+      carbonGenerated = getCarbonEmitted(SIM_OAHU_GRID, start, start + TimeGrid.HOUR, 60);
+      energyGenerated = getEnergyGenerated(SIM_OAHU_GRID, start, start + TimeGrid.HOUR, 60);
       noDataAvailable = false;
       return (carbonGenerated / energyGenerated * 1000000.0);
     }
@@ -106,6 +257,76 @@ public class WattDepotCommand {
     }
   }
 
+  /**
+   * Gets the energy generated and carbon emitted by the Oahu power grid in each of a number of
+   * minutes, with whichever takes fewer queries: two queries per minute, or one download of the
+   * sensor data of each non-virtual subsource for the whole range. Minutes that the sensor data do
+   * not cover are marked as incomplete.
+   * 
+   * @param start Start of the first minute, in milliseconds since the epoch.
+   * @param minutes Number of minutes.
+   * @return Energy and carbon data for each minute.
+   * @throws WattDepotClientException If the data cannot be retrieved from the WattDepot server.
+   */
+  public DerivedSeries getMinuteData(long start, int minutes) throws WattDepotClientException {
+    SourceGraph sources = getSourceGraph();
+    if (2 * minutes <= sources.getNonVirtualSources(SIM_OAHU_GRID).size()) {
+      return getMinuteDataByQuery(start, minutes);
+    }
+    return rangeFetcher.fetch(sources, SIM_OAHU_GRID, start, start + minutes * TimeGrid.MINUTE, 1,
+        MINUTE_DATA_MARGIN);
+  }
+
+  /**
+   * Gets the energy generated and carbon emitted by the Oahu power grid in each of a number of
+   * minutes. The queries for all of the minutes are sent to the WattDepot server at the same time.
+   * 
+   * @param start Start of the first minute, in milliseconds since the epoch.
+   * @param minutes Number of minutes.
+   * @return Energy and carbon data for each minute.
+   * @throws WattDepotClientException If the data cannot be retrieved from the WattDepot server.
+   */
+  private DerivedSeries getMinuteDataByQuery(long start, int minutes)
+      throws WattDepotClientException {
+    QueryBatch<Double> batch = new QueryBatch<Double>();
+    for (int i = 0; i < minutes; i++) {
+      final long minute = start + i * TimeGrid.MINUTE;
+      batch.add(new Callable<Double>() {
+        public Double call() throws WattDepotClientException {
+          return getEnergyGenerated(SIM_OAHU_GRID, minute, minute + TimeGrid.MINUTE, 1);
+        }
+      });
+      batch.add(new Callable<Double>() {
+        public Double call() throws WattDepotClientException {
+          return getCarbonEmitted(SIM_OAHU_GRID, minute, minute + TimeGrid.MINUTE, 1);
+        }
+      });
+    } // end for
+
+    try {
+      QueryPool.getSharedPool().run(batch);
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof WattDepotClientException) {
+        throw (WattDepotClientException) e.getCause();
+      }
+      throw new WattDepotClientException(e.getCause().toString());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new WattDepotClientException("Interrupted while getting minute data");
+    }
+    finally {
+      lastBatchStatistics = batch.getStatistics();
+    }
+    List<Double> data = batch.getResults();
+    DerivedSeries series = new DerivedSeries(start, 1, minutes);
+    for (int i = 0; i < minutes; i++) {
+      series.add(i, data.get(2 * i), data.get(2 * i + 1));
+    }
+    return series;
+  }
+
   /**
    * Returns true if an error was encountered when connecting to WattDepot server or processing
    * command, false otherwise.
@@ -118,21 +339,345 @@ public class WattDepotCommand {
   }
 
   /**
-   * Returns true if list of timetamps does not contain twenty-four timestamps, false otherwise.
+   * Returns the energy generated by a power source between two timestamps, from the shared cache
+   * if possible, or else from the WattDepot server.
    * 
-   * @return True if list of timetamps does not contain twenty-four timestamps, false otherwise.
+   * @param source Name of a power source.
+   * @param start Start of the period, in milliseconds since the epoch.
+   * @param end End of the period, in milliseconds since the epoch.
+   * @param interval Sampling interval in minutes.
+   * @return Energy generated, in Wh.
+   * @throws WattDepotClientException If the data cannot be retrieved from the WattDepot server.
    */
-  public boolean isTimestampsListNotFilled() {
-    return isTimestampsListNotFilled;
+  private double getEnergyGenerated(String source, long start, long end, int interval)
+      throws WattDepotClientException {
+    return getCachedValue(ENERGY, source, start, end, interval);
+  }
+
+  /**
+   * Returns the carbon emitted by a power source between two timestamps, from the shared cache if
+   * possible, or else from the WattDepot server.
+   * 
+   * @param source Name of a power source.
+   * @param start Start of the period, in milliseconds since the epoch.
+   * @param end End of the period, in milliseconds since the epoch.
+   * @param interval Sampling interval in minutes.
+   * @return Carbon emitted, in lbs CO2.
+   * @throws WattDepotClientException If the data cannot be retrieved from the WattDepot server.
+   */
+  private double getCarbonEmitted(String source, long start, long end, int interval)
+      throws WattDepotClientException {
+    return getCachedValue(CARBON, source, start, end, interval);
   }
 
   /**
-   * Returns true if list to store results is not empty, false otherwise.
+   * Returns true if expired data were served because the WattDepot server was down, did not
+   * respond, or the circuit to it was open, false otherwise. Fresh data are then retrieved in the
+   * background.
    * 
-   * @return True if list to store results is not empty, false otherwise.
+   * @return True if stale data were served, false otherwise.
    */
-  public boolean isResultsListNotEmpty() {
-    return isResultsListNotEmpty;
+  public boolean isStaleDataServed() {
+    return staleDataServed;
+  }
+
+  /**
+   * Returns energy or carbon data for a power source between two timestamps, from the shared cache
+   * if possible, or else from the WattDepot server, in which case the data are added to the cache.
+   * 
+   * @param metric Type of data, energy or carbon.
+   * @param source Name of a power source.
+   * @param start Start of the period, in milliseconds since the epoch.
+   * @param end End of the period, in milliseconds since the epoch.
+   * @param interval Sampling interval in minutes.
+   * @return Energy generated in Wh, or carbon emitted in lbs CO2.
+   * @throws WattDepotClientException If the data cannot be retrieved from the WattDepot server.
+   */
+  private double getCachedValue(String metric, String source, long start, long end,
+      int interval) throws WattDepotClientException {
+    Double stored = getStoredValue(metric, source, start, end, interval);
+    if (stored != null) {
+      return stored;
+    }
+    return fetchValue(metric, source, start, end, interval);
+  }
+
+  /**
+   * Returns energy or carbon data for a power source between two timestamps if they are in the
+   * rollup store or the shared cache, without contacting the WattDepot server.
+   * 
+   * @param metric Type of data, energy or carbon.
+   * @param source Name of a power source.
+   * @param start Start of the period, in milliseconds since the epoch.
+   * @param end End of the period, in milliseconds since the epoch.
+   * @param interval Sampling interval in minutes.
+   * @return Energy generated in Wh, or carbon emitted in lbs CO2, or null if not stored.
+   */
+  private Double getStoredValue(String metric, String source, long start, long end,
+      int interval) {
+    if (interval == 60 && end - start == TimeGrid.HOUR) {
+      double rolledUp = ROLLUPS.getHour(source, metric, start);
+      if (!Double.isNaN(rolledUp)) {
+        return rolledUp;
+      }
+    }
+    return CACHE.get(source, metric, start, interval);
+  }
+
+  /**
+   * Retrieves energy or carbon data for a power source between two timestamps from the WattDepot
+   * server and adds them to the shared cache. If they cannot be retrieved, the last good value in
+   * the cache is returned instead, if there is one, and retrieved again in the background.
+   * 
+   * @param metric Type of data, energy or carbon.
+   * @param source Name of a power source.
+   * @param start Start of the period, in milliseconds since the epoch.
+   * @param end End of the period, in milliseconds since the epoch.
+   * @param interval Sampling interval in minutes.
+   * @return Energy generated in Wh, or carbon emitted in lbs CO2.
+   * @throws WattDepotClientException If the data cannot be retrieved from the WattDepot server.
+   */
+  private double fetchValue(String metric, String source, long start, long end, int interval)
+      throws WattDepotClientException {
+    double value;
+    try {
+      if (upstreamDown) {
+        throw new WattDepotClientException("The WattDepot server is not healthy.");
+      }
+      value = getCoalescedValue(metric, source, start, end, interval);
+    }
+    catch (WattDepotClientException e) {
+      Double stale = CACHE.getStale(source, metric, start, interval);
+      if (stale == null) {
+        throw e;
+      }
+      staleDataServed = true;
+      refreshInBackground(metric, source, start, end, interval);
+      return stale;
+    }
+    CACHE.put(source, metric, start, interval, end, value);
+    if (interval == 60 && end - start == TimeGrid.HOUR) {
+      ROLLUPS.putHour(source, metric, start, value);
+    }
+    return value;
+  }
+
+  /**
+   * Retrieves a value from the WattDepot server again in the background and stores it in the
+   * shared cache, so that later callers get fresh data once the server responds.
+   * 
+   * @param metric Type of data, energy or carbon.
+   * @param source Name of a power source.
+   * @param start Start of the period, in milliseconds since the epoch.
+   * @param end End of the period, in milliseconds since the epoch.
+   * @param interval Sampling interval in minutes.
+   */
+  private void refreshInBackground(final String metric, final String source, final long start,
+      final long end, final int interval) {
+    String key = source + '|' + metric + '|' + start + '|' + end + '|' + interval;
+    BREAKER.refreshInBackground(key, new Runnable() {
+      public void run() {
+        try {
+          CACHE.put(source, metric, start, interval, end, getCoalescedValue(metric, source, start,
+              end, interval));
+        }
+        catch (WattDepotClientException e) {
+          // Keep serving the stale value; the next caller asks for another refresh.
+        }
+      }
+    });
+  }
+
+  /**
+   * Loads the hourly energy and carbon data of a power source between two times into the shared
+   * cache and rollup store, unless every hour is there already. Used by the cache warmer.
+   * 
+   * @param source Name of a power source.
+   * @param start Start of the first hour, in milliseconds since the epoch.
+   * @param end End of the last hour, in milliseconds since the epoch.
+   * @return Number of hourly values loaded or found.
+   * @throws WattDepotClientException If the data cannot be retrieved from the WattDepot server.
+   */
+  int loadHours(String source, long start, long end) throws WattDepotClientException {
+    int hours = (int) ((end - start) / TimeGrid.HOUR);
+    if (!Double.isNaN(ROLLUPS.getRange(source, ENERGY, start, end))
+        && !Double.isNaN(ROLLUPS.getRange(source, CARBON, start, end))) {
+      return 2 * hours;
+    }
+    if (rangeFetchMode) {
+      return 2 * fetchHourly(source, start, end).size();
+    }
+    for (long hour = start; hour < end; hour += TimeGrid.HOUR) {
+      getCachedValue(ENERGY, source, hour, hour + TimeGrid.HOUR, 60);
+      getCachedValue(CARBON, source, hour, hour + TimeGrid.HOUR, 60);
+    }
+    return 2 * hours;
+  }
+
+  /**
+   * Computes the hourly energy and carbon data of a power source from sensor data downloaded once
+   * for the whole range, and keeps the hours in the rollup store. The hours that the sensor data do
+   * not fully cover are retrieved with one query each instead, so that they are never too low.
+   * 
+   * @param source Name of a power source.
+   * @param start Start of the first hour, in milliseconds since the epoch.
+   * @param end End of the last hour, in milliseconds since the epoch.
+   * @return Energy and carbon data for each hour.
+   * @throws WattDepotClientException If the data cannot be retrieved from the WattDepot server.
+   */
+  private DerivedSeries fetchHourly(String source, long start, long end)
+      throws WattDepotClientException {
+    DerivedSeries hourly =
+        rangeFetcher.fetchHourly(getSourceGraph(), source, TimeGrid.toTimestamp(start),
+            TimeGrid.toTimestamp(end));
+    ROLLUPS.putHours(source, ENERGY, CARBON, hourly);
+    for (int i = 0; i < hourly.size(); i++) {
+      if (!hourly.isComplete(i)) {
+        long hour = hourly.getStartMillis() + i * TimeGrid.HOUR;
+        hourly.set(i, getCachedValue(ENERGY, source, hour, hour + TimeGrid.HOUR, 60),
+            getCachedValue(CARBON, source, hour, hour + TimeGrid.HOUR, 60));
+      }
+    } // end for
+    return hourly;
+  }
+
+  /**
+   * Returns energy or carbon data for a power source for one period of a chart. A period longer
+   * than an hour is summed from the hourly data in the shared rollup store if every hour of it is
+   * there, and otherwise retrieved like any other value.
+   * 
+   * @param metric Type of data, energy or carbon.
+   * @param source Name of a power source.
+   * @param start Start of the period, in milliseconds since the epoch.
+   * @param end End of the period, in milliseconds since the epoch.
+   * @param interval Sampling interval in minutes.
+   * @return Energy generated in Wh, or carbon emitted in lbs CO2.
+   * @throws WattDepotClientException If the data cannot be retrieved from the WattDepot server.
+   */
+  private double getPeriodValue(String metric, String source, long start, long end, int interval)
+      throws WattDepotClientException {
+    Double stored = getStoredPeriodValue(metric, source, start, end, interval);
+    if (stored != null) {
+      return stored;
+    }
+    return fetchValue(metric, source, start, end, interval);
+  }
+
+  /**
+   * Returns energy or carbon data for a power source for one sampling interval if they can be
+   * computed from the rollup store or are in the shared cache, without contacting the WattDepot
+   * server.
+   * 
+   * @param metric Type of data, energy or carbon.
+   * @param source Name of a power source.
+   * @param start Start of the period, in milliseconds since the epoch.
+   * @param end End of the period, in milliseconds since the epoch.
+   * @param interval Sampling interval in minutes.
+   * @return Energy generated in Wh, or carbon emitted in lbs CO2, or null if not stored.
+   */
+  private Double getStoredPeriodValue(String metric, String source, long start, long end,
+      int interval) {
+    if (interval > 60) {
+      double total = ROLLUPS.getRange(source, metric, start, end);
+      if (!Double.isNaN(total)) {
+        return total;
+      }
+    }
+    return getStoredValue(metric, source, start, end, interval);
+  }
+
+  /**
+   * Returns energy or carbon data for a power source between two timestamps from the WattDepot
+   * server. If an identical request is already outstanding, waits for it instead of sending
+   * another one. The timestamps for the client are created only here, when a request is sent.
+   * 
+   * @param metric Type of data, energy or carbon.
+   * @param source Name of a power source.
+   * @param start Start of the period, in milliseconds since the epoch.
+   * @param end End of the period, in milliseconds since the epoch.
+   * @param interval Sampling interval in minutes.
+   * @return Energy generated in Wh, or carbon emitted in lbs CO2.
+   * @throws WattDepotClientException If the data cannot be retrieved from the WattDepot server.
+   */
+  private double getCoalescedValue(final String metric, final String source, final long start,
+      final long end, final int interval) throws WattDepotClientException {
+    String key = source + '|' + metric + '|' + start + '|' + end + '|' + interval;
+    try {
+      return COALESCER.execute(key, new Callable<Double>() {
+        public Double call() throws WattDepotClientException {
+          return BREAKER.call(new Callable<Double>() {
+            public Double call() throws WattDepotClientException {
+              XMLGregorianCalendar startTime = TimeGrid.toTimestamp(start);
+              XMLGregorianCalendar endTime = TimeGrid.toTimestamp(end);
+              if (ENERGY.equals(metric)) {
+                return client.getEnergyGenerated(source, startTime, endTime, interval);
+              }
+              return client.getCarbonEmitted(source, startTime, endTime, interval);
+            }
+          });
+        }
+      });
+    } // end try
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof WattDepotClientException) {
+        throw (WattDepotClientException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new WattDepotClientException(e.getCause().toString());
+    } // end catch
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new WattDepotClientException("Interrupted while waiting for " + key);
+    } // end catch
+  }
+
+  /**
+   * Returns the object that makes sure identical requests to the WattDepot server are sent only
+   * once at a time, which also counts how many requests were sent and how many were shared.
+   * 
+   * @return The request coalescer shared by all WattDepot commands.
+   */
+  public static RequestCoalescer<Double> getRequestCoalescer() {
+    return COALESCER;
+  }
+
+  /**
+   * Returns a description of the last batch of queries that was sent to the WattDepot server in
+   * parallel by this command, or null if no queries were sent in parallel.
+   * 
+   * @return Description of the last batch of queries sent in parallel.
+   */
+  public BatchStatistics getLastBatchStatistics() {
+    return lastBatchStatistics;
+  }
+
+  /**
+   * Turns on or off sending hourly queries to the WattDepot server in parallel.
+   * 
+   * @param value True or false.
+   */
+  public static void setParallelMode(boolean value) {
+    parallelMode = value;
+  }
+
+  /**
+   * Returns true if hourly queries are sent to the WattDepot server in parallel, false otherwise.
+   * 
+   * @return True if hourly queries are sent in parallel, false otherwise.
+   */
+  public static boolean isParallelMode() {
+    return parallelMode;
+  }
+
+  /**
+   * Returns true if list of timetamps does not contain twenty-four timestamps, false otherwise.
+   * 
+   * @return True if list of timetamps does not contain twenty-four timestamps, false otherwise.
+   */
+  public boolean isTimestampsListNotFilled() {
+    return isTimestampsListNotFilled;
   }
 
   /**
@@ -144,15 +689,194 @@ public class WattDepotCommand {
    * @param source Power source from which to get data.
    * @param powerType Type of power, carbon or energy.
    * @param granularityChoice Type of granularity, hour, day or week.
-   * @return List of power data.
+   * @return Power data, one value for each sampling interval.
    */
-  public List<Double> getChartData(XMLGregorianCalendar startTime, XMLGregorianCalendar endTime,
+  public TimeSeries getChartData(XMLGregorianCalendar startTime, XMLGregorianCalendar endTime,
       String source, String powerType, String granularityChoice) {
+    return getChartData(TimeGrid.toMillis(startTime), TimeGrid.toMillis(endTime), source,
+        powerType, granularityChoice);
+  }
+
+  /**
+   * Creates a list of power data for the given power source from the start of startDay to the end
+   * of endDay. The data points are generated at a sampling interval of minutes.
+   * 
+   * @param startDay Start of the first day, in milliseconds since the epoch.
+   * @param endDay Start of the last day, in milliseconds since the epoch.
+   * @param source Power source from which to get data.
+   * @param powerType Type of power, carbon or energy.
+   * @param granularityChoice Type of granularity, hour, day or week.
+   * @return Power data, one value for each sampling interval.
+   */
+  public TimeSeries getChartData(long startDay, long endDay, String source, String powerType,
+      String granularityChoice) {
+
+    long end = endDay + TimeGrid.DAY;
+
+    setSamplingInterval(granularityChoice);
+    if (rangeFetchMode) {
+      return getChartDataFromSensorData(startDay, end, source, powerType, granularityChoice);
+    }
+    TimeGrid grid = TimeGrid.covering(startDay, end, samplingInterval * TimeGrid.MINUTE);
+    TimeSeries.Builder dataList = new TimeSeries.Builder(startDay, samplingInterval, grid.size());
+    String metric = toMetric(powerType);
+    if (metric == null) {
+      wattDepotExceptionThrown = true;
+      return dataList.build();
+    }
+
+    try {
+      for (int i = 0; i < grid.size(); i++) {
+        double data =
+            getPeriodValue(metric, source, grid.get(i), grid.get(i + 1), samplingInterval);
+        dataList.add(toChartUnits(data, powerType, granularityChoice));
+      } // end for
+    } // end try
+    catch (WattDepotClientException e) {
+      wattDepotExceptionThrown = true;
+    }
+    return dataList.build();
+  }
+
+  /**
+   * Creates lists of power data for several power sources from the start of startDay to the end of
+   * endDay, as one batch. The whole matrix of power sources and intervals is planned first: the
+   * values in the rollup store or the shared cache are taken from there, and the others are sent
+   * to the WattDepot server together, in parallel, limited by the shared query pool. If a value
+   * cannot be retrieved, it is left missing in the list of its power source and an error is
+   * recorded.
+   * 
+   * @param startDay Start of the first day, in milliseconds since the epoch.
+   * @param endDay Start of the last day, in milliseconds since the epoch.
+   * @param sources Power sources from which to get data.
+   * @param powerType Type of power, carbon or energy.
+   * @param granularityChoice Type of granularity, hour, day or week.
+   * @return Power data for each power source, in the same order as the power sources.
+   */
+  public List<TimeSeries> getChartData(long startDay, long endDay, List<String> sources,
+      final String powerType, final String granularityChoice) {
+    final long end = endDay + TimeGrid.DAY;
+    setSamplingInterval(granularityChoice);
+    if (rangeFetchMode) {
+      return getChartDataFromSensorData(startDay, end, sources, powerType, granularityChoice);
+    }
+    final TimeGrid grid = TimeGrid.covering(startDay, end, samplingInterval * TimeGrid.MINUTE);
+    final String metric = toMetric(powerType);
+    double[][] values = new double[sources.size()][metric == null ? 0 : grid.size()];
+    boolean[][] missing = new boolean[values.length][];
+    if (metric == null) {
+      wattDepotExceptionThrown = true;
+    }
 
-    List<Double> dataList = new ArrayList<Double>();
-    XMLGregorianCalendar tempStart = startTime;
-    XMLGregorianCalendar tempEnd = Tstamp.incrementDays(endTime, 1);
+    // Plan the matrix: take what is stored, and send one batch for the rest.
+    QueryBatch<Double> batch = new QueryBatch<Double>();
+    List<int[]> cells = new ArrayList<int[]>();
+    for (int s = 0; s < values.length; s++) {
+      missing[s] = new boolean[values[s].length];
+      for (int i = 0; i < values[s].length; i++) {
+        final String source = sources.get(s);
+        final long start = grid.get(i);
+        final long stop = grid.get(i + 1);
+        Double stored = getStoredPeriodValue(metric, source, start, stop, samplingInterval);
+        if (stored != null) {
+          values[s][i] = stored;
+          continue;
+        }
+        missing[s][i] = true;
+        cells.add(new int[] { s, i });
+        final int interval = samplingInterval;
+        batch.add(new Callable<Double>() {
+          public Double call() throws WattDepotClientException {
+            return fetchValue(metric, source, start, stop, interval);
+          }
+        });
+      } // end for
+    } // end for
 
+    if (batch.size() > 0) {
+      try {
+        QueryPool.getSharedPool().run(batch);
+      }
+      catch (ExecutionException e) {
+        wattDepotExceptionThrown = true;
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        wattDepotExceptionThrown = true;
+      }
+      finally {
+        lastBatchStatistics = batch.getStatistics();
+      }
+      List<Double> fetched = batch.getResults();
+      for (int q = 0; q < fetched.size(); q++) {
+        int[] cell = cells.get(q);
+        values[cell[0]][cell[1]] = fetched.get(q);
+        missing[cell[0]][cell[1]] = false;
+      } // end for
+    }
+
+    List<TimeSeries> series = new ArrayList<TimeSeries>(values.length);
+    for (int s = 0; s < values.length; s++) {
+      TimeSeries.Builder dataList =
+          new TimeSeries.Builder(startDay, samplingInterval, values[s].length);
+      for (int i = 0; i < values[s].length; i++) {
+        dataList.add(missing[s][i] ? Double.NaN : toChartUnits(values[s][i], powerType,
+            granularityChoice));
+      } // end for
+      series.add(dataList.build());
+    } // end for
+    return series;
+  }
+
+  /**
+   * Creates lists of power data for several power sources, each from sensor data downloaded once
+   * for the whole range, with the power sources downloaded in parallel. If the data of a power
+   * source cannot be retrieved, its list is empty and an error is recorded.
+   * 
+   * @param start Start of the first day, in milliseconds since the epoch.
+   * @param end End of the last day, in milliseconds since the epoch.
+   * @param sources Power sources from which to get data.
+   * @param powerType Type of power, carbon or energy.
+   * @param granularityChoice Type of granularity, hour, day or week.
+   * @return Power data for each power source, in the same order as the power sources.
+   */
+  private List<TimeSeries> getChartDataFromSensorData(final long start, final long end,
+      List<String> sources, final String powerType, final String granularityChoice) {
+    QueryBatch<TimeSeries> batch = new QueryBatch<TimeSeries>();
+    for (final String source : sources) {
+      batch.add(new Callable<TimeSeries>() {
+        public TimeSeries call() {
+          return getChartDataFromSensorData(start, end, source, powerType, granularityChoice);
+        }
+      });
+    } // end for
+    try {
+      QueryPool.getSharedPool().run(batch);
+    }
+    catch (ExecutionException e) {
+      wattDepotExceptionThrown = true;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      wattDepotExceptionThrown = true;
+    }
+    finally {
+      lastBatchStatistics = batch.getStatistics();
+    }
+    List<TimeSeries> series = new ArrayList<TimeSeries>(batch.getResults());
+    while (series.size() < sources.size()) {
+      series.add(TimeSeries.EMPTY);
+    }
+    return series;
+  }
+
+  /**
+   * Sets the sampling interval of this command from a granularity. An unknown granularity leaves
+   * the sampling interval as it is.
+   * 
+   * @param granularityChoice Type of granularity, hour, day or week.
+   */
+  private void setSamplingInterval(String granularityChoice) {
     if (granularityChoice.equalsIgnoreCase("hour")) {
       samplingInterval = 60;
     }
@@ -162,69 +886,161 @@ public class WattDepotCommand {
     else if (granularityChoice.equalsIgnoreCase("week")) {
       samplingInterval = 60 * 24 * 7;
     }
-    double data = 0.0;
+  }
 
-    try {
-      while (Tstamp.greaterThan(tempEnd, tempStart)) {
-        if (powerType.equalsIgnoreCase("energy")) {
-          data =
-              CLIENT.getEnergyGenerated(source, tempStart, Tstamp.incrementHours(tempStart,
-                  samplingInterval / 60), samplingInterval);
-          // Convert to MW for energy.
-          data /= 1000000.0;
-        } // end if
-        else if (powerType.equalsIgnoreCase("carbon")) {
-          data =
-              CLIENT.getCarbonEmitted(source, tempStart, Tstamp.incrementHours(tempStart,
-                  samplingInterval / 60), samplingInterval);
-          // Convert to KW because for now, the data for carbon is very low.
-          data /= 1000.0;
-        } // end else if
-        else {
-          wattDepotExceptionThrown = true;
-          break;
-        } // end else
-
-        // Convert to GW for energy or MW for carbon.
-        boolean granularityDay = granularityChoice.equalsIgnoreCase("day");
-        if (granularityDay || granularityChoice.equalsIgnoreCase("week")) {
-          data /= 1000.0;
-        }
+  /**
+   * Returns the type of data for a type of power.
+   * 
+   * @param powerType Type of power, carbon or energy.
+   * @return Type of data, or null if the type of power is not known.
+   */
+  private static String toMetric(String powerType) {
+    if (powerType.equalsIgnoreCase("energy")) {
+      return ENERGY;
+    }
+    if (powerType.equalsIgnoreCase("carbon")) {
+      return CARBON;
+    }
+    return null;
+  }
 
-        dataList.add(data);
-        tempStart = Tstamp.incrementMinutes(tempStart, samplingInterval);
-      } // end while
-    } // end try
+  /**
+   * Creates a list of power data for the given power source from startTime to endTime by
+   * downloading the sensor data for the whole range once and computing the data for each hour,
+   * day, or week locally.
+   * 
+   * @param start Start of the first day, in milliseconds since the epoch.
+   * @param end End of the last day, in milliseconds since the epoch.
+   * @param source Power source from which to get data.
+   * @param powerType Type of power, carbon or energy.
+   * @param granularityChoice Type of granularity, hour, day or week.
+   * @return Power data, one value for each sampling interval.
+   */
+  private TimeSeries getChartDataFromSensorData(long start, long end, String source,
+      String powerType, String granularityChoice) {
+
+    boolean energy = powerType.equalsIgnoreCase("energy");
+    if (!energy && !powerType.equalsIgnoreCase("carbon")) {
+      wattDepotExceptionThrown = true;
+      return TimeSeries.EMPTY;
+    }
+
+    // Download whole periods so that the last day or week is complete.
+    long rangeEnd =
+        TimeGrid.covering(start, end, samplingInterval * TimeGrid.MINUTE).getEndMillis();
+
+    TimeSeries rolledUp =
+        getChartDataFromRollups(start, rangeEnd, source, energy ? ENERGY : CARBON, powerType,
+            granularityChoice);
+    if (rolledUp != null) {
+      return rolledUp;
+    }
+
+    try {
+      DerivedSeries series = fetchHourly(source, start, rangeEnd).aggregate(samplingInterval);
+      double[] dataList = new double[series.size()];
+      for (int i = 0; i < dataList.length; i++) {
+        double data = energy ? series.getEnergy(i) : series.getCarbon(i);
+        dataList[i] = toChartUnits(data, powerType, granularityChoice);
+      }
+      return new TimeSeries(series.getStartMillis(), samplingInterval, dataList);
+    }
     catch (WattDepotClientException e) {
       wattDepotExceptionThrown = true;
+      return TimeSeries.EMPTY;
+    }
+  }
+
+  /**
+   * Creates a list of power data for the given power source from the hourly data in the shared
+   * rollup store, if every hour of the range is there.
+   * 
+   * @param start Start of the first period, in milliseconds since the epoch.
+   * @param end End of the last period, in milliseconds since the epoch.
+   * @param source Power source from which to get data.
+   * @param metric Type of data, energy or carbon.
+   * @param powerType Type of power, carbon or energy.
+   * @param granularityChoice Type of granularity, hour, day or week.
+   * @return Power data, one value for each sampling interval, or null if an hour is missing.
+   */
+  private TimeSeries getChartDataFromRollups(long start, long end, String source, String metric,
+      String powerType, String granularityChoice) {
+    TimeGrid grid = TimeGrid.covering(start, end, samplingInterval * TimeGrid.MINUTE);
+    double[] dataList = new double[grid.size()];
+    for (int i = 0; i < dataList.length; i++) {
+      double data = ROLLUPS.getRange(source, metric, grid.get(i), grid.get(i + 1));
+      if (Double.isNaN(data)) {
+        return null;
+      }
+      dataList[i] = toChartUnits(data, powerType, granularityChoice);
+    } // end for
+    return new TimeSeries(start, samplingInterval, dataList);
+  }
+
+  /**
+   * Converts energy in Wh or carbon in lbs CO2 to the units shown on the chart: MW or KW for hourly
+   * data, and GW or MW for daily or weekly data.
+   * 
+   * @param data Energy or carbon data.
+   * @param powerType Type of power, carbon or energy.
+   * @param granularityChoice Type of granularity, hour, day or week.
+   * @return Data in the units shown on the chart.
+   */
+  private static double toChartUnits(double data, String powerType, String granularityChoice) {
+    double result = data;
+    if (powerType.equalsIgnoreCase("energy")) {
+      // Convert to MW for energy.
+      result /= 1000000.0;
+    }
+    else {
+      // Convert to KW because for now, the data for carbon is very low.
+      result /= 1000.0;
+    }
+
+    // Convert to GW for energy or MW for carbon.
+    boolean granularityDay = granularityChoice.equalsIgnoreCase("day");
+    if (granularityDay || granularityChoice.equalsIgnoreCase("week")) {
+      result /= 1000.0;
     }
-    return dataList;
+    return result;
+  }
+
+  /**
+   * Turns on or off computing data locally from sensor data downloaded once for each range.
+   * 
+   * @param value True or false.
+   */
+  public static void setRangeFetchMode(boolean value) {
+    rangeFetchMode = value;
+  }
+
+  /**
+   * Returns true if data are computed locally from sensor data downloaded once for each range,
+   * false otherwise.
+   * 
+   * @return True if data are computed locally from sensor data, false otherwise.
+   */
+  public static boolean isRangeFetchMode() {
+    return rangeFetchMode;
   }
 
   /**
    * Returns a list of all non-virtual power sources that are subsources of a given virtual power
-   * source.
+   * source. The subsources are looked up in the graph of power sources, so no queries are sent to
+   * the WattDepot server.
    * 
    * @param source A virtual power source.
    * @param subsources An empty list that will eventually contain non-virtual power sources.
    * @return A list of non-virtual power sources.
    */
   public List<String> getSubsources(Source source, List<String> subsources) {
-    for (String subsource : source.getSubSources().getHref()) {
-      subsource = subsource.substring(subsource.indexOf("SIM"));
-
-      try {
-        if (CLIENT.getSource(subsource).isVirtual()) {
-          getSubsources(CLIENT.getSource(subsource), subsources);
-        } // end if
-        else {
-          subsources.add(subsource);
-        } // end else
-      } // end try
-      catch (WattDepotClientException wdce) {
-        wattDepotExceptionThrown = true;
-        return subsources;
-      } // end catch
+    SourceGraph graph = getSourceGraph();
+    List<String> children = graph.getSubsources(source.getName());
+    if (!graph.contains(source.getName())) {
+      children = getSubSources(source);
+    }
+    for (String subsource : children) {
+      subsources.addAll(graph.getNonVirtualSources(subsource));
     } // end for
     return subsources;
   }
@@ -255,6 +1071,16 @@ public class WattDepotCommand {
     return noDataAvailable;
   }
 
+  /**
+   * Returns the graph of power sources on the WattDepot server, which is shared by all users and
+   * refreshed in the background.
+   * 
+   * @return The graph of power sources.
+   */
+  public static SourceGraph getSourceGraph() {
+    return SourceGraphRefresher.getShared().getGraph();
+  }
+
   /**
    * Returns the URI of the WattDepot server.
    * 
@@ -270,7 +1096,7 @@ public class WattDepotCommand {
    * @return WattDepotClient object.
    */
   public WattDepotClient getWattDepotClient() {
-    return CLIENT;
+    return client;
   }
 
   /**
@@ -279,10 +1105,14 @@ public class WattDepotCommand {
    * @param source Name of a power source.
    * @return A Source object representing the power source.
    */
-  public Source getSource(String source) {
+  public Source getSource(final String source) {
     Source temp = null;
     try {
-      temp = CLIENT.getSource(source);
+      temp = BREAKER.call(new Callable<Source>() {
+        public Source call() throws WattDepotClientException {
+          return client.getSource(source);
+        }
+      });
     }
     catch (WattDepotClientException wdce) {
       wdce.printStackTrace();
@@ -291,48 +1121,97 @@ public class WattDepotCommand {
   }
 
   /**
-   * Lists information about a public power source that is available on this server.
+   * Returns information about a public power source and the sensor data stored for it. Summaries
+   * are shared by all users and retrieved again from the server only after the refresh interval.
    * 
    * @param sourceName Name of a public power source.
-   * @return Information about a public power source.
+   * @return Information about the power source, or null if it cannot be retrieved.
    */
-  public final String getSourceSummary(String sourceName) {
+  public PowerSourceSummary getPowerSourceSummary(final String sourceName) {
+    PowerSourceSummary summary = SUMMARIES.get(sourceName);
+    if (summary != null
+        && System.currentTimeMillis() - summary.getRetrievedAt() < SUMMARY_REFRESH_INTERVAL) {
+      return summary;
+    }
+    if (upstreamDown) {
+      if (summary == null) {
+        wattDepotExceptionThrown = true;
+        return null;
+      }
+      staleDataServed = true;
+      return summary;
+    }
 
-    Source source = null;
     try {
-      source = CLIENT.getSource(sourceName);
+      summary = SUMMARY_COALESCER.execute(sourceName, new Callable<PowerSourceSummary>() {
+        public PowerSourceSummary call() throws WattDepotClientException {
+          return BREAKER.call(new Callable<PowerSourceSummary>() {
+            public PowerSourceSummary call() throws WattDepotClientException {
+              Source source = getSourceGraph().getSource(sourceName);
+              if (source == null) {
+                source = client.getSource(sourceName);
+              }
+              return new PowerSourceSummary(source, client.getSourceSummary(sourceName));
+            }
+          });
+        }
+      });
+      SUMMARIES.put(sourceName, summary);
+      return summary;
     }
-    catch (WattDepotClientException wdce) {
+    catch (ExecutionException e) {
+      // Serve the last summary, if there is one, until the server responds again.
+      if (summary != null) {
+        staleDataServed = true;
+        return summary;
+      }
+      wattDepotExceptionThrown = true;
+      return null;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
       wattDepotExceptionThrown = true;
-      return "ERROR_1";
+      return null;
+    }
+  }
+
+  /**
+   * Lists information about a public power source that is available on this server.
+   * 
+   * @param sourceName Name of a public power source.
+   * @return Information about a public power source.
+   */
+  public final String getSourceSummary(String sourceName) {
+
+    PowerSourceSummary summary = getPowerSourceSummary(sourceName);
+    if (summary == null) {
+      return getSourceGraph().contains(sourceName) ? "ERROR_2" : "ERROR_1";
     }
 
     String format = "  %1$-20s %2$-100s" + "\n";
     StringBuffer buffer = new StringBuffer(2500);
 
-    if (source.isSetSubSources()) {
-      String subsources = "";
-      for (String href : source.getSubSources().getHref()) {
-        buffer.append(href.substring(href.indexOf("SIM")));
-        buffer.append(", ");
-      } // end for
-      subsources = buffer.toString().substring(0, buffer.toString().length() - 2);
-      buffer.setLength(0);
-      buffer.append(String.format(format, "SubSources: ", subsources));
-    } // end if
-    else {
+    if (summary.getSubsources().isEmpty()) {
       buffer.append(String.format(format, "SubSources: ", "[ None ]"));
     }
+    else {
+      String subsources = summary.getSubsources().toString();
+      buffer.append(String.format(format, "SubSources: ", subsources.substring(1, subsources
+          .length() - 1)));
+    }
 
-    buffer.append(String.format(format, "Description: ", source.getDescription()));
-    buffer.append(String.format(format, "Owner: ", source.getOwner()));
-    buffer.append(String.format(format, "Location: ", source.getLocation()));
-    buffer.append(String.format(format, "Coordinates: ", source.getCoordinates()));
+    buffer.append(String.format(format, "Description: ", summary.getDescription()));
+    buffer.append(String.format(format, "Owner: ", summary.getOwner()));
+    buffer.append(String.format(format, "Location: ", summary.getLocation()));
+    buffer.append(String.format(format, "Coordinates: ", summary.getCoordinates()));
 
     StringBuffer tempBuffer = new StringBuffer(255);
     String properties = "";
-    if (source.isSetProperties()) {
-      for (Property property : source.getProperties().getProperty()) {
+    if (summary.getProperties().isEmpty()) {
+      properties = "None";
+    }
+    else {
+      for (Map.Entry<String, String> property : summary.getProperties().entrySet()) {
         tempBuffer.append('(');
         tempBuffer.append(property.getKey());
         tempBuffer.append(" : ");
@@ -340,29 +1219,105 @@ public class WattDepotCommand {
         tempBuffer.append("), ");
       } // end for
       properties = tempBuffer.toString().substring(0, tempBuffer.toString().length() - 2);
-    } // end if
-    else {
-      properties = "None";
     }
     buffer.append(String.format(format, "Properties: ", properties));
 
-    SourceSummary sourceSummary = null;
-    try {
-      sourceSummary = CLIENT.getSourceSummary(sourceName);
-    }
-    catch (WattDepotClientException wdce) {
-      wattDepotExceptionThrown = true;
-      return "ERROR_2";
-    }
-
-    buffer.append(String.format(format, "Earliest data: ", sourceSummary.getFirstSensorData()
-        .toString()));
-    buffer.append(String.format(format, "Latest data: ", sourceSummary.getLastSensorData()
-        .toString()));
-    buffer
-        .append(String.format(format, "Total data points: ", sourceSummary.getTotalSensorDatas()));
+    buffer.append(String.format(format, "Earliest data: ", summary.getEarliestData().toString()));
+    buffer.append(String.format(format, "Latest data: ", summary.getLatestData().toString()));
+    buffer.append(String.format(format, "Total data points: ", summary.getTotalDataPoints()));
 
     return buffer.toString();
   }
 
-}
\ No newline at end of file
+  /**
+   * Starts getting the carbon intensity of the Oahu power grid for each hour of one 24-hour period
+   * in the background and returns at once. The flags of this command describe the result once the
+   * future is done. Only one future of a command should be outstanding at a time.
+   * 
+   * @param timestamps List of timestamps for one 24-hour period.
+   * @return Future through which the carbon intensity for each hour is collected.
+   */
+  public Future<TimeSeries> getCarbonContentDataAsync(
+      final List<XMLGregorianCalendar> timestamps) {
+    return ASYNC_POOL.submit(new Callable<TimeSeries>() {
+      public TimeSeries call() {
+        return getCarbonContentData(timestamps);
+      }
+    });
+  }
+
+  /**
+   * Starts getting the carbon intensity of the Oahu power grid over the hour after a timestamp in
+   * the background and returns at once.
+   * 
+   * @param timestamp Start of the hour.
+   * @return Future through which the carbon intensity is collected.
+   */
+  public Future<Double> getCarbonContentDataAsync(final XMLGregorianCalendar timestamp) {
+    return ASYNC_POOL.submit(new Callable<Double>() {
+      public Double call() {
+        return getCarbonContentData(timestamp);
+      }
+    });
+  }
+
+  /**
+   * Starts getting the power data for a chart in the background and returns at once.
+   * 
+   * @param startDay Start of the first day, in milliseconds since the epoch.
+   * @param endDay Start of the last day, in milliseconds since the epoch.
+   * @param source Power source from which to get data.
+   * @param powerType Type of power, carbon or energy.
+   * @param granularityChoice Type of granularity, hour, day or week.
+   * @return Future through which the power data are collected.
+   */
+  public Future<TimeSeries> getChartDataAsync(final long startDay, final long endDay,
+      final String source, final String powerType, final String granularityChoice) {
+    return ASYNC_POOL.submit(new Callable<TimeSeries>() {
+      public TimeSeries call() {
+        return getChartData(startDay, endDay, source, powerType, granularityChoice);
+      }
+    });
+  }
+
+  /**
+   * Starts getting a power source in the background and returns at once.
+   * 
+   * @param source Name of the power source.
+   * @return Future through which the power source, or null, is collected.
+   */
+  public Future<Source> getSourceAsync(final String source) {
+    return ASYNC_POOL.submit(new Callable<Source>() {
+      public Source call() {
+        return getSource(source);
+      }
+    });
+  }
+
+  /**
+   * Starts getting information about a public power source in the background and returns at once.
+   * 
+   * @param sourceName Name of a public power source.
+   * @return Future through which the information, or null, is collected.
+   */
+  public Future<PowerSourceSummary> getPowerSourceSummaryAsync(final String sourceName) {
+    return ASYNC_POOL.submit(new Callable<PowerSourceSummary>() {
+      public PowerSourceSummary call() {
+        return getPowerSourceSummary(sourceName);
+      }
+    });
+  }
+
+  /**
+   * Starts a piece of work that uses the WattDepot server in the background and returns at once.
+   * Used by pages to run longer work, such as drawing a chart, off the request thread.
+   * 
+   * @param <T> Type of the result of the work.
+   * @param work The work.
+   * @return Future through which the result of the work is collected.
+   */
+  public static <T> Future<T> submit(Callable<T> work) {
+    return ASYNC_POOL.submit(work);
+  }
+
+}
@@ -0,0 +1,167 @@
+package edu.hawaii.wattdepot.server;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Describes how slowly and how reliably the stand-in server answers requests to one of its
+ * endpoints, and counts the requests it has received. The initial settings can be given with the
+ * <code>standin.&lt;endpoint&gt;.latency</code>, <code>standin.&lt;endpoint&gt;.jitter</code> and
+ * <code>standin.&lt;endpoint&gt;.errorRate</code> system properties, for example
+ * <code>-Dstandin.energy.latency=200</code>.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class EndpointProfile {
+
+  /** Name of the endpoint. */
+  private final String name;
+  /** Number of milliseconds each request is delayed. */
+  private volatile long latency;
+  /** Largest number of milliseconds added to or taken from the delay of each request. */
+  private volatile long jitter;
+  /** Fraction of requests, from 0 to 1, that fail with an internal server error. */
+  private volatile double errorRate;
+  /** Number of requests received. */
+  private final AtomicLong requestCount = new AtomicLong();
+  /** Number of requests that were made to fail. */
+  private final AtomicLong errorCount = new AtomicLong();
+
+  /**
+   * Creates a profile for an endpoint with the settings given in the system properties, or no
+   * delay and no errors if they are not set.
+   * 
+   * @param name Name of the endpoint.
+   */
+  EndpointProfile(String name) {
+    this.name = name;
+    this.latency = Long.getLong("standin." + name + ".latency", 0L);
+    this.jitter = Long.getLong("standin." + name + ".jitter", 0L);
+    this.errorRate = Double.parseDouble(System.getProperty("standin." + name + ".errorRate", "0"));
+  }
+
+  /**
+   * Returns the name of the endpoint.
+   * 
+   * @return Name of the endpoint.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the number of milliseconds each request is delayed.
+   * 
+   * @return Latency in milliseconds.
+   */
+  public long getLatency() {
+    return latency;
+  }
+
+  /**
+   * Sets the number of milliseconds each request is delayed.
+   * 
+   * @param latency Latency in milliseconds.
+   */
+  public void setLatency(long latency) {
+    this.latency = latency;
+  }
+
+  /**
+   * Returns the largest number of milliseconds added to or taken from the delay of each request.
+   * 
+   * @return Jitter in milliseconds.
+   */
+  public long getJitter() {
+    return jitter;
+  }
+
+  /**
+   * Sets the largest number of milliseconds added to or taken from the delay of each request.
+   * 
+   * @param jitter Jitter in milliseconds.
+   */
+  public void setJitter(long jitter) {
+    this.jitter = jitter;
+  }
+
+  /**
+   * Returns the fraction of requests that fail.
+   * 
+   * @return Error rate from 0 to 1.
+   */
+  public double getErrorRate() {
+    return errorRate;
+  }
+
+  /**
+   * Sets the fraction of requests that fail.
+   * 
+   * @param errorRate Error rate from 0 to 1.
+   */
+  public void setErrorRate(double errorRate) {
+    this.errorRate = errorRate;
+  }
+
+  /**
+   * Returns the number of requests received since the counts were last reset.
+   * 
+   * @return Number of requests.
+   */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * Returns the number of requests that were made to fail since the counts were last reset.
+   * 
+   * @return Number of failed requests.
+   */
+  public long getErrorCount() {
+    return errorCount.get();
+  }
+
+  /**
+   * Sets the number of requests and failed requests back to zero.
+   */
+  public void resetCounts() {
+    requestCount.set(0);
+    errorCount.set(0);
+  }
+
+  /**
+   * Counts a request, delays it, and decides whether it fails.
+   * 
+   * @param random Source of the jitter and of the errors.
+   * @return True if the request must fail, false otherwise.
+   * @throws InterruptedException If the thread was interrupted while the request was delayed.
+   */
+  boolean simulate(Random random) throws InterruptedException {
+    requestCount.incrementAndGet();
+    long delay = latency;
+    if (jitter > 0) {
+      delay += (long) ((random.nextDouble() * 2.0 - 1.0) * jitter);
+    }
+    if (delay > 0) {
+      Thread.sleep(delay);
+    }
+    if (errorRate > 0 && random.nextDouble() < errorRate) {
+      errorCount.incrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the settings and counts of this endpoint.
+   * 
+   * @return A line that describes this endpoint.
+   */
+  @Override
+  public String toString() {
+    return String.format("%-12s latency %5d ms, jitter %5d ms, error rate %.2f, %7d requests, "
+        + "%5d errors", name, latency, jitter, errorRate, requestCount.get(), errorCount.get());
+  }
+
+}
@@ -0,0 +1,197 @@
+package edu.hawaii.wattdepot.server;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import org.mortbay.jetty.Server;
+import org.mortbay.jetty.servlet.Context;
+import org.mortbay.jetty.servlet.ServletHolder;
+
+/**
+ * Runs a local stand-in for the WattDepot server inside Jetty. It answers the requests that the
+ * WattDepot client sends for power sources, source summaries, sensor data, energy generated and
+ * carbon emitted with synthetic data for the SIM_* power sources of the Oahu grid, so performance
+ * can be measured without the network and with the same data every time. The delay and error rate
+ * of each endpoint can be changed while the server is running. To point the web application at
+ * the stand-in server, start it with <code>-Dwattdepot.uri=</code> followed by the URI returned by
+ * {@link #getUri()}.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class StandInServer {
+
+  /** Endpoint that tells whether the server is running. */
+  public static final String HEALTH = "health";
+  /** Endpoint that lists power sources or returns one of them. */
+  public static final String SOURCES = "sources";
+  /** Endpoint that returns the summary of a power source. */
+  public static final String SUMMARY = "summary";
+  /** Endpoint that returns sensor data. */
+  public static final String SENSOR_DATA = "sensordata";
+  /** Endpoint that returns the energy generated between two times. */
+  public static final String ENERGY = "energy";
+  /** Endpoint that returns the carbon emitted between two times. */
+  public static final String CARBON = "carbon";
+  /** Time of the first reading if the system property is not set. */
+  public static final String DEFAULT_FIRST_DATA = "2009-11-01T00:00:00.000-10:00";
+  /** The context root. */
+  private static final String CONTEXT_PATH = "/wattdepot";
+  /** Port used when the server is run from the command line. */
+  private static final int DEFAULT_PORT = 8183;
+
+  /** Port to listen on, or 0 to use any free port. */
+  private final int port;
+  /** Profiles of the endpoints, by name. */
+  private final Map<String, EndpointProfile> profiles;
+  /** Simulated grid whose data are served. */
+  private final SyntheticGrid grid;
+  /** Source of the jitter and of the errors. */
+  private final Random random;
+  /** The Jetty server, or null if the stand-in server is not running. */
+  private Server server;
+
+  /**
+   * Creates a stand-in server. The first and last readings and the seed used for jitter and errors
+   * can be changed with the <code>standin.firstData</code>, <code>standin.lastData</code> and
+   * <code>standin.seed</code> system properties; without <code>standin.lastData</code>, the last
+   * reading is the most recent quarter hour.
+   * 
+   * @param port Port to listen on, or 0 to use any free port.
+   */
+  public StandInServer(int port) {
+    this.port = port;
+    Map<String, EndpointProfile> map = new LinkedHashMap<String, EndpointProfile>();
+    for (String endpoint : new String[] { HEALTH, SOURCES, SUMMARY, SENSOR_DATA, ENERGY,
+        CARBON }) {
+      map.put(endpoint, new EndpointProfile(endpoint));
+    }
+    this.profiles = Collections.unmodifiableMap(map);
+    this.random = new Random(Long.getLong("standin.seed", 0L));
+
+    SyntheticGrid parser = new SyntheticGrid(0, 0);
+    long first = parser.parseTimestamp(System.getProperty("standin.firstData", DEFAULT_FIRST_DATA));
+    String lastData = System.getProperty("standin.lastData");
+    long last = lastData == null ? 0 : parser.parseTimestamp(lastData);
+    if (last != 0) {
+      last -= (last - first) % SyntheticGrid.READING_INTERVAL;
+    }
+    this.grid = new SyntheticGrid(first, last);
+  }
+
+  /**
+   * Starts the server.
+   * 
+   * @throws Exception If Jetty cannot be started.
+   */
+  public synchronized void start() throws Exception {
+    if (server != null) {
+      return;
+    }
+    Server jetty = new Server(port);
+    Context context = new Context(jetty, CONTEXT_PATH, Context.NO_SESSIONS);
+    context.addServlet(new ServletHolder(new StandInServlet(grid, profiles, random)), "/*");
+    jetty.start();
+    server = jetty;
+  }
+
+  /**
+   * Stops the server.
+   * 
+   * @throws Exception If Jetty cannot be stopped.
+   */
+  public synchronized void stop() throws Exception {
+    if (server != null) {
+      server.stop();
+      server.join();
+      server = null;
+    }
+  }
+
+  /**
+   * Returns the URI of the server, which can be given to the WattDepot client.
+   * 
+   * @return URI of the server.
+   * @throws IllegalStateException If the server is not running.
+   */
+  public synchronized String getUri() {
+    if (server == null) {
+      throw new IllegalStateException("The stand-in server is not running.");
+    }
+    return "http://localhost:" + server.getConnectors()[0].getLocalPort() + CONTEXT_PATH + "/";
+  }
+
+  /**
+   * Returns the profile of an endpoint, which can be used to change its delay and error rate and
+   * to read the number of requests it has received.
+   * 
+   * @param endpoint Name of the endpoint, such as {@link #ENERGY}.
+   * @return The profile of the endpoint.
+   * @throws IllegalArgumentException If there is no such endpoint.
+   */
+  public EndpointProfile getProfile(String endpoint) {
+    EndpointProfile profile = profiles.get(endpoint);
+    if (profile == null) {
+      throw new IllegalArgumentException("Unknown endpoint: " + endpoint);
+    }
+    return profile;
+  }
+
+  /**
+   * Returns the number of requests received by all endpoints.
+   * 
+   * @return Number of requests.
+   */
+  public long getRequestCount() {
+    long count = 0;
+    for (EndpointProfile profile : profiles.values()) {
+      count += profile.getRequestCount();
+    }
+    return count;
+  }
+
+  /**
+   * Sets the number of requests of all endpoints back to zero.
+   */
+  public void resetCounts() {
+    for (EndpointProfile profile : profiles.values()) {
+      profile.resetCounts();
+    }
+  }
+
+  /**
+   * Returns the settings and counts of all endpoints, one per line.
+   * 
+   * @return A report of all endpoints.
+   */
+  public String getReport() {
+    StringBuilder report = new StringBuilder(512);
+    for (EndpointProfile profile : profiles.values()) {
+      report.append(profile).append('\n');
+    }
+    return report.toString();
+  }
+
+  /**
+   * Runs the stand-in server until a key is pressed, then prints the number of requests received
+   * by each endpoint.
+   * 
+   * @param args The port to listen on, or none to use port 8183.
+   * @throws Exception If the server cannot be started or stopped.
+   */
+  public static void main(String[] args) throws Exception {
+    StandInServer standIn =
+        new StandInServer(args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT);
+    standIn.start();
+    System.out.printf("%nStand-in WattDepot server at %s. Start the web application with "
+        + "-Dwattdepot.uri=%s to use it. Press Return to exit.%n", standIn.getUri(), standIn
+        .getUri());
+    while (System.in.available() == 0) {
+      Thread.sleep(5000);
+    }
+    System.out.print(standIn.getReport());
+    standIn.stop();
+  }
+
+}
@@ -0,0 +1,374 @@
+package edu.hawaii.wattdepot.server;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import edu.hawaii.wattdepot.server.SyntheticGrid.SimSource;
+
+/**
+ * Answers the requests that the WattDepot client sends to a WattDepot server, using the data of a
+ * simulated grid. Each request is delayed and made to fail as described by the profile of its
+ * endpoint.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+class StandInServlet extends HttpServlet {
+
+  /** Used for serialization. */
+  private static final long serialVersionUID = 1L;
+  /** Name of the tool that made the sensor data. */
+  private static final String TOOL = "StandInServer";
+  /** Simulated grid whose data are served. */
+  private final transient SyntheticGrid grid;
+  /** Profiles of the endpoints, by name. */
+  private final transient Map<String, EndpointProfile> profiles;
+  /** Source of the jitter and of the errors. */
+  private final transient Random random;
+
+  /**
+   * Creates a servlet.
+   * 
+   * @param grid Simulated grid whose data are served.
+   * @param profiles Profiles of the endpoints, by name.
+   * @param random Source of the jitter and of the errors.
+   */
+  StandInServlet(SyntheticGrid grid, Map<String, EndpointProfile> profiles, Random random) {
+    this.grid = grid;
+    this.profiles = profiles;
+    this.random = random;
+  }
+
+  /**
+   * Answers a request.
+   * 
+   * @param request The request.
+   * @param response The response.
+   * @throws IOException If the response cannot be written.
+   */
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    String path = request.getPathInfo() == null ? "" : request.getPathInfo();
+    String[] parts = path.replaceAll("^/+", "").split("/");
+    String endpoint = getEndpoint(parts);
+    if (endpoint == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown resource: " + path);
+      return;
+    }
+    try {
+      if (profiles.get(endpoint).simulate(random)) {
+        response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Injected failure.");
+        return;
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server is stopping.");
+      return;
+    }
+
+    if (StandInServer.HEALTH.equals(endpoint)) {
+      response.setContentType("text/plain");
+      response.getWriter().print("WattDepot is alive.");
+      return;
+    }
+    String base =
+        request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort()
+            + request.getContextPath() + "/";
+    if (StandInServer.SOURCES.equals(endpoint) && parts.length == 1) {
+      writeSources(response, base, "true".equals(request.getParameter("fetchAll")));
+      return;
+    }
+
+    SimSource source = grid.getSource(parts[1]);
+    if (source == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown source: " + parts[1]);
+      return;
+    }
+    try {
+      if (StandInServer.SOURCES.equals(endpoint)) {
+        writeSource(startXml(response), base, source);
+      }
+      else if (StandInServer.SUMMARY.equals(endpoint)) {
+        writeSummary(startXml(response), base, source);
+      }
+      else if (StandInServer.SENSOR_DATA.equals(endpoint)) {
+        writeSensorData(request, response, base, source, parts);
+      }
+      else {
+        writeEnergyOrCarbon(request, response, base, source, endpoint);
+      }
+    }
+    catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the endpoint that a path belongs to.
+   * 
+   * @param parts Parts of the path between slashes.
+   * @return Name of the endpoint, or null if the path is not known.
+   */
+  private static String getEndpoint(String[] parts) {
+    if (parts.length == 1 && StandInServer.HEALTH.equals(parts[0])) {
+      return StandInServer.HEALTH;
+    }
+    if (!StandInServer.SOURCES.equals(parts[0])) {
+      return null;
+    }
+    if (parts.length <= 2) {
+      return StandInServer.SOURCES;
+    }
+    if (parts.length == 3 && (StandInServer.SUMMARY.equals(parts[2])
+        || StandInServer.ENERGY.equals(parts[2]) || StandInServer.CARBON.equals(parts[2]))) {
+      return parts[2];
+    }
+    if (parts.length <= 4 && StandInServer.SENSOR_DATA.equals(parts[2])) {
+      return StandInServer.SENSOR_DATA;
+    }
+    return null;
+  }
+
+  /**
+   * Starts an XML response.
+   * 
+   * @param response The response.
+   * @return Writer of the response.
+   * @throws IOException If the response cannot be written.
+   */
+  private static PrintWriter startXml(HttpServletResponse response) throws IOException {
+    response.setContentType("text/xml");
+    response.setCharacterEncoding("UTF-8");
+    PrintWriter writer = response.getWriter();
+    writer.print("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+    return writer;
+  }
+
+  /**
+   * Writes the index of all power sources, or all power sources if fetchAll is true.
+   * 
+   * @param response The response.
+   * @param base URI of the server.
+   * @param fetchAll True to write the power sources themselves, false to write references.
+   * @throws IOException If the response cannot be written.
+   */
+  private void writeSources(HttpServletResponse response, String base, boolean fetchAll)
+      throws IOException {
+    PrintWriter writer = startXml(response);
+    writer.print(fetchAll ? "<Sources>" : "<SourceIndex>");
+    for (SimSource source : grid.getSources()) {
+      if (fetchAll) {
+        writeSource(writer, base, source);
+      }
+      else {
+        writer.printf("<SourceRef Href=\"%ssources/%s\" Name=\"%s\" Owner=\"%s\" "
+            + "Public=\"true\" Virtual=\"%s\"/>", base, source.getName(), source.getName(),
+            getOwner(base), source.isVirtual());
+      }
+    } // end for
+    writer.print(fetchAll ? "</Sources>" : "</SourceIndex>");
+  }
+
+  /**
+   * Writes a power source.
+   * 
+   * @param writer Writer of the response.
+   * @param base URI of the server.
+   * @param source The power source.
+   */
+  private static void writeSource(PrintWriter writer, String base, SimSource source) {
+    writer.print("<Source>");
+    writer.printf("<Name>%s</Name>", source.getName());
+    writer.printf("<Owner>%s</Owner>", getOwner(base));
+    writer.print("<Public>true</Public>");
+    writer.printf("<Virtual>%s</Virtual>", source.isVirtual());
+    writer.printf("<Coordinates>%s</Coordinates>", source.getCoordinates());
+    writer.printf("<Location>%s</Location>", source.getLocation());
+    writer.printf("<Description>%s</Description>", source.getDescription());
+    if (source.isVirtual()) {
+      writer.print("<SubSources>");
+      for (String child : source.getSubsources()) {
+        writer.printf("<Href>%ssources/%s</Href>", base, child);
+      }
+      writer.print("</SubSources>");
+    }
+    else {
+      writer.print("<Properties>");
+      writeProperty(writer, "carbonIntensity", String.valueOf(source.getCarbonIntensity()));
+      writeProperty(writer, "fuelType", source.getFuelType());
+      writer.print("</Properties>");
+    }
+    writer.print("</Source>");
+  }
+
+  /**
+   * Writes the summary of the sensor data stored for a power source.
+   * 
+   * @param writer Writer of the response.
+   * @param base URI of the server.
+   * @param source The power source.
+   */
+  private void writeSummary(PrintWriter writer, String base, SimSource source) {
+    writer.print("<SourceSummary>");
+    writer.printf("<Href>%ssources/%s</Href>", base, source.getName());
+    writer.printf("<FirstSensorData>%s</FirstSensorData>", grid.toTimestamp(
+        grid.getFirstReading()).toXMLFormat());
+    writer.printf("<LastSensorData>%s</LastSensorData>", grid.toTimestamp(
+        grid.getLastReading()).toXMLFormat());
+    writer.printf("<TotalSensorDatas>%d</TotalSensorDatas>", grid.getReadingCount(source));
+    writer.print("</SourceSummary>");
+  }
+
+  /**
+   * Writes the sensor data of a plant: the latest one, the one at a given timestamp, or all of
+   * them between the startTime and endTime parameters.
+   * 
+   * @param request The request.
+   * @param response The response.
+   * @param base URI of the server.
+   * @param source The power source.
+   * @param parts Parts of the path between slashes.
+   * @throws IOException If the response cannot be written.
+   */
+  private void writeSensorData(HttpServletRequest request, HttpServletResponse response,
+      String base, SimSource source, String[] parts) throws IOException {
+    if (source.isVirtual()) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No sensor data are stored for "
+          + "virtual source " + source.getName() + ".");
+      return;
+    }
+    if (parts.length == 4) {
+      long time =
+          "latest".equals(parts[3]) ? grid.getLastReading() : grid.parseTimestamp(parts[3]);
+      if (!grid.getReadingTimes(time, time).contains(time)) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND, "No sensor data at " + parts[3]);
+        return;
+      }
+      PrintWriter writer = startXml(response);
+      writeReading(writer, base, source, time);
+      return;
+    }
+
+    long start = grid.parseTimestamp(request.getParameter("startTime"));
+    long end = grid.parseTimestamp(request.getParameter("endTime"));
+    if (start > end) {
+      throw new IllegalArgumentException("Start time is later than end time.");
+    }
+    List<Long> times = grid.getReadingTimes(start, end);
+    PrintWriter writer = startXml(response);
+    if ("true".equals(request.getParameter("fetchAll"))) {
+      writer.print("<SensorDatas>");
+      for (Long time : times) {
+        writeReading(writer, base, source, time);
+      }
+      writer.print("</SensorDatas>");
+    }
+    else {
+      writer.print("<SensorDataIndex>");
+      for (Long time : times) {
+        String timestamp = grid.toTimestamp(time).toXMLFormat();
+        writer.printf("<SensorDataRef Href=\"%ssources/%s/sensordata/%s\" Timestamp=\"%s\" "
+            + "Tool=\"%s\" Source=\"%ssources/%s\"/>", base, source.getName(), timestamp,
+            timestamp, TOOL, base, source.getName());
+      }
+      writer.print("</SensorDataIndex>");
+    }
+  }
+
+  /**
+   * Writes one reading of a plant.
+   * 
+   * @param writer Writer of the response.
+   * @param base URI of the server.
+   * @param source The plant.
+   * @param time Time of the reading.
+   */
+  private void writeReading(PrintWriter writer, String base, SimSource source, long time) {
+    writer.print("<SensorData>");
+    writer.printf("<Timestamp>%s</Timestamp>", grid.toTimestamp(time).toXMLFormat());
+    writer.printf("<Tool>%s</Tool>", TOOL);
+    writer.printf("<Source>%ssources/%s</Source>", base, source.getName());
+    writer.print("<Properties>");
+    writeProperty(writer, "powerGenerated", String.valueOf(grid.getReading(source, time)));
+    writer.print("</Properties>");
+    writer.print("</SensorData>");
+  }
+
+  /**
+   * Writes the energy generated or carbon emitted by a power source between the startTime and
+   * endTime parameters.
+   * 
+   * @param request The request.
+   * @param response The response.
+   * @param base URI of the server.
+   * @param source The power source.
+   * @param endpoint Either energy or carbon.
+   * @throws IOException If the response cannot be written.
+   */
+  private void writeEnergyOrCarbon(HttpServletRequest request, HttpServletResponse response,
+      String base, SimSource source, String endpoint) throws IOException {
+    long start = grid.parseTimestamp(request.getParameter("startTime"));
+    long end = grid.parseTimestamp(request.getParameter("endTime"));
+    String interval = request.getParameter("samplingInterval");
+    int minutes;
+    try {
+      minutes = interval == null ? 15 : Integer.parseInt(interval);
+    }
+    catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Bad sampling interval: " + interval, e);
+    }
+    if (minutes <= 0 || start >= end) {
+      throw new IllegalArgumentException("Bad range or sampling interval.");
+    }
+    if (!grid.hasData(start) || !grid.hasData(end)) {
+      throw new IllegalArgumentException("No sensor data for the whole range.");
+    }
+
+    PrintWriter writer = startXml(response);
+    writer.print("<SensorData>");
+    writer.printf("<Timestamp>%s</Timestamp>", grid.toTimestamp(start).toXMLFormat());
+    writer.printf("<Tool>%s</Tool>", TOOL);
+    writer.printf("<Source>%ssources/%s</Source>", base, source.getName());
+    writer.print("<Properties>");
+    if (StandInServer.ENERGY.equals(endpoint)) {
+      double energy = grid.getEnergy(source, start, end, minutes);
+      writeProperty(writer, "energyGenerated", String.valueOf(energy));
+      writeProperty(writer, "energyConsumed", "0.0");
+    }
+    else {
+      double carbon = grid.getCarbon(source, start, end, minutes);
+      writeProperty(writer, "carbonEmitted", String.valueOf(carbon));
+    }
+    writer.print("</Properties>");
+    writer.print("</SensorData>");
+  }
+
+  /**
+   * Writes a property.
+   * 
+   * @param writer Writer of the response.
+   * @param key Name of the property.
+   * @param value Value of the property.
+   */
+  private static void writeProperty(PrintWriter writer, String key, String value) {
+    writer.printf("<Property><Key>%s</Key><Value>%s</Value></Property>", key, value);
+  }
+
+  /**
+   * Returns the owner of all power sources.
+   * 
+   * @param base URI of the server.
+   * @return URI of the owner.
+   */
+  private static String getOwner(String base) {
+    return base + "users/standin@wattdepot.org";
+  }
+
+}
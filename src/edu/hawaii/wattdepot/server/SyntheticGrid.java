@@ -0,0 +1,479 @@
+package edu.hawaii.wattdepot.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import edu.hawaii.wattdepot.TimeGrid;
+
+/**
+ * Holds the simulated Oahu power grid served by the stand-in server. The power generated by each
+ * plant is computed from its capacity, the time of day and a small amount of noise that depends
+ * only on the plant and the time, so the same request always gets the same answer. Readings are
+ * taken every 15 minutes from the first reading until the last one, which is either a fixed time
+ * or the most recent quarter hour.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+final class SyntheticGrid {
+
+  /** Number of milliseconds between readings. */
+  static final long READING_INTERVAL = 15L * 60L * 1000L;
+  /** Time zone of the timestamps. */
+  private static final TimeZone HST = TimeZone.getTimeZone("GMT-10:00");
+  /** Plant that runs near full capacity all day. */
+  private static final int BASELOAD = 0;
+  /** Plant that follows the demand during the day. */
+  private static final int CYCLING = 1;
+  /** Plant that runs only when the demand is highest. */
+  private static final int PEAKING = 2;
+  /** Location of plants whose location is not known. */
+  private static final String UNKNOWN_LOCATION = "To be looked up later";
+  /** Coordinates of plants whose coordinates are not known. */
+  private static final String UNKNOWN_COORDINATES = "0,0,0";
+
+  /** Power sources by name, in the order they were added. */
+  private final Map<String, SimSource> sources = new LinkedHashMap<String, SimSource>();
+  /** Time of the first reading, in milliseconds since the epoch. */
+  private final long firstReading;
+  /** Time of the last reading, or 0 to use the most recent quarter hour. */
+  private final long lastReading;
+  /** Creates timestamps. */
+  private final DatatypeFactory factory;
+
+  /**
+   * Describes one simulated power source.
+   */
+  static final class SimSource {
+    /** Name of the power source. */
+    private final String name;
+    /** Description of the power source. */
+    private final String description;
+    /** Location of the power source. */
+    private final String location;
+    /** Coordinates of the power source. */
+    private final String coordinates;
+    /** Capacity in W, or 0 for a virtual power source. */
+    private final double capacity;
+    /** Carbon intensity in lbs CO2 / MWh. */
+    private final int carbonIntensity;
+    /** Fuel burned by the power source. */
+    private final String fuelType;
+    /** How the output of the power source follows the demand. */
+    private final int kind;
+    /** Names of the power sources one level below this one. */
+    private final List<String> subsources = new ArrayList<String>();
+
+    /**
+     * Creates a power source.
+     * 
+     * @param name Name of the power source.
+     * @param description Description of the power source.
+     * @param location Location of the power source.
+     * @param coordinates Coordinates of the power source.
+     * @param capacityMw Capacity in MW, or 0 for a virtual power source.
+     * @param carbonIntensity Carbon intensity in lbs CO2 / MWh.
+     * @param fuelType Fuel burned by the power source.
+     * @param kind How the output of the power source follows the demand.
+     */
+    private SimSource(String name, String description, String location, String coordinates,
+        double capacityMw, int carbonIntensity, String fuelType, int kind) {
+      this.name = name;
+      this.description = description;
+      this.location = location;
+      this.coordinates = coordinates;
+      this.capacity = capacityMw * 1000000.0;
+      this.carbonIntensity = carbonIntensity;
+      this.fuelType = fuelType;
+      this.kind = kind;
+    }
+
+    /**
+     * Returns the name of the power source.
+     * 
+     * @return Name of the power source.
+     */
+    String getName() {
+      return name;
+    }
+
+    /**
+     * Returns the description of the power source.
+     * 
+     * @return Description of the power source.
+     */
+    String getDescription() {
+      return description;
+    }
+
+    /**
+     * Returns the location of the power source.
+     * 
+     * @return Location of the power source.
+     */
+    String getLocation() {
+      return location;
+    }
+
+    /**
+     * Returns the coordinates of the power source.
+     * 
+     * @return Coordinates of the power source.
+     */
+    String getCoordinates() {
+      return coordinates;
+    }
+
+    /**
+     * Returns true if the power source is made of other power sources.
+     * 
+     * @return True if the power source is virtual, false otherwise.
+     */
+    boolean isVirtual() {
+      return !subsources.isEmpty();
+    }
+
+    /**
+     * Returns the carbon intensity of the power source.
+     * 
+     * @return Carbon intensity in lbs CO2 / MWh.
+     */
+    int getCarbonIntensity() {
+      return carbonIntensity;
+    }
+
+    /**
+     * Returns the fuel burned by the power source.
+     * 
+     * @return Fuel type.
+     */
+    String getFuelType() {
+      return fuelType;
+    }
+
+    /**
+     * Returns the power sources one level below this one.
+     * 
+     * @return An unmodifiable list of names.
+     */
+    List<String> getSubsources() {
+      return Collections.unmodifiableList(subsources);
+    }
+  }
+
+  /**
+   * Creates the simulated grid.
+   * 
+   * @param firstReading Time of the first reading, in milliseconds since the epoch.
+   * @param lastReading Time of the last reading, or 0 to use the most recent quarter hour.
+   */
+  SyntheticGrid(long firstReading, long lastReading) {
+    this.firstReading = firstReading;
+    this.lastReading = lastReading;
+    try {
+      this.factory = DatatypeFactory.newInstance();
+    }
+    catch (DatatypeConfigurationException e) {
+      throw new IllegalStateException("Cannot create timestamps: " + e.getMessage(), e);
+    }
+
+    addVirtual("SIM_OAHU_GRID", "Virtual source for the Oahu power grid.", "Oahu",
+        UNKNOWN_COORDINATES, "SIM_HONOLULU", "SIM_IPP", "SIM_KAHE", "SIM_WAIAU");
+    addVirtual("SIM_HONOLULU", "Honolulu power plant.", "Honolulu", "21.306278,-157.863997,0",
+        "SIM_HONOLULU_8", "SIM_HONOLULU_9");
+    addVirtual("SIM_IPP", "Virtual source for the independent power producers.", "Oahu",
+        UNKNOWN_COORDINATES, "SIM_AES", "SIM_HPOWER", "SIM_KALAELOA");
+    addVirtual("SIM_KAHE", "Kahe power plant.", "Kahe Point", UNKNOWN_COORDINATES, "SIM_KAHE_1",
+        "SIM_KAHE_2", "SIM_KAHE_3", "SIM_KAHE_4", "SIM_KAHE_5", "SIM_KAHE_6", "SIM_KAHE_7");
+    addVirtual("SIM_WAIAU", "Waiau power plant.", "Pearl City", UNKNOWN_COORDINATES,
+        "SIM_WAIAU_5", "SIM_WAIAU_6", "SIM_WAIAU_7", "SIM_WAIAU_8", "SIM_WAIAU_9", "SIM_WAIAU_10");
+
+    addPlant("SIM_HONOLULU_8", 56, 2240, "LSFO", PEAKING);
+    addPlant("SIM_HONOLULU_9", 57, 2240, "LSFO", PEAKING);
+    addPlant("SIM_AES", 180, 2140, "Coal", BASELOAD);
+    addPlant("SIM_HPOWER", 46, 1320, "MSW", BASELOAD);
+    addPlant("SIM_KALAELOA", 180, 1690, "LSFO", CYCLING);
+    addPlant("SIM_KAHE_1", 82, 1970, "LSFO", BASELOAD);
+    addPlant("SIM_KAHE_2", 82, 1970, "LSFO", BASELOAD);
+    addPlant("SIM_KAHE_3", 86, 1970, "LSFO", BASELOAD);
+    addPlant("SIM_KAHE_4", 85, 1970, "LSFO", BASELOAD);
+    addPlant("SIM_KAHE_5", 135, 1970, "LSFO", BASELOAD);
+    addPlant("SIM_KAHE_6", 134, 1970, "LSFO", CYCLING);
+    addPlant("SIM_KAHE_7", 20, 1970, "LSFO", PEAKING);
+    addPlant("SIM_WAIAU_5", 54, 2050, "LSFO", CYCLING);
+    addPlant("SIM_WAIAU_6", 54, 2050, "LSFO", CYCLING);
+    addPlant("SIM_WAIAU_7", 83, 2050, "LSFO", CYCLING);
+    addPlant("SIM_WAIAU_8", 86, 2050, "LSFO", CYCLING);
+    addPlant("SIM_WAIAU_9", 52, 2050, "Diesel", PEAKING);
+    addPlant("SIM_WAIAU_10", 50, 2050, "Diesel", PEAKING);
+  }
+
+  /**
+   * Adds a virtual power source.
+   * 
+   * @param name Name of the power source.
+   * @param description Description of the power source.
+   * @param location Location of the power source.
+   * @param coordinates Coordinates of the power source.
+   * @param children Names of the power sources one level below it.
+   */
+  private void addVirtual(String name, String description, String location, String coordinates,
+      String... children) {
+    SimSource source = new SimSource(name, description, location, coordinates, 0, 0, null, 0);
+    for (String child : children) {
+      source.subsources.add(child);
+    }
+    sources.put(name, source);
+  }
+
+  /**
+   * Adds a plant that generates power.
+   * 
+   * @param name Name of the plant.
+   * @param capacityMw Capacity in MW.
+   * @param carbonIntensity Carbon intensity in lbs CO2 / MWh.
+   * @param fuelType Fuel burned by the plant.
+   * @param kind How the output of the plant follows the demand.
+   */
+  private void addPlant(String name, double capacityMw, int carbonIntensity, String fuelType,
+      int kind) {
+    sources.put(name, new SimSource(name, "Simulated generating unit " + name + ".",
+        UNKNOWN_LOCATION, UNKNOWN_COORDINATES, capacityMw, carbonIntensity, fuelType, kind));
+  }
+
+  /**
+   * Returns all power sources in the order they were added.
+   * 
+   * @return A list of power sources.
+   */
+  List<SimSource> getSources() {
+    return new ArrayList<SimSource>(sources.values());
+  }
+
+  /**
+   * Returns a power source.
+   * 
+   * @param name Name of the power source.
+   * @return The power source, or null if there is no such power source.
+   */
+  SimSource getSource(String name) {
+    return sources.get(name);
+  }
+
+  /**
+   * Returns the time of the first reading.
+   * 
+   * @return Time in milliseconds since the epoch.
+   */
+  long getFirstReading() {
+    return firstReading;
+  }
+
+  /**
+   * Returns the time of the last reading.
+   * 
+   * @return Time in milliseconds since the epoch.
+   */
+  long getLastReading() {
+    if (lastReading != 0) {
+      return lastReading;
+    }
+    long now = System.currentTimeMillis();
+    return now - (now - firstReading) % READING_INTERVAL;
+  }
+
+  /**
+   * Returns the number of readings stored for a power source, which for a virtual power source is
+   * the number stored for all of its plants.
+   * 
+   * @param source A power source.
+   * @return Number of readings.
+   */
+  long getReadingCount(SimSource source) {
+    if (source.isVirtual()) {
+      long count = 0;
+      for (String child : source.subsources) {
+        count += getReadingCount(sources.get(child));
+      }
+      return count;
+    }
+    return (getLastReading() - firstReading) / READING_INTERVAL + 1;
+  }
+
+  /**
+   * Returns true if a time lies between the first and the last reading.
+   * 
+   * @param time Time in milliseconds since the epoch.
+   * @return True if there is sensor data for that time, false otherwise.
+   */
+  boolean hasData(long time) {
+    return time >= firstReading && time <= getLastReading();
+  }
+
+  /**
+   * Returns the times of the readings between two times, including both ends.
+   * 
+   * @param start Earliest time in milliseconds since the epoch.
+   * @param end Latest time in milliseconds since the epoch.
+   * @return Times of the readings in ascending order.
+   */
+  List<Long> getReadingTimes(long start, long end) {
+    List<Long> times = new ArrayList<Long>();
+    long from = Math.max(start, firstReading);
+    long to = Math.min(end, getLastReading());
+    long time = from + (READING_INTERVAL - (from - firstReading) % READING_INTERVAL)
+        % READING_INTERVAL;
+    for (; time <= to; time += READING_INTERVAL) {
+      times.add(time);
+    }
+    return times;
+  }
+
+  /**
+   * Returns the power generated by a plant at the time of one of its readings.
+   * 
+   * @param plant A plant that is not virtual.
+   * @param time Time of the reading in milliseconds since the epoch.
+   * @return Power in W.
+   */
+  double getReading(SimSource plant, long time) {
+    double hour = (double) ((time + HST.getRawOffset()) % TimeGrid.DAY) / TimeGrid.HOUR;
+    double demand = 0.5 - 0.5 * Math.cos(2.0 * Math.PI * (hour - 4.0) / 24.0);
+    double fraction;
+    if (plant.kind == BASELOAD) {
+      fraction = 0.9;
+    }
+    else if (plant.kind == CYCLING) {
+      fraction = 0.45 + 0.45 * demand;
+    }
+    else {
+      fraction = demand > 0.6 ? (demand - 0.6) / 0.4 : 0.0;
+    }
+    if (fraction > 0) {
+      fraction = Math.min(1.0, fraction * (1.0 + 0.03 * noise(plant.name, time)));
+    }
+    return Math.rint(plant.capacity * fraction);
+  }
+
+  /**
+   * Returns the power generated by a power source at any time between the first and the last
+   * reading. The power changes linearly between readings.
+   * 
+   * @param source A power source.
+   * @param time Time in milliseconds since the epoch.
+   * @return Power in W.
+   */
+  double getPower(SimSource source, long time) {
+    if (source.isVirtual()) {
+      double power = 0;
+      for (String child : source.subsources) {
+        power += getPower(sources.get(child), time);
+      }
+      return power;
+    }
+    long offset = (time - firstReading) % READING_INTERVAL;
+    long before = time - offset;
+    if (offset == 0) {
+      return getReading(source, before);
+    }
+    double from = getReading(source, before);
+    double to = getReading(source, before + READING_INTERVAL);
+    return from + (to - from) * offset / READING_INTERVAL;
+  }
+
+  /**
+   * Returns the energy generated by a power source between two times. The power is sampled at the
+   * given interval and assumed to change linearly between samples.
+   * 
+   * @param source A power source.
+   * @param start Start time in milliseconds since the epoch.
+   * @param end End time in milliseconds since the epoch.
+   * @param interval Number of minutes between samples.
+   * @return Energy in Wh.
+   */
+  double getEnergy(SimSource source, long start, long end, int interval) {
+    if (source.isVirtual()) {
+      double energy = 0;
+      for (String child : source.subsources) {
+        energy += getEnergy(sources.get(child), start, end, interval);
+      }
+      return energy;
+    }
+    long step = interval * 60L * 1000L;
+    double energy = 0;
+    for (long a = start; a < end; a += step) {
+      long b = Math.min(end, a + step);
+      energy += (getPower(source, a) + getPower(source, b)) / 2.0 * (b - a) / TimeGrid.HOUR;
+    }
+    return energy;
+  }
+
+  /**
+   * Returns the carbon emitted by a power source between two times.
+   * 
+   * @param source A power source.
+   * @param start Start time in milliseconds since the epoch.
+   * @param end End time in milliseconds since the epoch.
+   * @param interval Number of minutes between samples.
+   * @return Carbon in lbs CO2.
+   */
+  double getCarbon(SimSource source, long start, long end, int interval) {
+    if (source.isVirtual()) {
+      double carbon = 0;
+      for (String child : source.subsources) {
+        carbon += getCarbon(sources.get(child), start, end, interval);
+      }
+      return carbon;
+    }
+    return getEnergy(source, start, end, interval) / 1000000.0 * source.carbonIntensity;
+  }
+
+  /**
+   * Returns a number from -1 to 1 that depends only on a plant and a time.
+   * 
+   * @param name Name of the plant.
+   * @param time Time in milliseconds since the epoch.
+   * @return Noise added to the output of the plant.
+   */
+  private static double noise(String name, long time) {
+    long hash = name.hashCode() * 0x9E3779B97F4A7C15L + time / READING_INTERVAL;
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+    return (hash >>> 11) / (double) (1L << 53) * 2.0 - 1.0;
+  }
+
+  /**
+   * Returns a timestamp in HST.
+   * 
+   * @param time Time in milliseconds since the epoch.
+   * @return The timestamp.
+   */
+  XMLGregorianCalendar toTimestamp(long time) {
+    GregorianCalendar calendar = new GregorianCalendar(HST);
+    calendar.setTimeInMillis(time);
+    return factory.newXMLGregorianCalendar(calendar);
+  }
+
+  /**
+   * Parses a timestamp.
+   * 
+   * @param timestamp A timestamp in XML format.
+   * @return Time in milliseconds since the epoch.
+   * @throws IllegalArgumentException If the timestamp cannot be parsed.
+   */
+  long parseTimestamp(String timestamp) {
+    if (timestamp == null) {
+      throw new IllegalArgumentException("Missing timestamp.");
+    }
+    return factory.newXMLGregorianCalendar(timestamp).toGregorianCalendar().getTimeInMillis();
+  }
+
+}
@@ -0,0 +1,156 @@
+package edu.hawaii.wattdepot.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the StandInServer class that serves synthetic WattDepot data.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestStandInServer {
+
+  /** Range of one hour for which the stand-in server has data. */
+  private static final String HOUR =
+      "?startTime=2009-11-01T00:00:00.000-10:00&endTime=2009-11-01T01:00:00.000-10:00"
+          + "&samplingInterval=15";
+  /** The server under test. */
+  private static StandInServer server;
+
+  /**
+   * Starts the server on a free port.
+   * 
+   * @throws Exception If the server cannot be started.
+   */
+  @BeforeClass
+  public static void startServer() throws Exception {
+    server = new StandInServer(0);
+    server.start();
+  }
+
+  /**
+   * Stops the server.
+   * 
+   * @throws Exception If the server cannot be stopped.
+   */
+  @AfterClass
+  public static void stopServer() throws Exception {
+    server.stop();
+  }
+
+  /**
+   * Tests that power sources and their summaries are served.
+   * 
+   * @throws Exception If problems occur.
+   */
+  @Test
+  public void testSources() throws Exception {
+    assertEquals("Health", "WattDepot is alive.", get("health"));
+    String grid = get("sources/SIM_OAHU_GRID");
+    assertTrue("Virtual", grid.contains("<Virtual>true</Virtual>"));
+    assertTrue("Subsources", grid.contains("sources/SIM_KAHE</Href>"));
+    String plant = get("sources/SIM_HONOLULU_8");
+    assertTrue("Properties", plant.contains("<Key>carbonIntensity</Key><Value>2240</Value>"));
+    assertTrue("Summary", get("sources/SIM_KAHE_1/summary").contains(
+        "<FirstSensorData>2009-11-01T00:00:00.000-10:00</FirstSensorData>"));
+    assertEquals("Unknown source", HttpURLConnection.HTTP_NOT_FOUND, getStatus("sources/SIM_NONE"));
+  }
+
+  /**
+   * Tests that energy and carbon agree with each other and are the same for every request.
+   * 
+   * @throws Exception If problems occur.
+   */
+  @Test
+  public void testEnergyAndCarbon() throws Exception {
+    double energy = getValue(get("sources/SIM_KAHE_1/energy/" + HOUR));
+    double carbon = getValue(get("sources/SIM_KAHE_1/carbon/" + HOUR));
+    assertTrue("Energy generated", energy > 0);
+    assertEquals("Carbon intensity", 1970, carbon / energy * 1000000.0, 0.001);
+    assertEquals("Same answer", energy, getValue(get("sources/SIM_KAHE_1/energy/" + HOUR)), 0);
+    assertEquals("Sensor data every 15 minutes", 5,
+        get("sources/SIM_KAHE_1/sensordata/" + HOUR + "&fetchAll=true").split("<SensorData>")
+            .length - 1);
+  }
+
+  /**
+   * Tests that errors are injected and requests are counted.
+   * 
+   * @throws Exception If problems occur.
+   */
+  @Test
+  public void testErrors() throws Exception {
+    EndpointProfile profile = server.getProfile(StandInServer.CARBON);
+    profile.resetCounts();
+    profile.setErrorRate(1.0);
+    try {
+      assertEquals("Injected failure", HttpURLConnection.HTTP_INTERNAL_ERROR,
+          getStatus("sources/SIM_KAHE_1/carbon/" + HOUR));
+    }
+    finally {
+      profile.setErrorRate(0);
+    }
+    assertEquals("Requests", 1, profile.getRequestCount());
+    assertEquals("Errors", 1, profile.getErrorCount());
+  }
+
+  /**
+   * Returns the body of a response from the server.
+   * 
+   * @param path Path of the resource relative to the URI of the server.
+   * @return The body of the response.
+   * @throws IOException If the resource cannot be retrieved.
+   */
+  private static String get(String path) throws IOException {
+    HttpURLConnection connection =
+        (HttpURLConnection) new URL(server.getUri() + path).openConnection();
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"));
+    try {
+      StringBuilder body = new StringBuilder();
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        body.append(line);
+      }
+      return body.toString();
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Returns the status code of a response from the server.
+   * 
+   * @param path Path of the resource relative to the URI of the server.
+   * @return The status code.
+   * @throws IOException If the server cannot be reached.
+   */
+  private static int getStatus(String path) throws IOException {
+    HttpURLConnection connection =
+        (HttpURLConnection) new URL(server.getUri() + path).openConnection();
+    int status = connection.getResponseCode();
+    connection.disconnect();
+    return status;
+  }
+
+  /**
+   * Returns the value of the first property in a sensor data.
+   * 
+   * @param xml A sensor data in XML format.
+   * @return The value of the property.
+   */
+  private static double getValue(String xml) {
+    String value = xml.substring(xml.indexOf("<Value>") + 7, xml.indexOf("</Value>"));
+    return Double.parseDouble(value);
+  }
+
+}
@@ -3,13 +3,22 @@ package edu.hawaii.wicket;
 import org.apache.wicket.Application;
 import org.apache.wicket.Page;
 import org.apache.wicket.Request;
+import org.apache.wicket.ResourceReference;
 import org.apache.wicket.Response;
 import org.apache.wicket.Session;
 import org.apache.wicket.protocol.http.WebApplication;
+import edu.hawaii.wattdepot.CacheWarmer;
+import edu.hawaii.wattdepot.HealthMonitor;
+import edu.hawaii.wattdepot.HourArchive;
+import edu.hawaii.wattdepot.SourceGraphRefresher;
+import edu.hawaii.wicket.page.gridinfo.ChartImageResource;
 import edu.hawaii.wicket.page.gridinfo.GridInfoPage;
 import edu.hawaii.wicket.page.main.HomePage;
 import edu.hawaii.wicket.page.srcsummary.SourceSummaryPage;
+import edu.hawaii.wicket.page.stoplight.StoplightFeed;
+import edu.hawaii.wicket.page.stoplight.StoplightFeedFilter;
 import edu.hawaii.wicket.page.stoplight.StoplightPage;
+import edu.hawaii.wicket.page.stoplight.StoplightPoller;
 import edu.hawaii.wicket.page.thresholds.ThresholdsPage;
 import edu.hawaii.wicket.page.visualization.VisualizationPage;
 
@@ -20,6 +29,10 @@ import edu.hawaii.wicket.page.visualization.VisualizationPage;
  * @version 2.0
  */
 public class EkolugicalCarbonometer extends WebApplication {
+
+  /** Checks the carbon emission level once a minute for all users of the Stoplight page. */
+  private final StoplightPoller stoplightPoller = new StoplightPoller();
+
   /**
    * Initialize for this web application.
    * 
@@ -31,7 +44,47 @@ public class EkolugicalCarbonometer extends WebApplication {
     mountBookmarkablePage("Visualization", VisualizationPage.class);
     mountBookmarkablePage("Thresholds", ThresholdsPage.class);
     mountBookmarkablePage("SourceSummary", SourceSummaryPage.class);
-    
+
+    getSharedResources().add(StoplightFeed.NAME, new StoplightFeed(stoplightPoller));
+    mountSharedResource(StoplightFeed.PATH,
+        new ResourceReference(StoplightFeed.NAME).getSharedResourceKey());
+    getServletContext().setAttribute(StoplightFeedFilter.POLLER_ATTRIBUTE, stoplightPoller);
+    getSharedResources().add(ChartImageResource.NAME, new ChartImageResource());
+    mountSharedResource("Chart",
+        new ResourceReference(ChartImageResource.NAME).getSharedResourceKey());
+    getSharedResources().add(ReadinessResource.NAME,
+        new ReadinessResource(HealthMonitor.getShared()));
+    mountSharedResource("Ready",
+        new ResourceReference(ReadinessResource.NAME).getSharedResourceKey());
+
+    HealthMonitor.getShared().start();
+    stoplightPoller.start();
+    SourceGraphRefresher.getShared().start();
+    CacheWarmer.getShared().start();
+  }
+
+  /**
+   * Stops the background tasks of this web application when it is shut down.
+   */
+  @Override
+  protected void onDestroy() {
+    stoplightPoller.stop();
+    HealthMonitor.getShared().stop();
+    SourceGraphRefresher.getShared().stop();
+    CacheWarmer.getShared().stop();
+    if (HourArchive.getSharedArchive() != null) {
+      HourArchive.getSharedArchive().close();
+    }
+    super.onDestroy();
+  }
+
+  /**
+   * Returns the poller that checks the carbon emission level for all users of the Stoplight page.
+   * 
+   * @return The stoplight poller.
+   */
+  public StoplightPoller getStoplightPoller() {
+    return stoplightPoller;
   }
 
   /**
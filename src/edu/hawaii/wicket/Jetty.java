@@ -1,9 +1,13 @@
 package edu.hawaii.wicket;
 
 import org.apache.wicket.protocol.http.WicketServlet;
+import org.mortbay.jetty.Handler;
 import org.mortbay.jetty.Server;
 import org.mortbay.jetty.servlet.Context;
+import org.mortbay.jetty.servlet.FilterHolder;
 import org.mortbay.jetty.servlet.ServletHolder;
+import edu.hawaii.wicket.page.stoplight.StoplightFeed;
+import edu.hawaii.wicket.page.stoplight.StoplightFeedFilter;
 
 /**
  * Enables the Ekolugical Carbonometer web application to run inside the Jetty container.
@@ -29,15 +33,8 @@ public class Jetty {
    * @throws Exception If there are any problems.
    */
   public static void main(String[] args) throws Exception {
-    Server server = new Server(port);
-    Context context = new Context(server, "/" + contextPath, Context.SESSIONS);
-
-    ServletHolder servletHolder = new ServletHolder(new WicketServlet());
-    servletHolder.setInitParameter("applicationClassName", applicationClass);
-    servletHolder.setInitOrder(1);
-    context.addServlet(servletHolder, "/*");
     try {
-      server.start();
+      Server server = start(port);
       System.out.printf("%nApplication at http://localhost:%s/%s. Press Return to exit.%n", port,
           contextPath);
       while (System.in.available() == 0) {
@@ -52,4 +49,36 @@ public class Jetty {
     }
   }
 
+  /**
+   * Starts up Jetty on the given port and points it at Wicket, with the requests to the stoplight
+   * feed held by the stoplight feed filter until the reading changes. Used by main and by tools
+   * that run the web application in the same process, such as the load harness.
+   * 
+   * @param port The port used by this web application.
+   * @return The running server, which the caller must stop.
+   * @throws Exception If Jetty cannot be started.
+   */
+  public static Server start(int port) throws Exception {
+    Server server = new Server(port);
+    Context context = new Context(server, "/" + contextPath, Context.SESSIONS);
+
+    context.addFilter(new FilterHolder(new StoplightFeedFilter()), "/" + StoplightFeed.PATH
+        + "/*", Handler.REQUEST);
+    ServletHolder servletHolder = new ServletHolder(new WicketServlet());
+    servletHolder.setInitParameter("applicationClassName", applicationClass);
+    servletHolder.setInitOrder(1);
+    context.addServlet(servletHolder, "/*");
+    server.start();
+    return server;
+  }
+
+  /**
+   * Returns the context root of this web application.
+   * 
+   * @return The context root, without slashes.
+   */
+  public static String getContextPath() {
+    return contextPath;
+  }
+
 }
\ No newline at end of file
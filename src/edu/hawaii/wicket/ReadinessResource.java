@@ -0,0 +1,100 @@
+package edu.hawaii.wicket;
+
+import javax.servlet.http.HttpServletResponse;
+import org.apache.wicket.markup.html.WebResource;
+import org.apache.wicket.protocol.http.servlet.AbortWithWebErrorCodeException;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import edu.hawaii.wattdepot.BatchStatistics;
+import edu.hawaii.wattdepot.CacheWarmer;
+import edu.hawaii.wattdepot.CircuitBreaker;
+import edu.hawaii.wattdepot.HealthMonitor;
+import edu.hawaii.wattdepot.QueryPool;
+
+/**
+ * Tells a load balancer whether this web application is ready to serve pages, from the health
+ * flag published by the health monitor, without contacting the WattDepot server. Answers with the
+ * state of the server as JSON if it is ready, and with 503 Service Unavailable otherwise. The JSON
+ * also reports how the last batch of queries ran on the shared query pool: how many queries it
+ * held, how many were in flight at the same time, and how long it took, and how the last warming
+ * of the cache went.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class ReadinessResource extends WebResource {
+
+  /** Support serialization. */
+  private static final long serialVersionUID = 1L;
+  /** Name under which this resource is shared by the web application. */
+  public static final String NAME = "readiness";
+  /** Monitor whose flag is reported. */
+  private final transient HealthMonitor monitor;
+
+  /**
+   * Creates a resource that reports the flag of a health monitor.
+   * 
+   * @param monitor Monitor whose flag is reported.
+   */
+  public ReadinessResource(HealthMonitor monitor) {
+    this.monitor = monitor;
+    setCacheable(false);
+  }
+
+  /**
+   * Returns the state of the WattDepot server as JSON, or 503 if this application is not ready.
+   * 
+   * @return The state of the server in JSON.
+   */
+  @Override
+  public IResourceStream getResourceStream() {
+    if (!monitor.isReady()) {
+      throw new AbortWithWebErrorCodeException(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+          (monitor.getLastProbeAt() == 0) ? "The WattDepot server has not been checked yet."
+              : "The WattDepot server is not healthy.");
+    }
+    return new StringResourceStream(toJson(monitor, CircuitBreaker.getShared(), QueryPool
+        .getSharedPool().getLastStatistics(), CacheWarmer.getShared()), "application/json");
+  }
+
+  /**
+   * Returns the state of the WattDepot server as JSON.
+   * 
+   * @param monitor Monitor of the server.
+   * @param breaker Breaker that guards the calls to the server.
+   * @param lastBatch Description of the last batch of queries, or null if none has run.
+   * @param warmer Warmer whose last warming is reported.
+   * @return The state of the server in JSON.
+   */
+  static String toJson(HealthMonitor monitor, CircuitBreaker breaker, BatchStatistics lastBatch,
+      CacheWarmer warmer) {
+    StringBuilder json = new StringBuilder(256);
+    json.append("{\"ready\":").append(monitor.isReady());
+    json.append(",\"healthy\":").append(monitor.isHealthy());
+    json.append(",\"lastProbe\":").append(monitor.getLastProbeAt());
+    json.append(",\"averageLatency\":").append(monitor.getAverageLatency());
+    json.append(",\"recentFailures\":").append(monitor.getRecentFailures());
+    json.append(",\"circuit\":\"").append(breaker.getState()).append('"');
+    json.append(",\"lastBatch\":");
+    if (lastBatch == null) {
+      json.append("null");
+    }
+    else {
+      json.append("{\"queries\":").append(lastBatch.getQueries());
+      json.append(",\"peakInFlight\":").append(lastBatch.getPeakInFlight());
+      json.append(",\"poolSize\":").append(lastBatch.getPoolSize());
+      json.append(",\"elapsedMillis\":").append(lastBatch.getElapsedMillis()).append('}');
+    }
+    json.append(",\"lastWarming\":");
+    if (warmer.getLastDuration() < 0) {
+      json.append("null");
+    }
+    else {
+      json.append("{\"durationMillis\":").append(warmer.getLastDuration());
+      json.append(",\"hourlyValues\":").append(warmer.getLastBucketCount());
+      json.append(",\"succeeded\":").append(warmer.isLastSucceeded()).append('}');
+    }
+    return json.append('}').toString();
+  }
+
+}
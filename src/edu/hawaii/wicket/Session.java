@@ -2,11 +2,14 @@ package edu.hawaii.wicket;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import javax.xml.datatype.XMLGregorianCalendar;
 import org.apache.wicket.Request;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.protocol.http.WebSession;
+import edu.hawaii.wattdepot.TimeSeries;
+import edu.hawaii.wattdepot.WattDepotCommand;
 
 /**
  * Stores data per user of this web application.
@@ -18,6 +21,11 @@ public class Session extends WebSession {
 
   /** Support serialization. */
   private static final long serialVersionUID = 1L;
+  /** Colors of the lines that represent power sources, in the order they are drawn. */
+  public static final List<String> SOURCE_COLORS =
+      Collections.unmodifiableList(Arrays.asList("FF4500", "A52A2A", "4E387E", "32CD32", "6A5ACD",
+          "DAA520", "8A2BE2", "153E7E", "6960EC", "8D38C9", "728FC3", "488AC7", "56A5EC", "41627E",
+          "E4317F", "00FFFF", "4B0082", "7D0552", "B048B5", "6A287E", "B93B8F"));
   /** Date entered by a user. */
   private String date;
   /** Start day entered by a user. */
@@ -30,8 +38,8 @@ public class Session extends WebSession {
   private String powerSource;
   /** Holds a list of timestamps for one 24-hour period, from 00:00:00 to 23:00:00. */
   private final List<XMLGregorianCalendar> TIMESTAMPS = new ArrayList<XMLGregorianCalendar>();
-  /** Holds a list of data for one 24-hour period, from 00:00:00 to 23:00:00. */
-  private final List<Double> RESULTS = new ArrayList<Double>();
+  /** Holds the data for one 24-hour period, from 00:00:00 to 23:00:00. */
+  private TimeSeries results = TimeSeries.EMPTY;
   /** Holds the maximum threshold value. */
   private double maxThreshold;
   /** Holds the minimum threshold value. */
@@ -40,24 +48,11 @@ public class Session extends WebSession {
   private int maxCounter = 0;
   /** URI of the chart. */
   private String chartUri;
-  /** List of power data for a given power source. */
-  private List<Double> powerData = new ArrayList<Double>();
-
-  // TODO: Use recursive method to populate list of power sources instead of hardcoding them.
-  /** List of power sources. */
-  private List<String> listSources =
-      Arrays
-          .asList("SIM_AES", "SIM_HONOLULU", "SIM_HONOLULU_8", "SIM_HONOLULU_9", "SIM_HPOWER",
-              "SIM_IPP", "SIM_KAHE", "SIM_KAHE_1", "SIM_KAHE_2", "SIM_KAHE_3", "SIM_KAHE_4",
-              "SIM_KAHE_5", "SIM_KAHE_6", "SIM_KAHE_7", "SIM_KALAELOA", "SIM_OAHU_GRID",
-              "SIM_WAIAU", "SIM_WAIAU_10", "SIM_WAIAU_5", "SIM_WAIAU_6", "SIM_WAIAU_7",
-              "SIM_WAIAU_8", "SIM_WAIAU_9");
+  /** Power data for a given power source. */
+  private TimeSeries powerData = TimeSeries.EMPTY;
 
   /** List of colors for each line that represents a power source. */
-  private List<String> sourceColor =
-      Arrays.asList("FF4500", "A52A2A", "4E387E", "32CD32", "6A5ACD", "DAA520", "8A2BE2", "153E7E",
-          "6960EC", "8D38C9", "728FC3", "488AC7", "56A5EC", "41627E", "E4317F", "00FFFF", "4B0082",
-          "7D0552", "B048B5", "6A287E", "B93B8F");
+  private List<String> sourceColor = SOURCE_COLORS;
 
   /** List of types of data. */
   private List<String> listType = Arrays.asList("Energy", "Carbon");
@@ -121,12 +116,21 @@ public class Session extends WebSession {
   }
 
   /**
-   * Gets a list of data for one 24-hour period.
+   * Gets the data for one 24-hour period.
    * 
-   * @return A list of data for one 24-hour period.
+   * @return The data for one 24-hour period.
    */
-  public List<Double> getResults() {
-    return RESULTS;
+  public TimeSeries getResults() {
+    return results;
+  }
+
+  /**
+   * Sets the data for one 24-hour period.
+   * 
+   * @param results The data for one 24-hour period.
+   */
+  public void setResults(TimeSeries results) {
+    this.results = results;
   }
 
   /**
@@ -283,7 +287,7 @@ public class Session extends WebSession {
    * 
    * @return powerData value.
    */
-  public List<Double> getPowerData() {
+  public TimeSeries getPowerData() {
     return this.powerData;
   }
 
@@ -292,7 +296,7 @@ public class Session extends WebSession {
    * 
    * @param data powerData value.
    */
-  public void setPowerData(List<Double> data) {
+  public void setPowerData(TimeSeries data) {
     this.powerData = data;
   }
 
@@ -315,24 +319,12 @@ public class Session extends WebSession {
   }
 
   /**
-   * Gets the list of power sources.
+   * Gets the list of power sources from the graph of power sources shared by all users.
    * 
-   * @return List of power sources.
+   * @return Unmodifiable list of power sources in alphabetical order.
    */
   public List<String> getListSources() {
-    return this.listSources;
-  }
-
-  /**
-   * Sets the list of power sources.
-   * 
-   * @param listSources List of power sources.
-   */
-  public void setListSources(List<String> listSources) {
-    this.listSources.clear();
-    for (String source : listSources) {
-      this.listSources.add(source);
-    }
+    return WattDepotCommand.getSourceGraph().getSourceNames();
   }
 
   /**
@@ -419,20 +411,31 @@ public class Session extends WebSession {
    * @param type Power type
    */
   public void setUnit(String granularityChoice, String type) {
+    this.unit = getUnitFor(granularityChoice, type);
+  }
+
+  /**
+   * Returns the unit of the data for a granularity choice and power type.
+   * 
+   * @param granularityChoice Granularity choice.
+   * @param type Power type
+   * @return The unit, such as MW.
+   */
+  public static String getUnitFor(String granularityChoice, String type) {
     if (granularityChoice.equalsIgnoreCase("hour")) {
       if (type.equalsIgnoreCase("energy")) {
-        this.unit = "MW";
+        return "MW";
       }
       else {
-        this.unit = "KW";
+        return "KW";
       }
     }
     else {
       if (type.equalsIgnoreCase("energy")) {
-        this.unit = "GW";
+        return "GW";
       }
       else {
-        this.unit = "MW";
+        return "MW";
       }
     }
   }
@@ -0,0 +1,71 @@
+package edu.hawaii.wicket;
+
+import java.util.List;
+import org.apache.wicket.markup.html.form.DropDownChoice;
+import org.apache.wicket.markup.html.form.IChoiceRenderer;
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.model.IModel;
+import edu.hawaii.wattdepot.WattDepotCommand;
+
+/**
+ * Drop down list of the power sources in the graph of power sources shared by all users. The list
+ * is read from the graph each time the page is rendered or submitted, and each choice is sent by
+ * its name rather than its position, so a submitted power source is still the one the user picked
+ * after the graph is discovered or refreshed.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class SourceChoice extends DropDownChoice<String> {
+
+  /** Support serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Creates a drop down list of the power sources.
+   * 
+   * @param id Name of the drop down list.
+   * @param model Model of the selected power source.
+   */
+  public SourceChoice(String id, IModel<String> model) {
+    super(id, model, new AbstractReadOnlyModel<List<String>>() {
+      /** Support serialization. */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Returns the power sources in the shared graph.
+       * 
+       * @return Names of the power sources in alphabetical order.
+       */
+      @Override
+      public List<String> getObject() {
+        return WattDepotCommand.getSourceGraph().getSourceNames();
+      }
+    }, new IChoiceRenderer<String>() {
+      /** Support serialization. */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Returns the name of a power source, which is shown in the list.
+       * 
+       * @param object Name of a power source.
+       * @return Name of the power source.
+       */
+      public Object getDisplayValue(String object) {
+        return object;
+      }
+
+      /**
+       * Returns the name of a power source, which is sent when the form is submitted.
+       * 
+       * @param object Name of a power source.
+       * @param index Position of the power source in the list.
+       * @return Name of the power source.
+       */
+      public String getIdValue(String object, int index) {
+        return object;
+      }
+    });
+  }
+
+}
@@ -1,10 +1,8 @@
 package edu.hawaii.wicket.page.gridinfo;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import javax.xml.datatype.XMLGregorianCalendar;
-import org.wattdepot.util.tstamp.Tstamp;
+import edu.hawaii.wattdepot.TimeGrid;
+import edu.hawaii.wattdepot.TimeSeries;
 
 /**
  * Processes data that are used in the chart.
@@ -13,31 +11,6 @@ import org.wattdepot.util.tstamp.Tstamp;
  * @version 2.0
  */
 public class Chart {
-  /** Holds value for extended encode base-64. **/
-  private String charCode = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-.";
-  private String chxr = "1,0,50,10";
-
-  /**
-   * Creates a URI for the chart.
-   * 
-   * @param title Title of the chart.
-   * @param labelX X-axis label.
-   * @param data Data point.
-   * @param color Line color for each power source.
-   * @param legend String to make a chart legend.
-   * @param marker String to make chart marker.
-   * @return Chart URI.
-   */
-  public String getChartUri(String title, String labelX, String data, String color, String legend, 
-      String marker) {
-
-    String chartUri =
-        "http://chart.apis.google.com/chart?chtt=" + title + "&chts=000000,17&chs=550x400"
-            + "&chxt=y&chxr=" + chxr + "&chf=bg,s,ffffff" + "&chxt=x,y" + "&chxl=0:|" + labelX
-            + "&cht=lc" + "&chd=e:" + data + "&chco=" + color + "&chm=" + marker 
-            + "&chdl=" + legend + "&chdlp=t";
-    return chartUri;
-  }
 
   /**
    * Gets the chart title.
@@ -55,6 +28,31 @@ public class Chart {
     return powerType + " Chart (in " + unit + ") Between " + day1 + " and " + day2;
   }
 
+  /**
+   * Gets the chart title.
+   * 
+   * @param powerType Power type, either carbon or energy.
+   * @param unit Data point unit.
+   * @param startDay Start of the start day, in milliseconds since the epoch.
+   * @param endDay Start of the end day, in milliseconds since the epoch.
+   * @return Chart title.
+   */
+  public String getChartTitle(String powerType, String unit, long startDay, long endDay) {
+    return powerType + " Chart (in " + unit + ") Between " + getDate(startDay) + " and "
+        + getDate(endDay);
+  }
+
+  /**
+   * Formats a day as month-day-year, as shown in the chart title.
+   * 
+   * @param day A time during the day, in milliseconds since the epoch.
+   * @return The formatted day.
+   */
+  private static String getDate(long day) {
+    TimeGrid grid = new TimeGrid(day, TimeGrid.DAY, 1);
+    return grid.getMonth(0) + "-" + grid.getDayOfMonth(0) + "-" + grid.getYear(0);
+  }
+
   /**
    * Gets a label from start day to end day.
    * 
@@ -65,84 +63,46 @@ public class Chart {
    */
   public String getDayLabel(XMLGregorianCalendar startDay, XMLGregorianCalendar endDay, 
       String granularityChoice) {
-
-    List<String> dayList = new ArrayList<String>();
-    String day = "";
-    int interval; 
-    
-    if (granularityChoice.equalsIgnoreCase("week")) {
-      interval = 7;
-    }
-    else {
-      interval = 1;
-    }
-
-    XMLGregorianCalendar tempFrom = startDay;
-    XMLGregorianCalendar tempTo = Tstamp.incrementDays(endDay, 1);
-
-    while (Tstamp.greaterThan(tempTo, tempFrom)) {
-      day = tempFrom.getMonth() + "-" + tempFrom.getDay();
-      dayList.add(day);
-      tempFrom = Tstamp.incrementDays(tempFrom, interval);
-    }
-    String dayLabel = dayList.toString();
-    dayLabel = dayLabel.replace("]", "");
-    dayLabel = dayLabel.replace("[", "");
-    dayLabel = dayLabel.replace(", ", "|");
-
-    return dayLabel;
+    return getDayLabel(TimeGrid.toMillis(startDay), TimeGrid.toMillis(endDay), granularityChoice);
   }
 
   /**
-   * Converts data to chart string.
+   * Gets a label from start day to end day.
    * 
-   * @param data Power data.
-   * @return Power data as a string.
+   * @param startDay Start of the start day, in milliseconds since the epoch.
+   * @param endDay Start of the end day, in milliseconds since the epoch.
+   * @param granularityChoice Granularity choice.
+   * @return Day string formatted for chart label.
    */
-  public String getDataToString(List<?> data) {
+  public String getDayLabel(long startDay, long endDay, String granularityChoice) {
+    long interval;
 
-    // Convert data to data point.
-    String dataPoint = data.toString();
-    dataPoint = dataPoint.replace("]", "");
-    dataPoint = dataPoint.replace("[", "");
-    dataPoint = dataPoint.replace(", ", "");
+    if (granularityChoice.equalsIgnoreCase("week")) {
+      interval = TimeGrid.WEEK;
+    }
+    else {
+      interval = TimeGrid.DAY;
+    }
 
-    return dataPoint;
+    TimeGrid days = TimeGrid.covering(startDay, endDay + TimeGrid.DAY, interval);
+    StringBuilder dayLabel = new StringBuilder(days.size() * 6);
+    for (int i = 0; i < days.size(); i++) {
+      if (i > 0) {
+        dayLabel.append('|');
+      }
+      dayLabel.append(days.getDayLabel(i));
+    }
+    return dayLabel.toString();
   }
 
   /**
    * Converts list of data to extended code.
    * 
-   * @param dataList List of power data.
+   * @param dataList Power data.
    * @return Power data as an encoded string.
    */
-  public String getEncodedDataList(List<Double> dataList) {
-    List<String> encodedData = new ArrayList<String>();
-    double scale = 0.0;
-    
-    if (Collections.max(dataList) <= 10) {
-      scale = 10.0;
-      chxr = "1,0,10,1";
-    }
-    else if (Collections.max(dataList) <= 50) {
-      scale = 50.0;
-      chxr = "1,0,50,10";
-    }
-    else if (Collections.max(dataList) <= 100) {
-      scale = 100.0;
-      chxr = "1,0,100,10";
-    }
-    else {
-      scale = 1000.0;
-      chxr = "1,0,1000,100";
-    }
-    for (double data : dataList) {      
-      double newData = data * (4096 / scale);
-      encodedData.add(this.getEncodedBase64((int) newData));
-    }
-
-    // Convert dataList to string.
-    return this.getDataToString(encodedData);
+  public String getEncodedDataList(TimeSeries dataList) {
+    return new ChartEncoder().addSeries("", "", dataList).getEncodedData();
   }
 
   /**
@@ -152,6 +112,6 @@ public class Chart {
    * @return Number in extended encode value.
    */
   public String getEncodedBase64(Integer number) {
-    return "" + charCode.charAt(number / 64) + charCode.charAt(number % 64);
-  }  
-}
\ No newline at end of file
+    return ChartEncoder.getCode(number);
+  }
+}
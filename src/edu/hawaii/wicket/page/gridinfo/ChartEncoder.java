@@ -0,0 +1,298 @@
+package edu.hawaii.wicket.page.gridinfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import edu.hawaii.wattdepot.TimeSeries;
+
+/**
+ * Builds the URI of a Google line chart from one or more series of data. Every series is encoded
+ * against one shared scale, so the y-axis is right for all of them, and the data, legend, colors
+ * and markers are written straight into one builder that is sized before the first character is
+ * written.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class ChartEncoder {
+
+  /** Largest value that the extended encoding can hold. */
+  public static final int MAX_CODE = 4095;
+  /** Holds value for extended encode base-64. **/
+  private static final String CHAR_CODE =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-.";
+  /** Both characters of the extended code of every value from 0 to MAX_CODE. */
+  private static final char[] CODES = new char[(MAX_CODE + 1) * 2];
+  static {
+    for (int i = 0; i <= MAX_CODE; i++) {
+      CODES[2 * i] = CHAR_CODE.charAt(i / 64);
+      CODES[2 * i + 1] = CHAR_CODE.charAt(i % 64);
+    }
+  }
+  /** Start of the chart URI, up to the title. */
+  private static final String URI_START = "http://chart.apis.google.com/chart?chtt=";
+  /** Number of characters in the fixed parts of the chart URI, rounded up. */
+  private static final int URI_FIXED_LENGTH = 160;
+
+  /** Names of the series, shown in the legend. */
+  private final List<String> names;
+  /** Line color of each series. */
+  private final List<String> colors;
+  /** Data of each series. */
+  private final List<TimeSeries> series;
+
+  /**
+   * Creates an encoder without any series.
+   */
+  public ChartEncoder() {
+    this(1);
+  }
+
+  /**
+   * Creates an encoder without any series.
+   * 
+   * @param expectedSeries Number of series the chart will most likely have.
+   */
+  public ChartEncoder(int expectedSeries) {
+    this.names = new ArrayList<String>(expectedSeries);
+    this.colors = new ArrayList<String>(expectedSeries);
+    this.series = new ArrayList<TimeSeries>(expectedSeries);
+  }
+
+  /**
+   * Adds a series to the chart.
+   * 
+   * @param name Name of the series, shown in the legend.
+   * @param color Line color of the series, such as FF0000.
+   * @param data Data of the series.
+   * @return This encoder.
+   */
+  public ChartEncoder addSeries(String name, String color, TimeSeries data) {
+    names.add(name);
+    colors.add(color);
+    series.add(data);
+    return this;
+  }
+
+  /**
+   * Returns the top of the y-axis shared by every series: 10, 50, 100, or the smallest power of
+   * ten from 1000 up that is at least the largest value.
+   * 
+   * @return Top of the y-axis.
+   */
+  public double getScale() {
+    double max = Double.NEGATIVE_INFINITY;
+    for (TimeSeries data : series) {
+      double seriesMax = data.getStatistics().getMax();
+      if (seriesMax > max) {
+        max = seriesMax;
+      }
+    } // end for
+    return getScale(max);
+  }
+
+  /**
+   * Returns the top of the y-axis for a largest value.
+   * 
+   * @param max Largest value on the chart; NaN or infinite if there are no values.
+   * @return Top of the y-axis.
+   */
+  static double getScale(double max) {
+    if (!(max > 10)) {
+      return 10.0;
+    }
+    else if (max <= 50) {
+      return 50.0;
+    }
+    else if (max <= 100) {
+      return 100.0;
+    }
+    double scale = 1000.0;
+    while (scale < max && !Double.isInfinite(scale)) {
+      scale *= 10.0;
+    }
+    return scale;
+  }
+
+  /**
+   * Returns the range of the y-axis for a scale, as used by the chxr parameter.
+   * 
+   * @param scale Top of the y-axis.
+   * @return The range and the step between tick marks, such as 1,0,50,10.
+   */
+  static String getAxisRange(double scale) {
+    return "1,0," + (long) scale + "," + (long) getAxisStep(scale);
+  }
+
+  /**
+   * Returns the distance between tick marks on the y-axis for a scale.
+   * 
+   * @param scale Top of the y-axis.
+   * @return Distance between tick marks.
+   */
+  static double getAxisStep(double scale) {
+    return (scale == 50.0) ? 10.0 : scale / 10.0;
+  }
+
+  /**
+   * Returns the number of series on the chart.
+   * 
+   * @return Number of series.
+   */
+  public int getSeriesCount() {
+    return series.size();
+  }
+
+  /**
+   * Returns the name of a series, shown in the legend.
+   * 
+   * @param index Index of the series, in the order it was added.
+   * @return Name of the series.
+   */
+  public String getName(int index) {
+    return names.get(index);
+  }
+
+  /**
+   * Returns the line color of a series.
+   * 
+   * @param index Index of the series, in the order it was added.
+   * @return Line color of the series, such as FF0000.
+   */
+  public String getColor(int index) {
+    return colors.get(index);
+  }
+
+  /**
+   * Returns the data of a series.
+   * 
+   * @param index Index of the series, in the order it was added.
+   * @return Data of the series.
+   */
+  public TimeSeries getSeries(int index) {
+    return series.get(index);
+  }
+
+  /**
+   * Returns the data of every series in extended encoding, each series separated by a comma.
+   * 
+   * @return The encoded data.
+   */
+  public String getEncodedData() {
+    StringBuilder builder = new StringBuilder(getDataLength());
+    appendData(builder, getScale());
+    return builder.toString();
+  }
+
+  /**
+   * Creates the URI of the chart.
+   * 
+   * @param title Title of the chart.
+   * @param labelX X-axis label.
+   * @return Chart URI.
+   */
+  public String getChartUri(String title, String labelX) {
+    double scale = getScale();
+    String axisRange = getAxisRange(scale);
+    int length = URI_FIXED_LENGTH + title.length() + labelX.length() + axisRange.length()
+        + getDataLength();
+    for (int i = 0; i < names.size(); i++) {
+      // Legend, color and marker, with their separators.
+      length += names.get(i).length() + 2 * colors.get(i).length() + 20;
+    }
+
+    StringBuilder uri = new StringBuilder(length);
+    uri.append(URI_START).append(title).append("&chts=000000,17&chs=550x400&chxt=y&chxr=")
+        .append(axisRange).append("&chf=bg,s,ffffff&chxt=x,y&chxl=0:|").append(labelX)
+        .append("&cht=lc&chd=e:");
+    appendData(uri, scale);
+    uri.append("&chco=");
+    for (int i = 0; i < colors.size(); i++) {
+      if (i > 0) {
+        uri.append(',');
+      }
+      uri.append(colors.get(i));
+    } // end for
+    uri.append("&chm=");
+    for (int i = 0; i < colors.size(); i++) {
+      if (i > 0) {
+        uri.append('|');
+      }
+      uri.append("s,").append(colors.get(i)).append(',').append(i).append(",-1,5.0");
+    } // end for
+    uri.append("&chdl=");
+    for (int i = 0; i < names.size(); i++) {
+      if (i > 0) {
+        uri.append('|');
+      }
+      uri.append(names.get(i));
+    } // end for
+    uri.append("&chdlp=t");
+    return uri.toString();
+  }
+
+  /**
+   * Returns the number of characters of the encoded data of every series.
+   * 
+   * @return Number of characters of the encoded data.
+   */
+  private int getDataLength() {
+    int length = Math.max(0, series.size() - 1);
+    for (TimeSeries data : series) {
+      length += 2 * data.size();
+    }
+    return length;
+  }
+
+  /**
+   * Writes the data of every series in extended encoding.
+   * 
+   * @param builder Where the data is written.
+   * @param scale Top of the y-axis.
+   */
+  private void appendData(StringBuilder builder, double scale) {
+    double factor = (MAX_CODE + 1) / scale;
+    for (int s = 0; s < series.size(); s++) {
+      if (s > 0) {
+        builder.append(',');
+      }
+      TimeSeries data = series.get(s);
+      for (int i = 0; i < data.size(); i++) {
+        appendCode(builder, data.get(i), factor);
+      } // end for
+    } // end for
+  }
+
+  /**
+   * Writes one value in extended encoding. A missing value is written as __, which the chart
+   * leaves out, and values off the y-axis are written at its bottom or top.
+   * 
+   * @param builder Where the value is written.
+   * @param value The value, or NaN if it is missing.
+   * @param factor Number of codes for each unit of the value.
+   */
+  private static void appendCode(StringBuilder builder, double value, double factor) {
+    if (Double.isNaN(value)) {
+      builder.append("__");
+      return;
+    }
+    int code = (int) (value * factor);
+    if (code < 0) {
+      code = 0;
+    }
+    else if (code > MAX_CODE) {
+      code = MAX_CODE;
+    }
+    builder.append(CODES, 2 * code, 2);
+  }
+
+  /**
+   * Returns the extended code of a number from 0 to 4095.
+   * 
+   * @param number The number.
+   * @return Number in extended encode value.
+   */
+  public static String getCode(int number) {
+    return new String(CODES, 2 * number, 2);
+  }
+
+}
@@ -0,0 +1,302 @@
+package edu.hawaii.wicket.page.gridinfo;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import edu.hawaii.wattdepot.RequestCoalescer;
+import edu.hawaii.wattdepot.TimeSeriesCache;
+
+/**
+ * Caches rendered charts for all users of this web application, by the key of their query. A
+ * chart of days that are over never changes, so it is kept for a day; a chart that covers today,
+ * or that was drawn from stale data while the WattDepot server was not responding, is kept only
+ * for a short time. The cache holds a limited number of charts and of bytes, and when it
+ * is full the least recently used charts are removed. Users who ask for the same chart while it is
+ * being rendered wait for it instead of rendering it again.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class ChartImageCache {
+
+  /** Number of charts the shared cache holds if the system property is not set. */
+  public static final int DEFAULT_MAX_SIZE = 200;
+  /** Number of bytes of charts the shared cache holds if the system property is not set. */
+  public static final long DEFAULT_MAX_BYTES = 16L * 1024L * 1024L;
+  /** Number of milliseconds to keep a chart of days that are over. */
+  public static final long PAST_TIME_TO_LIVE = 24L * 60L * 60L * 1000L;
+  /** Cache shared by all users of this web application. */
+  private static final ChartImageCache SHARED =
+      new ChartImageCache(Integer.getInteger("carbonometer.chartCacheSize", DEFAULT_MAX_SIZE),
+          Long.getLong("carbonometer.chartCacheBytes", DEFAULT_MAX_BYTES),
+          TimeSeriesCache.DEFAULT_TIME_TO_LIVE);
+  /** Number of milliseconds to keep a chart that covers today or was drawn from stale data. */
+  private final long timeToLive;
+  /** Number of charts to hold before the least recently used ones are removed. */
+  private final int maxSize;
+  /** Number of bytes of charts to hold before the least recently used ones are removed. */
+  private final long maxBytes;
+  /** Holds the cached charts, from least to most recently used. */
+  private final Map<String, Image> entries = new LinkedHashMap<String, Image>(64, 0.75f, true);
+  /** Number of bytes of the charts in this cache. */
+  private long bytes;
+  /** Makes sure each chart is rendered by one thread at a time. */
+  private final RequestCoalescer<Image> renders = new RequestCoalescer<Image>();
+  /** Number of charts that were found in this cache. */
+  private final AtomicLong hits = new AtomicLong();
+  /** Number of charts that were not found in this cache. */
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Draws a chart for the cache.
+   */
+  public interface Renderer {
+
+    /**
+     * Draws the chart.
+     * 
+     * @return The chart as a PNG image.
+     * @throws Exception If the data could not be retrieved or the chart drawn.
+     */
+    byte[] render() throws Exception;
+
+    /**
+     * Returns true if the chart that was drawn shows data that may be out of date.
+     * 
+     * @return True if the chart was drawn from stale data, false otherwise.
+     */
+    boolean isStale();
+  }
+
+  /**
+   * Creates a cache.
+   * 
+   * @param maxSize Number of charts to hold before the least recently used ones are removed.
+   * @param timeToLive Number of milliseconds to keep a chart that covers a day that is not over.
+   */
+  public ChartImageCache(int maxSize, long timeToLive) {
+    this(maxSize, Long.MAX_VALUE, timeToLive);
+  }
+
+  /**
+   * Creates a cache that holds a limited number of bytes.
+   * 
+   * @param maxSize Number of charts to hold before the least recently used ones are removed.
+   * @param maxBytes Number of bytes to hold before the least recently used charts are removed.
+   * @param timeToLive Number of milliseconds to keep a chart that covers a day that is not over.
+   */
+  public ChartImageCache(int maxSize, long maxBytes, long timeToLive) {
+    this.maxSize = maxSize;
+    this.maxBytes = maxBytes;
+    this.timeToLive = timeToLive;
+  }
+
+  /**
+   * Returns the cache shared by all users of this web application.
+   * 
+   * @return The shared cache.
+   */
+  public static ChartImageCache getSharedCache() {
+    return SHARED;
+  }
+
+  /**
+   * Returns the chart for a query from this cache, or renders and caches it if it is not in this
+   * cache or has expired.
+   * 
+   * @param query Query of the chart.
+   * @param renderer Renders the chart as a PNG image.
+   * @return The chart.
+   * @throws ExecutionException If the chart could not be rendered.
+   * @throws InterruptedException If the calling thread was interrupted while waiting for another
+   * thread to render the chart.
+   */
+  public Image get(final ChartQuery query, final Renderer renderer)
+      throws ExecutionException, InterruptedException {
+    final String key = query.getKey();
+    Image cached = peek(query);
+    if (cached != null) {
+      return cached;
+    }
+
+    misses.incrementAndGet();
+    return renders.execute(key, new Callable<Image>() {
+      /**
+       * Renders the chart and adds it to the cache.
+       * 
+       * @return The chart.
+       * @throws Exception If the chart could not be rendered.
+       */
+      public Image call() throws Exception {
+        byte[] data = renderer.render();
+        boolean stale = renderer.isStale();
+        long rendered = System.currentTimeMillis();
+        long expires =
+            rendered + ((stale || query.isLive(rendered)) ? timeToLive : PAST_TIME_TO_LIVE);
+        Image image = new Image(data, rendered, expires, stale);
+        put(key, image);
+        return image;
+      }
+    });
+  }
+
+  /**
+   * Returns the chart for a query if it is in this cache and has not expired.
+   * 
+   * @param query Query of the chart.
+   * @return The chart, or null if it is not cached.
+   */
+  public Image peek(ChartQuery query) {
+    long now = System.currentTimeMillis();
+    synchronized (entries) {
+      Image image = entries.get(query.getKey());
+      if (image != null && now < image.getExpires()) {
+        hits.incrementAndGet();
+        return image;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns true if the chart for a query is in this cache and was drawn from stale data. Unlike
+   * {@link #peek}, this is not counted as a use of the chart.
+   * 
+   * @param query Query of the chart.
+   * @return True if the cached chart is stale, false if it is not or is not cached.
+   */
+  public boolean isStale(ChartQuery query) {
+    synchronized (entries) {
+      Image image = entries.get(query.getKey());
+      return image != null && image.isStale();
+    }
+  }
+
+  /**
+   * Adds a chart to this cache and removes the least recently used charts while the cache holds
+   * too many charts or bytes.
+   * 
+   * @param key Key of the query of the chart.
+   * @param image The chart.
+   */
+  private void put(String key, Image image) {
+    synchronized (entries) {
+      Image old = entries.put(key, image);
+      bytes += image.getData().length - (old == null ? 0 : old.getData().length);
+      Iterator<Image> eldest = entries.values().iterator();
+      while ((entries.size() > maxSize || bytes > maxBytes) && eldest.hasNext()) {
+        bytes -= eldest.next().getData().length;
+        eldest.remove();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of charts in this cache, including expired ones not yet removed.
+   * 
+   * @return Number of charts.
+   */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * Returns the number of charts that were found in this cache.
+   * 
+   * @return Number of cache hits.
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of charts that were not found in this cache.
+   * 
+   * @return Number of cache misses.
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Removes every chart from this cache.
+   */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+      bytes = 0;
+    }
+  }
+
+  /**
+   * A rendered chart.
+   */
+  public static final class Image {
+
+    /** The chart as a PNG image. */
+    private final byte[] data;
+    /** When the chart was rendered, in milliseconds since the epoch. */
+    private final long rendered;
+    /** When the chart expires, in milliseconds since the epoch. */
+    private final long expires;
+    /** True if the chart was drawn from stale data. */
+    private final boolean stale;
+
+    /**
+     * Creates a rendered chart.
+     * 
+     * @param data The chart as a PNG image.
+     * @param rendered When the chart was rendered, in milliseconds since the epoch.
+     * @param expires When the chart expires, in milliseconds since the epoch.
+     * @param stale True if the chart was drawn from stale data.
+     */
+    Image(byte[] data, long rendered, long expires, boolean stale) {
+      this.data = data;
+      this.rendered = rendered;
+      this.expires = expires;
+      this.stale = stale;
+    }
+
+    /**
+     * Returns true if the chart was drawn from data that may be out of date.
+     * 
+     * @return True if the chart is stale, false otherwise.
+     */
+    public boolean isStale() {
+      return stale;
+    }
+
+    /**
+     * Returns the chart as a PNG image. The array is shared and must not be changed.
+     * 
+     * @return The PNG image.
+     */
+    public byte[] getData() {
+      return data;
+    }
+
+    /**
+     * Returns when the chart was rendered.
+     * 
+     * @return When the chart was rendered, in milliseconds since the epoch.
+     */
+    public long getRendered() {
+      return rendered;
+    }
+
+    /**
+     * Returns when the chart expires.
+     * 
+     * @return When the chart expires, in milliseconds since the epoch.
+     */
+    public long getExpires() {
+      return expires;
+    }
+  }
+
+}
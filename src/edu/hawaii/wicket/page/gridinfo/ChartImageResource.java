@@ -0,0 +1,255 @@
+package edu.hawaii.wicket.page.gridinfo;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.wicket.RequestCycle;
+import org.apache.wicket.ResourceReference;
+import org.apache.wicket.markup.html.WebResource;
+import org.apache.wicket.protocol.http.servlet.AbortWithWebErrorCodeException;
+import org.apache.wicket.util.resource.AbstractResourceStream;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.time.Time;
+import edu.hawaii.wattdepot.TimeSeriesCache;
+import edu.hawaii.wattdepot.WattDepotCommand;
+
+/**
+ * Serves the charts of the Grid Information page as PNG images drawn by this web application. The
+ * chart is described by the parameters of the request, so its URI is the same for every user who
+ * asks for it, and browsers and proxies may cache it: for a day if its days are over, and for a
+ * minute if it covers today or was drawn from stale data. Rendered charts are kept in the shared
+ * chart image cache. A chart that is not cached is drawn only if the Grid Information form asked
+ * for it recently, so requests made up outside the form cannot make this application query the
+ * WattDepot server.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class ChartImageResource extends WebResource {
+
+  /** Support serialization. */
+  private static final long serialVersionUID = 1L;
+  /** Name under which this resource is shared by the web application. */
+  public static final String NAME = "chartImage";
+  /** Number of seconds browsers may cache a chart whose days are over. */
+  private static final int CACHE_DURATION = 24 * 60 * 60;
+  /** Number of seconds browsers may cache a chart that covers today. */
+  private static final int LIVE_CACHE_DURATION =
+      (int) (TimeSeriesCache.DEFAULT_TIME_TO_LIVE / 1000L);
+  /** Number of charts asked for by the form that are remembered. */
+  private static final int MAX_PREPARED = 1000;
+  /** Keys of the queries of charts asked for by the form, from least to most recently asked. */
+  private static final Map<String, Boolean> PREPARED = new LinkedHashMap<String, Boolean>() {
+    /** Support serialization. */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Forgets the chart asked for least recently when too many are remembered.
+     * 
+     * @param eldest Chart asked for least recently.
+     * @return True if too many charts are remembered, false otherwise.
+     */
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+      return size() > MAX_PREPARED;
+    }
+  };
+
+  /**
+   * Creates the resource.
+   */
+  public ChartImageResource() {
+    setCacheable(true);
+  }
+
+  /**
+   * Returns the chart described by the parameters of the request.
+   * 
+   * @return The chart as a PNG image.
+   */
+  @Override
+  public IResourceStream getResourceStream() {
+    ChartQuery query;
+    try {
+      query = ChartQuery.fromParameters(getParameters());
+    }
+    catch (IllegalArgumentException e) {
+      throw new AbortWithWebErrorCodeException(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+    }
+
+    ChartImageCache.Image image = ChartImageCache.getSharedCache().peek(query);
+    if (image == null && !isPrepared(query)) {
+      throw new AbortWithWebErrorCodeException(HttpServletResponse.SC_NOT_FOUND,
+          "Chart not found.");
+    }
+    try {
+      return new ImageStream((image == null) ? getImage(query) : image);
+    }
+    catch (ExecutionException e) {
+      throw new AbortWithWebErrorCodeException(HttpServletResponse.SC_SERVICE_UNAVAILABLE, e
+          .getCause().getMessage());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AbortWithWebErrorCodeException(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+  }
+
+  /**
+   * Returns the number of seconds browsers may cache the chart of the current request.
+   * 
+   * @return Number of seconds.
+   */
+  @Override
+  protected int getCacheDuration() {
+    try {
+      ChartQuery query = ChartQuery.fromParameters(getParameters());
+      if (query.isLive(System.currentTimeMillis())
+          || ChartImageCache.getSharedCache().isStale(query)) {
+        return LIVE_CACHE_DURATION;
+      }
+      return CACHE_DURATION;
+    }
+    catch (IllegalArgumentException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Returns the chart for a query from the shared chart image cache, getting the data from the
+   * WattDepot server and rendering the chart if it is not cached. A chart drawn from stale data
+   * says so in its title.
+   * 
+   * @param query Query of the chart.
+   * @return The chart.
+   * @throws ExecutionException If the data could not be retrieved or the chart rendered.
+   * @throws InterruptedException If the calling thread was interrupted while waiting for another
+   * thread to render the chart.
+   */
+  public static ChartImageCache.Image getImage(final ChartQuery query)
+      throws ExecutionException, InterruptedException {
+    return ChartImageCache.getSharedCache().get(query, new ChartImageCache.Renderer() {
+      /** True if the chart was drawn from stale data. */
+      private boolean stale;
+
+      /**
+       * Gets the data of the chart and renders it.
+       * 
+       * @return The chart as a PNG image.
+       * @throws Exception If the data could not be retrieved or the chart rendered.
+       */
+      public byte[] render() throws Exception {
+        WattDepotCommand cli = new WattDepotCommand();
+        ChartEncoder chart = query.fetch(cli);
+        stale = cli.isStaleDataServed();
+        return new ChartRenderer().renderPng(chart, query.getTitle(stale), query.getDayLabel());
+      }
+
+      /**
+       * Returns true if the chart was drawn from stale data.
+       * 
+       * @return True if the chart is stale, false otherwise.
+       */
+      public boolean isStale() {
+        return stale;
+      }
+    });
+  }
+
+  /**
+   * Returns true if the form asked for the chart of a query recently.
+   * 
+   * @param query Query of the chart.
+   * @return True if the chart may be drawn, false otherwise.
+   */
+  static boolean isPrepared(ChartQuery query) {
+    synchronized (PREPARED) {
+      return PREPARED.containsKey(query.getKey());
+    }
+  }
+
+  /**
+   * Returns the URI of the chart for a query, relative to the current request, and remembers that
+   * the chart may be drawn when it is asked for.
+   * 
+   * @param query Query of the chart.
+   * @return URI of the chart.
+   */
+  public static String urlFor(ChartQuery query) {
+    synchronized (PREPARED) {
+      PREPARED.put(query.getKey(), Boolean.TRUE);
+    }
+    return RequestCycle.get().urlFor(new ResourceReference(NAME), query.toParameters())
+        .toString();
+  }
+
+  /**
+   * Streams a rendered chart.
+   */
+  private static final class ImageStream extends AbstractResourceStream {
+
+    /** Support serialization. */
+    private static final long serialVersionUID = 1L;
+    /** The rendered chart. */
+    private final transient ChartImageCache.Image image;
+
+    /**
+     * Creates a stream of a rendered chart.
+     * 
+     * @param image The rendered chart.
+     */
+    ImageStream(ChartImageCache.Image image) {
+      this.image = image;
+    }
+
+    /**
+     * Returns the type of the image.
+     * 
+     * @return The content type of PNG images.
+     */
+    @Override
+    public String getContentType() {
+      return "image/png";
+    }
+
+    /**
+     * Returns the size of the image.
+     * 
+     * @return Number of bytes.
+     */
+    @Override
+    public long length() {
+      return image.getData().length;
+    }
+
+    /**
+     * Returns when the chart was rendered.
+     * 
+     * @return When the chart was rendered.
+     */
+    @Override
+    public Time lastModifiedTime() {
+      return Time.milliseconds(image.getRendered());
+    }
+
+    /**
+     * Returns a stream of the image.
+     * 
+     * @return A stream of the image.
+     */
+    public InputStream getInputStream() {
+      return new ByteArrayInputStream(image.getData());
+    }
+
+    /**
+     * Closes the stream, which holds no resources.
+     */
+    public void close() {
+      // nothing to close
+    }
+  }
+
+}
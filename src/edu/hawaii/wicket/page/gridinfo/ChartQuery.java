@@ -0,0 +1,339 @@
+package edu.hawaii.wicket.page.gridinfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.wicket.util.value.ValueMap;
+import edu.hawaii.wattdepot.TimeGrid;
+import edu.hawaii.wattdepot.TimeSeries;
+import edu.hawaii.wattdepot.WattDepotCommand;
+import edu.hawaii.wicket.Session;
+
+/**
+ * Describes a chart on the Grid Information page: the power sources on it, the type of data, the
+ * granularity, and the days it covers. Everything else on the chart, such as its title, labels and
+ * colors, follows from these, so two users who ask for the same chart get equal queries with the
+ * same key, whatever the spelling or time of day they used.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public final class ChartQuery {
+
+  /** Request parameter that holds the power sources, separated by commas. */
+  public static final String SOURCES_PARAMETER = "sources";
+  /** Request parameter that holds the type of data. */
+  public static final String TYPE_PARAMETER = "type";
+  /** Request parameter that holds the granularity. */
+  public static final String GRANULARITY_PARAMETER = "granularity";
+  /** Request parameter that holds the first day, in yyyy-MM-dd format. */
+  public static final String FROM_PARAMETER = "from";
+  /** Request parameter that holds the last day, in yyyy-MM-dd format. */
+  public static final String TO_PARAMETER = "to";
+  /** Largest number of days on one chart. */
+  public static final int MAX_DAYS = 3660;
+  /** Largest number of hours, days or weeks in each series of one chart. */
+  public static final int MAX_POINTS = 744;
+  /** Types of data, spelled as they are shown. */
+  private static final List<String> POWER_TYPES = Arrays.asList("Energy", "Carbon");
+  /** Granularities, spelled as they are shown. */
+  private static final List<String> GRANULARITIES = Arrays.asList("Hour", "Day", "Week");
+  /** Power sources on the chart, in the order of the legend. */
+  private final List<String> sources;
+  /** Type of data, energy or carbon. */
+  private final String powerType;
+  /** Granularity, hour, day or week. */
+  private final String granularity;
+  /** Start of the first day, in milliseconds since the epoch. */
+  private final long fromDay;
+  /** Start of the last day, in milliseconds since the epoch. */
+  private final long toDay;
+  /** Identifies this query; equal queries have equal keys. */
+  private final String key;
+
+  /**
+   * Creates a query.
+   * 
+   * @param sources Power sources on the chart, in the order of the legend.
+   * @param powerType Type of data, energy or carbon.
+   * @param granularity Granularity, hour, day or week.
+   * @param fromDay A time during the first day, in milliseconds since the epoch.
+   * @param toDay A time during the last day, in milliseconds since the epoch.
+   * @throws IllegalArgumentException If a value is not valid.
+   */
+  public ChartQuery(List<String> sources, String powerType, String granularity, long fromDay,
+      long toDay) {
+    if (sources.isEmpty() || sources.size() > Session.SOURCE_COLORS.size()) {
+      throw new IllegalArgumentException("Number of power sources must be between 1 and "
+          + Session.SOURCE_COLORS.size() + ": " + sources.size());
+    }
+    for (String source : sources) {
+      if (source.length() == 0 || source.indexOf(',') >= 0 || source.indexOf('|') >= 0) {
+        throw new IllegalArgumentException("Invalid power source: " + source);
+      }
+    } // end for
+    this.sources = Collections.unmodifiableList(new ArrayList<String>(sources));
+    this.powerType = canonicalize(POWER_TYPES, powerType);
+    this.granularity = canonicalize(GRANULARITIES, granularity);
+    this.fromDay = TimeGrid.startOfDay(fromDay);
+    this.toDay = TimeGrid.startOfDay(toDay);
+    if (this.fromDay > this.toDay || this.toDay - this.fromDay >= MAX_DAYS * TimeGrid.DAY) {
+      throw new IllegalArgumentException("Invalid period.");
+    }
+    if (getPoints() > MAX_POINTS) {
+      throw new IllegalArgumentException("Period too long for granularity " + this.granularity
+          + "; choose a shorter period or a coarser granularity.");
+    }
+    this.key =
+        this.sources.toString() + '|' + this.powerType + '|' + this.granularity + '|'
+            + this.fromDay + '|' + this.toDay;
+  }
+
+  /**
+   * Creates a query from the parameters of a request.
+   * 
+   * @param parameters Parameters of the request.
+   * @return The query.
+   * @throws IllegalArgumentException If a parameter is missing or not valid.
+   */
+  public static ChartQuery fromParameters(ValueMap parameters) {
+    String sources = getParameter(parameters, SOURCES_PARAMETER);
+    return new ChartQuery(Arrays.asList(sources.split(",")), getParameter(parameters,
+        TYPE_PARAMETER), getParameter(parameters, GRANULARITY_PARAMETER), TimeGrid
+        .parseDay(getParameter(parameters, FROM_PARAMETER)), TimeGrid.parseDay(getParameter(
+        parameters, TO_PARAMETER)));
+  }
+
+  /**
+   * Returns a parameter of a request.
+   * 
+   * @param parameters Parameters of the request.
+   * @param name Name of the parameter.
+   * @return Value of the parameter.
+   * @throws IllegalArgumentException If the parameter is missing.
+   */
+  private static String getParameter(ValueMap parameters, String name) {
+    String value = parameters.getString(name);
+    if (value == null) {
+      throw new IllegalArgumentException("Missing parameter: " + name);
+    }
+    return value;
+  }
+
+  /**
+   * Returns the spelling of a value as it is shown.
+   * 
+   * @param values Valid values, spelled as they are shown.
+   * @param value A value in any case.
+   * @return The value as it is shown.
+   * @throws IllegalArgumentException If the value is not valid.
+   */
+  private static String canonicalize(List<String> values, String value) {
+    for (String candidate : values) {
+      if (candidate.equalsIgnoreCase(value)) {
+        return candidate;
+      }
+    } // end for
+    throw new IllegalArgumentException("Invalid value: " + value);
+  }
+
+  /**
+   * Returns the parameters of a request for this query.
+   * 
+   * @return Parameters of the request.
+   */
+  public ValueMap toParameters() {
+    StringBuilder sourceList = new StringBuilder();
+    for (String source : sources) {
+      if (sourceList.length() > 0) {
+        sourceList.append(',');
+      }
+      sourceList.append(source);
+    } // end for
+    ValueMap parameters = new ValueMap();
+    parameters.put(SOURCES_PARAMETER, sourceList.toString());
+    parameters.put(TYPE_PARAMETER, powerType);
+    parameters.put(GRANULARITY_PARAMETER, granularity);
+    parameters.put(FROM_PARAMETER, formatDay(fromDay));
+    parameters.put(TO_PARAMETER, formatDay(toDay));
+    return parameters;
+  }
+
+  /**
+   * Formats a day in yyyy-MM-dd format.
+   * 
+   * @param day A time during the day, in milliseconds since the epoch.
+   * @return The formatted day.
+   */
+  private static String formatDay(long day) {
+    TimeGrid grid = new TimeGrid(day, TimeGrid.DAY, 1);
+    return String.format("%04d-%02d-%02d", grid.getYear(0), grid.getMonth(0), grid
+        .getDayOfMonth(0));
+  }
+
+  /**
+   * Returns the key of this query; equal queries have equal keys.
+   * 
+   * @return The key.
+   */
+  public String getKey() {
+    return key;
+  }
+
+  /**
+   * Returns the power sources on the chart.
+   * 
+   * @return Power sources, in the order of the legend.
+   */
+  public List<String> getSources() {
+    return sources;
+  }
+
+  /**
+   * Returns the type of data.
+   * 
+   * @return Energy or Carbon.
+   */
+  public String getPowerType() {
+    return powerType;
+  }
+
+  /**
+   * Returns the granularity.
+   * 
+   * @return Hour, Day or Week.
+   */
+  public String getGranularity() {
+    return granularity;
+  }
+
+  /**
+   * Returns the first day.
+   * 
+   * @return Start of the first day, in milliseconds since the epoch.
+   */
+  public long getFromDay() {
+    return fromDay;
+  }
+
+  /**
+   * Returns the last day.
+   * 
+   * @return Start of the last day, in milliseconds since the epoch.
+   */
+  public long getToDay() {
+    return toDay;
+  }
+
+  /**
+   * Returns the number of hours, days or weeks in each series of the chart.
+   * 
+   * @return Number of points in each series.
+   */
+  public int getPoints() {
+    long step = TimeGrid.HOUR;
+    if ("Day".equals(granularity)) {
+      step = TimeGrid.DAY;
+    }
+    else if ("Week".equals(granularity)) {
+      step = 7 * TimeGrid.DAY;
+    }
+    return (int) ((toDay + TimeGrid.DAY - fromDay + step - 1) / step);
+  }
+
+  /**
+   * Returns true if the chart covers a day that is not over yet, so its data may still change.
+   * 
+   * @param now The current time, in milliseconds since the epoch.
+   * @return True if the last day is not over, false otherwise.
+   */
+  public boolean isLive(long now) {
+    return now < toDay + TimeGrid.DAY;
+  }
+
+  /**
+   * Returns the title of the chart.
+   * 
+   * @return The title.
+   */
+  public String getTitle() {
+    return new Chart().getChartTitle(powerType, Session.getUnitFor(granularity, powerType),
+        fromDay, toDay);
+  }
+
+  /**
+   * Returns the title of the chart, marked as out of date if the chart shows stale data.
+   * 
+   * @param stale True if the chart shows data that may be out of date.
+   * @return The title.
+   */
+  public String getTitle(boolean stale) {
+    return stale ? getTitle() + " (out of date)" : getTitle();
+  }
+
+  /**
+   * Returns the labels of the x-axis, separated by |.
+   * 
+   * @return The labels.
+   */
+  public String getDayLabel() {
+    return new Chart().getDayLabel(fromDay, toDay, granularity);
+  }
+
+  /**
+   * Gets the data of every power source on the chart from the WattDepot server, all of the power
+   * sources and intervals in one parallel batch. The chart is not drawn from partial data: if any
+   * of the data cannot be retrieved, the chart fails.
+   * 
+   * @param cli Client for the WattDepot server.
+   * @return The series of the chart, each in its own color, in the order of the legend.
+   * @throws IllegalStateException If the data could not be retrieved from the WattDepot server.
+   */
+  public ChartEncoder fetch(WattDepotCommand cli) {
+    ChartEncoder chart = new ChartEncoder(sources.size());
+    List<TimeSeries> series = null;
+    if (!cli.isWattDepotExceptionThrown()) {
+      series = cli.getChartData(fromDay, toDay, sources, powerType, granularity);
+    }
+    if (cli.isWattDepotExceptionThrown()) {
+      throw new IllegalStateException("Failed to connect to WattDepot server.");
+    }
+    for (int i = 0; i < sources.size(); i++) {
+      chart.addSeries(sources.get(i), Session.SOURCE_COLORS.get(i), series.get(i));
+    } // end for
+    return chart;
+  }
+
+  /**
+   * Returns true if the given object is a query for the same chart, false otherwise.
+   * 
+   * @param object Object to compare.
+   * @return True if the object is a query for the same chart, false otherwise.
+   */
+  @Override
+  public boolean equals(Object object) {
+    return (object instanceof ChartQuery) && key.equals(((ChartQuery) object).key);
+  }
+
+  /**
+   * Returns a hash code consistent with equals.
+   * 
+   * @return Hash code of the key.
+   */
+  @Override
+  public int hashCode() {
+    return key.hashCode();
+  }
+
+  /**
+   * Returns the key of this query.
+   * 
+   * @return The key.
+   */
+  @Override
+  public String toString() {
+    return key;
+  }
+
+}
@@ -0,0 +1,277 @@
+package edu.hawaii.wicket.page.gridinfo;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.GeneralPath;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import edu.hawaii.wattdepot.TimeSeries;
+
+/**
+ * Draws a line chart of the series in a chart encoder, laid out like the charts the Google Chart
+ * API used to draw for this page: the title and legend on top, the y-axis on the left with the
+ * same scale and tick marks, and the day labels spread evenly under the x-axis. Missing values
+ * leave a gap in the line.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class ChartRenderer {
+
+  /** Width of the chart in pixels. */
+  public static final int WIDTH = 550;
+  /** Height of the chart in pixels. */
+  public static final int HEIGHT = 400;
+  /** Space around the chart, in pixels. */
+  private static final int MARGIN = 10;
+  /** Space to the left of the plot area for the y-axis labels, in pixels. */
+  private static final int AXIS_WIDTH = 45;
+  /** Space under the plot area for the x-axis labels, in pixels. */
+  private static final int LABEL_HEIGHT = 25;
+  /** Size of the marker drawn at each value, in pixels. */
+  private static final int MARKER_SIZE = 5;
+  /** Font of the title. */
+  private static final Font TITLE_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 17);
+  /** Font of the legend and the axis labels. */
+  private static final Font LABEL_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 11);
+  /** Color of the grid lines. */
+  private static final Color GRID_COLOR = new Color(0xDDDDDD);
+  /** Color of the axes and their labels. */
+  private static final Color AXIS_COLOR = new Color(0x666666);
+
+  /**
+   * Draws a chart and encodes it as a PNG image.
+   * 
+   * @param chart Series on the chart.
+   * @param title Title of the chart.
+   * @param labelX Labels of the x-axis, separated by |.
+   * @return The PNG image.
+   * @throws IOException If the image cannot be encoded.
+   */
+  public byte[] renderPng(ChartEncoder chart, String title, String labelX) throws IOException {
+    ByteArrayOutputStream png = new ByteArrayOutputStream(16 * 1024);
+    ImageIO.write(render(chart, title, labelX), "png", png);
+    return png.toByteArray();
+  }
+
+  /**
+   * Draws a chart.
+   * 
+   * @param chart Series on the chart.
+   * @param title Title of the chart.
+   * @param labelX Labels of the x-axis, separated by |.
+   * @return The chart.
+   */
+  public BufferedImage render(ChartEncoder chart, String title, String labelX) {
+    BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+          RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+      g.setColor(Color.WHITE);
+      g.fillRect(0, 0, WIDTH, HEIGHT);
+
+      int top = drawTitle(g, title);
+      top = drawLegend(g, chart, top);
+      int left = MARGIN + AXIS_WIDTH;
+      int right = WIDTH - MARGIN;
+      int bottom = HEIGHT - MARGIN - LABEL_HEIGHT;
+      double scale = chart.getScale();
+
+      drawYAxis(g, scale, left, right, top, bottom);
+      drawXAxis(g, labelX, left, right, bottom);
+      for (int i = 0; i < chart.getSeriesCount(); i++) {
+        drawSeries(g, chart.getSeries(i), toColor(chart.getColor(i)), scale, left, right, top,
+            bottom);
+      } // end for
+    }
+    finally {
+      g.dispose();
+    }
+    return image;
+  }
+
+  /**
+   * Draws the title centered at the top of the chart.
+   * 
+   * @param g Graphics of the chart.
+   * @param title Title of the chart.
+   * @return Top of the space under the title.
+   */
+  private int drawTitle(Graphics2D g, String title) {
+    g.setFont(TITLE_FONT);
+    g.setColor(Color.BLACK);
+    FontMetrics metrics = g.getFontMetrics();
+    int top = MARGIN + metrics.getAscent();
+    g.drawString(title, Math.max(MARGIN, (WIDTH - metrics.stringWidth(title)) / 2), top);
+    return top + metrics.getDescent() + MARGIN;
+  }
+
+  /**
+   * Draws the legend under the title, one entry for each series, starting a new row when a row is
+   * full.
+   * 
+   * @param g Graphics of the chart.
+   * @param chart Series on the chart.
+   * @param top Top of the space for the legend.
+   * @return Top of the space under the legend.
+   */
+  private int drawLegend(Graphics2D g, ChartEncoder chart, int top) {
+    if (chart.getSeriesCount() == 0) {
+      return top;
+    }
+    g.setFont(LABEL_FONT);
+    FontMetrics metrics = g.getFontMetrics();
+    int rowHeight = metrics.getHeight();
+    int x = MARGIN;
+    int y = top;
+    for (int i = 0; i < chart.getSeriesCount(); i++) {
+      String name = chart.getName(i);
+      int width = rowHeight + metrics.stringWidth(name) + MARGIN;
+      if (x > MARGIN && x + width > WIDTH - MARGIN) {
+        x = MARGIN;
+        y += rowHeight;
+      }
+      g.setColor(toColor(chart.getColor(i)));
+      g.fillRect(x, y + (rowHeight - MARKER_SIZE * 2) / 2, MARKER_SIZE * 2, MARKER_SIZE * 2);
+      g.setColor(Color.BLACK);
+      g.drawString(name, x + rowHeight, y + metrics.getAscent());
+      x += width;
+    } // end for
+    return y + rowHeight + MARGIN;
+  }
+
+  /**
+   * Draws the y-axis with a label and a grid line at each tick mark.
+   * 
+   * @param g Graphics of the chart.
+   * @param scale Top of the y-axis.
+   * @param left Left edge of the plot area.
+   * @param right Right edge of the plot area.
+   * @param top Top edge of the plot area.
+   * @param bottom Bottom edge of the plot area.
+   */
+  private void drawYAxis(Graphics2D g, double scale, int left, int right, int top, int bottom) {
+    g.setFont(LABEL_FONT);
+    FontMetrics metrics = g.getFontMetrics();
+    double step = ChartEncoder.getAxisStep(scale);
+    int ticks = (int) Math.round(scale / step);
+    for (int i = 0; i <= ticks; i++) {
+      int y = bottom - (int) Math.round((double) i / ticks * (bottom - top));
+      g.setColor(GRID_COLOR);
+      g.drawLine(left, y, right, y);
+      String label = Long.toString(Math.round(i * step));
+      g.setColor(AXIS_COLOR);
+      g.drawString(label, left - 4 - metrics.stringWidth(label), y + metrics.getAscent() / 2);
+    } // end for
+    g.drawLine(left, top, left, bottom);
+  }
+
+  /**
+   * Draws the x-axis with its labels spread evenly from the left edge to the right edge.
+   * 
+   * @param g Graphics of the chart.
+   * @param labelX Labels of the x-axis, separated by |.
+   * @param left Left edge of the plot area.
+   * @param right Right edge of the plot area.
+   * @param bottom Bottom edge of the plot area.
+   */
+  private void drawXAxis(Graphics2D g, String labelX, int left, int right, int bottom) {
+    g.setFont(LABEL_FONT);
+    g.setColor(AXIS_COLOR);
+    g.drawLine(left, bottom, right, bottom);
+    if (labelX.length() == 0) {
+      return;
+    }
+    FontMetrics metrics = g.getFontMetrics();
+    String[] labels = labelX.split("\\|");
+    for (int i = 0; i < labels.length; i++) {
+      int x = getX(i, labels.length, left, right);
+      g.drawLine(x, bottom, x, bottom + 4);
+      int width = metrics.stringWidth(labels[i]);
+      int labelLeft = Math.max(0, Math.min(WIDTH - width, x - width / 2));
+      g.drawString(labels[i], labelLeft, bottom + 4 + metrics.getAscent());
+    } // end for
+  }
+
+  /**
+   * Draws one series as a line with a marker at each value. The line is broken at missing values,
+   * and values off the y-axis are drawn at its bottom or top.
+   * 
+   * @param g Graphics of the chart.
+   * @param series Data of the series.
+   * @param color Color of the line.
+   * @param scale Top of the y-axis.
+   * @param left Left edge of the plot area.
+   * @param right Right edge of the plot area.
+   * @param top Top edge of the plot area.
+   * @param bottom Bottom edge of the plot area.
+   */
+  private void drawSeries(Graphics2D g, TimeSeries series, Color color, double scale, int left,
+      int right, int top, int bottom) {
+    GeneralPath line = new GeneralPath();
+    boolean drawing = false;
+    g.setColor(color);
+    for (int i = 0; i < series.size(); i++) {
+      double value = series.get(i);
+      if (Double.isNaN(value)) {
+        drawing = false;
+        continue;
+      }
+      double fraction = Math.max(0.0, Math.min(1.0, value / scale));
+      float x = getX(i, series.size(), left, right);
+      float y = (float) (bottom - fraction * (bottom - top));
+      if (drawing) {
+        line.lineTo(x, y);
+      }
+      else {
+        line.moveTo(x, y);
+        drawing = true;
+      }
+      g.fillRect(Math.round(x) - MARKER_SIZE / 2, Math.round(y) - MARKER_SIZE / 2, MARKER_SIZE,
+          MARKER_SIZE);
+    } // end for
+    g.setStroke(new BasicStroke(2.0f));
+    g.draw(line);
+  }
+
+  /**
+   * Returns the horizontal position of one of a number of points spread evenly across the plot
+   * area.
+   * 
+   * @param index Index of the point.
+   * @param count Number of points.
+   * @param left Left edge of the plot area.
+   * @param right Right edge of the plot area.
+   * @return Horizontal position of the point.
+   */
+  private static int getX(int index, int count, int left, int right) {
+    if (count <= 1) {
+      return left;
+    }
+    return left + (int) Math.round((double) index * (right - left) / (count - 1));
+  }
+
+  /**
+   * Converts a color such as FF0000 to a color for drawing.
+   * 
+   * @param color Color in hexadecimal RGB.
+   * @return The color, or gray if it is not valid.
+   */
+  private static Color toColor(String color) {
+    try {
+      return new Color(Integer.parseInt(color, 16));
+    }
+    catch (NumberFormatException e) {
+      return Color.GRAY;
+    }
+  }
+
+}
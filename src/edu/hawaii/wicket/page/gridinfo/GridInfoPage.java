@@ -12,6 +12,7 @@ import org.apache.wicket.markup.html.image.Image;
 import org.apache.wicket.model.Model;
 import org.joda.time.DateTime;
 import edu.hawaii.wicket.Session;
+import edu.hawaii.wicket.SourceChoice;
 import edu.hawaii.wicket.page.BasePage;
 
 /**
@@ -84,8 +85,7 @@ public class GridInfoPage extends BasePage {
 
     // Add source drop down list.
     DropDownChoice<String> sourceChoice =
-        new DropDownChoice<String>("source", new Model<String>("SIM_OAHU_GRID"), session
-            .getListSources());
+        new SourceChoice("source", new Model<String>("SIM_OAHU_GRID"));
     sourceChoice.setRequired(true);
     form.add(sourceChoice);
 
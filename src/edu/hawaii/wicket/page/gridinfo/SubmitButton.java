@@ -2,12 +2,16 @@ package edu.hawaii.wicket.page.gridinfo;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
-import javax.xml.datatype.XMLGregorianCalendar;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import org.apache.wicket.AttributeModifier;
+import org.apache.wicket.ajax.AbstractAjaxTimerBehavior;
 import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.behavior.IBehavior;
 import org.apache.wicket.extensions.ajax.markup.html.IndicatingAjaxButton;
 import org.apache.wicket.extensions.markup.html.form.DateTextField;
 import org.apache.wicket.markup.html.basic.Label;
@@ -16,13 +20,16 @@ import org.apache.wicket.markup.html.form.DropDownChoice;
 import org.apache.wicket.markup.html.form.Form;
 import org.apache.wicket.markup.html.image.Image;
 import org.apache.wicket.model.Model;
-import org.wattdepot.resource.source.jaxb.Source;
-import org.wattdepot.util.tstamp.Tstamp;
+import org.apache.wicket.util.time.Duration;
+import edu.hawaii.wattdepot.PendingResults;
+import edu.hawaii.wattdepot.TimeGrid;
 import edu.hawaii.wattdepot.WattDepotCommand;
 import edu.hawaii.wicket.Session;
 
 /**
- * Constructs a button used to query the WattDepot server for data.
+ * Constructs a button used to query the WattDepot server for data. The chart is fetched and drawn
+ * in the background, so the request that submits the form returns at once; a short Ajax poll
+ * collects the chart when it is ready.
  * 
  * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
  * @version 2.0
@@ -31,6 +38,9 @@ public class SubmitButton extends IndicatingAjaxButton {
 
   /** Support serialization. */
   private static final long serialVersionUID = 1L;
+  /** True to have the Google Chart API draw the charts, false to draw them on this server. */
+  private static final boolean GOOGLE_CHARTS =
+      "google".equalsIgnoreCase(System.getProperty("carbonometer.chartRenderer"));
   /** Used to get the start date from the user. */
   private final DateTextField startDay;
   /** Used to get the end date from the user. */
@@ -53,6 +63,11 @@ public class SubmitButton extends IndicatingAjaxButton {
   private Session session;
   /** Used to indicate if an error was encountered. */
   private Boolean isError = false;
+  /** Charts being fetched in the background for all users, until their polls collect them. */
+  private static final PendingResults<String> PENDING_CHARTS =
+      new PendingResults<String>(5L * TimeGrid.MINUTE);
+  /** Number of milliseconds between polls for a chart being fetched. */
+  private static final long POLL_INTERVAL = 500L;
 
   /**
    * Constructs a button used to query the WattDepot server for data.
@@ -95,20 +110,7 @@ public class SubmitButton extends IndicatingAjaxButton {
   protected void onSubmit(AjaxRequestTarget target, Form<?> form) {
 
     List<String> subsources = new ArrayList<String>();
-    // Holds list of power data.
-    List<String> dataText = new ArrayList<String>();
-    List<String> colorList = new ArrayList<String>();
-    List<String> legendList = new ArrayList<String>();
-    List<String> markerList = new ArrayList<String>();
-    Chart powerChart = new Chart();
-
-    String powerData = "";
-    String color = "";
-    String legend = "";
-    String chartTitle = "";
-    String labelX = "";
     String choice = "";
-    String marker = "";
 
     status.setOutputMarkupId(true);
     chartImage.setOutputMarkupId(true);
@@ -124,112 +126,70 @@ public class SubmitButton extends IndicatingAjaxButton {
     choice = session.getListGranularity().get(Integer.parseInt(granularityChoice.getValue()));
     session.setInterval(choice);
 
-    XMLGregorianCalendar fromDay = null;
-    XMLGregorianCalendar toDay = null;
+    long fromDay = 0;
+    long toDay = 0;
     try {
-      fromDay = Tstamp.makeTimestamp(session.getStartDay());
-      toDay = Tstamp.makeTimestamp(session.getEndDay());
+      fromDay = TimeGrid.parseDay(session.getStartDay());
+      toDay = TimeGrid.parseDay(session.getEndDay());
+      int daysBetween = (int) ((toDay - fromDay) / TimeGrid.DAY);
 
       // Adjust the fromDay for the day/week period.
-      if (Tstamp.equal(fromDay, toDay)) {
+      if (fromDay == toDay) {
         if (choice.equalsIgnoreCase("week")) {
-          fromDay = Tstamp.incrementDays(fromDay, ((-1) * 13));
-
+          fromDay -= 13 * TimeGrid.DAY;
         }
         else if (choice.equalsIgnoreCase("day")) {
-          fromDay = Tstamp.incrementDays(fromDay, ((-1) * session.getInterval()));
+          fromDay -= session.getInterval() * TimeGrid.DAY;
         }
       }
-      else if (Tstamp.daysBetween(fromDay, toDay) < 7) {
+      else if (daysBetween < 7) {
         if (choice.equalsIgnoreCase("week")) {
-          fromDay =
-              Tstamp.incrementDays(fromDay, (-1) * (13 - (Tstamp.daysBetween(fromDay, toDay) % 7)));
-
+          fromDay -= (13 - (daysBetween % 7)) * TimeGrid.DAY;
         }
-
       }
       else {
-        if (choice.equalsIgnoreCase("week") && ((Tstamp.daysBetween(fromDay, toDay) % 7) >= 0)) {
-          fromDay =
-              Tstamp.incrementDays(fromDay, (-1) * (6 - (Tstamp.daysBetween(fromDay, toDay) % 7)));
+        if (choice.equalsIgnoreCase("week") && ((daysBetween % 7) >= 0)) {
+          fromDay -= (6 - (daysBetween % 7)) * TimeGrid.DAY;
         }
       }
-      session.setFromDay(fromDay.toString());
+      session.setFromDay(TimeGrid.toTimestamp(fromDay).toString());
     }
     catch (Exception e) {
       this.isError = true;
       status.setDefaultModelObject("ERROR: Invalid date.");
     }
 
-    if (Tstamp.greaterThan(fromDay, toDay)) {
+    if (fromDay > toDay) {
       this.isError = true;
       status.setDefaultModelObject("ERROR: Invalid period.");
     }
 
     if (!this.isError) {
       // Sets power source and power type for each user's session.
-      session.setPowerSource(session.getListSources()
-          .get(Integer.parseInt(sourceChoice.getValue())));
+      session.setPowerSource(sourceChoice.getModelObject());
       session.setPowerType(session.getListType().get(Integer.parseInt(powerChoice.getValue())));
       session.setUnit(choice, session.getPowerType());
 
       if (subSource.getDefaultModelObjectAsString().equalsIgnoreCase("true")) {
-        Source source = cli.getSource(session.getPowerSource());
-        subsources = cli.getSubSources(source);
+        subsources.addAll(WattDepotCommand.getSourceGraph().getSubsources(
+            session.getPowerSource()));
       }
 
       // Adds parent source to the list.
       subsources.add(session.getPowerSource());
 
-      Iterator<String> itr = subsources.iterator();
-      Integer index = 0;
-
-      // Gets data for subsource.
-      while (itr.hasNext()) {
-        String temp = itr.next().toString();
-        legendList.add(temp);
-
-        dataText.add(powerChart.getEncodedDataList(cli.getChartData(fromDay, toDay, temp, session
-            .getPowerType(), choice)));
-
-        colorList.add(session.getSourceColor().get(index));
-        markerList.add("s," + session.getSourceColor().get(index) + "," + index + ",-1,5.0|");
-        index++;
+      try {
+        ChartQuery query =
+            new ChartQuery(subsources, session.getPowerType(), choice, fromDay, toDay);
+        stopPolls();
+        String ticket = PENDING_CHARTS.add(WattDepotCommand.submit(fetchChart(query)));
+        status.add(new ChartPoll(ticket, GOOGLE_CHARTS ? null : ChartImageResource.urlFor(query)));
+        status.setDefaultModelObject("Loading chart...");
+      }
+      catch (IllegalArgumentException e) {
+        this.isError = true;
+        status.setDefaultModelObject("ERROR: " + e.getMessage());
       }
-      // Cleans up string for chart.
-      legend = legendList.toString();
-      legend = legend.replace("[", "");
-      legend = legend.replace("]", "");
-      legend = legend.replace(", ", "|");
-
-      color = colorList.toString();
-      color = color.replace("[", "");
-      color = color.replace("]", "");
-      color = color.replace(", ", ",");
-
-      powerData = dataText.toString();
-      powerData = powerData.replace("[", "");
-      powerData = powerData.replace("]", "");
-      powerData = powerData.replace(", ", ",");
-
-      marker = markerList.toString();
-      marker = marker.substring(0, marker.length() - 2);
-      marker = marker.replace("[", "");
-      marker = marker.replace("]", "");
-      marker = marker.replace("|, ", "|");
-
-      // status.setDefaultModelObject(marker);
-      chartTitle =
-          powerChart.getChartTitle(session.getPowerType(), session.getUnit(), fromDay, toDay);
-      labelX = powerChart.getDayLabel(fromDay, toDay, choice);
-      session.setChartUri(powerChart.getChartUri(chartTitle, labelX, powerData, color, legend,
-          marker));
-
-      // Add chart image.
-      // status.setDefaultModelObject("Done");
-
-      chartImage.add(new AttributeModifier("src", true, new Model<String>(session.getChartUri())));
-
     }
 
     // Attach components to the form.
@@ -240,4 +200,129 @@ public class SubmitButton extends IndicatingAjaxButton {
     target.addComponent(chartImage);
   }
 
-}
\ No newline at end of file
+  /**
+   * Returns the work that fetches a chart in the background: the data of the chart are retrieved
+   * and, unless the Google Chart API draws it, the chart is drawn into the shared cache, so that
+   * the browser finds it there.
+   * 
+   * @param query Query of the chart.
+   * @return Work whose result is the URI of the chart, or null if it is served by this server.
+   */
+  private static Callable<String> fetchChart(final ChartQuery query) {
+    return new Callable<String>() {
+      public String call() throws ExecutionException, InterruptedException {
+        if (GOOGLE_CHARTS) {
+          WattDepotCommand cli = new WattDepotCommand();
+          ChartEncoder encoder = query.fetch(cli);
+          return encoder.getChartUri(query.getTitle(cli.isStaleDataServed()), query
+              .getDayLabel());
+        }
+        ChartImageResource.getImage(query);
+        return null;
+      }
+    };
+  }
+
+  /**
+   * Stops the polls of charts that are still being fetched, which a new query replaces, and
+   * removes the polls that have collected their charts.
+   */
+  private void stopPolls() {
+    List<ChartPoll> polls = new ArrayList<ChartPoll>();
+    for (IBehavior behavior : status.getBehaviors()) {
+      if (behavior instanceof ChartPoll) {
+        polls.add((ChartPoll) behavior);
+      }
+    } // end for
+    for (ChartPoll poll : polls) {
+      if (poll.collected) {
+        status.remove(poll);
+      }
+      else {
+        poll.cancel();
+      }
+    } // end for
+  }
+
+  /**
+   * Polls for a chart being fetched in the background and shows it, or an error, when it is done.
+   */
+  private final class ChartPoll extends AbstractAjaxTimerBehavior {
+
+    /** Support serialization. */
+    private static final long serialVersionUID = 1L;
+    /** Ticket of the chart being fetched. */
+    private final String ticket;
+    /** URI of the chart if it is served by this server, or null if the work returns it. */
+    private final String chartUri;
+    /** True once the last poll has been answered, so that this behavior can be removed. */
+    private boolean collected;
+
+    /**
+     * Creates a poll.
+     * 
+     * @param ticket Ticket of the chart being fetched.
+     * @param chartUri URI of the chart if it is served by this server, or null.
+     */
+    ChartPoll(String ticket, String chartUri) {
+      super(Duration.milliseconds(POLL_INTERVAL));
+      this.ticket = ticket;
+      this.chartUri = chartUri;
+    }
+
+    /**
+     * Stops polling and gives up the chart, because a new query replaces it.
+     */
+    void cancel() {
+      stop();
+      PENDING_CHARTS.cancel(ticket);
+    }
+
+    /**
+     * Shows the chart, or an error, if it is done.
+     * 
+     * @param target Target to output the result.
+     */
+    @Override
+    protected void onTimer(AjaxRequestTarget target) {
+      Future<String> result;
+      try {
+        result = PENDING_CHARTS.collect(ticket);
+      }
+      catch (IllegalArgumentException e) {
+        // Replaced by a new query or given up.
+        stop();
+        collected = true;
+        return;
+      }
+      if (result == null) {
+        return;
+      }
+      stop();
+      collected = true;
+
+      try {
+        String uri = result.get();
+        session.setChartUri((uri == null) ? chartUri : uri);
+        chartImage.add(new AttributeModifier("src", true, new Model<String>(session
+            .getChartUri())));
+        status.setDefaultModelObject("");
+      }
+      catch (CancellationException e) {
+        return;
+      }
+      catch (ExecutionException e) {
+        isError = true;
+        status.setDefaultModelObject("Failed to connect to WattDepot server.");
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        isError = true;
+        status.setDefaultModelObject("Failed to connect to WattDepot server.");
+      }
+      target.addComponent(status);
+      target.addComponent(chartImage);
+    }
+  }
+
+}
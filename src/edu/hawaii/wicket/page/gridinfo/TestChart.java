@@ -2,10 +2,10 @@ package edu.hawaii.wicket.page.gridinfo;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
-import java.util.List;
 import javax.xml.datatype.XMLGregorianCalendar;
 import org.junit.Test;
 import org.wattdepot.util.tstamp.Tstamp;
+import edu.hawaii.wattdepot.TimeSeries;
 import edu.hawaii.wattdepot.WattDepotCommand;
 
 /**
@@ -75,7 +75,7 @@ public class TestChart {
       fail("Cannot create timestamp.");
     }
 
-    List<Double> results = command.getChartData(fromDay, toDay, "SIM_OAHU_GRID", "Energy", "Hour");
+    TimeSeries results = command.getChartData(fromDay, toDay, "SIM_OAHU_GRID", "Energy", "Hour");
 
     String expectedOutput = "gSgKf7f1f7g5ibjhkxmhnjo1qNquqdqJqVrxzh832lnCgagIgSgKf7f1f7g5ibjhkxmh";
     expectedOutput += "njo1qNquqdqJqVrxzh832lnCgagI";
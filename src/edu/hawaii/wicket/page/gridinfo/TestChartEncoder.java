@@ -0,0 +1,66 @@
+package edu.hawaii.wicket.page.gridinfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import edu.hawaii.wattdepot.TimeSeries;
+
+/**
+ * Tests the methods in the ChartEncoder class.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestChartEncoder {
+
+  /**
+   * Tests that every series is encoded against the scale of the largest value of all of them.
+   */
+  @Test
+  public void testSharedScale() {
+    ChartEncoder encoder = new ChartEncoder(2);
+    encoder.addSeries("SIM_KAHE", "FF0000", new TimeSeries(0L, 60, new double[] { 5.0, 10.0 }));
+    encoder.addSeries("SIM_WAIAU", "00FF00", new TimeSeries(0L, 60, new double[] { 25.0 }));
+    assertEquals("Checking scale", 50.0, encoder.getScale(), 0.0);
+    // 5 / 50 * 4096 = 409.6 and 10 / 50 * 4096 = 819.2, which are GZ and Mz.
+    assertEquals("Checking encoded data", "GZMz,gA", encoder.getEncodedData());
+  }
+
+  /**
+   * Tests that missing values are left out and values off the y-axis are kept on it.
+   */
+  @Test
+  public void testMissingAndOffScale() {
+    ChartEncoder encoder = new ChartEncoder();
+    encoder.addSeries("", "", new TimeSeries(0L, 60, new double[] { Double.NaN, -1.0, 10.0 }));
+    assertEquals("Checking encoded data", "__AA..", encoder.getEncodedData());
+  }
+
+  /**
+   * Tests the scale and axis range of large values.
+   */
+  @Test
+  public void testLargeScale() {
+    assertEquals("Checking scale", 1000.0, ChartEncoder.getScale(1000.0), 0.0);
+    assertEquals("Checking scale", 10000.0, ChartEncoder.getScale(1000.5), 0.0);
+    assertEquals("Checking axis range", "1,0,10000,1000", ChartEncoder.getAxisRange(10000.0));
+    assertEquals("Checking scale of no values", 10.0, ChartEncoder.getScale(Double.NaN), 0.0);
+  }
+
+  /**
+   * Tests that the legend, colors and markers of every series are in the chart URI.
+   */
+  @Test
+  public void testChartUri() {
+    ChartEncoder encoder = new ChartEncoder(2);
+    encoder.addSeries("SIM_KAHE", "FF0000", new TimeSeries(0L, 60, new double[] { 500.0 }));
+    encoder.addSeries("SIM_WAIAU", "00FF00", new TimeSeries(0L, 60, new double[] { 0.0 }));
+    String uri = encoder.getChartUri("Energy", "12-1");
+    assertTrue("Checking axis range", uri.contains("&chxr=1,0,1000,100&"));
+    assertTrue("Checking data", uri.contains("&chd=e:gA,AA&"));
+    assertTrue("Checking colors", uri.contains("&chco=FF0000,00FF00&"));
+    assertTrue("Checking markers", uri.contains("&chm=s,FF0000,0,-1,5.0|s,00FF00,1,-1,5.0&"));
+    assertTrue("Checking legend", uri.contains("&chdl=SIM_KAHE|SIM_WAIAU&"));
+  }
+
+}
@@ -0,0 +1,140 @@
+package edu.hawaii.wicket.page.gridinfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import edu.hawaii.wattdepot.TimeGrid;
+
+/**
+ * Tests the methods in the ChartImageCache class.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestChartImageCache {
+
+  /** Number of times the test renderer was called. */
+  private final AtomicInteger renders = new AtomicInteger();
+  /** True if the test renderer draws charts from stale data. */
+  private boolean stale;
+  /** Renderer that counts its calls. */
+  private final ChartImageCache.Renderer renderer = new ChartImageCache.Renderer() {
+    /**
+     * Returns an image of one byte.
+     * 
+     * @return An image of one byte.
+     */
+    public byte[] render() {
+      renders.incrementAndGet();
+      return new byte[] { 1 };
+    }
+
+    /**
+     * Returns true if the test draws charts from stale data.
+     * 
+     * @return True if the chart is stale, false otherwise.
+     */
+    public boolean isStale() {
+      return stale;
+    }
+  };
+
+  /**
+   * Returns a query for a day.
+   * 
+   * @param day The day, in yyyy-MM-dd format.
+   * @return A query for the day.
+   */
+  private static ChartQuery getQuery(String day) {
+    long start = TimeGrid.parseDay(day);
+    return new ChartQuery(Arrays.asList("SIM_KAHE"), "Energy", "Hour", start, start);
+  }
+
+  /**
+   * Tests that a chart of days that are over is rendered once for equal queries.
+   * 
+   * @throws Exception If the chart cannot be rendered.
+   */
+  @Test
+  public void testRenderedOnce() throws Exception {
+    ChartImageCache cache = new ChartImageCache(10, 60000L);
+    ChartImageCache.Image image = cache.get(getQuery("2009-12-01"), renderer);
+    assertSame("Checking cached image", image, cache.get(getQuery("2009-12-01"), renderer));
+    assertEquals("Checking renders", 1, renders.get());
+    assertEquals("Checking hits", 1, cache.getHits());
+    assertEquals("Checking expiry", image.getRendered() + ChartImageCache.PAST_TIME_TO_LIVE, image
+        .getExpires());
+  }
+
+  /**
+   * Tests that a chart that covers today expires.
+   * 
+   * @throws Exception If the chart cannot be rendered.
+   */
+  @Test
+  public void testLiveChartExpires() throws Exception {
+    ChartImageCache cache = new ChartImageCache(10, 0L);
+    long today = TimeGrid.startOfDay(System.currentTimeMillis());
+    ChartQuery query = new ChartQuery(Arrays.asList("SIM_KAHE"), "Energy", "Hour", today, today);
+    ChartImageCache.Image image = cache.get(query, renderer);
+    assertTrue("Checking expiry", image.getExpires() < Long.MAX_VALUE);
+    Thread.sleep(2);
+    cache.get(query, renderer);
+    assertEquals("Checking renders", 2, renders.get());
+  }
+
+  /**
+   * Tests that a chart of days that are over is kept only for a short time if it was drawn from
+   * stale data.
+   * 
+   * @throws Exception If the chart cannot be rendered.
+   */
+  @Test
+  public void testStaleExpiresSoon() throws Exception {
+    ChartImageCache cache = new ChartImageCache(10, 60000L);
+    stale = true;
+    ChartImageCache.Image image = cache.get(getQuery("2009-12-01"), renderer);
+    assertTrue("Checking stale image", image.isStale());
+    assertTrue("Checking stale in cache", cache.isStale(getQuery("2009-12-01")));
+    assertEquals("Checking expiry", image.getRendered() + 60000L, image.getExpires());
+  }
+
+  /**
+   * Tests that the least recently used chart is removed when the cache is full.
+   * 
+   * @throws Exception If the chart cannot be rendered.
+   */
+  @Test
+  public void testLeastRecentlyUsedRemoved() throws Exception {
+    ChartImageCache cache = new ChartImageCache(2, 60000L);
+    cache.get(getQuery("2009-12-01"), renderer);
+    cache.get(getQuery("2009-12-02"), renderer);
+    cache.get(getQuery("2009-12-01"), renderer);
+    cache.get(getQuery("2009-12-03"), renderer);
+    assertEquals("Checking size", 2, cache.size());
+    cache.get(getQuery("2009-12-01"), renderer);
+    assertEquals("Checking renders", 3, renders.get());
+    cache.get(getQuery("2009-12-02"), renderer);
+    assertEquals("Checking renders after removal", 4, renders.get());
+  }
+
+  /**
+   * Tests that the least recently used chart is removed when the cache holds too many bytes.
+   * 
+   * @throws Exception If the chart cannot be rendered.
+   */
+  @Test
+  public void testBytesBounded() throws Exception {
+    ChartImageCache cache = new ChartImageCache(10, 2L, 60000L);
+    cache.get(getQuery("2009-12-01"), renderer);
+    cache.get(getQuery("2009-12-02"), renderer);
+    cache.get(getQuery("2009-12-03"), renderer);
+    assertEquals("Checking size", 2, cache.size());
+    cache.get(getQuery("2009-12-01"), renderer);
+    assertEquals("Checking renders after removal", 4, renders.get());
+  }
+
+}
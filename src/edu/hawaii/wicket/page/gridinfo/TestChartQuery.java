@@ -0,0 +1,77 @@
+package edu.hawaii.wicket.page.gridinfo;
+
+import static org.junit.Assert.assertEquals;
+import java.util.Arrays;
+import org.apache.wicket.util.value.ValueMap;
+import org.junit.Test;
+import edu.hawaii.wattdepot.TimeGrid;
+
+/**
+ * Tests the methods in the ChartQuery class.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestChartQuery {
+
+  /**
+   * Tests that queries for the same chart have the same key, whatever the spelling or time of day.
+   */
+  @Test
+  public void testCanonicalKey() {
+    long day = TimeGrid.parseDay("2009-12-01");
+    ChartQuery query =
+        new ChartQuery(Arrays.asList("SIM_KAHE", "SIM_WAIAU"), "Energy", "Hour", day, day
+            + TimeGrid.DAY);
+    ChartQuery other =
+        new ChartQuery(Arrays.asList("SIM_KAHE", "SIM_WAIAU"), "ENERGY", "hour", day + 5
+            * TimeGrid.HOUR, day + TimeGrid.DAY + 23 * TimeGrid.HOUR);
+    assertEquals("Checking key", query.getKey(), other.getKey());
+    assertEquals("Checking equals", query, other);
+    assertEquals("Checking title", "Energy Chart (in MW) Between 12-1-2009 and 12-2-2009", other
+        .getTitle());
+  }
+
+  /**
+   * Tests that a query is the same after it is turned into request parameters and back.
+   */
+  @Test
+  public void testParameters() {
+    long day = TimeGrid.parseDay("2009-12-31");
+    ChartQuery query =
+        new ChartQuery(Arrays.asList("SIM_OAHU_GRID"), "Carbon", "Week", day - 13 * TimeGrid.DAY,
+            day);
+    ValueMap parameters = query.toParameters();
+    assertEquals("Checking from", "2009-12-18", parameters.getString(ChartQuery.FROM_PARAMETER));
+    assertEquals("Checking to", "2009-12-31", parameters.getString(ChartQuery.TO_PARAMETER));
+    assertEquals("Checking query", query, ChartQuery.fromParameters(parameters));
+  }
+
+  /**
+   * Tests that a query with an invalid type of data is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidType() {
+    long day = TimeGrid.parseDay("2009-12-01");
+    new ChartQuery(Arrays.asList("SIM_KAHE"), "Water", "Hour", day, day);
+  }
+
+  /**
+   * Tests that a query that ends before it starts is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPeriod() {
+    long day = TimeGrid.parseDay("2009-12-01");
+    new ChartQuery(Arrays.asList("SIM_KAHE"), "Energy", "Hour", day, day - TimeGrid.DAY);
+  }
+
+  /**
+   * Tests that a query with too many points for its granularity is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooManyPoints() {
+    long day = TimeGrid.parseDay("2009-12-01");
+    new ChartQuery(Arrays.asList("SIM_KAHE"), "Energy", "Hour", day, day + 40 * TimeGrid.DAY);
+  }
+
+}
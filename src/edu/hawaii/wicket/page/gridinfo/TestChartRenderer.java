@@ -0,0 +1,49 @@
+package edu.hawaii.wicket.page.gridinfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import javax.imageio.ImageIO;
+import org.junit.Test;
+import edu.hawaii.wattdepot.TimeSeries;
+
+/**
+ * Tests the methods in the ChartRenderer class.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestChartRenderer {
+
+  /**
+   * Tests that a chart is drawn in the size of the page's charts and in the colors of its series.
+   * 
+   * @throws Exception If the image cannot be encoded or decoded.
+   */
+  @Test
+  public void testRenderPng() throws Exception {
+    ChartEncoder chart = new ChartEncoder(2);
+    chart.addSeries("SIM_KAHE", "FF0000", new TimeSeries(0L, 60, new double[] { 5.0, 40.0,
+        Double.NaN, 20.0 }));
+    chart.addSeries("SIM_WAIAU", "0000FF", new TimeSeries(0L, 60, new double[] { 10.0, 10.0,
+        10.0, 10.0 }));
+    byte[] png = new ChartRenderer().renderPng(chart, "Energy Chart", "12-1|12-2");
+
+    BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+    assertEquals("Checking width", ChartRenderer.WIDTH, image.getWidth());
+    assertEquals("Checking height", ChartRenderer.HEIGHT, image.getHeight());
+    boolean red = false;
+    boolean blue = false;
+    for (int x = 0; x < image.getWidth(); x++) {
+      for (int y = 0; y < image.getHeight(); y++) {
+        int rgb = image.getRGB(x, y) & 0xFFFFFF;
+        red |= rgb == 0xFF0000;
+        blue |= rgb == 0x0000FF;
+      } // end for
+    } // end for
+    assertTrue("Checking first series is drawn", red);
+    assertTrue("Checking second series is drawn", blue);
+  }
+
+}
@@ -0,0 +1,77 @@
+package edu.hawaii.wicket.page.scripts;
+
+import org.apache.wicket.behavior.HeaderContributor;
+import org.apache.wicket.markup.html.JavascriptPackageResource;
+
+/**
+ * Adds the script that runs clocks, countdowns, and rotating messages in the browser to a page,
+ * and writes values from the server into the script that starts them.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public final class Scripts {
+
+  /**
+   * Only static methods.
+   */
+  private Scripts() {
+    // Do nothing.
+  }
+
+  /**
+   * Returns a header contributor that adds carbonometer.js to a page.
+   * 
+   * @return A header contributor for carbonometer.js.
+   */
+  public static HeaderContributor getHeaderContribution() {
+    return JavascriptPackageResource.getHeaderContribution(Scripts.class, "carbonometer.js");
+  }
+
+  /**
+   * Returns a string as a JSON or JavaScript string literal. Characters that could end a script
+   * element are escaped as well.
+   * 
+   * @param value A string, or null.
+   * @return The string in double quotes, or null.
+   */
+  public static String quote(String value) {
+    if (value == null) {
+      return "null";
+    }
+    StringBuilder json = new StringBuilder(value.length() + 16);
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      }
+      else if (c < ' ' || c > '~' || c == '<' || c == '>' || c == '&') {
+        json.append(String.format("\\u%04x", (int) c));
+      }
+      else {
+        json.append(c);
+      }
+    } // end for
+    return json.append('"').toString();
+  }
+
+  /**
+   * Returns strings as a JSON or JavaScript array literal.
+   * 
+   * @param values Strings.
+   * @return The strings in square brackets.
+   */
+  public static String quote(String[] values) {
+    StringBuilder json = new StringBuilder(1024);
+    json.append('[');
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append(quote(values[i]));
+    } // end for
+    return json.append(']').toString();
+  }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Widgets that change every second without asking the server: a clock, a countdown to the next
+ * minute, and messages that take turns. Everything stops while the page is hidden and catches up
+ * as soon as it is shown again.
+ *
+ * Author: BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * Version: 2.0
+ */
+var Carbonometer = {
+
+  /** Functions to call once a second while the page is visible. */
+  tasks: [],
+
+  /** Timer that calls the functions, or null while the page is hidden. */
+  timer: null,
+
+  /** Difference between the clock of the server and the clock of the browser, in milliseconds. */
+  offset: 0,
+
+  /** Names of the days of the week. */
+  DAYS: ["Sunday", "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday"],
+
+  /** Names of the months. */
+  MONTHS: ["January", "February", "March", "April", "May", "June", "July", "August",
+      "September", "October", "November", "December"],
+
+  /** Offset of Hawaii-Aleutian Standard Time from UTC, which has no daylight saving time. */
+  HST_OFFSET: -10 * 60 * 60 * 1000,
+
+  /** Returns the current time on the server, in milliseconds since the epoch. */
+  now: function () {
+    return new Date().getTime() + this.offset;
+  },
+
+  /** Calls a function once a second while the page is visible. */
+  every: function (task) {
+    var self = this;
+    if (this.tasks.length === 0) {
+      var onChange = function () {
+        self.schedule();
+      };
+      if (document.addEventListener) {
+        document.addEventListener("visibilitychange", onChange, false);
+      }
+    }
+    this.tasks.push(task);
+    this.schedule();
+  },
+
+  /** Starts the timer if the page is visible and stops it if it is hidden. */
+  schedule: function () {
+    var self = this;
+    if (document.hidden) {
+      if (this.timer !== null) {
+        window.clearInterval(this.timer);
+        this.timer = null;
+      }
+    }
+    else if (this.timer === null) {
+      this.run();
+      this.timer = window.setInterval(function () {
+        self.run();
+      }, 1000);
+    }
+  },
+
+  /** Calls each function with the current time on the server. */
+  run: function () {
+    var time = this.now();
+    for (var i = 0; i < this.tasks.length; i++) {
+      this.tasks[i](time);
+    }
+  },
+
+  /**
+   * Shows the date and time in HST and the number of seconds until the next minute.
+   *
+   * config.serverTime: Time on the server when the page was rendered.
+   * config.date: Id of the element that shows the date and time, or null.
+   * config.countdown: Id of the element that shows the countdown, or null.
+   */
+  startClock: function (config) {
+    var self = this;
+    this.offset = config.serverTime - new Date().getTime();
+    this.every(function (time) {
+      var hst = new Date(time + self.HST_OFFSET);
+      if (config.date) {
+        self.setText(config.date, self.formatDate(hst));
+      }
+      if (config.countdown) {
+        self.setText(config.countdown, (60 - hst.getUTCSeconds()) + " sec");
+      }
+    });
+  },
+
+  /** Formats a time shifted to HST like java.text.DateFormat.FULL in the US locale. */
+  formatDate: function (hst) {
+    var hours = hst.getUTCHours() % 12;
+    return this.DAYS[hst.getUTCDay()] + ", " + this.MONTHS[hst.getUTCMonth()] + " "
+        + hst.getUTCDate() + ", " + hst.getUTCFullYear() + " " + (hours === 0 ? 12 : hours) + ":"
+        + this.pad(hst.getUTCMinutes()) + ":" + this.pad(hst.getUTCSeconds()) + " "
+        + (hst.getUTCHours() < 12 ? "AM" : "PM") + " HST";
+  },
+
+  /** Adds a leading zero to numbers less than ten. */
+  pad: function (number) {
+    return number < 10 ? "0" + number : "" + number;
+  },
+
+  /**
+   * Shows a different message at 10, 20, 30, 40, and 50 seconds past each minute, and the home
+   * message, if any, at the start of each minute.
+   *
+   * config.id: Id of the element that shows the messages.
+   * config.messages: Messages that take turns.
+   * config.current: Index of the message shown when the page was rendered, or -1.
+   * config.home: Message to show at the start of each minute, or null.
+   *
+   * Returns an object whose setHome function replaces the home message.
+   */
+  rotate: function (config) {
+    var self = this;
+    var rotation = {
+      current: config.current,
+      home: config.home,
+      lastSlot: -1,
+      setHome: function (text) {
+        this.home = text;
+      }
+    };
+    this.every(function (time) {
+      var slot = Math.floor(time / 10000);
+      var seconds = Math.floor(time / 1000) % 60;
+      if (slot === rotation.lastSlot) {
+        return;
+      }
+      var first = rotation.lastSlot === -1;
+      rotation.lastSlot = slot;
+      if (first) {
+        return;
+      }
+      if (seconds < 10) {
+        if (rotation.home !== null) {
+          self.setText(config.id, rotation.home);
+        }
+        return;
+      }
+      var next;
+      do {
+        next = Math.floor(Math.random() * config.messages.length);
+      } while (config.messages.length > 1 && next === rotation.current);
+      rotation.current = next;
+      self.setText(config.id, config.messages[next]);
+    });
+    return rotation;
+  },
+
+  /** Replaces the text of an element. */
+  setText: function (id, text) {
+    var element = document.getElementById(id);
+    while (element.firstChild) {
+      element.removeChild(element.firstChild);
+    }
+    element.appendChild(document.createTextNode(text));
+  }
+
+};
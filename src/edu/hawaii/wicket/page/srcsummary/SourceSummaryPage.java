@@ -5,6 +5,7 @@ import org.apache.wicket.markup.html.form.DropDownChoice;
 import org.apache.wicket.markup.html.form.Form;
 import org.apache.wicket.model.Model;
 import edu.hawaii.wicket.Session;
+import edu.hawaii.wicket.SourceChoice;
 import edu.hawaii.wicket.page.BasePage;
 
 /**
@@ -71,8 +72,7 @@ public class SourceSummaryPage extends BasePage {
 
     // Add power source drop down list.
     Model<String> day = new Model<String>("SIM_OAHU_GRID");
-    DropDownChoice<String> sourceChoice =
-        new DropDownChoice<String>("source", day, session.getListSources());
+    DropDownChoice<String> sourceChoice = new SourceChoice("source", day);
     sourceChoice.setRequired(true);
     form.add(sourceChoice);
 
@@ -2,12 +2,14 @@ package edu.hawaii.wicket.page.srcsummary;
 
 import java.text.DateFormat;
 import java.util.Locale;
+import java.util.Map;
+import javax.xml.datatype.DatatypeConstants;
 import javax.xml.datatype.XMLGregorianCalendar;
 import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.form.Button;
 import org.apache.wicket.markup.html.form.DropDownChoice;
 import org.joda.time.DateTime;
-import org.wattdepot.util.tstamp.Tstamp;
+import edu.hawaii.wattdepot.PowerSourceSummary;
 import edu.hawaii.wattdepot.WattDepotCommand;
 
 /**
@@ -91,86 +93,90 @@ public class SubmitButton extends Button {
   public void onSubmit() {
     resetLabels();
     WattDepotCommand command = new WattDepotCommand();
-    String summary = command.getSourceSummary(sourceChoice.getDefaultModelObjectAsString());
-    String sources = summary.substring(0, summary.indexOf("Description:"));
-    sources = sources.substring(sources.indexOf(':') + 2);
-    sources = sources.trim();
-    subsources.setDefaultModelObject(sources);
-    String desc = summary.substring(summary.indexOf("Description:"));
-    desc = desc.substring(desc.indexOf(':') + 2, desc.indexOf("Owner:"));
-    desc = desc.trim();
-    description.setDefaultModelObject(desc);
-    desc = summary.substring(summary.indexOf("Owner:"));
-    desc = desc.substring(desc.indexOf(':') + 2, desc.indexOf("Location:"));
-    desc = desc.trim();
-    owner.setDefaultModelObject(desc);
-    String locale = summary.substring(summary.indexOf("Location:"));
-    locale = locale.substring(locale.indexOf(':') + 2, locale.indexOf("Coordinates:"));
+    PowerSourceSummary summary =
+        command.getPowerSourceSummary(sourceChoice.getDefaultModelObjectAsString());
+    if (summary == null) {
+      status.setDefaultModelObject("Failed to connect to WattDepot server.");
+      return;
+    }
+
+    if (summary.getSubsources().isEmpty()) {
+      subsources.setDefaultModelObject("[ None ]");
+    }
+    else {
+      String sources = summary.getSubsources().toString();
+      subsources.setDefaultModelObject(sources.substring(1, sources.length() - 1));
+    }
+    description.setDefaultModelObject(String.valueOf(summary.getDescription()).trim());
+    owner.setDefaultModelObject(String.valueOf(summary.getOwner()).trim());
+
+    String locale = String.valueOf(summary.getLocation()).trim();
     if (locale.contains("To be looked up later")) {
       locale = "Data not available at the moment.";
     }
-    locale = locale.trim();
     location.setDefaultModelObject(locale);
-    String coord = summary.substring(summary.indexOf("Coordinates:"));
-    coord = coord.substring(coord.indexOf(':') + 2, coord.indexOf("Properties:"));
-    coord = coord.trim();
+
+    String coord = String.valueOf(summary.getCoordinates()).trim();
     if (coord.contains("0,0,0")) {
       coord = "Data not available at the moment.";
     }
     else if (coord.contains(",")) {
-      coord = coord.replaceAll(",", ", ");
+      coord = coord.replace(",", ", ");
     }
     coordinates.setDefaultModelObject(coord);
-    String props = summary.substring(summary.indexOf("Properties:"));
-    props = props.substring(props.indexOf(':') + 2, props.indexOf("Earliest"));
-    props = props.trim();
-    props = props.replaceAll("\\(", "");
-    props = props.replaceAll("\\)", "");
-    props = props.replaceAll(" :", ":");
-    props = props.replaceAll("carbonIntensity", "Carbon Intensity");
-    props = props.replaceAll("fuelType", "Fuel Type");
-    if (!props.contains("None")) {
-      String carbonIntensity =
-          props.substring(props.indexOf("Carbon Intensity"), props.indexOf(',', props
-              .indexOf("Carbon Intensity")));
-      String carbonIntensityWithUnits = carbonIntensity + " lbs CO2 / MWh";
-      props = props.replaceAll(carbonIntensity, carbonIntensityWithUnits);
-    }
-    properties.setDefaultModelObject(props);
-    String data = summary.substring(summary.indexOf("Earliest"));
-    data = data.substring(data.indexOf(':') + 2, data.indexOf("Latest"));
-    data = data.substring(data.indexOf('2'), data.indexOf("-10:00"));
-    XMLGregorianCalendar temp;
-    DateTime dateTime;
-    try {
-      temp = Tstamp.makeTimestamp(data);
-      dateTime =
-          new DateTime(temp.getYear(), temp.getMonth(), temp.getDay(), temp.getHour(), temp
-              .getMinute(), temp.getSecond(), temp.getMillisecond());
-      earliestData.setDefaultModelObject(DATE_FORMAT.format(dateTime.toDate()));
-    }
-    catch (Exception e) {
-      earliestData.setDefaultModelObject("Error: Timestamp cannot be made.");
-      return;
+
+    properties.setDefaultModelObject(formatProperties(summary.getProperties()));
+    earliestData.setDefaultModelObject(formatTimestamp(summary.getEarliestData()));
+    latestData.setDefaultModelObject(formatTimestamp(summary.getLatestData()));
+    totalDataPoints.setDefaultModelObject(String.valueOf(summary.getTotalDataPoints()));
+    if (command.isStaleDataServed()) {
+      status.setDefaultModelObject(WattDepotCommand.STALE_DATA_MESSAGE);
     }
-    data = summary.substring(summary.indexOf("Latest"));
-    data = data.substring(data.indexOf(':') + 2, data.indexOf("Total"));
-    data = data.substring(data.indexOf('2'), data.indexOf("-10:00"));
-    try {
-      temp = Tstamp.makeTimestamp(data);
-      dateTime =
-          new DateTime(temp.getYear(), temp.getMonth(), temp.getDay(), temp.getHour(), temp
-              .getMinute(), temp.getSecond(), temp.getMillisecond());
-      latestData.setDefaultModelObject(DATE_FORMAT.format(dateTime.toDate()));
+  }
+
+  /**
+   * Returns the properties of a power source as a list that is easy to read.
+   * 
+   * @param props Properties of a power source.
+   * @return The properties, or "None" if there are none.
+   */
+  private String formatProperties(Map<String, String> props) {
+    if (props.isEmpty()) {
+      return "None";
     }
-    catch (Exception e) {
-      latestData.setDefaultModelObject("Error: Timestamp cannot be made.");
-      return;
+    StringBuilder buffer = new StringBuilder(255);
+    for (Map.Entry<String, String> property : props.entrySet()) {
+      if (buffer.length() > 0) {
+        buffer.append(", ");
+      }
+      if ("carbonIntensity".equals(property.getKey())) {
+        buffer.append("Carbon Intensity: ").append(property.getValue()).append(" lbs CO2 / MWh");
+      }
+      else if ("fuelType".equals(property.getKey())) {
+        buffer.append("Fuel Type: ").append(property.getValue());
+      }
+      else {
+        buffer.append(property.getKey()).append(": ").append(property.getValue());
+      }
+    } // end for
+    return buffer.toString();
+  }
+
+  /**
+   * Returns a timestamp as a full date and time, using the time of day given in the timestamp.
+   * 
+   * @param tstamp A timestamp.
+   * @return The date and time.
+   */
+  private String formatTimestamp(XMLGregorianCalendar tstamp) {
+    int millisecond = tstamp.getMillisecond();
+    if (millisecond == DatatypeConstants.FIELD_UNDEFINED) {
+      millisecond = 0;
     }
-    data = summary.substring(summary.indexOf("Total"));
-    data = data.substring(data.indexOf(':') + 2);
-    data = data.trim();
-    totalDataPoints.setDefaultModelObject(data);
+    DateTime dateTime =
+        new DateTime(tstamp.getYear(), tstamp.getMonth(), tstamp.getDay(), tstamp.getHour(),
+            tstamp.getMinute(), tstamp.getSecond(), millisecond);
+    return DATE_FORMAT.format(dateTime.toDate());
   }
 
   /**
@@ -0,0 +1,73 @@
+package edu.hawaii.wicket.page.stoplight;
+
+import org.apache.wicket.markup.html.WebResource;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.string.StringValueConversionException;
+
+/**
+ * Pushes changes in the carbon intensity level to Stoplight pages by long polling. The browser asks
+ * with the version of the snapshot it shows, and the {@link StoplightFeedFilter} in front of this
+ * resource parks the request until the stoplight poller publishes a new reading or the timeout
+ * expires. The feed then answers with the latest snapshot as JSON if it is newer than the one the
+ * browser shows, and otherwise with only the version, and the browser asks again right away.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class StoplightFeed extends WebResource {
+
+  /** Support serialization. */
+  private static final long serialVersionUID = 1L;
+  /** Name under which this resource is shared by the web application. */
+  public static final String NAME = "stoplightFeed";
+  /** Path at which this resource is mounted, which the stoplight feed filter is mapped to. */
+  public static final String PATH = "StoplightFeed";
+  /** Request parameter that holds the version of the snapshot the browser shows. */
+  public static final String VERSION_PARAMETER = "version";
+  /** Poller that publishes the snapshots. */
+  private final transient StoplightPoller poller;
+
+  /**
+   * Creates a feed of the snapshots published by a poller.
+   * 
+   * @param poller Poller that publishes the snapshots.
+   */
+  public StoplightFeed(StoplightPoller poller) {
+    this.poller = poller;
+    setCacheable(false);
+  }
+
+  /**
+   * Returns the latest snapshot as JSON if it is newer than the one the browser shows.
+   * 
+   * @return The latest snapshot, or only its version, in JSON.
+   */
+  @Override
+  public IResourceStream getResourceStream() {
+    long knownVersion;
+    try {
+      knownVersion = getParameters().getLong(VERSION_PARAMETER, -1L);
+    }
+    catch (StringValueConversionException e) {
+      knownVersion = -1L;
+    }
+    return new StringResourceStream(toJson(poller, knownVersion), "application/json");
+  }
+
+  /**
+   * Returns the answer to a browser that shows the given version of the snapshot.
+   * 
+   * @param poller Poller that publishes the snapshots.
+   * @param knownVersion Version of the snapshot the browser shows.
+   * @return The latest snapshot in JSON, or only its version if the browser already shows it.
+   */
+  static String toJson(StoplightPoller poller, long knownVersion) {
+    long version = poller.getVersion();
+    if (version == knownVersion) {
+      return "{\"version\":" + version + "}";
+    }
+    return StoplightView.toJson(poller.getSnapshot(), version);
+  }
+
+}
@@ -0,0 +1,138 @@
+package edu.hawaii.wicket.page.stoplight;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import org.mortbay.util.ajax.Continuation;
+import org.mortbay.util.ajax.ContinuationSupport;
+
+/**
+ * Holds each request to the stoplight feed for the version of the snapshot the browser already
+ * shows until the stoplight poller publishes a new reading or the timeout expires, and then lets
+ * the feed answer it. The request is parked with a Jetty continuation: with the select channel
+ * connector it gives its thread back while it waits, so open Stoplight pages do not tie up the
+ * threads of the web server and send no requests while the reading stays the same. On other
+ * connectors the request waits on its thread. The poller is found in the attribute of the servlet
+ * context that the web application sets. The timeout can be changed with the
+ * <code>carbonometer.feedTimeout</code> system property.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class StoplightFeedFilter implements Filter {
+
+  /** Name of the attribute of the servlet context that holds the stoplight poller. */
+  public static final String POLLER_ATTRIBUTE = StoplightPoller.class.getName();
+  /** Number of milliseconds to hold a request if the system property is not set. */
+  public static final long DEFAULT_TIMEOUT = 25L * 1000L;
+  /** Longest time to hold a request, in milliseconds. */
+  private static final long TIMEOUT = Long.getLong("carbonometer.feedTimeout", DEFAULT_TIMEOUT);
+  /** Requests that are waiting for a new reading. */
+  private final Set<Continuation> waiting =
+      Collections.newSetFromMap(new ConcurrentHashMap<Continuation, Boolean>());
+  /** Context in which the poller is looked up. */
+  private ServletContext context;
+  /** Poller whose changes are waited for, or null until the web application has set it. */
+  private StoplightPoller poller;
+
+  /**
+   * Remembers the servlet context, in which the poller will be looked up.
+   * 
+   * @param config Configuration of this filter.
+   */
+  public void init(FilterConfig config) {
+    context = config.getServletContext();
+  }
+
+  /**
+   * Holds the request until the reading changes or the timeout expires, and then passes it on to
+   * the stoplight feed. A request without a version, or for a version that is not the latest, is
+   * passed on at once.
+   * 
+   * @param request The request.
+   * @param response The response.
+   * @param chain Passes the request on to the stoplight feed.
+   * @throws IOException If the feed cannot write the response.
+   * @throws ServletException If the feed fails.
+   */
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    StoplightPoller current = getPoller();
+    if (current != null && request instanceof HttpServletRequest) {
+      Continuation continuation =
+          ContinuationSupport.getContinuation((HttpServletRequest) request, null);
+      waiting.add(continuation);
+      // A parked request comes back here when it is resumed or times out, and suspend returns.
+      if (continuation.isPending() || current.getVersion() == getKnownVersion(request)) {
+        continuation.suspend(TIMEOUT);
+      }
+      waiting.remove(continuation);
+    }
+    chain.doFilter(request, response);
+  }
+
+  /**
+   * Returns the poller from the servlet context, and starts listening to it the first time it is
+   * found.
+   * 
+   * @return The poller, or null if the web application has not set it yet.
+   */
+  private synchronized StoplightPoller getPoller() {
+    if (poller == null && context != null) {
+      poller = (StoplightPoller) context.getAttribute(POLLER_ATTRIBUTE);
+      if (poller != null) {
+        poller.addListener(new Runnable() {
+          public void run() {
+            resumeAll();
+          }
+        });
+      }
+    }
+    return poller;
+  }
+
+  /**
+   * Returns the version of the snapshot the browser shows.
+   * 
+   * @param request The request.
+   * @return The version, or -1 if the request does not hold a valid one.
+   */
+  private static long getKnownVersion(ServletRequest request) {
+    String version = request.getParameter(StoplightFeed.VERSION_PARAMETER);
+    if (version == null) {
+      return -1L;
+    }
+    try {
+      return Long.parseLong(version);
+    }
+    catch (NumberFormatException e) {
+      return -1L;
+    }
+  }
+
+  /**
+   * Lets every waiting request be answered.
+   */
+  void resumeAll() {
+    for (Continuation continuation : waiting) {
+      continuation.resume();
+    }
+  }
+
+  /**
+   * Lets every waiting request be answered when this filter is taken out of service.
+   */
+  public void destroy() {
+    resumeAll();
+  }
+
+}
@@ -1,25 +1,20 @@
 package edu.hawaii.wicket.page.stoplight;
 
 import java.text.DateFormat;
-import java.text.DecimalFormat;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
-import java.util.Random;
 import java.util.TimeZone;
-import javax.xml.datatype.XMLGregorianCalendar;
 import org.apache.wicket.AttributeModifier;
-import org.apache.wicket.ajax.AbstractAjaxTimerBehavior;
-import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ResourceReference;
+import org.apache.wicket.markup.html.JavascriptPackageResource;
 import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.Model;
-import org.apache.wicket.util.time.Duration;
 import org.joda.time.DateTimeUtils;
-import org.wattdepot.util.tstamp.Tstamp;
+import edu.hawaii.wicket.EkolugicalCarbonometer;
 import edu.hawaii.wicket.page.BasePage;
-import edu.hawaii.wattdepot.WattDepotCommand;
+import edu.hawaii.wicket.page.scripts.Scripts;
 
 /**
  * Creates a page that contains a stoplight to indicate current carbon emission level.
@@ -32,55 +27,25 @@ public class StoplightPage extends BasePage {
   /** Support serialization. */
   private static final long serialVersionUID = 1L;
   /** Carbon emission data for the island of Oahu right now. */
-  // TODO: Support application-level caching for the carbon emission data.
   private double carbonEmission = Double.MAX_VALUE;
+  /** Latest snapshot of the carbon emission data shown on this page. */
+  private StoplightSnapshot snapshot;
+  /** Version of the snapshot shown on this page, as published by the stoplight poller. */
+  private long snapshotVersion;
   /** Formats the current date and time to HST. */
   private final DateFormat DATE_FORMAT =
       DateFormat.getDateTimeInstance(DateFormat.FULL, DateFormat.FULL, Locale.US);
-  /** Formats the current date and time to Tstamp format. */
-  private final DateFormat TSTAMP_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
-  /** Formats the current date and time to 12-hour format. */
-  private final DateFormat TWELVE_HOUR_FORMAT = new SimpleDateFormat("h:mm:ss a z", Locale.US);
-  /** Formats the carbon emission data to two decimal places. */
-  private final DecimalFormat TWO_DECIMAL_PLACES = new DecimalFormat("0.00");
   /** Used to display error messages. */
   private final Label ERROR = new Label("error", "");
   /** Used to display carbon emission data. */
   private static final ImageSource STOPLIGHT =
-      new ImageSource("stoplight", new Model<String>(
-          "http://www2.hawaii.edu/~bjpeter/Files/stoplight.png"));
+      new ImageSource("stoplight", new Model<String>(StoplightView.NO_LIGHT));
   /** SRC attribute in IMG tag. */
   private static final String SRC_ATTRIBUTE = "src";
   /** Turn on or off debugging. */
   private static boolean debugMode = false;
-  /** Indicates whether an error was encountered. */
-  private static boolean errorEncountered = false;
   /** Used to test if timestamp was created successfully. */
   private static boolean debugTimestamp = false;
-  /** Used to tell the user that no data is available. */
-  private static boolean noDataAvailable = false;
-  /** Informs the user that an error was encountered. */
-  private static final String ERROR_MESSAGE = "[See error message below stoplight]";
-  /** Informs the user that carbon emission levels are low. */
-  private static final String GREEN_LIGHT_MESSAGE =
-      "Right now, not that many people on Oahu are using appliances that leave carbon footprints,"
-          + " so feel free to use your clothes washer, dryer, or any other carbon-emitting"
-          + " machine, but please try not to use them too much or for too long.";
-  /** Informs the user that carbon emission levels are neither high nor low. */
-  private static final String YELLOW_LIGHT_MESSAGE =
-      "Right now, a lot of people are using appliances that leave carbon footprints. It is"
-          + " suggested that you may want to use those that generate very little to no carbon, or"
-          + " wait until the stoplight turns green again before using your clothes washer, dryer,"
-          + " or any other carbon-emitting machine.";
-  /** Informs the user that carbon emission levels are high. */
-  private static final String RED_LIGHT_MESSAGE =
-      "Right now, the carbon emission level is too high, which means that too much carbon is being"
-          + " produced as a result of too many appliances being used. Unless it is an emergency,"
-          + " it is highly suggested that you should wait until the stoplight turns yellow or"
-          + " green again before using your clothes washer, dryer, or any other carbon-emitting"
-          + " machine.";
-  /** Random number generator for generating random messages for the user. */
-  private static final Random generator = new Random();
   /** Information about driving a car. */
   private static final String DRIVING_A_CAR_MESSAGE =
       "Your car is releasing 14,330 to 33,069 lbs of carbon dioxide every year with the average"
@@ -105,8 +70,9 @@ public class StoplightPage extends BasePage {
           + " where your home is poorly insulated or energy inefficient. You can save up to 30%"
           + " off your energy bill and 1,000 pounds of carbon dioxide a year. Energy Star can"
           + " help you find an energy specialist.";
-  /** Used to display different message every ten seconds. */
-  private int previousNumber = 0;
+  /** Facts that take turns in the description every ten seconds. */
+  private static final String[] FACTS =
+      { DRIVING_A_CAR_MESSAGE, HUMAN_ACTIVITIES_MESSAGE, ON_STANDY_MESSAGE, ENERGY_STAR_MESSAGE };
 
   /**
    * Creates a page that contains a stoplight to indicate current carbon emission level.
@@ -131,8 +97,10 @@ public class StoplightPage extends BasePage {
     date.setOutputMarkupId(true);
     add(date);
 
-    // Add countdown timer to page.
-    final Label countdown = new Label("countdown", "");
+    // Add countdown timer to page. The browser keeps the clock and the countdown running.
+    Calendar counter = Calendar.getInstance();
+    counter.setTime(today);
+    final Label countdown = new Label("countdown", (60 - counter.get(Calendar.SECOND)) + " sec");
     countdown.setOutputMarkupId(true);
     add(countdown);
 
@@ -141,71 +109,27 @@ public class StoplightPage extends BasePage {
     // nextTime.setOutputMarkupId(true);
     // add(nextTime);
 
-    add(new AbstractAjaxTimerBehavior(Duration.seconds(1)) {
-      /** Support serialization. */
-      private static final long serialVersionUID = 1L;
-
-      /** Updates clock on web page. */
-      @Override
-      protected void onTimer(AjaxRequestTarget target) {
-        Calendar counter = Calendar.getInstance();
-        date.setDefaultModelObject(DATE_FORMAT.format(counter.getTime()));
-
-        // int hourToSec = 60 * 60;
-        // int minToSec = counter.get(Calendar.MINUTE) * 60 + counter.get(Calendar.SECOND);
-        // countdown.setDefaultModelObject(hourToSec - minToSec);
-        int minLeft = 60 - counter.get(Calendar.SECOND);
-        countdown.setDefaultModelObject(minLeft + " sec");
-
-        // counter.add(Calendar.HOUR, 0);
-        // counter.add(Calendar.MINUTE, 1);
-        // counter.set(Calendar.SECOND, 0);
-        // Date nextMinute = counter.getTime();
-        // nextTime.setDefaultModelObject(TWELVE_HOUR_FORMAT.format(nextMinute));
-
-        target.addComponent(countdown);
-        target.addComponent(date);
-        // target.addComponent(nextTime);
-      }
-    });
-
-    if (!debugMode) {
-      // Use current date and time to get carbon emission data.
-      Calendar now = Calendar.getInstance();
-      // now.set(Calendar.MINUTE, 0);
-      now.set(Calendar.SECOND, 0);
-      today = now.getTime();
-    }
-
-    // Get carbon emission data for the hour. Then check again in a minute.
-    getCarbonContentData(today);
-
-    // Add time when carbon emission level was last checked to page.
-    String information = "";
-    if (errorEncountered) {
-      information = ERROR_MESSAGE;
+    // Get carbon emission data for the hour. The poller checks again every minute.
+    snapshotVersion = getStoplightPoller().getVersion();
+    if (debugMode) {
+      setSnapshot(StoplightPoller.takeSnapshot(today, debugTimestamp));
     }
     else {
-      information = TWELVE_HOUR_FORMAT.format(today);
+      setSnapshot(getStoplightPoller().getSnapshot());
     }
-    final Label time = new Label("time", information);
+
+    // Add time when carbon emission level was last checked to page.
+    final Label time = new Label("time", "");
     time.setOutputMarkupId(true);
     add(time);
 
     // Add carbon emission data to page.
-    if (errorEncountered) {
-      information = ERROR_MESSAGE;
-    }
-    else if (noDataAvailable) {
-      information = "not available";
-    }
-    else {
-      information = TWO_DECIMAL_PLACES.format(carbonEmission) + " lbs CO2 / MWh";
-    }
-    final Label data = new Label("data", information);
+    final Label data = new Label("data", "");
     data.setOutputMarkupId(true);
     add(data);
 
+    updateLabels(time, data);
+
     // Add information regarding carbon emission level to page.
     final Label description = new Label("description", "");
     description.setOutputMarkupId(true);
@@ -234,96 +158,76 @@ public class StoplightPage extends BasePage {
     STOPLIGHT.setOutputMarkupId(true);
     add(STOPLIGHT.add(imgAttribute));
 
-    add(new AbstractAjaxTimerBehavior(Duration.seconds(1)) {
-      /** Support serialization. */
-      private static final long serialVersionUID = 1L;
-
-      /** Updates clock on web page. */
-      @Override
-      protected void onTimer(AjaxRequestTarget target) {
-        Calendar currentTime = Calendar.getInstance();
-        if (currentTime.get(Calendar.SECOND) != 0) {
-          return;
-        }
-
-        getCarbonContentData(currentTime.getTime());
-
-        if (errorEncountered) {
-          time.setDefaultModelObject(ERROR_MESSAGE);
-          data.setDefaultModelObject(ERROR_MESSAGE);
-        }
-        else if (noDataAvailable) {
-          time.setDefaultModelObject(TWELVE_HOUR_FORMAT.format(currentTime.getTime()));
-          data.setDefaultModelObject("not available");
-        }
-        else {
-          time.setDefaultModelObject(TWELVE_HOUR_FORMAT.format(currentTime.getTime()));
-          String information = TWO_DECIMAL_PLACES.format(carbonEmission) + " lbs CO2 / MWh";
-          data.setDefaultModelObject(information);
-        }
-
-        updateComponents(description);
-
-        target.addComponent(time);
-        target.addComponent(data);
-        target.addComponent(description);
-        target.addComponent(STOPLIGHT);
-        target.addComponent(ERROR);
-      }
-    });
+    // Add any error messages to page.
+    ERROR.setOutputMarkupId(true);
+    add(ERROR);
 
-    add(new AbstractAjaxTimerBehavior(Duration.seconds(1)) {
+    // Run the clock, the countdown, and the facts in the browser, and show changes in the carbon
+    // emission data as the stoplight feed pushes them to the browser.
+    add(Scripts.getHeaderContribution());
+    add(JavascriptPackageResource.getHeaderContribution(StoplightPage.class, "stoplight.js"));
+    final long serverTime = today.getTime();
+    Label script = new Label("script", new AbstractReadOnlyModel<String>() {
       /** Support serialization. */
       private static final long serialVersionUID = 1L;
 
-      /** Displays facts regarding carbon emissions to the user. */
+      /**
+       * Returns the script that starts the clock, the facts, and listening to the stoplight feed.
+       * It is rendered after the elements it updates, so their markup ids are already known.
+       * 
+       * @return Script that starts the widgets on this page.
+       */
       @Override
-      protected void onTimer(AjaxRequestTarget target) {
-        Calendar currentTime = Calendar.getInstance();
-        if (currentTime.get(Calendar.SECOND) != 10 && currentTime.get(Calendar.SECOND) != 20
-            && currentTime.get(Calendar.SECOND) != 30 && currentTime.get(Calendar.SECOND) != 40
-            && currentTime.get(Calendar.SECOND) != 50) {
-          return;
-        }
-
-        displayMessage(description);
-
-        target.addComponent(description);
+      public String getObject() {
+        String home = StoplightView.getLightMessage(carbonEmission);
+        return "Carbonometer.startClock({serverTime:" + serverTime + ",date:"
+            + Scripts.quote(date.getMarkupId()) + ",countdown:"
+            + Scripts.quote(countdown.getMarkupId()) + "});\n"
+            + "var facts = Carbonometer.rotate({id:" + Scripts.quote(description.getMarkupId())
+            + ",messages:" + Scripts.quote(FACTS) + ",current:-1,home:" + Scripts.quote(home)
+            + "});\n" + "StoplightFeed.start({url:"
+            + Scripts.quote(urlFor(new ResourceReference(StoplightFeed.NAME)).toString())
+            + ",version:" + snapshotVersion + ",time:" + Scripts.quote(time.getMarkupId())
+            + ",data:" + Scripts.quote(data.getMarkupId()) + ",stoplight:"
+            + Scripts.quote(STOPLIGHT.getMarkupId()) + ",description:"
+            + Scripts.quote(description.getMarkupId()) + ",error:"
+            + Scripts.quote(ERROR.getMarkupId()) + ",facts:facts});";
       }
     });
-
-    // Add any error messages to page.
-    ERROR.setOutputMarkupId(true);
-    add(ERROR);
+    script.setEscapeModelStrings(false);
+    add(script);
 
   } // end ctor
 
   /**
-   * Gets data from the WattDepot server regarding carbon emission level on the island of Oahu.
+   * Returns the poller that checks the carbon emission level for all users.
    * 
-   * @param date Timestamp.
+   * @return The stoplight poller owned by this web application.
    */
-  private void getCarbonContentData(Date date) {
-    String timestamp = TSTAMP_FORMAT.format(date);
-    timestamp = timestamp.replace(timestamp.charAt(10), 'T');
-    if (debugTimestamp) {
-      timestamp = timestamp.replace(timestamp.charAt(10), 'X');
-    }
-    XMLGregorianCalendar tstamp = null;
-    try {
-      tstamp = Tstamp.makeTimestamp(timestamp);
-      ERROR.setDefaultModelObject("");
-      errorEncountered = false;
-    }
-    catch (Exception e) {
-      ERROR.setDefaultModelObject("Error: Cannot make timestamp.");
-      errorEncountered = true;
-      carbonEmission = Double.NaN;
-      return;
-    }
-    WattDepotCommand wattDepot = new WattDepotCommand();
-    carbonEmission = wattDepot.getCarbonContentData(tstamp);
-    noDataAvailable = wattDepot.isNoDataAvailable();
+  private StoplightPoller getStoplightPoller() {
+    return ((EkolugicalCarbonometer) getApplication()).getStoplightPoller();
+  }
+
+  /**
+   * Shows a snapshot of the carbon emission data on this page.
+   * 
+   * @param newSnapshot Snapshot of the carbon emission data.
+   */
+  private void setSnapshot(StoplightSnapshot newSnapshot) {
+    snapshot = newSnapshot;
+    carbonEmission = newSnapshot.getCarbonEmission();
+    ERROR.setDefaultModelObject(newSnapshot.getErrorMessage());
+  }
+
+  /**
+   * Updates the labels that show when the carbon emission level was last checked and what it was.
+   * 
+   * @param time Label that shows when the carbon emission level was last checked.
+   * @param data Label that shows the carbon emission level.
+   */
+  private void updateLabels(Label time, Label data) {
+    time.setDefaultModelObject(StoplightView.getTimeText(snapshot));
+    data.setDefaultModelObject(StoplightView.getDataText(snapshot));
   }
 
   /**
@@ -333,18 +237,7 @@ public class StoplightPage extends BasePage {
    * @return A URL to a picture of a green, yellow, or red light, or no light.
    */
   private String updateComponents() {
-    if (carbonEmission < 1600.0) {
-      return "http://www2.hawaii.edu/~bjpeter/Files/green.png";
-    }
-    else if (carbonEmission >= 1600.0 && carbonEmission < 2000.0) {
-      return "http://www2.hawaii.edu/~bjpeter/Files/yellow.png";
-    }
-    else if (carbonEmission >= 2000.0) {
-      return "http://www2.hawaii.edu/~bjpeter/Files/red.png";
-    }
-    else {
-      return "http://www2.hawaii.edu/~bjpeter/Files/stoplight.png";
-    }
+    return StoplightView.getLightUrl(carbonEmission);
   }
 
   /**
@@ -354,57 +247,12 @@ public class StoplightPage extends BasePage {
    * @param description Label that contains message for the user.
    */
   private void updateComponents(Label description) {
-    if (carbonEmission < 1600.0) {
-      description.setDefaultModelObject(GREEN_LIGHT_MESSAGE);
-      STOPLIGHT.add(new AttributeModifier(SRC_ATTRIBUTE, true, new Model<String>(
-          "http://www2.hawaii.edu/~bjpeter/Files/green.png")));
-    }
-    else if (carbonEmission >= 1600.0 && carbonEmission < 2000.0) {
-      description.setDefaultModelObject(YELLOW_LIGHT_MESSAGE);
-      STOPLIGHT.add(new AttributeModifier(SRC_ATTRIBUTE, true, new Model<String>(
-          "http://www2.hawaii.edu/~bjpeter/Files/yellow.png")));
-    }
-    else if (carbonEmission >= 2000.0) {
-      description.setDefaultModelObject(RED_LIGHT_MESSAGE);
-      STOPLIGHT.add(new AttributeModifier(SRC_ATTRIBUTE, true, new Model<String>(
-          "http://www2.hawaii.edu/~bjpeter/Files/red.png")));
-    }
-    else {
-      STOPLIGHT.add(new AttributeModifier(SRC_ATTRIBUTE, true, new Model<String>(
-          "http://www2.hawaii.edu/~bjpeter/Files/stoplight.png")));
-    }
-  }
-
-  /**
-   * Displays messages to the user.
-   * 
-   * @param description Label that contains message for the user.
-   */
-  private void displayMessage(Label description) {
-    int number;
-    while (previousNumber == (number = generator.nextInt(4) + 1)) {
-      ;
-    }
-
-    switch (number) {
-    case 1:
-      description.setDefaultModelObject(DRIVING_A_CAR_MESSAGE);
-      break;
-    case 2:
-      description.setDefaultModelObject(HUMAN_ACTIVITIES_MESSAGE);
-      break;
-    case 3:
-      description.setDefaultModelObject(ON_STANDY_MESSAGE);
-      break;
-    case 4:
-      description.setDefaultModelObject(ENERGY_STAR_MESSAGE);
-      break;
-    default:
-      updateComponents(description);
-      break;
+    String message = StoplightView.getLightMessage(carbonEmission);
+    if (message != null) {
+      description.setDefaultModelObject(message);
     }
-
-    previousNumber = number;
+    STOPLIGHT.add(new AttributeModifier(SRC_ATTRIBUTE, true, new Model<String>(StoplightView
+        .getLightUrl(carbonEmission))));
   }
 
   /**
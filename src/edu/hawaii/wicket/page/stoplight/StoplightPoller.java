@@ -0,0 +1,185 @@
+package edu.hawaii.wicket.page.stoplight;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.wattdepot.client.WattDepotClientException;
+import edu.hawaii.wattdepot.DerivedSeries;
+import edu.hawaii.wattdepot.TimeGrid;
+import edu.hawaii.wattdepot.TrailingHourIntensity;
+import edu.hawaii.wattdepot.WattDepotCommand;
+
+/**
+ * Checks the carbon intensity level on the island of Oahu once a minute, at the start of the
+ * minute, for all users of this web application. The latest result is published as a snapshot that
+ * Stoplight pages read, so the number of queries sent to the WattDepot server does not depend on
+ * the number of open pages. Each time the reading changes, the snapshot gets a new version number
+ * and the listeners are told, so callers can wait for a change instead of asking again and again.
+ * The reading is the carbon intensity over the hour before the minute, which is kept up to date by
+ * fetching only the minute that entered the hour since the last check. While the hour holds minutes
+ * that were served stale because the WattDepot server did not respond, the snapshot says that the
+ * reading may be out of date.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class StoplightPoller {
+
+  /** End of the last hour that holds minutes served stale, in milliseconds since the epoch. */
+  private volatile long staleUntil = Long.MIN_VALUE;
+  /** Carbon intensity over the hour before the latest check. */
+  private final TrailingHourIntensity intensity =
+      new TrailingHourIntensity(new TrailingHourIntensity.MinuteSource() {
+        public DerivedSeries fetch(long start, int minutes) throws WattDepotClientException {
+          WattDepotCommand command = new WattDepotCommand();
+          DerivedSeries data = command.getMinuteData(start, minutes);
+          if (command.isStaleDataServed()) {
+            staleUntil = start + minutes * TimeGrid.MINUTE + TimeGrid.HOUR;
+          }
+          return data;
+        }
+      });
+  /** Runs the checks in the background. */
+  private ScheduledExecutorService scheduler;
+  /** Latest snapshot, or null if the carbon intensity level has not been checked yet. */
+  private volatile StoplightSnapshot snapshot;
+  /** Version of the latest snapshot; goes up by one each time the reading changes. */
+  private long version = 0;
+  /** Told each time the reading changes. */
+  private final List<Runnable> listeners = new CopyOnWriteArrayList<Runnable>();
+
+  /**
+   * Starts checking the carbon intensity level right away and then at the start of every minute.
+   */
+  public synchronized void start() {
+    if (scheduler != null) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "stoplight-poller");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    Runnable poll = new Runnable() {
+      public void run() {
+        poll();
+      }
+    };
+    long now = System.currentTimeMillis();
+    scheduler.execute(poll);
+    scheduler.scheduleAtFixedRate(poll, TimeGrid.MINUTE - (now % TimeGrid.MINUTE), TimeGrid.MINUTE,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops checking the carbon intensity level.
+   */
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  /**
+   * Returns the latest snapshot of the carbon intensity level. The level is never checked on the
+   * calling thread; if the first check has not finished yet, the snapshot reports no data.
+   * 
+   * @return The latest snapshot.
+   */
+  public StoplightSnapshot getSnapshot() {
+    StoplightSnapshot current = snapshot;
+    if (current == null) {
+      return new StoplightSnapshot(new Date(), Double.NaN, false, true, "");
+    }
+    return current;
+  }
+
+  /**
+   * Returns the version of the latest snapshot. Read the version before the snapshot, so that a
+   * change in between is reported again rather than missed.
+   * 
+   * @return Version of the latest snapshot.
+   */
+  public synchronized long getVersion() {
+    return version;
+  }
+
+  /**
+   * Checks the carbon intensity level for the current minute and publishes the result.
+   */
+  void poll() {
+    long now = System.currentTimeMillis();
+    Date minute = new Date(now - now % TimeGrid.MINUTE);
+    double carbonEmission;
+    try {
+      carbonEmission = intensity.update(minute.getTime());
+    }
+    catch (WattDepotClientException e) {
+      carbonEmission = Double.NaN;
+    }
+    boolean stale = !Double.isNaN(carbonEmission) && minute.getTime() < staleUntil;
+    publish(new StoplightSnapshot(minute, carbonEmission, false, Double.isNaN(carbonEmission),
+        stale ? WattDepotCommand.STALE_DATA_MESSAGE : ""));
+  }
+
+  /**
+   * Adds a listener that is run, on the thread that publishes the snapshot, each time the reading
+   * changes. It must return quickly.
+   * 
+   * @param listener Run after each new version is published.
+   */
+  public void addListener(Runnable listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Makes a snapshot the latest one and, if its reading differs from the one before it, gives it a
+   * new version and tells the listeners.
+   * 
+   * @param newSnapshot Snapshot of the carbon intensity level.
+   */
+  void publish(StoplightSnapshot newSnapshot) {
+    boolean changed;
+    synchronized (this) {
+      changed = !newSnapshot.hasSameReading(snapshot);
+      if (changed) {
+        version++;
+      }
+      snapshot = newSnapshot;
+    }
+    if (changed) {
+      for (Runnable listener : listeners) {
+        listener.run();
+      }
+    }
+  }
+
+  /**
+   * Gets data from the WattDepot server regarding carbon emission level on the island of Oahu over
+   * the hour before the given time, with one query for the whole hour. Used when the page does not
+   * read the poller's snapshots.
+   * 
+   * @param date Timestamp.
+   * @param debugTimestamp True to report an invalid timestamp for testing purposes.
+   * @return Snapshot of the carbon intensity level at the given time.
+   */
+  public static StoplightSnapshot takeSnapshot(Date date, boolean debugTimestamp) {
+    if (debugTimestamp) {
+      return new StoplightSnapshot(date, Double.NaN, true, false, "Error: Cannot make timestamp.");
+    }
+    long minute = date.getTime() - date.getTime() % TimeGrid.MINUTE;
+    WattDepotCommand wattDepot = new WattDepotCommand();
+    double carbonEmission =
+        wattDepot.getCarbonContentData(TimeGrid.toTimestamp(minute - TimeGrid.HOUR));
+    return new StoplightSnapshot(date, carbonEmission, false, wattDepot.isNoDataAvailable(),
+        wattDepot.isStaleDataServed() ? WattDepotCommand.STALE_DATA_MESSAGE : "");
+  }
+
+}
@@ -0,0 +1,130 @@
+package edu.hawaii.wicket.page.stoplight;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Holds the carbon intensity level on the island of Oahu at one point in time, as measured by the
+ * stoplight poller. Snapshots never change, so they can be shared by all pages.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public final class StoplightSnapshot implements Serializable {
+
+  /** Support serialization. */
+  private static final long serialVersionUID = 1L;
+  /** Time at which the carbon intensity level was checked, in milliseconds since the epoch. */
+  private final long timestamp;
+  /** Carbon intensity level in lbs CO2 / MWh. */
+  private final double carbonEmission;
+  /** Indicates whether an error was encountered. */
+  private final boolean errorEncountered;
+  /** Indicates whether no data was available. */
+  private final boolean noDataAvailable;
+  /** Error message for the user, or an empty string if there is none. */
+  private final String errorMessage;
+
+  /**
+   * Creates a snapshot of the carbon intensity level.
+   * 
+   * @param timestamp Time at which the carbon intensity level was checked.
+   * @param carbonEmission Carbon intensity level in lbs CO2 / MWh.
+   * @param errorEncountered True if an error was encountered, false otherwise.
+   * @param noDataAvailable True if no data was available, false otherwise.
+   * @param errorMessage Error message for the user, or an empty string if there is none.
+   */
+  public StoplightSnapshot(Date timestamp, double carbonEmission, boolean errorEncountered,
+      boolean noDataAvailable, String errorMessage) {
+    this.timestamp = timestamp.getTime();
+    this.carbonEmission = carbonEmission;
+    this.errorEncountered = errorEncountered;
+    this.noDataAvailable = noDataAvailable;
+    this.errorMessage = errorMessage;
+  }
+
+  /**
+   * Returns the time at which the carbon intensity level was checked.
+   * 
+   * @return Time at which the carbon intensity level was checked.
+   */
+  public Date getTimestamp() {
+    return new Date(timestamp);
+  }
+
+  /**
+   * Returns the carbon intensity level.
+   * 
+   * @return Carbon intensity level in lbs CO2 / MWh.
+   */
+  public double getCarbonEmission() {
+    return carbonEmission;
+  }
+
+  /**
+   * Returns true if an error was encountered, false otherwise.
+   * 
+   * @return True if an error was encountered, false otherwise.
+   */
+  public boolean isErrorEncountered() {
+    return errorEncountered;
+  }
+
+  /**
+   * Returns true if no data was available, false otherwise.
+   * 
+   * @return True if no data was available, false otherwise.
+   */
+  public boolean isNoDataAvailable() {
+    return noDataAvailable;
+  }
+
+  /**
+   * Returns the error message for the user.
+   * 
+   * @return Error message, or an empty string if there is none.
+   */
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+
+  /**
+   * Returns true if the given snapshot shows the same stoplight and reading as this one, no matter
+   * when either was taken.
+   * 
+   * @param other Snapshot to compare with, or null.
+   * @return True if the given snapshot has the same reading, false otherwise.
+   */
+  public boolean hasSameReading(StoplightSnapshot other) {
+    return other != null && Double.compare(carbonEmission, other.carbonEmission) == 0
+        && errorEncountered == other.errorEncountered && noDataAvailable == other.noDataAvailable
+        && errorMessage.equals(other.errorMessage);
+  }
+
+  /**
+   * Returns true if the given object is a snapshot with the same data, false otherwise.
+   * 
+   * @param object Object to compare with.
+   * @return True if the given object is a snapshot with the same data, false otherwise.
+   */
+  @Override
+  public boolean equals(Object object) {
+    if (!(object instanceof StoplightSnapshot)) {
+      return false;
+    }
+    StoplightSnapshot other = (StoplightSnapshot) object;
+    return timestamp == other.timestamp && hasSameReading(other);
+  }
+
+  /**
+   * Returns a hash code for this snapshot.
+   * 
+   * @return Hash code for this snapshot.
+   */
+  @Override
+  public int hashCode() {
+    long bits = Double.doubleToLongBits(carbonEmission);
+    return 31 * (int) (timestamp ^ (timestamp >>> 32)) + (int) (bits ^ (bits >>> 32));
+  }
+
+}
@@ -0,0 +1,157 @@
+package edu.hawaii.wicket.page.stoplight;
+
+import java.text.DateFormat;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import edu.hawaii.wicket.page.scripts.Scripts;
+
+/**
+ * Turns a snapshot of the carbon intensity level into the text and pictures shown on the Stoplight
+ * page, both when the page is rendered and when a change is pushed to the browser.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+final class StoplightView {
+
+  /** Informs the user that an error was encountered. */
+  static final String ERROR_MESSAGE = "[See error message below stoplight]";
+  /** Informs the user that carbon emission levels are low. */
+  static final String GREEN_LIGHT_MESSAGE =
+      "Right now, not that many people on Oahu are using appliances that leave carbon footprints,"
+          + " so feel free to use your clothes washer, dryer, or any other carbon-emitting"
+          + " machine, but please try not to use them too much or for too long.";
+  /** Informs the user that carbon emission levels are neither high nor low. */
+  static final String YELLOW_LIGHT_MESSAGE =
+      "Right now, a lot of people are using appliances that leave carbon footprints. It is"
+          + " suggested that you may want to use those that generate very little to no carbon, or"
+          + " wait until the stoplight turns green again before using your clothes washer, dryer,"
+          + " or any other carbon-emitting machine.";
+  /** Informs the user that carbon emission levels are high. */
+  static final String RED_LIGHT_MESSAGE =
+      "Right now, the carbon emission level is too high, which means that too much carbon is being"
+          + " produced as a result of too many appliances being used. Unless it is an emergency,"
+          + " it is highly suggested that you should wait until the stoplight turns yellow or"
+          + " green again before using your clothes washer, dryer, or any other carbon-emitting"
+          + " machine.";
+  /** Picture of a green light. */
+  static final String GREEN_LIGHT = "http://www2.hawaii.edu/~bjpeter/Files/green.png";
+  /** Picture of a yellow light. */
+  static final String YELLOW_LIGHT = "http://www2.hawaii.edu/~bjpeter/Files/yellow.png";
+  /** Picture of a red light. */
+  static final String RED_LIGHT = "http://www2.hawaii.edu/~bjpeter/Files/red.png";
+  /** Picture of a stoplight with no light on. */
+  static final String NO_LIGHT = "http://www2.hawaii.edu/~bjpeter/Files/stoplight.png";
+
+  /**
+   * Only static methods.
+   */
+  private StoplightView() {
+    // Do nothing.
+  }
+
+  /**
+   * Returns the text that tells when the carbon emission level was last checked.
+   * 
+   * @param snapshot Snapshot of the carbon emission data.
+   * @return Time of the snapshot in 12-hour format, or a pointer to the error message.
+   */
+  static String getTimeText(StoplightSnapshot snapshot) {
+    if (snapshot.isErrorEncountered()) {
+      return ERROR_MESSAGE;
+    }
+    DateFormat twelveHourFormat = new SimpleDateFormat("h:mm:ss a z", Locale.US);
+    return twelveHourFormat.format(snapshot.getTimestamp());
+  }
+
+  /**
+   * Returns the text that tells what the carbon emission level was.
+   * 
+   * @param snapshot Snapshot of the carbon emission data.
+   * @return Carbon emission level to two decimal places, or why it is not available.
+   */
+  static String getDataText(StoplightSnapshot snapshot) {
+    if (snapshot.isErrorEncountered()) {
+      return ERROR_MESSAGE;
+    }
+    else if (snapshot.isNoDataAvailable()) {
+      return "not available";
+    }
+    DecimalFormat twoDecimalPlaces = new DecimalFormat("0.00");
+    return twoDecimalPlaces.format(snapshot.getCarbonEmission()) + " lbs CO2 / MWh";
+  }
+
+  /**
+   * Returns a URL to a picture of a green, yellow, or red light based on the carbon emission
+   * level. If no data exists, returns a URL to a picture of no light.
+   * 
+   * @param carbonEmission Carbon emission level in lbs CO2 / MWh.
+   * @return A URL to a picture of a green, yellow, or red light, or no light.
+   */
+  static String getLightUrl(double carbonEmission) {
+    if (carbonEmission < 1600.0) {
+      return GREEN_LIGHT;
+    }
+    else if (carbonEmission >= 1600.0 && carbonEmission < 2000.0) {
+      return YELLOW_LIGHT;
+    }
+    else if (carbonEmission >= 2000.0) {
+      return RED_LIGHT;
+    }
+    else {
+      return NO_LIGHT;
+    }
+  }
+
+  /**
+   * Returns the message for the user that goes with the color of the stoplight.
+   * 
+   * @param carbonEmission Carbon emission level in lbs CO2 / MWh.
+   * @return Message for the user, or null if no light is on.
+   */
+  static String getLightMessage(double carbonEmission) {
+    if (carbonEmission < 1600.0) {
+      return GREEN_LIGHT_MESSAGE;
+    }
+    else if (carbonEmission >= 1600.0 && carbonEmission < 2000.0) {
+      return YELLOW_LIGHT_MESSAGE;
+    }
+    else if (carbonEmission >= 2000.0) {
+      return RED_LIGHT_MESSAGE;
+    }
+    else {
+      return null;
+    }
+  }
+
+  /**
+   * Returns a snapshot as a JSON object that the script on the Stoplight page understands.
+   * 
+   * @param snapshot Snapshot of the carbon emission data.
+   * @param version Version of the snapshot.
+   * @return The snapshot in JSON.
+   */
+  static String toJson(StoplightSnapshot snapshot, long version) {
+    StringBuilder json = new StringBuilder(1024);
+    json.append("{\"version\":").append(version);
+    appendField(json, "time", getTimeText(snapshot));
+    appendField(json, "data", getDataText(snapshot));
+    appendField(json, "light", getLightUrl(snapshot.getCarbonEmission()));
+    appendField(json, "description", getLightMessage(snapshot.getCarbonEmission()));
+    appendField(json, "error", snapshot.getErrorMessage());
+    return json.append('}').toString();
+  }
+
+  /**
+   * Appends a string field to a JSON object.
+   * 
+   * @param json JSON object without its closing brace.
+   * @param name Name of the field.
+   * @param value Value of the field, or null.
+   */
+  private static void appendField(StringBuilder json, String name, String value) {
+    json.append(",\"").append(name).append("\":").append(Scripts.quote(value));
+  }
+
+}
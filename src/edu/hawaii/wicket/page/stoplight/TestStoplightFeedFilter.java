@@ -0,0 +1,134 @@
+package edu.hawaii.wicket.page.stoplight;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mortbay.jetty.Handler;
+import org.mortbay.jetty.Server;
+import org.mortbay.jetty.servlet.Context;
+import org.mortbay.jetty.servlet.FilterHolder;
+import org.mortbay.jetty.servlet.ServletHolder;
+
+/**
+ * Tests that the StoplightFeedFilter class holds requests for the latest version until the reading
+ * changes.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestStoplightFeedFilter {
+
+  /** Poller whose changes are waited for. */
+  private StoplightPoller poller;
+  /** Server that runs the filter in front of a feed that answers with the version. */
+  private Server server;
+  /** URI of the feed. */
+  private String feed;
+
+  /**
+   * Starts a server with the filter in front of a feed that answers with the latest version.
+   * 
+   * @throws Exception If the server cannot be started.
+   */
+  @Before
+  public void startServer() throws Exception {
+    poller = new StoplightPoller();
+    poller.publish(new StoplightSnapshot(new Date(0), 1985.49, false, false, ""));
+    server = new Server(0);
+    Context context = new Context(server, "/", Context.NO_SESSIONS);
+    context.setAttribute(StoplightFeedFilter.POLLER_ATTRIBUTE, poller);
+    context.addFilter(new FilterHolder(new StoplightFeedFilter()), "/feed/*", Handler.REQUEST);
+    context.addServlet(new ServletHolder(new HttpServlet() {
+      /** Support serialization. */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Answers with the latest version.
+       * 
+       * @param request The request.
+       * @param response The response.
+       * @throws IOException If the response cannot be written.
+       */
+      @Override
+      protected void doGet(HttpServletRequest request, HttpServletResponse response)
+          throws IOException {
+        response.getWriter().print(poller.getVersion());
+      }
+    }), "/*");
+    server.start();
+    feed = "http://localhost:" + server.getConnectors()[0].getLocalPort() + "/feed?version=";
+  }
+
+  /**
+   * Stops the server.
+   * 
+   * @throws Exception If the server cannot be stopped.
+   */
+  @After
+  public void stopServer() throws Exception {
+    server.stop();
+  }
+
+  /**
+   * Tests that a request for an older version is answered at once, and that a request for the
+   * latest version is held until a new reading is published.
+   * 
+   * @throws Exception If a request fails.
+   */
+  @Test
+  public void testHeldUntilChange() throws Exception {
+    final long version = poller.getVersion();
+    assertEquals("Older version", String.valueOf(version), read(feed + (version - 1)));
+
+    ExecutorService browser = Executors.newSingleThreadExecutor();
+    try {
+      Future<String> answer = browser.submit(new Callable<String>() {
+        public String call() throws IOException {
+          return read(feed + version);
+        }
+      });
+      Thread.sleep(500L);
+      assertFalse("Held", answer.isDone());
+      poller.publish(new StoplightSnapshot(new Date(60000), 1500.0, false, false, ""));
+      assertEquals("Answered after change", String.valueOf(version + 1), answer.get(5L,
+          TimeUnit.SECONDS));
+    }
+    finally {
+      browser.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns the body of the answer to a request.
+   * 
+   * @param uri URI of the request.
+   * @return Body of the answer.
+   * @throws IOException If the request fails.
+   */
+  private static String read(String uri) throws IOException {
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new URL(uri).openStream(), "UTF-8"));
+    try {
+      return reader.readLine();
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+}
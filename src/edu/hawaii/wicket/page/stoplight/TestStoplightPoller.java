@@ -0,0 +1,63 @@
+package edu.hawaii.wicket.page.stoplight;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.Date;
+import org.junit.Test;
+
+/**
+ * Tests how the StoplightPoller class and the stoplight feed tell pages about changes in the
+ * reading.
+ * 
+ * @author BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * @version 2.0
+ */
+public class TestStoplightPoller {
+
+  /**
+   * Tests that only a change in the reading, not in the time it was taken, makes a new version.
+   */
+  @Test
+  public void testVersionChangesWithReading() {
+    StoplightPoller poller = new StoplightPoller();
+    poller.publish(new StoplightSnapshot(new Date(0), 1985.49, false, false, ""));
+    long version = poller.getVersion();
+
+    poller.publish(new StoplightSnapshot(new Date(60000), 1985.49, false, false, ""));
+    assertEquals("Same reading", version, poller.getVersion());
+    assertEquals("Latest time", new Date(60000), poller.getSnapshot().getTimestamp());
+
+    poller.publish(new StoplightSnapshot(new Date(120000), 1500.0, false, false, ""));
+    assertEquals("New reading", version + 1, poller.getVersion());
+  }
+
+  /**
+   * Tests that the feed answers at once, with the whole snapshot only if the browser shows an older
+   * version.
+   */
+  @Test
+  public void testFeedAnswersAtOnce() {
+    StoplightPoller poller = new StoplightPoller();
+    assertTrue("No data yet", poller.getSnapshot().isNoDataAvailable());
+    poller.publish(new StoplightSnapshot(new Date(0), 1985.49, false, false, ""));
+    long version = poller.getVersion();
+
+    assertEquals("Unchanged", "{\"version\":" + version + "}",
+        StoplightFeed.toJson(poller, version));
+    assertTrue("Changed", StoplightFeed.toJson(poller, version - 1).contains("\"light\":"));
+  }
+
+  /**
+   * Tests that the feed turns a snapshot into JSON the page script can read.
+   */
+  @Test
+  public void testJson() {
+    StoplightSnapshot snapshot =
+        new StoplightSnapshot(new Date(0), Double.NaN, true, false, "Error: \"x\" </script>");
+    String json = StoplightView.toJson(snapshot, 7);
+    assertTrue("Version", json.startsWith("{\"version\":7,"));
+    assertTrue("Escaped", json.contains("\"error\":\"Error: \\\"x\\\" \\u003c/script\\u003e\""));
+    assertTrue("No light", json.contains("\"description\":null"));
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Keeps the Stoplight page up to date by long polling the stoplight feed. The server holds each
+ * request until the reading changes or a timeout expires, and the page asks again right away.
+ *
+ * Author: BJ Peter DeLaCruz, Wahib Hanani, Lyneth Peou
+ * Version: 2.0
+ */
+var StoplightFeed = {
+
+  /** Time to wait before asking again after a failed request, in milliseconds. */
+  retryDelay: 1000,
+
+  /** Longest time to wait before asking again after failed requests, in milliseconds. */
+  maxRetryDelay: 60000,
+
+  /**
+   * Starts listening for changes.
+   *
+   * config.url: URL of the stoplight feed.
+   * config.version: Version of the snapshot shown on the page.
+   * config.time, config.data, config.stoplight, config.description, config.error: Ids of the
+   * elements to update.
+   * config.facts: Rotation of messages in the description element, whose home message follows
+   * the color of the light.
+   */
+  start: function (config) {
+    this.config = config;
+    this.version = config.version;
+    this.delay = this.retryDelay;
+    this.poll();
+  },
+
+  /** Asks for the version after the one shown on the page. */
+  poll: function () {
+    var self = this;
+    var request = window.XMLHttpRequest ? new XMLHttpRequest()
+        : new ActiveXObject("Microsoft.XMLHTTP");
+    var separator = this.config.url.indexOf("?") < 0 ? "?" : "&";
+    request.open("GET", this.config.url + separator + "version=" + this.version, true);
+    request.onreadystatechange = function () {
+      if (request.readyState !== 4) {
+        return;
+      }
+      if (request.status === 200) {
+        self.delay = self.retryDelay;
+        self.show(self.parse(request.responseText));
+        self.poll();
+      }
+      else {
+        window.setTimeout(function () {
+          self.poll();
+        }, self.delay);
+        self.delay = Math.min(self.delay * 2, self.maxRetryDelay);
+      }
+    };
+    request.send(null);
+  },
+
+  /** Parses the JSON returned by the feed. */
+  parse: function (text) {
+    return window.JSON ? JSON.parse(text) : eval("(" + text + ")");
+  },
+
+  /** Shows a snapshot on the page unless it is the one already shown. */
+  show: function (snapshot) {
+    if (snapshot.version === this.version) {
+      return;
+    }
+    this.version = snapshot.version;
+    Carbonometer.setText(this.config.time, snapshot.time);
+    Carbonometer.setText(this.config.data, snapshot.data);
+    Carbonometer.setText(this.config.error, snapshot.error);
+    if (snapshot.description !== null) {
+      Carbonometer.setText(this.config.description, snapshot.description);
+      this.config.facts.setHome(snapshot.description);
+    }
+    document.getElementById(this.config.stoplight).src = snapshot.light;
+  }
+
+};
@@ -6,6 +6,7 @@ import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.list.ListItem;
 import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.model.IModel;
 import edu.hawaii.wicket.Session;
 
 /**
@@ -33,11 +34,12 @@ public class ResultsListView extends ListView<Double> {
    * Constructs a list view of data.
    * 
    * @param id Table cell that contains data.
-   * @param results List of data for one period.
+   * @param results Model of the list of data for one period.
    * @param maxLabel Maximum threshold value.
    * @param session This user's session.
    */
-  public ResultsListView(String id, List<Double> results, Label maxLabel, Session session) {
+  public ResultsListView(String id, IModel<? extends List<? extends Double>> results,
+      Label maxLabel, Session session) {
     super(id, results);
     this.SESSION = session;
   }
@@ -10,6 +10,7 @@ import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.form.Button;
 import org.apache.wicket.model.Model;
 import org.wattdepot.util.tstamp.Tstamp;
+import edu.hawaii.wattdepot.TimeSeries;
 import edu.hawaii.wattdepot.WattDepotCommand;
 import edu.hawaii.wicket.Session;
 import edu.hawaii.wicket.page.stoplight.ImageSource;
@@ -104,17 +105,14 @@ public class SubmitButton extends Button {
 
     SESSION.setTimestamps(Timestamps.createTimestamps(tempTimestamp));
 
-    cli.getCarbonContentData(SESSION.getTimestamps(), SESSION.getResults());
+    TimeSeries results = cli.getCarbonContentData(SESSION.getTimestamps());
+    SESSION.setResults(results);
 
     if (cli.isTimestampsListNotFilled()) {
       resetLabels();
       ERROR.setDefaultModelObject("ERROR: List of timestamps does not contain twenty-four"
           + " timestamps.");
     }
-    else if (cli.isResultsListNotEmpty()) {
-      resetLabels();
-      ERROR.setDefaultModelObject("ERROR: List to store results is not empty before method call.");
-    }
     else if (cli.isWattDepotExceptionThrown()) {
       resetLabels();
       ERROR.setDefaultModelObject("No data available for some or all hours of "
@@ -125,9 +123,9 @@ public class SubmitButton extends Button {
     else {
       Thresholds thresholds = new Thresholds();
 
-      Double maxValue = thresholds.getMaxThreshold(SESSION.getResults());
+      Double maxValue = thresholds.getMaxThreshold(results);
 
-      Double minValue = thresholds.getMinThreshold(SESSION.getResults());
+      Double minValue = thresholds.getMinThreshold(results);
 
       SESSION.setMinThreshold(minValue);
 
@@ -143,7 +141,8 @@ public class SubmitButton extends Button {
       int numGreen = 0;
       int numYellow = 0;
       int numRed = 0;
-      for (Double value : SESSION.getResults()) {
+      for (int i = 0; i < results.size(); i++) {
+        double value = results.get(i);
         if (value > SESSION.getMaxThreshold()/* && value > SESSION.getMinThreshold() */) {
           numRed++;
         }
@@ -167,7 +166,8 @@ public class SubmitButton extends Button {
               + TWO_DECIMAL_PLACES.format(SESSION.getMaxThreshold()) + UNITS;
       MAX.setDefaultModelObject(max);
 
-      ERROR.setDefaultModelObject("");
+      ERROR.setDefaultModelObject(cli.isStaleDataServed() ? WattDepotCommand.STALE_DATA_MESSAGE
+          : "");
     }
   }
 
@@ -227,7 +227,7 @@ public class SubmitButton extends Button {
     INFO.setDefaultModelObject("");
     DESC.setDefaultModelObject("");
     SESSION.getTimestamps().clear();
-    SESSION.getResults().clear();
+    SESSION.setResults(TimeSeries.EMPTY);
     STOPLIGHT.add(new AttributeModifier(SRC_ATTRIBUTE, true, new Model<String>("")));
     STOPLIGHT.add(new AttributeModifier(STYLE_ATTRIBUTE, true, new Model<String>(
         "visibility: hidden")));
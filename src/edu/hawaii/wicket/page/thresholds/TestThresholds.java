@@ -1,9 +1,8 @@
 package edu.hawaii.wicket.page.thresholds;
 
 import static org.junit.Assert.assertEquals;
-import java.util.List;
-import java.util.ArrayList;
 import org.junit.Test;
+import edu.hawaii.wattdepot.TimeSeries;
 
 /**
  * Tests the methods in the Thresholds class.
@@ -19,11 +18,10 @@ public class TestThresholds {
   @Test
   public void testGetMaxThreshold() {
     Thresholds thresholds = new Thresholds();
-    List<Double> data = new ArrayList<Double>();
+    TimeSeries data = TimeSeries.EMPTY;
     int maxThreshold = thresholds.getMaxThreshold(data).intValue();
     assertEquals("Checking max threshold", maxThreshold, 2000);
-    data.add(10.0);
-    data.add(10.0);
+    data = new TimeSeries(0L, 60, new double[] { 10.0, 10.0 });
     maxThreshold = thresholds.getMaxThreshold(data).intValue();
     assertEquals("Checking max threshold", maxThreshold, 10);
   }
@@ -34,11 +32,10 @@ public class TestThresholds {
   @Test
   public void testGetMinThreshold() {
     Thresholds thresholds = new Thresholds();
-    List<Double> data = new ArrayList<Double>();
+    TimeSeries data = TimeSeries.EMPTY;
     int minThreshold = thresholds.getMinThreshold(data).intValue();
     assertEquals("Checking min threshold", minThreshold, 1500);
-    data.add(20.0);
-    data.add(20.0);
+    data = new TimeSeries(0L, 60, new double[] { 20.0, 20.0 });
     minThreshold = thresholds.getMaxThreshold(data).intValue();
     assertEquals("Checking min threshold", minThreshold, 20);
   }
@@ -1,7 +1,6 @@
 package edu.hawaii.wicket.page.thresholds;
 
-import java.util.Collections;
-import java.util.List;
+import edu.hawaii.wattdepot.TimeSeries;
 
 /**
  * Calculates the maximum and minimum threshold values.
@@ -24,14 +23,15 @@ public class Thresholds {
    * @param results Data for day.
    * @return maxThreshold Maximum threshold value.
    */
-  public Double getMaxThreshold(List<Double> results) {
+  public Double getMaxThreshold(TimeSeries results) {
+    TimeSeries.Statistics statistics = results.getStatistics();
     // Use hardcoded maximum threshold value if data for a day is unavailable.
-    if (results.isEmpty()) {
+    if (statistics.getCount() == 0) {
       return new Double(2000.0);
     }
 
-    double ave = (Collections.max(results) + Collections.min(results)) / 2.0;
-    double max = (ave + Collections.max(results)) / 2.0;
+    double ave = (statistics.getMax() + statistics.getMin()) / 2.0;
+    double max = (ave + statistics.getMax()) / 2.0;
 
     return max;
   }
@@ -42,14 +42,15 @@ public class Thresholds {
    * @param results Data for day.
    * @return minThreshold Minimum threshold value.
    */
-  public Double getMinThreshold(List<Double> results) {
+  public Double getMinThreshold(TimeSeries results) {
+    TimeSeries.Statistics statistics = results.getStatistics();
     // Use hardcoded minimum threshold value if data for a day is unavailable.
-    if (results.isEmpty()) {
+    if (statistics.getCount() == 0) {
       return new Double(1500.0);
     }
 
-    double ave = (Collections.max(results) + Collections.min(results)) / 2.0;
-    double min = (ave + Collections.min(results)) / 2.0;
+    double ave = (statistics.getMax() + statistics.getMin()) / 2.0;
+    double min = (ave + statistics.getMin()) / 2.0;
 
     return min;
   }
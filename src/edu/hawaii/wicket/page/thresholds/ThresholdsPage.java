@@ -2,19 +2,19 @@ package edu.hawaii.wicket.page.thresholds;
 
 import java.util.Calendar;
 import java.util.Date;
-import java.util.Random;
+import java.util.List;
 import javax.xml.datatype.XMLGregorianCalendar;
 import org.apache.wicket.AttributeModifier;
-import org.apache.wicket.ajax.AbstractAjaxTimerBehavior;
-import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.extensions.markup.html.form.DateTextField;
 import org.apache.wicket.extensions.yui.calendar.DatePicker;
 import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.form.Form;
 import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.Model;
-import org.apache.wicket.util.time.Duration;
+import edu.hawaii.wattdepot.TimeSeries;
 import edu.hawaii.wicket.page.BasePage;
+import edu.hawaii.wicket.page.scripts.Scripts;
 import edu.hawaii.wicket.page.stoplight.ImageSource;
 import edu.hawaii.wicket.Session;
 
@@ -52,8 +52,6 @@ public class ThresholdsPage extends BasePage {
   private final Session SESSION = (Session) this.getSession();
   /** Used to display carbon emission data. */
   private static final ImageSource STOPLIGHT = new ImageSource("stoplight", new Model<String>(""));
-  /** Random number generator for generating random messages for the user. */
-  private static final Random generator = new Random();
   /** Information about using the shower. */
   private static final String SHOWER_MESSAGE =
       "Take a shower instead of a bath. A shower takes up to four times less energy than a bath."
@@ -74,8 +72,9 @@ public class ThresholdsPage extends BasePage {
           + " sources, such as wind and solar. In some of these areas, you can even get refunds by"
           + " government if you choose to switch to a clean energy producer, and you can also earn"
           + " money by selling the energy you produce and don't use for yourself.";
-  /** Used to display different message every ten seconds. */
-  private int previousNumber = 1;
+  /** Tips that take turns every ten seconds, starting with the first one. */
+  private static final String[] TIPS_MESSAGES =
+      { SHOWER_MESSAGE, HOT_WATER_MESSAGE, RECYCLING_MESSAGE, GREEN_POWER_MESSAGE };
   /** Used to determine if Get Data button is clicked. */
   private boolean isButtonClicked = false;
 
@@ -86,7 +85,7 @@ public class ThresholdsPage extends BasePage {
   public ThresholdsPage() {
 
     SESSION.getTimestamps().clear();
-    SESSION.getResults().clear();
+    SESSION.setResults(TimeSeries.EMPTY);
     STOPLIGHT.add(new AttributeModifier("src", true, new Model<String>("")));
     STOPLIGHT.add(new AttributeModifier("STYLE", true, new Model<String>("visibility: hidden")));
 
@@ -106,7 +105,6 @@ public class ThresholdsPage extends BasePage {
         TIMESTAMPS_VIEW.modelChanged();
         RESULTS_VIEW.modelChanged();
         TIPS.setDefaultModelObject(SHOWER_MESSAGE);
-        previousNumber = 1;
         isButtonClicked = true;
       }
 
@@ -124,30 +122,21 @@ public class ThresholdsPage extends BasePage {
 
     add(TIMESTAMPS_VIEW = new TimestampsListView("hours00-11", SESSION.getTimestamps()));
 
-    add(RESULTS_VIEW = new ResultsListView("results00-11", SESSION.getResults(), MAX, SESSION));
-
-    add(new AbstractAjaxTimerBehavior(Duration.seconds(1)) {
-      /** Support serialization. */
-      private static final long serialVersionUID = 1L;
-
-      /** Displays facts regarding carbon emissions to the user. */
-      @Override
-      protected void onTimer(AjaxRequestTarget target) {
-        Calendar currentTime = Calendar.getInstance();
-        if (!isButtonClicked) {
-          return;
-        }
-        if (currentTime.get(Calendar.SECOND) != 10 && currentTime.get(Calendar.SECOND) != 20
-            && currentTime.get(Calendar.SECOND) != 30 && currentTime.get(Calendar.SECOND) != 40
-            && currentTime.get(Calendar.SECOND) != 50) {
-          return;
-        }
-
-        displayTips();
-
-        target.addComponent(TIPS);
-      }
-    });
+    add(RESULTS_VIEW =
+        new ResultsListView("results00-11", new AbstractReadOnlyModel<List<Double>>() {
+          /** Support serialization. */
+          private static final long serialVersionUID = 1L;
+
+          /**
+           * Returns the data in this user's session, which are replaced after each query.
+           * 
+           * @return The data for one 24-hour period.
+           */
+          @Override
+          public List<Double> getObject() {
+            return SESSION.getResults().asList();
+          }
+        }, MAX, SESSION));
 
     add(STOPLIGHT);
     add(INFO);
@@ -155,36 +144,39 @@ public class ThresholdsPage extends BasePage {
     TIPS.setOutputMarkupId(true);
     add(TIPS);
 
-  }
+    // Show a different tip every ten seconds in the browser once the user has asked for data.
+    add(Scripts.getHeaderContribution());
+    Label script = new Label("script", new AbstractReadOnlyModel<String>() {
+      /** Support serialization. */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Returns the script that starts showing tips.
+       * 
+       * @return Script that starts showing tips.
+       */
+      @Override
+      public String getObject() {
+        return "Carbonometer.rotate({id:" + Scripts.quote(TIPS.getMarkupId()) + ",messages:"
+            + Scripts.quote(TIPS_MESSAGES) + ",current:0,home:null});";
+      }
+    }) {
+      /** Support serialization. */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Shows the script only after the Get Data button is clicked.
+       * 
+       * @return True if the Get Data button was clicked, false otherwise.
+       */
+      @Override
+      public boolean isVisible() {
+        return isButtonClicked;
+      }
+    };
+    script.setEscapeModelStrings(false);
+    add(script);
 
-  /**
-   * Displays tips on how to save energy to the user.
-   */
-  private void displayTips() {
-    int number;
-    while (previousNumber == (number = generator.nextInt(4) + 1)) {
-      ;
-    }
-
-    switch (number) {
-    case 1:
-      TIPS.setDefaultModelObject(SHOWER_MESSAGE);
-      break;
-    case 2:
-      TIPS.setDefaultModelObject(HOT_WATER_MESSAGE);
-      break;
-    case 3:
-      TIPS.setDefaultModelObject(RECYCLING_MESSAGE);
-      break;
-    case 4:
-      TIPS.setDefaultModelObject(GREEN_POWER_MESSAGE);
-      break;
-    default:
-      TIPS.setDefaultModelObject("");
-      break;
-    }
-
-    previousNumber = number;
   }
 
 }
\ No newline at end of file
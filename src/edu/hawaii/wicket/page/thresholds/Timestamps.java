@@ -2,8 +2,9 @@ package edu.hawaii.wicket.page.thresholds;
 
 import java.util.ArrayList;
 import java.util.List;
+import javax.xml.datatype.DatatypeConstants;
 import javax.xml.datatype.XMLGregorianCalendar;
-import org.wattdepot.util.tstamp.Tstamp;
+import edu.hawaii.wattdepot.TimeGrid;
 
 /**
  * Creates a list of timestamps, from 00:00:00 to 23:00:00.
@@ -21,16 +22,22 @@ public class Timestamps {
   }
 
   /**
-   * Creates a list of timestamps, from 00:00:00 to 23:00:00.
+   * Creates a list of timestamps, from 00:00:00 to 23:00:00. The hours are stepped through as
+   * milliseconds, in the same offset from UTC as the given date.
    * 
    * @param tstamp Date entered by the user in the textbox.
    * @return A list of timestamps for one 24-hour period, from 00:00:00 to 23:00:00.
    */
   public static List<XMLGregorianCalendar> createTimestamps(XMLGregorianCalendar tstamp) {
-    List<XMLGregorianCalendar> timestampsList = new ArrayList<XMLGregorianCalendar>();
+    int offset = tstamp.getTimezone();
+    if (offset == DatatypeConstants.FIELD_UNDEFINED) {
+      offset = TimeGrid.HST_OFFSET_MINUTES;
+    }
+    TimeGrid hours = new TimeGrid(TimeGrid.toMillis(tstamp), TimeGrid.HOUR, 24, offset);
+    List<XMLGregorianCalendar> timestampsList = new ArrayList<XMLGregorianCalendar>(hours.size());
 
-    for (int i = 0; i < 24; i++) {
-      timestampsList.add(Tstamp.incrementHours(tstamp, i));
+    for (int i = 0; i < hours.size(); i++) {
+      timestampsList.add(hours.toTimestamp(i));
     }
     return timestampsList;
   }